@@ -0,0 +1,72 @@
+package luka.mugosa.filecomparison.config;
+
+import jakarta.annotation.PreDestroy;
+import luka.mugosa.filecomparison.domain.dto.response.ExecutorStatsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Bulkheads for a reconciliation: blocking reads run on virtual threads, CPU-bound parsing and scoring on a sized
+ * ForkJoinPool, so a burst of uploads queues up on the pool instead of oversubscribing the carrier threads
+ * that Tomcat's virtual-thread request handling runs on
+ */
+@Component
+public class ReconciliationExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationExecutors.class);
+
+    private final ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ForkJoinPool cpuPool;
+    private final int parseChunkRows;
+
+    public ReconciliationExecutors(ReconciliationProperties properties) {
+        final ReconciliationProperties.ExecutorPools executorProperties = properties.getExecutors();
+        final int parallelism = executorProperties.getCpuParallelism() > 0
+                ? executorProperties.getCpuParallelism()
+                : Runtime.getRuntime().availableProcessors();
+
+        this.cpuPool = new ForkJoinPool(parallelism, pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("reconciliation-cpu-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+        this.parseChunkRows = Math.max(1, executorProperties.getParseChunkRows());
+
+        logger.info("Reconciliation CPU pool started with parallelism {}, parse chunks of {} rows", parallelism, parseChunkRows);
+    }
+
+    public ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
+    public ForkJoinPool getCpuPool() {
+        return cpuPool;
+    }
+
+    public int getParseChunkRows() {
+        return parseChunkRows;
+    }
+
+    public ExecutorStatsResponse stats() {
+        return ExecutorStatsResponse.builder()
+                .cpuParallelism(cpuPool.getParallelism())
+                .cpuPoolSize(cpuPool.getPoolSize())
+                .cpuActiveThreads(cpuPool.getActiveThreadCount())
+                .cpuQueuedSubmissions(cpuPool.getQueuedSubmissionCount())
+                .cpuQueuedTasks(cpuPool.getQueuedTaskCount())
+                .cpuStealCount(cpuPool.getStealCount())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cpuPool.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+}
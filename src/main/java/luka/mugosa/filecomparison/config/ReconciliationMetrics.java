@@ -0,0 +1,122 @@
+package luka.mugosa.filecomparison.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import luka.mugosa.filecomparison.domain.dto.ParseStatisticsDto;
+import luka.mugosa.filecomparison.domain.enumeration.ErrorType;
+import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the reconciliation hot paths, all registered up front so recording is a field read and an add.
+ * Nothing is recorded per row or per pair, the parser and the comparison report their totals once they finish.
+ * Timers publish histogram buckets, p99 is computed from them on the Prometheus side.
+ */
+@Component
+public class ReconciliationMetrics {
+
+    private final Timer parseSuccess;
+    private final Timer parseFailure;
+    private final Timer compareSuccess;
+    private final Timer compareFailure;
+    private final Counter processedRows;
+    private final Counter skippedRows;
+    private final Counter filteredRows;
+    private final Counter failedRows;
+    private final Counter scoredPairs;
+    private final Map<MatchConfidence, Counter> matches = new EnumMap<>(MatchConfidence.class);
+    private final Map<ErrorType, Counter> errors = new EnumMap<>(ErrorType.class);
+
+    public ReconciliationMetrics(MeterRegistry registry) {
+        this.parseSuccess = parseTimer(registry, "success");
+        this.parseFailure = parseTimer(registry, "failure");
+        this.compareSuccess = compareTimer(registry, "success");
+        this.compareFailure = compareTimer(registry, "failure");
+        this.processedRows = rowCounter(registry, "processed");
+        this.skippedRows = rowCounter(registry, "skipped");
+        this.filteredRows = rowCounter(registry, "filtered");
+        this.failedRows = rowCounter(registry, "failed");
+        this.scoredPairs = Counter.builder("reconciliation.scoring.pairs")
+                .description("Transaction pairs scored")
+                .register(registry);
+        for (MatchConfidence confidence : MatchConfidence.values()) {
+            matches.put(confidence, Counter.builder("reconciliation.matches")
+                    .description("Scored pairs by confidence, rows matched outright count as HIGH")
+                    .tag("confidence", confidence.name())
+                    .register(registry));
+        }
+        for (ErrorType errorType : ErrorType.values()) {
+            errors.put(errorType, Counter.builder("reconciliation.errors")
+                    .description("Error responses by error type")
+                    .tag("type", errorType.name())
+                    .register(registry));
+        }
+    }
+
+    public Timer.Sample start() {
+        return Timer.start();
+    }
+
+    /**
+     * Parse of one file, the rows are counted by what happened to them
+     */
+    public void parsed(Timer.Sample sample, boolean succeeded, ParseStatisticsDto statistics) {
+        sample.stop(succeeded ? parseSuccess : parseFailure);
+        processedRows.increment(statistics.processedRows());
+        skippedRows.increment(statistics.skippedRows());
+        filteredRows.increment(statistics.filteredRows());
+        failedRows.increment(statistics.failedRows());
+    }
+
+    public <T> T timeCompare(Supplier<T> comparison) {
+        final Timer.Sample sample = start();
+        boolean succeeded = false;
+        try {
+            final T result = comparison.get();
+            succeeded = true;
+            return result;
+        } finally {
+            sample.stop(succeeded ? compareSuccess : compareFailure);
+        }
+    }
+
+    /**
+     * Totals of one finished comparison
+     */
+    public void compared(long pairsScored, Map<MatchConfidence, Integer> pairsByConfidence) {
+        scoredPairs.increment(pairsScored);
+        pairsByConfidence.forEach((confidence, pairs) -> matches.get(confidence).increment(pairs));
+    }
+
+    public void error(ErrorType errorType) {
+        errors.get(errorType).increment();
+    }
+
+    private static Timer parseTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("reconciliation.parse")
+                .description("Parse of one file")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer compareTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("reconciliation.compare")
+                .description("Comparison of two or more parsed files, up to the built response")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Counter rowCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("reconciliation.rows")
+                .description("Rows read by the parser")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,530 @@
+package luka.mugosa.filecomparison.config;
+
+import luka.mugosa.filecomparison.domain.enumeration.AlternateMatchKey;
+import luka.mugosa.filecomparison.domain.enumeration.ReconciliationEngine;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "reconciliation")
+public class ReconciliationProperties {
+
+    private final Matching matching = new Matching();
+    private final Jobs jobs = new Jobs();
+    private final ExecutorPools executors = new ExecutorPools();
+    private final Admission admission = new Admission();
+    private final LargeFiles largeFiles = new LargeFiles();
+    private final ParseCache parseCache = new ParseCache();
+    private final Snapshots snapshots = new Snapshots();
+    private final References references = new References();
+    private final Incremental incremental = new Incremental();
+    private final Validation validation = new Validation();
+    private final Parsing parsing = new Parsing();
+
+    // PIPELINED starts matching while the files are still being parsed
+    private ReconciliationEngine engine = ReconciliationEngine.PIPELINED;
+
+    public Matching getMatching() {
+        return matching;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public ExecutorPools getExecutors() {
+        return executors;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public LargeFiles getLargeFiles() {
+        return largeFiles;
+    }
+
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    public Snapshots getSnapshots() {
+        return snapshots;
+    }
+
+    public References getReferences() {
+        return references;
+    }
+
+    public Incremental getIncremental() {
+        return incremental;
+    }
+
+    public Validation getValidation() {
+        return validation;
+    }
+
+    public Parsing getParsing() {
+        return parsing;
+    }
+
+    public ReconciliationEngine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(ReconciliationEngine engine) {
+        this.engine = engine;
+    }
+
+    public static class Matching {
+
+        // Tried in order for rows whose TransactionID is blank
+        private List<AlternateMatchKey> alternateKeys = new ArrayList<>(List.of(
+                AlternateMatchKey.WALLET_REFERENCE_AMOUNT_DATE,
+                AlternateMatchKey.PROFILE_NAME_AMOUNT_DATE_WINDOW
+        ));
+
+        // ± days probed by the *_DATE_WINDOW keys
+        private int dateWindowDays = 2;
+
+        // Batch and partitioned comparisons digest both files per day and only score the days that differ
+        private boolean skipIdenticalDateBuckets = true;
+
+        // Lowest score a candidate found by an alternate key is taken on. Blank IDs score no ID points, the key fields
+        // alone are worth 41 to 50, so the rest of the row has to agree too
+        private double alternateKeyMinScore = 55.0;
+
+        public List<AlternateMatchKey> getAlternateKeys() {
+            return alternateKeys;
+        }
+
+        public void setAlternateKeys(List<AlternateMatchKey> alternateKeys) {
+            this.alternateKeys = alternateKeys;
+        }
+
+        public int getDateWindowDays() {
+            return dateWindowDays;
+        }
+
+        public void setDateWindowDays(int dateWindowDays) {
+            this.dateWindowDays = dateWindowDays;
+        }
+
+        public boolean isSkipIdenticalDateBuckets() {
+            return skipIdenticalDateBuckets;
+        }
+
+        public void setSkipIdenticalDateBuckets(boolean skipIdenticalDateBuckets) {
+            this.skipIdenticalDateBuckets = skipIdenticalDateBuckets;
+        }
+
+        public double getAlternateKeyMinScore() {
+            return alternateKeyMinScore;
+        }
+
+        public void setAlternateKeyMinScore(double alternateKeyMinScore) {
+            this.alternateKeyMinScore = alternateKeyMinScore;
+        }
+    }
+
+    public static class Jobs {
+
+        // Jobs running at the same time, the rest wait in the queue
+        private int maxConcurrent = 2;
+
+        // Submissions beyond this are rejected instead of queued
+        private int queueCapacity = 20;
+
+        // Finished jobs and their results are dropped after this
+        private Duration retention = Duration.ofMinutes(30);
+
+        // How often expired jobs are looked for, whether or not new jobs come in
+        private Duration purgeInterval = Duration.ofMinutes(1);
+
+        // Completed results kept in memory, outside the admission budget, the oldest are dropped first
+        private int maxRetainedResults = 10;
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public Duration getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(Duration purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+
+        public int getMaxRetainedResults() {
+            return maxRetainedResults;
+        }
+
+        public void setMaxRetainedResults(int maxRetainedResults) {
+            this.maxRetainedResults = maxRetainedResults;
+        }
+    }
+
+    public static class ExecutorPools {
+
+        // Workers of the parse/score pool, 0 means one per available processor
+        private int cpuParallelism = 0;
+
+        // Rows read ahead on the I/O thread before being handed to the pool as one task
+        private int parseChunkRows = 1024;
+
+        public int getCpuParallelism() {
+            return cpuParallelism;
+        }
+
+        public void setCpuParallelism(int cpuParallelism) {
+            this.cpuParallelism = cpuParallelism;
+        }
+
+        public int getParseChunkRows() {
+            return parseChunkRows;
+        }
+
+        public void setParseChunkRows(int parseChunkRows) {
+            this.parseChunkRows = parseChunkRows;
+        }
+    }
+
+    public static class Admission {
+
+        private boolean enabled = true;
+
+        // Heap reserved for reconciliations in flight, unset means defaultHeapPercentage of -Xmx
+        private DataSize memoryCeiling;
+
+        private int defaultHeapPercentage = 60;
+
+        // Used to estimate the row count from the upload size
+        private int estimatedRowBytes = 150;
+
+        // Heap per parsed row beyond its raw bytes: TransactionDto, dates, strings, index entries
+        private int rowOverheadBytes = 512;
+
+        // How long a request waits for budget before it gets a 429
+        private Duration maxWait = Duration.ofSeconds(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getMemoryCeiling() {
+            return memoryCeiling;
+        }
+
+        public void setMemoryCeiling(DataSize memoryCeiling) {
+            this.memoryCeiling = memoryCeiling;
+        }
+
+        public int getDefaultHeapPercentage() {
+            return defaultHeapPercentage;
+        }
+
+        public void setDefaultHeapPercentage(int defaultHeapPercentage) {
+            this.defaultHeapPercentage = defaultHeapPercentage;
+        }
+
+        public int getEstimatedRowBytes() {
+            return estimatedRowBytes;
+        }
+
+        public void setEstimatedRowBytes(int estimatedRowBytes) {
+            this.estimatedRowBytes = estimatedRowBytes;
+        }
+
+        public int getRowOverheadBytes() {
+            return rowOverheadBytes;
+        }
+
+        public void setRowOverheadBytes(int rowOverheadBytes) {
+            this.rowOverheadBytes = rowOverheadBytes;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+    }
+
+    public static class LargeFiles {
+
+        // Per uploaded file, and what one compressed file may decompress to.
+        // spring.servlet.multipart limits have to allow it as well
+        private DataSize maxFileSize = DataSize.ofGigabytes(4);
+
+        // Combined input size from which both files are partitioned to disk and reconciled one partition at a time
+        private DataSize threshold = DataSize.ofMegabytes(256);
+
+        // Target input bytes (both files together) held in memory per partition
+        private DataSize partitionSize = DataSize.ofMegabytes(64);
+
+        public DataSize getMaxFileSize() {
+            return maxFileSize;
+        }
+
+        public void setMaxFileSize(DataSize maxFileSize) {
+            this.maxFileSize = maxFileSize;
+        }
+
+        public DataSize getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(DataSize threshold) {
+            this.threshold = threshold;
+        }
+
+        public DataSize getPartitionSize() {
+            return partitionSize;
+        }
+
+        public void setPartitionSize(DataSize partitionSize) {
+            this.partitionSize = partitionSize;
+        }
+
+        public boolean isLargeInput(long inputBytes) {
+            return inputBytes > threshold.toBytes();
+        }
+    }
+
+    public static class ParseCache {
+
+        private boolean enabled = true;
+
+        // Estimated heap of all cached files, unset means defaultHeapPercentage of -Xmx (on top of the admission budget)
+        private DataSize maxSize;
+
+        private int defaultHeapPercentage = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getDefaultHeapPercentage() {
+            return defaultHeapPercentage;
+        }
+
+        public void setDefaultHeapPercentage(int defaultHeapPercentage) {
+            this.defaultHeapPercentage = defaultHeapPercentage;
+        }
+    }
+
+    public static class Snapshots {
+
+        // Binary snapshot of a parsed file, loaded instead of parsing it again while it is unchanged
+        private boolean enabled = true;
+
+        // CSVs parsed from disk are snapshotted here when set, never next to the CSV itself
+        private String fileDirectory;
+
+        // Uploads are also snapshotted by content hash when set, which keeps the parsed files across restarts
+        private String uploadDirectory;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getFileDirectory() {
+            return fileDirectory;
+        }
+
+        public void setFileDirectory(String fileDirectory) {
+            this.fileDirectory = fileDirectory;
+        }
+
+        public String getUploadDirectory() {
+            return uploadDirectory;
+        }
+
+        public void setUploadDirectory(String uploadDirectory) {
+            this.uploadDirectory = uploadDirectory;
+        }
+    }
+
+    public static class References {
+
+        // How long a prepared reference file stays registered when the request doesn't say
+        private Duration defaultTtl = Duration.ofHours(1);
+
+        private Duration maxTtl = Duration.ofHours(24);
+
+        // Every reference holds its share of the admission budget until it expires
+        private int maxReferences = 10;
+
+        public Duration getDefaultTtl() {
+            return defaultTtl;
+        }
+
+        public void setDefaultTtl(Duration defaultTtl) {
+            this.defaultTtl = defaultTtl;
+        }
+
+        public Duration getMaxTtl() {
+            return maxTtl;
+        }
+
+        public void setMaxTtl(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+
+        public int getMaxReferences() {
+            return maxReferences;
+        }
+
+        public void setMaxReferences(int maxReferences) {
+            this.maxReferences = maxReferences;
+        }
+    }
+
+    public static class Incremental {
+
+        // Sessions are written here after every upload and read back after a restart, the temp directory when unset
+        private String stateDirectory;
+
+        // Sessions beyond this are dropped from memory, least recently used first, and read back from disk when used
+        private int maxSessionsInMemory = 8;
+
+        public String getStateDirectory() {
+            return stateDirectory;
+        }
+
+        public void setStateDirectory(String stateDirectory) {
+            this.stateDirectory = stateDirectory;
+        }
+
+        public int getMaxSessionsInMemory() {
+            return maxSessionsInMemory;
+        }
+
+        public void setMaxSessionsInMemory(int maxSessionsInMemory) {
+            this.maxSessionsInMemory = maxSessionsInMemory;
+        }
+    }
+
+    public static class Validation {
+
+        // Uploads with more invalid rows are rejected by a byte scan before parsing, -1 parses without the scan
+        private int maxInvalidRows = -1;
+
+        // Per file, the rest of the issues are only counted
+        private int maxReportedIssues = 100;
+
+        public int getMaxInvalidRows() {
+            return maxInvalidRows;
+        }
+
+        public void setMaxInvalidRows(int maxInvalidRows) {
+            this.maxInvalidRows = maxInvalidRows;
+        }
+
+        public int getMaxReportedIssues() {
+            return maxReportedIssues;
+        }
+
+        public void setMaxReportedIssues(int maxReportedIssues) {
+            this.maxReportedIssues = maxReportedIssues;
+        }
+    }
+
+    public static class Parsing {
+
+        // Rows with bad values a file may have before its parse is aborted, -1 keeps the old parser that reads them
+        // as empty fields and never aborts
+        private int errorBudget = -1;
+
+        // Per file, the rest of the flagged rows are only counted
+        private int maxReportedErrors = 100;
+
+        // Wait for the parse of a reconciliation's inputs, grows by timeoutPerGb for every gigabyte of input
+        private Duration timeout = Duration.ofMinutes(2);
+
+        private Duration timeoutPerGb = Duration.ofMinutes(4);
+
+        public int getErrorBudget() {
+            return errorBudget;
+        }
+
+        public void setErrorBudget(int errorBudget) {
+            this.errorBudget = errorBudget;
+        }
+
+        public int getMaxReportedErrors() {
+            return maxReportedErrors;
+        }
+
+        public void setMaxReportedErrors(int maxReportedErrors) {
+            this.maxReportedErrors = maxReportedErrors;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Duration getTimeoutPerGb() {
+            return timeoutPerGb;
+        }
+
+        public void setTimeoutPerGb(Duration timeoutPerGb) {
+            this.timeoutPerGb = timeoutPerGb;
+        }
+
+        public Duration timeoutFor(long inputBytes) {
+            final long perGbMillis = timeoutPerGb.toMillis();
+            return timeout.plusMillis((long) (perGbMillis * (inputBytes / (double) DataSize.ofGigabytes(1).toBytes())));
+        }
+    }
+}
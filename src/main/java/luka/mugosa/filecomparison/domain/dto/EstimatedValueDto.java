@@ -0,0 +1,10 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+public record EstimatedValueDto(double estimate, double lowerBound, double upperBound) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
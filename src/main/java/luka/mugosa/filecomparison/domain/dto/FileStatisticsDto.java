@@ -0,0 +1,16 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Row counts are exact, the ID figures come from sketches. duplicateDensity is the share of rows with an ID that
+ * repeat an ID seen before, estimatedLargestIdGroup never undercounts.
+ */
+public record FileStatisticsDto(String filename, int totalRecords, int blankIdRecords, long estimatedDistinctIds,
+                                long estimatedDuplicateRecords, double duplicateDensity,
+                                int estimatedLargestIdGroup) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
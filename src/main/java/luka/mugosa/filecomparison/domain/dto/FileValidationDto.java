@@ -0,0 +1,19 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import luka.mugosa.filecomparison.domain.enumeration.RowErrorReason;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of the byte scan of one file. issues holds the first issues found, issueCounts counts all of them.
+ */
+public record FileValidationDto(String filename, boolean valid, int rows, int invalidRows,
+                                Map<RowErrorReason, Integer> issueCounts, List<RowErrorDto> issues,
+                                long scanMillis) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,38 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Offsets of a column inside the retained raw row, decoded only when somebody asks for the value
+ */
+public final class LazyColumn implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] row;
+    private final int offset;
+    private final int length;
+
+    public LazyColumn(byte[] row, int offset, int length) {
+        this.row = row;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public String decode() {
+        return length == 0 ? "" : new String(row, offset, length, StandardCharsets.UTF_8);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // The raw bytes, equal to the UTF-8 encoding of the decoded value for valid input
+    public void update(MessageDigest digest) {
+        digest.update(row, offset, length);
+    }
+}
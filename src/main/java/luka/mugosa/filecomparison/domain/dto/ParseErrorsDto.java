@@ -0,0 +1,18 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import luka.mugosa.filecomparison.domain.enumeration.RowErrorReason;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows a lenient parse flagged in one file. errors holds the first ones, errorCounts counts all of them.
+ */
+public record ParseErrorsDto(int flaggedRows, int errorBudget, Map<RowErrorReason, Integer> errorCounts,
+                             List<RowErrorDto> errors) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
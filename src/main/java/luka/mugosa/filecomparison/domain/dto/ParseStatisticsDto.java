@@ -0,0 +1,22 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Row counts of one parsed file. Missing values include bad ones the parser read as empty.
+ */
+public record ParseStatisticsDto(int processedRows, int skippedRows, int filteredRows, int failedRows,
+                                 int missingDates, int missingAmounts, int unknownTypes) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // Rows counted after the earlier statistics of the same report, e.g. by one partition of a file
+    public ParseStatisticsDto since(ParseStatisticsDto earlier) {
+        return new ParseStatisticsDto(processedRows - earlier.processedRows, skippedRows - earlier.skippedRows,
+                filteredRows - earlier.filteredRows, failedRows - earlier.failedRows,
+                missingDates - earlier.missingDates, missingAmounts - earlier.missingAmounts,
+                unknownTypes - earlier.unknownTypes);
+    }
+}
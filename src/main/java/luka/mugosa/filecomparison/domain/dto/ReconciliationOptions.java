@@ -0,0 +1,32 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+// summaryOnly wins over includeDiff, there are no pairs to diff
+public record ReconciliationOptions(boolean includeDiff, boolean summaryOnly) {
+
+    public static ReconciliationOptions defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private boolean includeDiff;
+        private boolean summaryOnly;
+
+        public Builder includeDiff(boolean includeDiff) {
+            this.includeDiff = includeDiff;
+            return this;
+        }
+
+        public Builder summaryOnly(boolean summaryOnly) {
+            this.summaryOnly = summaryOnly;
+            return this;
+        }
+
+        public ReconciliationOptions build() {
+            return new ReconciliationOptions(includeDiff, summaryOnly);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Counters of one reconciliation, gathered while it runs instead of logged per row. Matched rows count as HIGH,
+ * including the ones matched without scoring. The parse counters are only there when the files were parsed for this run.
+ */
+public record ReconciliationStatisticsDto(@JsonInclude(JsonInclude.Include.NON_NULL)
+                                          ParseStatisticsDto file1,
+                                          @JsonInclude(JsonInclude.Include.NON_NULL)
+                                          ParseStatisticsDto file2,
+                                          Map<MatchConfidence, Integer> pairsByConfidence) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ReconciliationStatisticsDto withParsing(ParseStatisticsDto file1, ParseStatisticsDto file2) {
+        return new ReconciliationStatisticsDto(file1, file2, pairsByConfidence);
+    }
+}
@@ -0,0 +1,13 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import luka.mugosa.filecomparison.domain.enumeration.RowErrorReason;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+// line is 1 based and counts the header, column is the header name
+public record RowErrorDto(int line, String column, RowErrorReason reason) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,10 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+public record SourceFileDto(int source, String filename, int totalRecords, int blankIdRecords) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,18 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import luka.mugosa.filecomparison.domain.enumeration.SourcePairOutcome;
+import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Rows of one TransactionID scored between two sources, paired in file order.
+ * Score and confidence are the lowest over the pairs, null for a count mismatch where nothing is scored.
+ */
+public record SourcePairScoreDto(int source1, int source2, SourcePairOutcome outcome, Double lowestScore,
+                                 MatchConfidence lowestConfidence) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
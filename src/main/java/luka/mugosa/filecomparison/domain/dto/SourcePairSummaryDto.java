@@ -0,0 +1,15 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The counts a two-file reconciliation of source1 against source2 would report, without the unmatched pairs
+ */
+public record SourcePairSummaryDto(int source1, int source2, ReconciliationResponse summary) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -5,7 +5,13 @@ import luka.mugosa.filecomparison.domain.id.TransactionId;
 
 import java.io.Serializable;
 import java.time.ZonedDateTime;
+import java.util.Objects;
 
+/**
+ * Immutable apart from the narrative and description, which are decoded from the retained row on first access.
+ * The decoded values are volatile and every thread decodes the same text, so a DTO can be shared between requests,
+ * e.g. by the parse cache.
+ */
 public class TransactionDto implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -13,23 +19,37 @@ public class TransactionDto implements Serializable {
     private final String profileName;
     private final ZonedDateTime transactionDate;
     private final Double transactionAmount;
-    private final String transactionNarrative;
-    private final String transactionDescription;
+    private volatile String transactionNarrative;
+    private volatile String transactionDescription;
     private final TransactionId transactionID;
     private final TransactionType transactionType;
     private final String walletReference;
 
+    // Free-text columns kept as offsets into the raw row until first access
+    private final LazyColumn narrativeColumn;
+    private final LazyColumn descriptionColumn;
+
     public TransactionDto(String profileName, ZonedDateTime transactionDate, Double transactionAmount, String transactionNarrative, String transactionDescription, TransactionId transactionID, TransactionType transactionType, String walletReference) {
+        this(profileName, transactionDate, transactionAmount, transactionNarrative, transactionDescription, null, null, transactionID, transactionType, walletReference);
+    }
+
+    private TransactionDto(String profileName, ZonedDateTime transactionDate, Double transactionAmount, String transactionNarrative, String transactionDescription, LazyColumn narrativeColumn, LazyColumn descriptionColumn, TransactionId transactionID, TransactionType transactionType, String walletReference) {
         this.profileName = profileName;
         this.transactionDate = transactionDate;
         this.transactionAmount = transactionAmount;
         this.transactionNarrative = transactionNarrative;
         this.transactionDescription = transactionDescription;
+        this.narrativeColumn = narrativeColumn;
+        this.descriptionColumn = descriptionColumn;
         this.transactionID = transactionID;
         this.transactionType = transactionType;
         this.walletReference = walletReference;
     }
 
+    public static TransactionDto withLazyText(String profileName, ZonedDateTime transactionDate, Double transactionAmount, LazyColumn narrativeColumn, LazyColumn descriptionColumn, TransactionId transactionID, TransactionType transactionType, String walletReference) {
+        return new TransactionDto(profileName, transactionDate, transactionAmount, null, null, narrativeColumn, descriptionColumn, transactionID, transactionType, walletReference);
+    }
+
     public String getProfileName() {
         return profileName;
     }
@@ -43,11 +63,39 @@ public class TransactionDto implements Serializable {
     }
 
     public String getTransactionNarrative() {
-        return transactionNarrative;
+        String narrative = transactionNarrative;
+        if (narrative == null && narrativeColumn != null) {
+            narrative = narrativeColumn.decode();
+            transactionNarrative = narrative;
+        }
+        return narrative;
     }
 
     public String getTransactionDescription() {
-        return transactionDescription;
+        String description = transactionDescription;
+        if (description == null && descriptionColumn != null) {
+            description = descriptionColumn.decode();
+            transactionDescription = description;
+        }
+        return description;
+    }
+
+    // Decoded without keeping the value, for callers that only pass the text through
+    public String peekTransactionNarrative() {
+        return transactionNarrative != null || narrativeColumn == null ? transactionNarrative : narrativeColumn.decode();
+    }
+
+    public String peekTransactionDescription() {
+        return transactionDescription != null || descriptionColumn == null ? transactionDescription : descriptionColumn.decode();
+    }
+
+    // Null once decoded or when the text was given as a String
+    public LazyColumn peekNarrativeColumn() {
+        return transactionNarrative == null ? narrativeColumn : null;
+    }
+
+    public LazyColumn peekDescriptionColumn() {
+        return transactionDescription == null ? descriptionColumn : null;
     }
 
     public TransactionId getTransactionID() {
@@ -67,19 +115,19 @@ public class TransactionDto implements Serializable {
         if (o == null || getClass() != o.getClass()) return false;
 
         TransactionDto that = (TransactionDto) o;
-        return profileName.equals(that.profileName) && transactionDate.equals(that.transactionDate) && transactionAmount.equals(that.transactionAmount) && transactionNarrative.equals(that.transactionNarrative) && transactionDescription == that.transactionDescription && transactionID.equals(that.transactionID) && transactionType == that.transactionType && walletReference.equals(that.walletReference);
+        return Objects.equals(profileName, that.profileName) && Objects.equals(transactionDate, that.transactionDate) && Objects.equals(transactionAmount, that.transactionAmount) && Objects.equals(getTransactionNarrative(), that.getTransactionNarrative()) && Objects.equals(getTransactionDescription(), that.getTransactionDescription()) && Objects.equals(transactionID, that.transactionID) && transactionType == that.transactionType && Objects.equals(walletReference, that.walletReference);
     }
 
     @Override
     public int hashCode() {
-        int result = profileName.hashCode();
-        result = 31 * result + transactionDate.hashCode();
-        result = 31 * result + transactionAmount.hashCode();
-        result = 31 * result + transactionNarrative.hashCode();
-        result = 31 * result + transactionDescription.hashCode();
-        result = 31 * result + transactionID.hashCode();
-        result = 31 * result + transactionType.hashCode();
-        result = 31 * result + walletReference.hashCode();
+        int result = Objects.hashCode(profileName);
+        result = 31 * result + Objects.hashCode(transactionDate);
+        result = 31 * result + Objects.hashCode(transactionAmount);
+        result = 31 * result + Objects.hashCode(getTransactionNarrative());
+        result = 31 * result + Objects.hashCode(getTransactionDescription());
+        result = 31 * result + Objects.hashCode(transactionID);
+        result = 31 * result + Objects.hashCode(transactionType);
+        result = 31 * result + Objects.hashCode(walletReference);
         return result;
     }
 
@@ -89,8 +137,8 @@ public class TransactionDto implements Serializable {
                 "profileName='" + profileName + '\'' +
                 ", transactionDate=" + transactionDate +
                 ", transactionAmount=" + transactionAmount +
-                ", transactionNarrative='" + transactionNarrative + '\'' +
-                ", transactionDescription=" + transactionDescription +
+                ", transactionNarrative='" + getTransactionNarrative() + '\'' +
+                ", transactionDescription=" + getTransactionDescription() +
                 ", transactionID=" + transactionID +
                 ", transactionType=" + transactionType +
                 ", walletReference='" + walletReference + '\'' +
@@ -0,0 +1,18 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One TransactionID across all sources: where it appears, how many rows each source has and how every two
+ * sources that contain it score against each other. Sources are numbered from 1 in upload order.
+ */
+public record TransactionIdSourcesDto(TransactionId transactionId, List<Integer> presentIn, List<Integer> recordCounts,
+                                      List<SourcePairScoreDto> pairScores) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,16 @@
+package luka.mugosa.filecomparison.domain.dto;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Column level difference between the two sides of an unmatched pair.
+ * Deltas are file2 minus file1 and null when either side has no value.
+ */
+public record TransactionPairDiffDto(List<String> differingColumns, Double amountDelta,
+                                     Long dayDelta) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -1,5 +1,9 @@
 package luka.mugosa.filecomparison.domain.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
+
 import java.io.Serializable;
 import java.util.Objects;
 
@@ -10,9 +14,24 @@ public final class UnmatchedTransactionPairDto implements Serializable {
     final TransactionDto transaction1;
     final TransactionDto transaction2;
 
+    // Kept from comparison so a diff can be derived later without scoring again
+    final transient MatchScore matchScore;
+    final TransactionPairDiffDto diff;
+
     public UnmatchedTransactionPairDto(TransactionDto transaction1, TransactionDto transaction2) {
+        this(transaction1, transaction2, null, null);
+    }
+
+    public UnmatchedTransactionPairDto(TransactionDto transaction1, TransactionDto transaction2, MatchScore matchScore) {
+        this(transaction1, transaction2, matchScore, null);
+    }
+
+    private UnmatchedTransactionPairDto(TransactionDto transaction1, TransactionDto transaction2, MatchScore matchScore,
+                                        TransactionPairDiffDto diff) {
         this.transaction1 = transaction1;
         this.transaction2 = transaction2;
+        this.matchScore = matchScore;
+        this.diff = diff;
     }
 
     public TransactionDto getTransaction1() {
@@ -23,18 +42,33 @@ public final class UnmatchedTransactionPairDto implements Serializable {
         return transaction2;
     }
 
+    @JsonIgnore
+    public MatchScore getMatchScore() {
+        return matchScore;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public TransactionPairDiffDto getDiff() {
+        return diff;
+    }
+
+    public UnmatchedTransactionPairDto withDiff(TransactionPairDiffDto diff) {
+        return new UnmatchedTransactionPairDto(transaction1, transaction2, matchScore, diff);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
 
         UnmatchedTransactionPairDto that = (UnmatchedTransactionPairDto) o;
-        return Objects.equals(transaction1, that.transaction1) && Objects.equals(transaction2, that.transaction2);
+        return Objects.equals(transaction1, that.transaction1) && Objects.equals(transaction2, that.transaction2) && Objects.equals(diff, that.diff);
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hashCode(transaction1);
         result = 31 * result + Objects.hashCode(transaction2);
+        result = 31 * result + Objects.hashCode(diff);
         return result;
     }
 
@@ -43,6 +77,7 @@ public final class UnmatchedTransactionPairDto implements Serializable {
         return "UnmatchedTransactionPairDto{" +
                 "transaction1=" + transaction1 +
                 ", transaction2=" + transaction2 +
+                ", diff=" + diff +
                 '}';
     }
 }
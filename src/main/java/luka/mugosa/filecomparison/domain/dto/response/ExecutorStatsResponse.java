@@ -0,0 +1,63 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Snapshot of the CPU pool. Queued submissions are parse chunks waiting for a worker, the queue depth to watch under load.
+ */
+public record ExecutorStatsResponse(int cpuParallelism, int cpuPoolSize, int cpuActiveThreads,
+                                    int cpuQueuedSubmissions, long cpuQueuedTasks,
+                                    long cpuStealCount) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int cpuParallelism;
+        private int cpuPoolSize;
+        private int cpuActiveThreads;
+        private int cpuQueuedSubmissions;
+        private long cpuQueuedTasks;
+        private long cpuStealCount;
+
+        public Builder cpuParallelism(int cpuParallelism) {
+            this.cpuParallelism = cpuParallelism;
+            return this;
+        }
+
+        public Builder cpuPoolSize(int cpuPoolSize) {
+            this.cpuPoolSize = cpuPoolSize;
+            return this;
+        }
+
+        public Builder cpuActiveThreads(int cpuActiveThreads) {
+            this.cpuActiveThreads = cpuActiveThreads;
+            return this;
+        }
+
+        public Builder cpuQueuedSubmissions(int cpuQueuedSubmissions) {
+            this.cpuQueuedSubmissions = cpuQueuedSubmissions;
+            return this;
+        }
+
+        public Builder cpuQueuedTasks(long cpuQueuedTasks) {
+            this.cpuQueuedTasks = cpuQueuedTasks;
+            return this;
+        }
+
+        public Builder cpuStealCount(long cpuStealCount) {
+            this.cpuStealCount = cpuStealCount;
+            return this;
+        }
+
+        public ExecutorStatsResponse build() {
+            return new ExecutorStatsResponse(cpuParallelism, cpuPoolSize, cpuActiveThreads,
+                    cpuQueuedSubmissions, cpuQueuedTasks, cpuStealCount);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * State of an incremental session after its latest upload. The offsets are how far each file was read, pending bytes
+ * are an unfinished last line that is picked up once the next upload completes it.
+ */
+public record IncrementalReconciliationResponse(String sessionId, int runs, int appendedRecordsInFile1,
+                                                int appendedRecordsInFile2, long offsetInFile1, long offsetInFile2,
+                                                long pendingBytesInFile1, long pendingBytesInFile2, Instant createdAt,
+                                                Instant updatedAt, ReconciliationResponse result) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String sessionId;
+        private int runs;
+        private int appendedRecordsInFile1;
+        private int appendedRecordsInFile2;
+        private long offsetInFile1;
+        private long offsetInFile2;
+        private long pendingBytesInFile1;
+        private long pendingBytesInFile2;
+        private Instant createdAt;
+        private Instant updatedAt;
+        private ReconciliationResponse result;
+
+        public Builder sessionId(String sessionId) {
+            this.sessionId = sessionId;
+            return this;
+        }
+
+        public Builder runs(int runs) {
+            this.runs = runs;
+            return this;
+        }
+
+        public Builder appendedRecordsInFile1(int appendedRecordsInFile1) {
+            this.appendedRecordsInFile1 = appendedRecordsInFile1;
+            return this;
+        }
+
+        public Builder appendedRecordsInFile2(int appendedRecordsInFile2) {
+            this.appendedRecordsInFile2 = appendedRecordsInFile2;
+            return this;
+        }
+
+        public Builder offsetInFile1(long offsetInFile1) {
+            this.offsetInFile1 = offsetInFile1;
+            return this;
+        }
+
+        public Builder offsetInFile2(long offsetInFile2) {
+            this.offsetInFile2 = offsetInFile2;
+            return this;
+        }
+
+        public Builder pendingBytesInFile1(long pendingBytesInFile1) {
+            this.pendingBytesInFile1 = pendingBytesInFile1;
+            return this;
+        }
+
+        public Builder pendingBytesInFile2(long pendingBytesInFile2) {
+            this.pendingBytesInFile2 = pendingBytesInFile2;
+            return this;
+        }
+
+        public Builder createdAt(Instant createdAt) {
+            this.createdAt = createdAt;
+            return this;
+        }
+
+        public Builder updatedAt(Instant updatedAt) {
+            this.updatedAt = updatedAt;
+            return this;
+        }
+
+        public Builder result(ReconciliationResponse result) {
+            this.result = result;
+            return this;
+        }
+
+        public IncrementalReconciliationResponse build() {
+            return new IncrementalReconciliationResponse(sessionId, runs, appendedRecordsInFile1, appendedRecordsInFile2,
+                    offsetInFile1, offsetInFile2, pendingBytesInFile1, pendingBytesInFile2, createdAt, updatedAt, result);
+        }
+    }
+}
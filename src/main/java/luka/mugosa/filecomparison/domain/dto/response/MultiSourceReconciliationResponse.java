@@ -0,0 +1,70 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import luka.mugosa.filecomparison.domain.dto.SourceFileDto;
+import luka.mugosa.filecomparison.domain.dto.SourcePairSummaryDto;
+import luka.mugosa.filecomparison.domain.dto.TransactionIdSourcesDto;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Reconciliation of three or more files in one pass. fullyMatchedTransactionIds are in every source with the same
+ * number of rows and match in every pair of sources, transactionIds lists the others unless matched ones were asked for.
+ */
+public record MultiSourceReconciliationResponse(List<SourceFileDto> sources, List<SourcePairSummaryDto> pairs,
+                                                int totalTransactionIds, int transactionIdsInAllSources,
+                                                int fullyMatchedTransactionIds,
+                                                List<TransactionIdSourcesDto> transactionIds) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private List<SourceFileDto> sources;
+        private List<SourcePairSummaryDto> pairs;
+        private int totalTransactionIds;
+        private int transactionIdsInAllSources;
+        private int fullyMatchedTransactionIds;
+        private List<TransactionIdSourcesDto> transactionIds;
+
+        public Builder sources(List<SourceFileDto> sources) {
+            this.sources = sources;
+            return this;
+        }
+
+        public Builder pairs(List<SourcePairSummaryDto> pairs) {
+            this.pairs = pairs;
+            return this;
+        }
+
+        public Builder totalTransactionIds(int totalTransactionIds) {
+            this.totalTransactionIds = totalTransactionIds;
+            return this;
+        }
+
+        public Builder transactionIdsInAllSources(int transactionIdsInAllSources) {
+            this.transactionIdsInAllSources = transactionIdsInAllSources;
+            return this;
+        }
+
+        public Builder fullyMatchedTransactionIds(int fullyMatchedTransactionIds) {
+            this.fullyMatchedTransactionIds = fullyMatchedTransactionIds;
+            return this;
+        }
+
+        public Builder transactionIds(List<TransactionIdSourcesDto> transactionIds) {
+            this.transactionIds = transactionIds;
+            return this;
+        }
+
+        public MultiSourceReconciliationResponse build() {
+            return new MultiSourceReconciliationResponse(sources, pairs, totalTransactionIds, transactionIdsInAllSources,
+                    fullyMatchedTransactionIds, transactionIds);
+        }
+    }
+}
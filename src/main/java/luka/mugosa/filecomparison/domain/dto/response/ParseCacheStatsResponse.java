@@ -0,0 +1,73 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Parsed file cache counters, sizes are the estimated heap of the cached transactions
+ */
+public record ParseCacheStatsResponse(boolean enabled, int entries, long sizeBytes, long maxSizeBytes,
+                                      long hits, long misses, long evictions, double hitRate) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private boolean enabled;
+        private int entries;
+        private long sizeBytes;
+        private long maxSizeBytes;
+        private long hits;
+        private long misses;
+        private long evictions;
+        private double hitRate;
+
+        public Builder enabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public Builder entries(int entries) {
+            this.entries = entries;
+            return this;
+        }
+
+        public Builder sizeBytes(long sizeBytes) {
+            this.sizeBytes = sizeBytes;
+            return this;
+        }
+
+        public Builder maxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+            return this;
+        }
+
+        public Builder hits(long hits) {
+            this.hits = hits;
+            return this;
+        }
+
+        public Builder misses(long misses) {
+            this.misses = misses;
+            return this;
+        }
+
+        public Builder evictions(long evictions) {
+            this.evictions = evictions;
+            return this;
+        }
+
+        public Builder hitRate(double hitRate) {
+            this.hitRate = hitRate;
+            return this;
+        }
+
+        public ParseCacheStatsResponse build() {
+            return new ParseCacheStatsResponse(enabled, entries, sizeBytes, maxSizeBytes, hits, misses, evictions, hitRate);
+        }
+    }
+}
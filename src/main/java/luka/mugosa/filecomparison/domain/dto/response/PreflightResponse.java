@@ -0,0 +1,78 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import luka.mugosa.filecomparison.domain.dto.FileStatisticsDto;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Statistics of two files from one scan that parses nothing but the TransactionID column. ID overlap is estimated,
+ * estimatedHeapBytes is what the admission budget would reserve for reconciling them.
+ */
+public record PreflightResponse(FileStatisticsDto file1, FileStatisticsDto file2, long estimatedIdsInBothFiles,
+                                long estimatedIdsOnlyInFile1, long estimatedIdsOnlyInFile2, long estimatedHeapBytes,
+                                boolean largeFileMode, long scanMillis) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private FileStatisticsDto file1;
+        private FileStatisticsDto file2;
+        private long estimatedIdsInBothFiles;
+        private long estimatedIdsOnlyInFile1;
+        private long estimatedIdsOnlyInFile2;
+        private long estimatedHeapBytes;
+        private boolean largeFileMode;
+        private long scanMillis;
+
+        public Builder file1(FileStatisticsDto file1) {
+            this.file1 = file1;
+            return this;
+        }
+
+        public Builder file2(FileStatisticsDto file2) {
+            this.file2 = file2;
+            return this;
+        }
+
+        public Builder estimatedIdsInBothFiles(long estimatedIdsInBothFiles) {
+            this.estimatedIdsInBothFiles = estimatedIdsInBothFiles;
+            return this;
+        }
+
+        public Builder estimatedIdsOnlyInFile1(long estimatedIdsOnlyInFile1) {
+            this.estimatedIdsOnlyInFile1 = estimatedIdsOnlyInFile1;
+            return this;
+        }
+
+        public Builder estimatedIdsOnlyInFile2(long estimatedIdsOnlyInFile2) {
+            this.estimatedIdsOnlyInFile2 = estimatedIdsOnlyInFile2;
+            return this;
+        }
+
+        public Builder estimatedHeapBytes(long estimatedHeapBytes) {
+            this.estimatedHeapBytes = estimatedHeapBytes;
+            return this;
+        }
+
+        public Builder largeFileMode(boolean largeFileMode) {
+            this.largeFileMode = largeFileMode;
+            return this;
+        }
+
+        public Builder scanMillis(long scanMillis) {
+            this.scanMillis = scanMillis;
+            return this;
+        }
+
+        public PreflightResponse build() {
+            return new PreflightResponse(file1, file2, estimatedIdsInBothFiles, estimatedIdsOnlyInFile1,
+                    estimatedIdsOnlyInFile2, estimatedHeapBytes, largeFileMode, scanMillis);
+        }
+    }
+}
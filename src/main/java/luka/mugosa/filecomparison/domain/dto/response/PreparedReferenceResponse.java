@@ -0,0 +1,66 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+public record PreparedReferenceResponse(String referenceId, String filename, int totalRecords, int indexedIds,
+                                        int blankIdRecords, Instant createdAt, Instant expiresAt) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String referenceId;
+        private String filename;
+        private int totalRecords;
+        private int indexedIds;
+        private int blankIdRecords;
+        private Instant createdAt;
+        private Instant expiresAt;
+
+        public Builder referenceId(String referenceId) {
+            this.referenceId = referenceId;
+            return this;
+        }
+
+        public Builder filename(String filename) {
+            this.filename = filename;
+            return this;
+        }
+
+        public Builder totalRecords(int totalRecords) {
+            this.totalRecords = totalRecords;
+            return this;
+        }
+
+        public Builder indexedIds(int indexedIds) {
+            this.indexedIds = indexedIds;
+            return this;
+        }
+
+        public Builder blankIdRecords(int blankIdRecords) {
+            this.blankIdRecords = blankIdRecords;
+            return this;
+        }
+
+        public Builder createdAt(Instant createdAt) {
+            this.createdAt = createdAt;
+            return this;
+        }
+
+        public Builder expiresAt(Instant expiresAt) {
+            this.expiresAt = expiresAt;
+            return this;
+        }
+
+        public PreparedReferenceResponse build() {
+            return new PreparedReferenceResponse(referenceId, filename, totalRecords, indexedIds, blankIdRecords,
+                    createdAt, expiresAt);
+        }
+    }
+}
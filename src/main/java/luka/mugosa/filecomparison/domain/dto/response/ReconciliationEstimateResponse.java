@@ -0,0 +1,114 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import luka.mugosa.filecomparison.domain.dto.EstimatedValueDto;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Approximate reconciliation from a TransactionID sample. Totals and blank ID counts are exact, the estimates cover
+ * rows with an ID and come with bounds at the given confidence level. sample is the reconciliation of the sampled rows.
+ */
+public record ReconciliationEstimateResponse(double sampleRate, double confidenceLevel,
+                                             int totalRecordsInFile1, int totalRecordsInFile2,
+                                             int blankIdRecordsInFile1, int blankIdRecordsInFile2,
+                                             int sampledRecordsInFile1, int sampledRecordsInFile2,
+                                             EstimatedValueDto matchPercentage, EstimatedValueDto matchedRecords,
+                                             EstimatedValueDto unmatchedRecordsInFile1,
+                                             EstimatedValueDto unmatchedRecordsInFile2,
+                                             ReconciliationResponse sample) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private double sampleRate;
+        private double confidenceLevel;
+        private int totalRecordsInFile1;
+        private int totalRecordsInFile2;
+        private int blankIdRecordsInFile1;
+        private int blankIdRecordsInFile2;
+        private int sampledRecordsInFile1;
+        private int sampledRecordsInFile2;
+        private EstimatedValueDto matchPercentage;
+        private EstimatedValueDto matchedRecords;
+        private EstimatedValueDto unmatchedRecordsInFile1;
+        private EstimatedValueDto unmatchedRecordsInFile2;
+        private ReconciliationResponse sample;
+
+        public Builder sampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        public Builder confidenceLevel(double confidenceLevel) {
+            this.confidenceLevel = confidenceLevel;
+            return this;
+        }
+
+        public Builder totalRecordsInFile1(int totalRecordsInFile1) {
+            this.totalRecordsInFile1 = totalRecordsInFile1;
+            return this;
+        }
+
+        public Builder totalRecordsInFile2(int totalRecordsInFile2) {
+            this.totalRecordsInFile2 = totalRecordsInFile2;
+            return this;
+        }
+
+        public Builder blankIdRecordsInFile1(int blankIdRecordsInFile1) {
+            this.blankIdRecordsInFile1 = blankIdRecordsInFile1;
+            return this;
+        }
+
+        public Builder blankIdRecordsInFile2(int blankIdRecordsInFile2) {
+            this.blankIdRecordsInFile2 = blankIdRecordsInFile2;
+            return this;
+        }
+
+        public Builder sampledRecordsInFile1(int sampledRecordsInFile1) {
+            this.sampledRecordsInFile1 = sampledRecordsInFile1;
+            return this;
+        }
+
+        public Builder sampledRecordsInFile2(int sampledRecordsInFile2) {
+            this.sampledRecordsInFile2 = sampledRecordsInFile2;
+            return this;
+        }
+
+        public Builder matchPercentage(EstimatedValueDto matchPercentage) {
+            this.matchPercentage = matchPercentage;
+            return this;
+        }
+
+        public Builder matchedRecords(EstimatedValueDto matchedRecords) {
+            this.matchedRecords = matchedRecords;
+            return this;
+        }
+
+        public Builder unmatchedRecordsInFile1(EstimatedValueDto unmatchedRecordsInFile1) {
+            this.unmatchedRecordsInFile1 = unmatchedRecordsInFile1;
+            return this;
+        }
+
+        public Builder unmatchedRecordsInFile2(EstimatedValueDto unmatchedRecordsInFile2) {
+            this.unmatchedRecordsInFile2 = unmatchedRecordsInFile2;
+            return this;
+        }
+
+        public Builder sample(ReconciliationResponse sample) {
+            this.sample = sample;
+            return this;
+        }
+
+        public ReconciliationEstimateResponse build() {
+            return new ReconciliationEstimateResponse(sampleRate, confidenceLevel, totalRecordsInFile1, totalRecordsInFile2,
+                    blankIdRecordsInFile1, blankIdRecordsInFile2, sampledRecordsInFile1, sampledRecordsInFile2,
+                    matchPercentage, matchedRecords, unmatchedRecordsInFile1, unmatchedRecordsInFile2, sample);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import luka.mugosa.filecomparison.domain.enumeration.JobStatus;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReconciliationJobResponse(String jobId, JobStatus status, long rowsParsedFromFile1, long rowsParsedFromFile2,
+                                        long pairsScored, Instant submittedAt, Instant finishedAt,
+                                        String errorMessage) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String jobId;
+        private JobStatus status;
+        private long rowsParsedFromFile1;
+        private long rowsParsedFromFile2;
+        private long pairsScored;
+        private Instant submittedAt;
+        private Instant finishedAt;
+        private String errorMessage;
+
+        public Builder jobId(String jobId) {
+            this.jobId = jobId;
+            return this;
+        }
+
+        public Builder status(JobStatus status) {
+            this.status = status;
+            return this;
+        }
+
+        public Builder rowsParsedFromFile1(long rowsParsedFromFile1) {
+            this.rowsParsedFromFile1 = rowsParsedFromFile1;
+            return this;
+        }
+
+        public Builder rowsParsedFromFile2(long rowsParsedFromFile2) {
+            this.rowsParsedFromFile2 = rowsParsedFromFile2;
+            return this;
+        }
+
+        public Builder pairsScored(long pairsScored) {
+            this.pairsScored = pairsScored;
+            return this;
+        }
+
+        public Builder submittedAt(Instant submittedAt) {
+            this.submittedAt = submittedAt;
+            return this;
+        }
+
+        public Builder finishedAt(Instant finishedAt) {
+            this.finishedAt = finishedAt;
+            return this;
+        }
+
+        public Builder errorMessage(String errorMessage) {
+            this.errorMessage = errorMessage;
+            return this;
+        }
+
+        public ReconciliationJobResponse build() {
+            return new ReconciliationJobResponse(jobId, status, rowsParsedFromFile1, rowsParsedFromFile2,
+                    pairsScored, submittedAt, finishedAt, errorMessage);
+        }
+    }
+}
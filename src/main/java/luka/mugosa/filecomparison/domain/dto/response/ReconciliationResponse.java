@@ -1,5 +1,8 @@
 package luka.mugosa.filecomparison.domain.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import luka.mugosa.filecomparison.domain.dto.ParseErrorsDto;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationStatisticsDto;
 import luka.mugosa.filecomparison.domain.dto.UnmatchedTransactionPairDto;
 
 import java.io.Serial;
@@ -9,8 +12,15 @@ import java.util.Objects;
 
 public record ReconciliationResponse(int totalRecordsInFile1, int totalRecordsInFile2, int unmatchedRecordsInFile1,
                                      int unmatchedRecordsInFile2, int matchedRecords,
+                                     @JsonInclude(JsonInclude.Include.NON_NULL)
                                      List<UnmatchedTransactionPairDto> unmatchedTransactionPairs,
-                                     double matchPercentage) implements Serializable {
+                                     double matchPercentage,
+                                     @JsonInclude(JsonInclude.Include.NON_NULL)
+                                     ParseErrorsDto parseErrorsInFile1,
+                                     @JsonInclude(JsonInclude.Include.NON_NULL)
+                                     ParseErrorsDto parseErrorsInFile2,
+                                     @JsonInclude(JsonInclude.Include.NON_NULL)
+                                     ReconciliationStatisticsDto statistics) implements Serializable {
 
     @Serial
     private static final long serialVersionUID = 1L;
@@ -20,7 +30,7 @@ public record ReconciliationResponse(int totalRecordsInFile1, int totalRecordsIn
         if (o == null || getClass() != o.getClass()) return false;
 
         ReconciliationResponse that = (ReconciliationResponse) o;
-        return totalRecordsInFile1 == that.totalRecordsInFile1 && totalRecordsInFile2 == that.totalRecordsInFile2 && unmatchedRecordsInFile1 == that.unmatchedRecordsInFile1 && unmatchedRecordsInFile2 == that.unmatchedRecordsInFile2 && matchedRecords == that.matchedRecords && Double.compare(matchPercentage, that.matchPercentage) == 0 && Objects.equals(unmatchedTransactionPairs, that.unmatchedTransactionPairs);
+        return totalRecordsInFile1 == that.totalRecordsInFile1 && totalRecordsInFile2 == that.totalRecordsInFile2 && unmatchedRecordsInFile1 == that.unmatchedRecordsInFile1 && unmatchedRecordsInFile2 == that.unmatchedRecordsInFile2 && matchedRecords == that.matchedRecords && Double.compare(matchPercentage, that.matchPercentage) == 0 && Objects.equals(unmatchedTransactionPairs, that.unmatchedTransactionPairs) && Objects.equals(parseErrorsInFile1, that.parseErrorsInFile1) && Objects.equals(parseErrorsInFile2, that.parseErrorsInFile2) && Objects.equals(statistics, that.statistics);
     }
 
     @Override
@@ -32,6 +42,9 @@ public record ReconciliationResponse(int totalRecordsInFile1, int totalRecordsIn
         result = 31 * result + matchedRecords;
         result = 31 * result + Objects.hashCode(unmatchedTransactionPairs);
         result = 31 * result + Double.hashCode(matchPercentage);
+        result = 31 * result + Objects.hashCode(parseErrorsInFile1);
+        result = 31 * result + Objects.hashCode(parseErrorsInFile2);
+        result = 31 * result + Objects.hashCode(statistics);
         return result;
     }
 
@@ -45,6 +58,9 @@ public record ReconciliationResponse(int totalRecordsInFile1, int totalRecordsIn
                 ", matchedRecords=" + matchedRecords +
                 ", unmatchedTransactionPairs=" + unmatchedTransactionPairs +
                 ", matchPercentage=" + matchPercentage +
+                ", parseErrorsInFile1=" + parseErrorsInFile1 +
+                ", parseErrorsInFile2=" + parseErrorsInFile2 +
+                ", statistics=" + statistics +
                 '}';
     }
 
@@ -52,6 +68,20 @@ public record ReconciliationResponse(int totalRecordsInFile1, int totalRecordsIn
         return new Builder();
     }
 
+    public Builder toBuilder() {
+        return new Builder()
+                .totalRecordsInFile1(totalRecordsInFile1)
+                .totalRecordsInFile2(totalRecordsInFile2)
+                .unmatchedRecordsInFile1(unmatchedRecordsInFile1)
+                .unmatchedRecordsInFile2(unmatchedRecordsInFile2)
+                .matchedRecords(matchedRecords)
+                .unmatchedTransactionPairs(unmatchedTransactionPairs)
+                .matchPercentage(matchPercentage)
+                .parseErrorsInFile1(parseErrorsInFile1)
+                .parseErrorsInFile2(parseErrorsInFile2)
+                .statistics(statistics);
+    }
+
     public static class Builder {
         private int totalRecordsInFile1;
         private int totalRecordsInFile2;
@@ -60,6 +90,9 @@ public record ReconciliationResponse(int totalRecordsInFile1, int totalRecordsIn
         private int matchedRecords;
         private double matchPercentage;
         private List<UnmatchedTransactionPairDto> unmatchedTransactionPairs;
+        private ParseErrorsDto parseErrorsInFile1;
+        private ParseErrorsDto parseErrorsInFile2;
+        private ReconciliationStatisticsDto statistics;
 
         public Builder totalRecordsInFile1(int totalRecordsInFile1) {
             this.totalRecordsInFile1 = totalRecordsInFile1;
@@ -96,9 +129,25 @@ public record ReconciliationResponse(int totalRecordsInFile1, int totalRecordsIn
             return this;
         }
 
+        public Builder parseErrorsInFile1(ParseErrorsDto parseErrorsInFile1) {
+            this.parseErrorsInFile1 = parseErrorsInFile1;
+            return this;
+        }
+
+        public Builder parseErrorsInFile2(ParseErrorsDto parseErrorsInFile2) {
+            this.parseErrorsInFile2 = parseErrorsInFile2;
+            return this;
+        }
+
+        public Builder statistics(ReconciliationStatisticsDto statistics) {
+            this.statistics = statistics;
+            return this;
+        }
+
         public ReconciliationResponse build() {
             return new ReconciliationResponse(totalRecordsInFile1, totalRecordsInFile2,
-                    unmatchedRecordsInFile1, unmatchedRecordsInFile2, matchedRecords, unmatchedTransactionPairs, matchPercentage);
+                    unmatchedRecordsInFile1, unmatchedRecordsInFile2, matchedRecords, unmatchedTransactionPairs, matchPercentage,
+                    parseErrorsInFile1, parseErrorsInFile2, statistics);
         }
     }
 
@@ -0,0 +1,12 @@
+package luka.mugosa.filecomparison.domain.dto.response;
+
+import luka.mugosa.filecomparison.domain.dto.FileValidationDto;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+public record ValidationResponse(boolean valid, FileValidationDto file1, FileValidationDto file2) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
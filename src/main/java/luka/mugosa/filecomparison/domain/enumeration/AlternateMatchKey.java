@@ -0,0 +1,18 @@
+package luka.mugosa.filecomparison.domain.enumeration;
+
+// Keys used to pair transactions that have no usable TransactionID
+public enum AlternateMatchKey {
+    WALLET_REFERENCE_AMOUNT_DATE(false),
+    PROFILE_NAME_AMOUNT_DATE(false),
+    PROFILE_NAME_AMOUNT_DATE_WINDOW(true);
+
+    private final boolean dateWindow;
+
+    AlternateMatchKey(boolean dateWindow) {
+        this.dateWindow = dateWindow;
+    }
+
+    public boolean isDateWindow() {
+        return dateWindow;
+    }
+}
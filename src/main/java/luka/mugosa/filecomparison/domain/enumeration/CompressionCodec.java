@@ -0,0 +1,39 @@
+package luka.mugosa.filecomparison.domain.enumeration;
+
+public enum CompressionCodec {
+    NONE,
+    // 1F 8B
+    GZIP,
+    // 28 B5 2F FD
+    ZSTD;
+
+    public static final int MAGIC_LENGTH = 4;
+
+    public static CompressionCodec fromMagic(byte[] magic, int length) {
+        if (length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+            return GZIP;
+        }
+        if (length >= 4 && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5
+                && (magic[2] & 0xFF) == 0x2F && (magic[3] & 0xFF) == 0xFD) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    /**
+     * Accepts a Content-Encoding value or a content type like application/gzip, null when it names neither codec
+     */
+    public static CompressionCodec fromDeclared(String declared) {
+        if (declared == null) {
+            return null;
+        }
+        final String value = declared.trim().toLowerCase();
+        if (value.equals("gzip") || value.equals("x-gzip") || value.endsWith("/gzip") || value.endsWith("/x-gzip")) {
+            return GZIP;
+        }
+        if (value.equals("zstd") || value.endsWith("/zstd")) {
+            return ZSTD;
+        }
+        return null;
+    }
+}
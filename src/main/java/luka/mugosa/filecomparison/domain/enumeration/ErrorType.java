@@ -12,8 +12,17 @@ public enum ErrorType {
     TRANSACTION_DATA_ERROR("Error parsing transaction data"),
     FILE_PROCESSING_ERROR("Error processing file"),
     FILE_PARSING_ERROR("Error parsing file"),
+    FILE_VALIDATION_FAILED("File failed validation before parsing"),
+    ERROR_BUDGET_EXCEEDED("Too many rows of the file failed to parse"),
     FILE_SIZE_EXCEEDED("File size exceeds maximum allowed limit"),
     INVALID_ARGUMENT("Invalid request parameters"),
+    JOB_NOT_FOUND("Reconciliation job not found"),
+    JOB_NOT_COMPLETED("Reconciliation job has no result yet"),
+    JOB_QUEUE_FULL("Too many reconciliation jobs waiting"),
+    REFERENCE_NOT_FOUND("Prepared reference file not found or expired"),
+    INCREMENTAL_SESSION_NOT_FOUND("Incremental reconciliation session not found"),
+    ADMISSION_REJECTED("Server is busy with other reconciliations"),
+    RECONCILIATION_INTERRUPTED("Reconciliation was stopped before it finished"),
     RUNTIME_ERROR("An unexpected error occurred"),
     INTERNAL_ERROR("An internal server error occurred");
 
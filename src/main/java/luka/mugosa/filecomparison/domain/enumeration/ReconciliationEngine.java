@@ -0,0 +1,8 @@
+package luka.mugosa.filecomparison.domain.enumeration;
+
+public enum ReconciliationEngine {
+    // Parse both files into lists, then compare
+    BATCH,
+    // Compare while parsing through a symmetric hash join
+    PIPELINED
+}
@@ -0,0 +1,10 @@
+package luka.mugosa.filecomparison.domain.enumeration;
+
+public enum RowErrorReason {
+    MISSING_HEADER,
+    MISSING_COLUMNS,
+    INVALID_DATE,
+    INVALID_AMOUNT,
+    INVALID_TRANSACTION_TYPE,
+    UNPARSEABLE_ROW
+}
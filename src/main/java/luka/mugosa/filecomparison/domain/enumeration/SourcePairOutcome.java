@@ -0,0 +1,8 @@
+package luka.mugosa.filecomparison.domain.enumeration;
+
+// How the rows of one TransactionID compare between two sources that both contain it
+public enum SourcePairOutcome {
+    MATCHED,
+    LOW_CONFIDENCE,
+    COUNT_MISMATCH
+}
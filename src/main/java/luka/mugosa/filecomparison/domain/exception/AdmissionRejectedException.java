@@ -0,0 +1,18 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+import java.time.Duration;
+
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(long requiredBytes, Duration retryAfter) {
+        super("Not enough memory budget for this reconciliation (needs about " + requiredBytes / (1024 * 1024)
+                + " MB), try again later");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
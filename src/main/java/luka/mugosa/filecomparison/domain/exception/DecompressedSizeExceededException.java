@@ -0,0 +1,15 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+public class DecompressedSizeExceededException extends FileParsingException {
+
+    private final long maxDecodedBytes;
+
+    public DecompressedSizeExceededException(long maxDecodedBytes) {
+        super(String.format("Compressed content decompresses to more than %d bytes", maxDecodedBytes));
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    public long getMaxDecodedBytes() {
+        return maxDecodedBytes;
+    }
+}
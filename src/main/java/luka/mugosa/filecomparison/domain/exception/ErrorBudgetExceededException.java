@@ -0,0 +1,17 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+import luka.mugosa.filecomparison.domain.dto.ParseErrorsDto;
+
+public class ErrorBudgetExceededException extends FileParsingException {
+
+    private final ParseErrorsDto parseErrors;
+
+    public ErrorBudgetExceededException(String filename, ParseErrorsDto parseErrors) {
+        super(String.format("%s has more than %d rows with bad values", filename, parseErrors.errorBudget()));
+        this.parseErrors = parseErrors;
+    }
+
+    public ParseErrorsDto getParseErrors() {
+        return parseErrors;
+    }
+}
@@ -0,0 +1,17 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+import luka.mugosa.filecomparison.domain.dto.FileValidationDto;
+
+public class FileValidationException extends FileParsingException {
+
+    private final FileValidationDto validation;
+
+    public FileValidationException(FileValidationDto validation) {
+        super(String.format("%s has %d invalid rows", validation.filename(), validation.invalidRows()));
+        this.validation = validation;
+    }
+
+    public FileValidationDto getValidation() {
+        return validation;
+    }
+}
@@ -0,0 +1,15 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+public class IncrementalSessionNotFoundException extends RuntimeException {
+
+    private final String sessionId;
+
+    public IncrementalSessionNotFoundException(String sessionId) {
+        super("Incremental reconciliation session not found: " + sessionId);
+        this.sessionId = sessionId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+}
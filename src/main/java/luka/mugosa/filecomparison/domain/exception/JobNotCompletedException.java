@@ -0,0 +1,17 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+import luka.mugosa.filecomparison.domain.enumeration.JobStatus;
+
+public class JobNotCompletedException extends RuntimeException {
+
+    private final JobStatus status;
+
+    public JobNotCompletedException(String jobId, JobStatus status) {
+        super("Reconciliation job " + jobId + " has no result, status: " + status);
+        this.status = status;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+}
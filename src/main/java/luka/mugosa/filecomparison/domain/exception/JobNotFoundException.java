@@ -0,0 +1,15 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+public class JobNotFoundException extends RuntimeException {
+
+    private final String jobId;
+
+    public JobNotFoundException(String jobId) {
+        super("Reconciliation job not found: " + jobId);
+        this.jobId = jobId;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+}
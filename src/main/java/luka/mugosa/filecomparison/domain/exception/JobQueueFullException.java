@@ -0,0 +1,8 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+public class JobQueueFullException extends RuntimeException {
+
+    public JobQueueFullException(int queueCapacity) {
+        super("Reconciliation job queue is full (" + queueCapacity + " waiting), try again later");
+    }
+}
@@ -0,0 +1,8 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+public class ReconciliationInterruptedException extends FileParsingException {
+
+    public ReconciliationInterruptedException(String message) {
+        super(message);
+    }
+}
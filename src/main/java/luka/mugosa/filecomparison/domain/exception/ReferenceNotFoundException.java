@@ -0,0 +1,15 @@
+package luka.mugosa.filecomparison.domain.exception;
+
+public class ReferenceNotFoundException extends RuntimeException {
+
+    private final String referenceId;
+
+    public ReferenceNotFoundException(String referenceId) {
+        super("Prepared reference not found or expired: " + referenceId);
+        this.referenceId = referenceId;
+    }
+
+    public String getReferenceId() {
+        return referenceId;
+    }
+}
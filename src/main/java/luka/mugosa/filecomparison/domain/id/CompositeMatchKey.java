@@ -0,0 +1,6 @@
+package luka.mugosa.filecomparison.domain.id;
+
+import java.time.LocalDate;
+
+public record CompositeMatchKey(String reference, Double amount, LocalDate date) {
+}
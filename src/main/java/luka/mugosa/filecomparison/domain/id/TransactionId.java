@@ -5,4 +5,8 @@ import luka.mugosa.filecomparison.domain.id.serializer.TransactionIdSerializer;
 
 @JsonSerialize(using = TransactionIdSerializer.class)
 public record TransactionId(String id) {
+
+    public static boolean isBlank(TransactionId transactionId) {
+        return transactionId == null || transactionId.id() == null || transactionId.id().isBlank();
+    }
 }
@@ -0,0 +1,40 @@
+package luka.mugosa.filecomparison.rest.exceptionHandling;
+
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.domain.dto.response.ErrorResponseDto;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Counts every error response of {@link GlobalExceptionHandler} by its error type on the way out,
+ * so the handlers themselves stay as they are
+ */
+@RestControllerAdvice
+public class ErrorMetricsAdvice implements ResponseBodyAdvice<Object> {
+
+    private final ReconciliationMetrics metrics;
+
+    public ErrorMetricsAdvice(ReconciliationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.getDeclaringClass() == GlobalExceptionHandler.class;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof ErrorResponseDto error) {
+            metrics.error(error.errorType());
+        }
+        return body;
+    }
+}
@@ -1,25 +1,38 @@
 package luka.mugosa.filecomparison.rest.exceptionHandling;
 
+import luka.mugosa.filecomparison.domain.dto.RowErrorDto;
 import luka.mugosa.filecomparison.domain.dto.response.ErrorResponseDto;
 import luka.mugosa.filecomparison.domain.enumeration.ErrorType;
+import luka.mugosa.filecomparison.domain.exception.AdmissionRejectedException;
 import luka.mugosa.filecomparison.domain.exception.CsvColumnMismatchException;
 import luka.mugosa.filecomparison.domain.exception.DateParsingException;
 import luka.mugosa.filecomparison.domain.exception.EmptyFileException;
+import luka.mugosa.filecomparison.domain.exception.ErrorBudgetExceededException;
 import luka.mugosa.filecomparison.domain.exception.FileParsingException;
 import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
+import luka.mugosa.filecomparison.domain.exception.FileValidationException;
+import luka.mugosa.filecomparison.domain.exception.IncrementalSessionNotFoundException;
 import luka.mugosa.filecomparison.domain.exception.InvalidHeaderException;
+import luka.mugosa.filecomparison.domain.exception.JobNotCompletedException;
+import luka.mugosa.filecomparison.domain.exception.JobNotFoundException;
+import luka.mugosa.filecomparison.domain.exception.JobQueueFullException;
 import luka.mugosa.filecomparison.domain.exception.LineParsingException;
 import luka.mugosa.filecomparison.domain.exception.MissingHeaderException;
+import luka.mugosa.filecomparison.domain.exception.ReconciliationInterruptedException;
+import luka.mugosa.filecomparison.domain.exception.ReferenceNotFoundException;
 import luka.mugosa.filecomparison.domain.exception.TransactionDataParsingException;
 import luka.mugosa.filecomparison.domain.exception.TransactionTypeParsingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
+import java.util.List;
+
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
@@ -69,6 +82,32 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
 
+    @ExceptionHandler(FileValidationException.class)
+    public ResponseEntity<ErrorResponseDto> handleFileValidationException(final FileValidationException ex) {
+        logger.warn("File failed validation: {}", ex.getMessage());
+
+        final List<RowErrorDto> issues = ex.getValidation().issues();
+        final String message = issues.isEmpty()
+                ? ex.getMessage()
+                : String.format("%s, first at line %d: %s in %s", ex.getMessage(), issues.get(0).line(),
+                issues.get(0).reason(), issues.get(0).column());
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.FILE_VALIDATION_FAILED, message);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
+
+    @ExceptionHandler(ErrorBudgetExceededException.class)
+    public ResponseEntity<ErrorResponseDto> handleErrorBudgetExceededException(final ErrorBudgetExceededException ex) {
+        logger.warn("Parse aborted: {}", ex.getMessage());
+
+        final List<RowErrorDto> errors = ex.getParseErrors().errors();
+        final String message = errors.isEmpty()
+                ? ex.getMessage()
+                : String.format("%s, first at line %d: %s in %s", ex.getMessage(), errors.get(0).line(),
+                errors.get(0).reason(), errors.get(0).column());
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.ERROR_BUDGET_EXCEEDED, message);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
+
     @ExceptionHandler(DateParsingException.class)
     public ResponseEntity<ErrorResponseDto> handleDateParsingException(final DateParsingException ex) {
         logger.warn("Date parsing error for value: {}", ex.getDateValue());
@@ -93,6 +132,24 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
 
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<ErrorResponseDto> handleAdmissionRejectedException(final AdmissionRejectedException ex) {
+        logger.warn("Reconciliation rejected by admission control: {}", ex.getMessage());
+
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.ADMISSION_REJECTED, ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(response);
+    }
+
+    @ExceptionHandler(ReconciliationInterruptedException.class)
+    public ResponseEntity<ErrorResponseDto> handleReconciliationInterruptedException(final ReconciliationInterruptedException ex) {
+        logger.warn("Reconciliation interrupted: {}", ex.getMessage());
+
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.RECONCILIATION_INTERRUPTED, ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+
     @ExceptionHandler(FileProcessingException.class)
     public ResponseEntity<ErrorResponseDto> handleFileProcessingException(final FileProcessingException ex) {
         logger.error("File processing error: {}", ex.getMessage(), ex);
@@ -118,6 +175,46 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
 
+    @ExceptionHandler(JobNotFoundException.class)
+    public ResponseEntity<ErrorResponseDto> handleJobNotFoundException(final JobNotFoundException ex) {
+        logger.warn("Reconciliation job not found: {}", ex.getJobId());
+
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.JOB_NOT_FOUND, ex.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
+    @ExceptionHandler(ReferenceNotFoundException.class)
+    public ResponseEntity<ErrorResponseDto> handleReferenceNotFoundException(final ReferenceNotFoundException ex) {
+        logger.warn("Prepared reference not found: {}", ex.getReferenceId());
+
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.REFERENCE_NOT_FOUND, ex.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
+    @ExceptionHandler(IncrementalSessionNotFoundException.class)
+    public ResponseEntity<ErrorResponseDto> handleIncrementalSessionNotFoundException(final IncrementalSessionNotFoundException ex) {
+        logger.warn("Incremental session not found: {}", ex.getSessionId());
+
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.INCREMENTAL_SESSION_NOT_FOUND, ex.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
+    @ExceptionHandler(JobNotCompletedException.class)
+    public ResponseEntity<ErrorResponseDto> handleJobNotCompletedException(final JobNotCompletedException ex) {
+        logger.debug("Result requested for job in status {}", ex.getStatus());
+
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.JOB_NOT_COMPLETED, ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    @ExceptionHandler(JobQueueFullException.class)
+    public ResponseEntity<ErrorResponseDto> handleJobQueueFullException(final JobQueueFullException ex) {
+        logger.warn("Job queue full: {}", ex.getMessage());
+
+        final ErrorResponseDto response = new ErrorResponseDto(ErrorType.JOB_QUEUE_FULL, ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponseDto> handleIllegalArgumentException(final IllegalArgumentException ex) {
         logger.warn("Invalid argument: {}", ex.getMessage());
@@ -0,0 +1,24 @@
+package luka.mugosa.filecomparison.rest.v1;
+
+import luka.mugosa.filecomparison.config.ReconciliationExecutors;
+import luka.mugosa.filecomparison.domain.dto.response.ExecutorStatsResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/executors")
+public class ExecutorResource {
+
+    private final ReconciliationExecutors reconciliationExecutors;
+
+    public ExecutorResource(ReconciliationExecutors reconciliationExecutors) {
+        this.reconciliationExecutors = reconciliationExecutors;
+    }
+
+    @GetMapping
+    public ResponseEntity<ExecutorStatsResponse> getExecutorStats() {
+        return ResponseEntity.ok(reconciliationExecutors.stats());
+    }
+}
@@ -0,0 +1,84 @@
+package luka.mugosa.filecomparison.rest.v1;
+
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.IncrementalReconciliationResponse;
+import luka.mugosa.filecomparison.service.IncrementalReconciliationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+
+/**
+ * Reconciliation of files that keep growing. The first upload starts a session, later uploads of the same files
+ * with more rows appended only parse the new rows and update the stored result.
+ */
+@RestController
+@RequestMapping("/api/v1/incremental-reconciliations")
+public class IncrementalReconciliationResource {
+
+    private final IncrementalReconciliationService incrementalReconciliationService;
+
+    public IncrementalReconciliationResource(IncrementalReconciliationService incrementalReconciliationService) {
+        this.incrementalReconciliationService = incrementalReconciliationService;
+    }
+
+    @PostMapping
+    public ResponseEntity<IncrementalReconciliationResponse> startSession(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "includeDiff", defaultValue = "false") boolean includeDiff,
+            @RequestParam(value = "summaryOnly", defaultValue = "false") boolean summaryOnly) {
+
+        final IncrementalReconciliationResponse session =
+                incrementalReconciliationService.start(file1, file2, options(includeDiff, summaryOnly));
+
+        final URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{sessionId}")
+                .buildAndExpand(session.sessionId())
+                .toUri();
+        return ResponseEntity.created(location).body(session);
+    }
+
+    // The whole current files, everything up to the offsets of the previous upload is skipped
+    @PostMapping("/{sessionId}")
+    public ResponseEntity<IncrementalReconciliationResponse> appendToSession(
+            @PathVariable String sessionId,
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "includeDiff", defaultValue = "false") boolean includeDiff,
+            @RequestParam(value = "summaryOnly", defaultValue = "false") boolean summaryOnly) {
+
+        return ResponseEntity.ok(incrementalReconciliationService.append(sessionId, file1, file2,
+                options(includeDiff, summaryOnly)));
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<IncrementalReconciliationResponse> getSession(
+            @PathVariable String sessionId,
+            @RequestParam(value = "includeDiff", defaultValue = "false") boolean includeDiff,
+            @RequestParam(value = "summaryOnly", defaultValue = "false") boolean summaryOnly) {
+
+        return ResponseEntity.ok(incrementalReconciliationService.getSession(sessionId, options(includeDiff, summaryOnly)));
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Void> deleteSession(@PathVariable String sessionId) {
+        incrementalReconciliationService.delete(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ReconciliationOptions options(boolean includeDiff, boolean summaryOnly) {
+        return ReconciliationOptions.builder()
+                .includeDiff(includeDiff)
+                .summaryOnly(summaryOnly)
+                .build();
+    }
+}
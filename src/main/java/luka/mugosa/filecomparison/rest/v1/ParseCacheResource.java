@@ -0,0 +1,31 @@
+package luka.mugosa.filecomparison.rest.v1;
+
+import luka.mugosa.filecomparison.domain.dto.response.ParseCacheStatsResponse;
+import luka.mugosa.filecomparison.service.impl.ParsedFileCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/parse-cache")
+public class ParseCacheResource {
+
+    private final ParsedFileCache parsedFileCache;
+
+    public ParseCacheResource(ParsedFileCache parsedFileCache) {
+        this.parsedFileCache = parsedFileCache;
+    }
+
+    @GetMapping
+    public ResponseEntity<ParseCacheStatsResponse> getParseCacheStats() {
+        return ResponseEntity.ok(parsedFileCache.stats());
+    }
+
+    @DeleteMapping
+    public ResponseEntity<ParseCacheStatsResponse> clearParseCache() {
+        parsedFileCache.clear();
+        return ResponseEntity.ok(parsedFileCache.stats());
+    }
+}
@@ -0,0 +1,58 @@
+package luka.mugosa.filecomparison.rest.v1;
+
+import luka.mugosa.filecomparison.domain.dto.response.PreparedReferenceResponse;
+import luka.mugosa.filecomparison.service.PreparedReferenceService;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+
+/**
+ * Registers a file once so it can be passed as reference=&lt;id&gt; instead of file1 to the reconcile endpoints
+ */
+@RestController
+@RequestMapping("/api/v1/references")
+public class PreparedReferenceResource {
+
+    private final PreparedReferenceService preparedReferenceService;
+
+    public PreparedReferenceResource(PreparedReferenceService preparedReferenceService) {
+        this.preparedReferenceService = preparedReferenceService;
+    }
+
+    // ttl as 90m, 2h or ISO-8601, the configured default when left out
+    @PostMapping
+    public ResponseEntity<PreparedReferenceResponse> prepareReference(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "ttl", required = false) String ttl) {
+
+        final PreparedReferenceResponse reference = preparedReferenceService.prepare(file,
+                ttl != null ? DurationStyle.detectAndParse(ttl) : null);
+
+        final URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{referenceId}")
+                .buildAndExpand(reference.referenceId())
+                .toUri();
+        return ResponseEntity.created(location).body(reference);
+    }
+
+    @GetMapping("/{referenceId}")
+    public ResponseEntity<PreparedReferenceResponse> getReference(@PathVariable String referenceId) {
+        return ResponseEntity.ok(preparedReferenceService.getReference(referenceId));
+    }
+
+    @DeleteMapping("/{referenceId}")
+    public ResponseEntity<Void> releaseReference(@PathVariable String referenceId) {
+        preparedReferenceService.release(referenceId);
+        return ResponseEntity.noContent().build();
+    }
+}
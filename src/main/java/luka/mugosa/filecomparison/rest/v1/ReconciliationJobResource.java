@@ -0,0 +1,64 @@
+package luka.mugosa.filecomparison.rest.v1;
+
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationJobResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.service.ReconciliationJobService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/v1/reconciliation-jobs")
+public class ReconciliationJobResource {
+
+    private final ReconciliationJobService reconciliationJobService;
+
+    public ReconciliationJobResource(ReconciliationJobService reconciliationJobService) {
+        this.reconciliationJobService = reconciliationJobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<ReconciliationJobResponse> submitJob(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "includeDiff", defaultValue = "false") boolean includeDiff,
+            @RequestParam(value = "summaryOnly", defaultValue = "false") boolean summaryOnly) {
+
+        final ReconciliationOptions options = ReconciliationOptions.builder()
+                .includeDiff(includeDiff)
+                .summaryOnly(summaryOnly)
+                .build();
+        final ReconciliationJobResponse job = reconciliationJobService.submit(file1, file2, options);
+
+        final URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{jobId}")
+                .buildAndExpand(job.jobId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ReconciliationJobResponse> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(reconciliationJobService.getJob(jobId));
+    }
+
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<ReconciliationResponse> getResult(@PathVariable String jobId) {
+        return ResponseEntity.ok(reconciliationJobService.getResult(jobId));
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<ReconciliationJobResponse> cancelJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(reconciliationJobService.cancel(jobId));
+    }
+}
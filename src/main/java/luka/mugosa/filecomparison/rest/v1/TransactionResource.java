@@ -1,31 +1,260 @@
 package luka.mugosa.filecomparison.rest.v1;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.MultiSourceReconciliationResponse;
+import luka.mugosa.filecomparison.domain.dto.response.PreflightResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationEstimateResponse;
 import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ValidationResponse;
+import luka.mugosa.filecomparison.service.impl.MemoryAdmissionController;
+import luka.mugosa.filecomparison.service.impl.MemoryAdmissionController.AdmissionTicket;
+import luka.mugosa.filecomparison.service.impl.PendingComparison;
+import luka.mugosa.filecomparison.service.impl.PreflightServiceImpl;
+import luka.mugosa.filecomparison.service.impl.PreparedReference;
+import luka.mugosa.filecomparison.service.impl.PreparedReferenceServiceImpl;
 import luka.mugosa.filecomparison.service.impl.TransactionServiceImpl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/api/v1")
 public class TransactionResource {
 
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String ADMISSION_TICKET = TransactionResource.class.getName() + ".admissionTicket";
+
     private final TransactionServiceImpl transactionService;
+    private final MemoryAdmissionController admissionController;
+    private final PreparedReferenceServiceImpl preparedReferenceService;
+    private final PreflightServiceImpl preflightService;
+    private final ObjectMapper objectMapper;
 
-    public TransactionResource(TransactionServiceImpl transactionService) {
+    public TransactionResource(TransactionServiceImpl transactionService, MemoryAdmissionController admissionController,
+                               PreparedReferenceServiceImpl preparedReferenceService, PreflightServiceImpl preflightService,
+                               ObjectMapper objectMapper) {
         this.transactionService = transactionService;
+        this.admissionController = admissionController;
+        this.preparedReferenceService = preparedReferenceService;
+        this.preflightService = preflightService;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * file1 can be replaced by the id of a prepared reference, see {@link PreparedReferenceResource}
+     */
     @PostMapping("/reconcile-transactions")
     public ResponseEntity<ReconciliationResponse> compareFiles(
+            @RequestParam(value = "file1", required = false) MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "reference", required = false) String referenceId,
+            @RequestParam(value = "includeDiff", defaultValue = "false") boolean includeDiff,
+            @RequestParam(value = "summaryOnly", defaultValue = "false") boolean summaryOnly) {
+
+        final ReconciliationOptions options = ReconciliationOptions.builder()
+                .includeDiff(includeDiff)
+                .summaryOnly(summaryOnly)
+                .build();
+        if (usesReference(file1, referenceId)) {
+            try (PreparedReference reference = preparedReferenceService.acquire(referenceId);
+                 AdmissionTicket ignored = admissionController.admitInMemory(file2)) {
+                return ResponseEntity.ok(transactionService.reconcileAgainstReference(reference, file2, options));
+            }
+        }
+
+        try (AdmissionTicket ignored = admissionController.admit(file1, file2, !summaryOnly)) {
+            final ReconciliationResponse reconciliationResponse = transactionService.reconcileTransactions(file1, file2, options);
+
+            return ResponseEntity.ok(reconciliationResponse);
+        }
+    }
+
+    /**
+     * Three or more files at once, e.g. processor, ledger and bank. Each is parsed once and every two are reconciled
+     * against each other, IDs that match everywhere are only counted unless includeMatched is set.
+     */
+    @PostMapping("/reconcile-transactions/multi-source")
+    public ResponseEntity<MultiSourceReconciliationResponse> compareSources(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "includeMatched", defaultValue = "false") boolean includeMatched) {
+
+        try (AdmissionTicket ignored = admissionController.admit(files)) {
+            return ResponseEntity.ok(transactionService.reconcileSources(files, includeMatched));
+        }
+    }
+
+    /**
+     * Checks headers, column counts, dates, amounts and types of both files with a byte scan, without parsing them.
+     * Reconciliations run the same scan first when reconciliation.validation.max-invalid-rows is set.
+     */
+    @PostMapping("/reconcile-transactions/validate")
+    public ResponseEntity<ValidationResponse> validateFiles(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2) {
+
+        return ResponseEntity.ok(transactionService.validateFiles(file1, file2));
+    }
+
+    /**
+     * Row counts, distinct and shared TransactionIDs, duplicates and the memory a reconciliation would need, from one
+     * scan that only reads the ID column. Holds no rows, so it is not admitted against the memory budget.
+     */
+    @PostMapping("/reconcile-transactions/preflight")
+    public ResponseEntity<PreflightResponse> preflight(
             @RequestParam("file1") MultipartFile file1,
             @RequestParam("file2") MultipartFile file2) {
 
-        final ReconciliationResponse reconciliationResponse = transactionService.reconcileTransactions(file1, file2);
+        return ResponseEntity.ok(preflightService.scan(file1, file2));
+    }
+
+    /**
+     * Fast approximate answer: only the TransactionIDs that hash under sampleRate are reconciled, the response has
+     * the estimated counts with confidence bounds. The same IDs are sampled in both files, so a sample rate of 1 gives
+     * the exact counts for rows with an ID.
+     */
+    @PostMapping("/reconcile-transactions/estimate")
+    public ResponseEntity<ReconciliationEstimateResponse> estimateComparison(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "sampleRate", defaultValue = "0.01") double sampleRate) {
+
+        try (AdmissionTicket ignored = admissionController.admitSample(file1, file2, sampleRate)) {
+            return ResponseEntity.ok(transactionService.estimateReconciliation(file1, file2, sampleRate));
+        }
+    }
+
+    /**
+     * Reads file1 and file2 straight from the request body while it is uploaded, options are query parameters.
+     * Parsing overlaps the transfer instead of starting once both files have been received and spooled.
+     */
+    @PostMapping(value = "/reconcile-transactions/direct", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ReconciliationResponse> compareStreamedFiles(HttpServletRequest request) {
+        // Not @RequestParam, the container would parse the whole multipart body to look the parameters up
+        final MultiValueMap<String, String> queryParams = ServletUriComponentsBuilder.fromRequest(request).build().getQueryParams();
+        final ReconciliationOptions options = ReconciliationOptions.builder()
+                .includeDiff(Boolean.parseBoolean(queryParams.getFirst("includeDiff")))
+                .summaryOnly(Boolean.parseBoolean(queryParams.getFirst("summaryOnly")))
+                .build();
+
+        try (AdmissionTicket ignored = admissionController.admitInput(request.getContentLengthLong(), !options.summaryOnly())) {
+            final ReconciliationResponse reconciliationResponse = transactionService.reconcileStreamedRequest(request, options);
+
+            return ResponseEntity.ok(reconciliationResponse);
+        }
+    }
+
+    /**
+     * One {"pair": ...} line per unmatched pair as soon as it is found, then a closing {"summary": ...} line.
+     * Parsing happens before the response starts, so file errors still get the usual error response.
+     */
+    @PostMapping("/reconcile-transactions/stream")
+    public ResponseEntity<StreamingResponseBody> streamComparison(
+            @RequestParam(value = "file1", required = false) MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "reference", required = false) String referenceId,
+            @RequestParam(value = "includeDiff", defaultValue = "false") boolean includeDiff,
+            HttpServletRequest request) {
+
+        final ReconciliationOptions options = ReconciliationOptions.builder()
+                .includeDiff(includeDiff)
+                .build();
+        final boolean usesReference = usesReference(file1, referenceId);
+        final PreparedReference reference = usesReference ? preparedReferenceService.acquire(referenceId) : null;
+        // The budget and the reference are held until the last line is written, the parsed rows live that long
+        final AtomicBoolean released = new AtomicBoolean();
+        final AdmissionTicket ticket;
+        final PendingComparison pendingComparison;
+        try {
+            ticket = usesReference
+                    ? admissionController.admitInMemory(file2)
+                    : admissionController.admit(file1, file2, false);
+        } catch (RuntimeException e) {
+            release(released, null, reference);
+            throw e;
+        }
+        try {
+            pendingComparison = usesReference
+                    ? transactionService.parseAgainstReference(reference, file2)
+                    : transactionService.parseForComparison(file1, file2);
+        } catch (RuntimeException e) {
+            release(released, ticket, reference);
+            throw e;
+        }
+        // The body may never run or stop half way, e.g. on a timeout or a dropped client, the async request still completes
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(ADMISSION_TICKET, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                release(released, ticket, reference);
+            }
+        });
+
+        final StreamingResponseBody body = outputStream -> {
+            try (final JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                // records are newline separated, not the default space
+                generator.setRootValueSeparator(null);
+                final ReconciliationResponse summary = transactionService.streamComparison(pendingComparison, options,
+                        pair -> writeRecord(generator, "pair", pair));
+                writeRecord(generator, "summary", summary);
+            } finally {
+                release(released, ticket, reference);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // Whichever of the body and the async completion comes first lets go, the reference counts each holder once
+    private static void release(AtomicBoolean released, AdmissionTicket ticket, PreparedReference reference) {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        if (ticket != null) {
+            ticket.close();
+        }
+        if (reference != null) {
+            reference.close();
+        }
+    }
+
+    private boolean usesReference(MultipartFile file1, String referenceId) {
+        if (file1 != null && referenceId != null) {
+            throw new IllegalArgumentException("Send either file1 or reference, not both");
+        }
+        if (file1 == null && referenceId == null) {
+            throw new IllegalArgumentException("Either file1 or reference is required");
+        }
+        return referenceId != null;
+    }
 
-        return ResponseEntity.ok(reconciliationResponse);
+    private void writeRecord(JsonGenerator generator, String fieldName, Object value) {
+        try {
+            generator.writeStartObject();
+            generator.writeObjectField(fieldName, value);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -1,10 +1,16 @@
 package luka.mugosa.filecomparison.service;
 
+import luka.mugosa.filecomparison.domain.dto.FileValidationDto;
 import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.service.csv.ParseReport;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public interface FileService {
     List<TransactionDto> parseFile(String path);
@@ -14,4 +20,46 @@ public interface FileService {
     CompletableFuture<List<TransactionDto>> parseFileAsync(String path);
 
     CompletableFuture<List<TransactionDto>> parseFileAsync(MultipartFile file);
+
+    // Always parses the CSV, for partitions of a larger file that are read once and never need a snapshot.
+    // The report and the line numbers, one int per row, are those of the original file
+    CompletableFuture<List<TransactionDto>> parseCsvAsync(String path, String lineNumbersPath, ParseReport report);
+
+    int parseFile(MultipartFile file, Consumer<TransactionDto> sink);
+
+    CompletableFuture<Integer> parseFileAsync(MultipartFile file, Consumer<TransactionDto> sink);
+
+    // Lenient when an error budget is configured
+    ParseReport newParseReport(String filename);
+
+    // Row counters and the rows the lenient parser flags go to the report
+    List<TransactionDto> parseFile(MultipartFile file, ParseReport report);
+
+    CompletableFuture<List<TransactionDto>> parseFileAsync(MultipartFile file, ParseReport report);
+
+    int parseFile(MultipartFile file, ParseReport report, Consumer<TransactionDto> sink);
+
+    CompletableFuture<Integer> parseFileAsync(MultipartFile file, ParseReport report, Consumer<TransactionDto> sink);
+
+    // Only rows whose raw TransactionID passes the filter are parsed and handed to the sink
+    int parseFile(MultipartFile file, Predicate<String> transactionIdFilter, Consumer<TransactionDto> sink);
+
+    CompletableFuture<Integer> parseFileAsync(MultipartFile file, Predicate<String> transactionIdFilter,
+                                              Consumer<TransactionDto> sink);
+
+    void validateUpload(MultipartFile file);
+
+    FileValidationDto validateContent(MultipartFile file);
+
+    CompletableFuture<FileValidationDto> validateContentAsync(MultipartFile file);
+
+    // A streamed part has no size up front, it is empty when it has no first byte
+    InputStream validateUpload(String filename, InputStream inputStream) throws IOException;
+
+    int parseStream(String filename, InputStream inputStream, Consumer<TransactionDto> sink);
+
+    int parseStream(String filename, InputStream inputStream, ParseReport report, Consumer<TransactionDto> sink);
+
+    CompletableFuture<Integer> parseStreamAsync(String filename, InputStream inputStream, ParseReport report,
+                                                Consumer<TransactionDto> sink);
 }
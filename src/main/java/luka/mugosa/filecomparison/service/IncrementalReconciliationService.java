@@ -0,0 +1,16 @@
+package luka.mugosa.filecomparison.service;
+
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.IncrementalReconciliationResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface IncrementalReconciliationService {
+    IncrementalReconciliationResponse start(MultipartFile file1, MultipartFile file2, ReconciliationOptions options);
+
+    IncrementalReconciliationResponse append(String sessionId, MultipartFile file1, MultipartFile file2,
+                                             ReconciliationOptions options);
+
+    IncrementalReconciliationResponse getSession(String sessionId, ReconciliationOptions options);
+
+    void delete(String sessionId);
+}
@@ -0,0 +1,8 @@
+package luka.mugosa.filecomparison.service;
+
+import luka.mugosa.filecomparison.domain.dto.response.PreflightResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface PreflightService {
+    PreflightResponse scan(MultipartFile file1, MultipartFile file2);
+}
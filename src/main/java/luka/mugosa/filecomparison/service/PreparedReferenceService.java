@@ -0,0 +1,14 @@
+package luka.mugosa.filecomparison.service;
+
+import luka.mugosa.filecomparison.domain.dto.response.PreparedReferenceResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+
+public interface PreparedReferenceService {
+    PreparedReferenceResponse prepare(MultipartFile file, Duration ttl);
+
+    PreparedReferenceResponse getReference(String referenceId);
+
+    void release(String referenceId);
+}
@@ -0,0 +1,16 @@
+package luka.mugosa.filecomparison.service;
+
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationJobResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface ReconciliationJobService {
+    ReconciliationJobResponse submit(MultipartFile file1, MultipartFile file2, ReconciliationOptions options);
+
+    ReconciliationJobResponse getJob(String jobId);
+
+    ReconciliationResponse getResult(String jobId);
+
+    ReconciliationJobResponse cancel(String jobId);
+}
@@ -5,4 +5,14 @@ import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
 
 public interface ScoreService {
     MatchScore calculateScore(TransactionDto transaction1, TransactionDto transaction2);
+
+    /**
+     * Like calculateScore, but narrative and description are only evaluated when they can still change the confidence
+     */
+    MatchScore calculateDecisiveScore(TransactionDto transaction1, TransactionDto transaction2);
+
+    /**
+     * Whether the transaction would be a HIGH confidence match for an identical copy of itself, without scoring the pair
+     */
+    boolean matchesIdenticalCopy(TransactionDto transaction);
 }
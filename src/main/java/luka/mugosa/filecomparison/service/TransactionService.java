@@ -1,8 +1,22 @@
 package luka.mugosa.filecomparison.service;
 
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.MultiSourceReconciliationResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationEstimateResponse;
 import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ValidationResponse;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
+
 public interface TransactionService {
     ReconciliationResponse reconcileTransactions(MultipartFile file1, MultipartFile file2);
+
+    ReconciliationResponse reconcileTransactions(MultipartFile file1, MultipartFile file2, ReconciliationOptions options);
+
+    MultiSourceReconciliationResponse reconcileSources(List<MultipartFile> files, boolean includeMatched);
+
+    ValidationResponse validateFiles(MultipartFile file1, MultipartFile file2);
+
+    ReconciliationEstimateResponse estimateReconciliation(MultipartFile file1, MultipartFile file2, double sampleRate);
 }
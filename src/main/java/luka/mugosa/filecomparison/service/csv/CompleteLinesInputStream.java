@@ -0,0 +1,120 @@
+package luka.mugosa.filecomparison.service.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Passes on the input up to its last line break. A trailing line without one may still be in the middle of being
+ * written, so it is held back and dropped at the end of the input. Counts what it passed on and remembers the last
+ * bytes of it, so the next read of a growing file can check that nothing before that point changed.
+ */
+public final class CompleteLinesInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final int tailSize;
+    private byte[] tail;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    // buffer[position, complete) can be handed out, buffer[complete, filled) is an unfinished line
+    private int position;
+    private int complete;
+    private int filled;
+    private boolean eof;
+    private long released;
+
+    /**
+     * The tail starts out as the bytes just before this input, the previous tail of the same file
+     */
+    public CompleteLinesInputStream(InputStream in, byte[] previousTail, int tailSize) {
+        this.in = in;
+        this.tailSize = tailSize;
+        this.tail = previousTail.length > tailSize
+                ? Arrays.copyOfRange(previousTail, previousTail.length - tailSize, previousTail.length)
+                : previousTail.clone();
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (position == complete) {
+            if (eof || !fill()) {
+                return -1;
+            }
+        }
+
+        final int count = Math.min(len, complete - position);
+        System.arraycopy(buffer, position, b, off, count);
+        remember(buffer, position, count);
+        position += count;
+        released += count;
+        return count;
+    }
+
+    // Reads until at least one more line is complete, false once the input ends without one
+    private boolean fill() throws IOException {
+        // The unfinished line moves to the front
+        final int pending = filled - complete;
+        System.arraycopy(buffer, complete, buffer, 0, pending);
+        position = 0;
+        complete = 0;
+        filled = pending;
+
+        while (!eof) {
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            final int read = in.read(buffer, filled, buffer.length - filled);
+            if (read < 0) {
+                eof = true;
+                break;
+            }
+            final int searchFrom = filled;
+            filled += read;
+            for (int i = filled - 1; i >= searchFrom; i--) {
+                if (buffer[i] == '\n') {
+                    complete = i + 1;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void remember(byte[] bytes, int offset, int count) {
+        final int keepNew = Math.min(count, tailSize);
+        final int keepOld = Math.min(tail.length, tailSize - keepNew);
+        final byte[] updated = new byte[keepOld + keepNew];
+        System.arraycopy(tail, tail.length - keepOld, updated, 0, keepOld);
+        System.arraycopy(bytes, offset + count - keepNew, updated, keepOld, keepNew);
+        tail = updated;
+    }
+
+    public long getReleasedBytes() {
+        return released;
+    }
+
+    // Bytes of an unfinished last line that were held back, only known once the input was read to the end
+    public long getHeldBackBytes() {
+        return filled - complete;
+    }
+
+    public byte[] getTail() {
+        return tail.clone();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
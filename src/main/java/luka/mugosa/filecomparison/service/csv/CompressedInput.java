@@ -0,0 +1,94 @@
+package luka.mugosa.filecomparison.service.csv;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+import luka.mugosa.filecomparison.domain.enumeration.CompressionCodec;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens gzip or zstd compressed CSV transparently. A declared encoding wins, otherwise the codec is taken from
+ * the magic bytes. Compressed input is decompressed on a read-ahead thread and never past the given number of
+ * decoded bytes, see {@link DecodedLimitInputStream}.
+ */
+public final class CompressedInput {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    // Admission, routing and the parse timeout all ask for the size of the same upload, it is decoded only once
+    private static final Map<MultipartFile, Long> DECODED_SIZES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private CompressedInput() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static InputStream open(InputStream raw, String declaredEncoding, long maxDecodedBytes) throws IOException {
+        final BufferedInputStream buffered = new BufferedInputStream(raw, GZIP_BUFFER_SIZE);
+        final CompressionCodec declared = CompressionCodec.fromDeclared(declaredEncoding);
+        final CompressionCodec codec = declared != null ? declared : peekCodec(buffered);
+
+        return switch (codec) {
+            case NONE -> buffered;
+            case GZIP -> new DecodedLimitInputStream(
+                    new ReadAheadInputStream(new GZIPInputStream(buffered, GZIP_BUFFER_SIZE)), maxDecodedBytes);
+            case ZSTD -> new DecodedLimitInputStream(
+                    new ReadAheadInputStream(new ZstdInputStream(buffered)), maxDecodedBytes);
+        };
+    }
+
+    public static CompressionCodec detect(MultipartFile file) {
+        if (file.getSize() == 0) {
+            return CompressionCodec.NONE;
+        }
+        final CompressionCodec declared = CompressionCodec.fromDeclared(file.getContentType());
+        if (declared != null) {
+            return declared;
+        }
+        try (final InputStream inputStream = file.getInputStream()) {
+            final byte[] magic = inputStream.readNBytes(CompressionCodec.MAGIC_LENGTH);
+            return CompressionCodec.fromMagic(magic, magic.length);
+        } catch (IOException e) {
+            return CompressionCodec.NONE;
+        }
+    }
+
+    /**
+     * Size the file has once decompressed. A compressed file is decoded once without keeping any of it, which
+     * stops with a {@link luka.mugosa.filecomparison.domain.exception.DecompressedSizeExceededException} past
+     * maxDecodedBytes. Corrupt content counts up to where it breaks, the parse then reports it.
+     */
+    public static long decodedSize(MultipartFile file, long maxDecodedBytes) {
+        if (detect(file) == CompressionCodec.NONE) {
+            return file.getSize();
+        }
+        final Long known = DECODED_SIZES.get(file);
+        if (known != null) {
+            return known;
+        }
+
+        final byte[] buffer = new byte[GZIP_BUFFER_SIZE];
+        long decoded = 0;
+        try (final InputStream inputStream = open(file.getInputStream(), file.getContentType(), maxDecodedBytes)) {
+            for (int read = inputStream.read(buffer); read >= 0; read = inputStream.read(buffer)) {
+                decoded += read;
+            }
+        } catch (IOException e) {
+            return decoded;
+        }
+        DECODED_SIZES.put(file, decoded);
+        return decoded;
+    }
+
+    private static CompressionCodec peekCodec(BufferedInputStream inputStream) throws IOException {
+        final byte[] magic = new byte[CompressionCodec.MAGIC_LENGTH];
+        inputStream.mark(magic.length);
+        final int length = inputStream.readNBytes(magic, 0, magic.length);
+        inputStream.reset();
+        return CompressionCodec.fromMagic(magic, length);
+    }
+}
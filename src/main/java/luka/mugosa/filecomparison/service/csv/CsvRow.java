@@ -0,0 +1,93 @@
+package luka.mugosa.filecomparison.service.csv;
+
+import luka.mugosa.filecomparison.domain.dto.LazyColumn;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Field boundaries of one raw CSV row. Missing trailing fields read as empty, extra fields are ignored
+ * and every field is trimmed the same way String.trim() would.
+ */
+public final class CsvRow {
+
+    private static final byte CSV_SEPARATOR = ',';
+
+    private final byte[] bytes;
+    private final int[] bounds;
+    private final int presentColumns;
+
+    private CsvRow(byte[] bytes, int[] bounds, int presentColumns) {
+        this.bytes = bytes;
+        this.bounds = bounds;
+        this.presentColumns = presentColumns;
+    }
+
+    public static CsvRow split(final byte[] bytes, final int columnCount) {
+        final int[] bounds = new int[columnCount * 2];
+        int start = 0;
+        int column = 0;
+
+        for (int i = 0; i <= bytes.length && column < columnCount; i++) {
+            if (i == bytes.length || bytes[i] == CSV_SEPARATOR) {
+                int from = start;
+                int to = i;
+                while (from < to && (bytes[from] & 0xFF) <= ' ') {
+                    from++;
+                }
+                while (to > from && (bytes[to - 1] & 0xFF) <= ' ') {
+                    to--;
+                }
+                bounds[column * 2] = from;
+                bounds[column * 2 + 1] = to;
+                column++;
+                start = i + 1;
+            }
+        }
+
+        return new CsvRow(bytes, bounds, column);
+    }
+
+    public int columnCount() {
+        return bounds.length / 2;
+    }
+
+    // Columns the row actually has, the ones after them read as empty
+    public int presentColumns() {
+        return presentColumns;
+    }
+
+    public int start(int column) {
+        return bounds[column * 2];
+    }
+
+    public int length(int column) {
+        return bounds[column * 2 + 1] - bounds[column * 2];
+    }
+
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    public String value(int column) {
+        final int length = length(column);
+        return length == 0 ? "" : new String(bytes, start(column), length, StandardCharsets.UTF_8);
+    }
+
+    public LazyColumn lazyValue(int column) {
+        return new LazyColumn(bytes, start(column), length(column));
+    }
+
+    public boolean isBlank() {
+        for (byte b : bytes) {
+            if ((b & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package luka.mugosa.filecomparison.service.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits a byte stream into rows without decoding it, accepts \n, \r\n and \r line endings.
+ * Every returned row is its own array so it can be retained by lazily decoded columns.
+ */
+public class CsvRowReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream inputStream;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private long position;
+
+    public CsvRowReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * Returns the next row without its line terminator, or null at the end of the stream
+     */
+    public byte[] readRow() throws IOException {
+        int scanned = 0;
+
+        while (true) {
+            int i = pos + scanned;
+            while (i < limit && buffer[i] != '\n' && buffer[i] != '\r') {
+                i++;
+            }
+
+            if (i < limit) {
+                // \r could be the first half of a \r\n split across reads
+                if (buffer[i] == '\r' && i + 1 == limit && !eof) {
+                    scanned = i - pos;
+                    fill();
+                    continue;
+                }
+
+                final byte[] row = Arrays.copyOfRange(buffer, pos, i);
+                int next = i + 1;
+                if (buffer[i] == '\r' && next < limit && buffer[next] == '\n') {
+                    next++;
+                }
+                position += next - pos;
+                pos = next;
+                return row;
+            }
+
+            if (eof) {
+                if (pos == limit) {
+                    return null;
+                }
+                final byte[] row = Arrays.copyOfRange(buffer, pos, limit);
+                position += limit - pos;
+                pos = limit;
+                return row;
+            }
+
+            scanned = i - pos;
+            fill();
+        }
+    }
+
+    /**
+     * Number of bytes consumed by the rows returned so far
+     */
+    public long position() {
+        return position;
+    }
+
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        final int read = inputStream.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,273 @@
+package luka.mugosa.filecomparison.service.csv;
+
+import luka.mugosa.filecomparison.constant.TransactionConstants;
+import luka.mugosa.filecomparison.domain.enumeration.RowErrorReason;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Checks a transaction CSV in one pass over its bytes, without building rows or strings past the header. The header
+ * must have every required column. A row must reach the last header column, and its date, amount and type must have
+ * the layout the parser reads - empty values are fine, the parser reads them as missing.
+ * Blank lines and line endings are treated like {@link CsvRowReader} and {@link CsvRow} do.
+ */
+public final class CsvStructureScanner {
+
+    @FunctionalInterface
+    public interface IssueSink {
+        void accept(int line, String column, RowErrorReason reason);
+    }
+
+    public record Result(int rows, int invalidRows) {
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    private static final byte OTHER = 0;
+    private static final byte DATE = 1;
+    private static final byte AMOUNT = 2;
+    private static final byte TYPE = 3;
+
+    // yyyy-MM-dd HH:mm:ss, 'd' is any digit
+    private static final byte[] DATE_LAYOUT = "dddd-dd-dd dd:dd:dd".getBytes(StandardCharsets.US_ASCII);
+
+    // Field states, shared by the column kinds, INVALID is sticky until the next field
+    private static final int START = 0;
+    private static final int INVALID = -1;
+    private static final int SIGN = 1;
+    private static final int INTEGER = 2;
+    private static final int POINT = 3;
+    private static final int FRACTION = 4;
+    private static final int EXPONENT = 5;
+    private static final int EXPONENT_SIGN = 6;
+    private static final int EXPONENT_DIGITS = 7;
+    private static final int SUFFIX = 8;
+    private static final int TRAILING = 9;
+
+    private final IssueSink sink;
+
+    private String[] columnNames;
+    private byte[] columnKinds;
+
+    private int line = 1;
+    private int column;
+    private int fieldState;
+    private boolean rowStarted;
+    private boolean rowHasContent;
+    private boolean rowInvalid;
+    private int rows;
+    private int invalidRows;
+
+    private CsvStructureScanner(IssueSink sink) {
+        this.sink = sink;
+    }
+
+    public static Result scan(InputStream inputStream, IssueSink sink) throws IOException {
+        final CsvStructureScanner scanner = new CsvStructureScanner(sink);
+        if (!scanner.readHeader(inputStream)) {
+            return new Result(0, 0);
+        }
+        scanner.scanRows(inputStream);
+        return new Result(scanner.rows, scanner.invalidRows);
+    }
+
+    private boolean readHeader(InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int next;
+        while ((next = inputStream.read()) >= 0 && next != '\n' && header.size() <= MAX_HEADER_BYTES) {
+            header.write(next);
+        }
+        // Same split and trim as the parser
+        columnNames = header.toString(StandardCharsets.UTF_8).split(",");
+        columnKinds = new byte[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = columnNames[i].trim();
+            columnKinds[i] = switch (columnNames[i]) {
+                case TransactionConstants.HEADER_TRANSACTION_DATE -> DATE;
+                case TransactionConstants.HEADER_TRANSACTION_AMOUNT -> AMOUNT;
+                case TransactionConstants.HEADER_TRANSACTION_TYPE -> TYPE;
+                default -> OTHER;
+            };
+        }
+
+        boolean complete = true;
+        for (String required : TransactionConstants.REQUIRED_HEADERS) {
+            if (!Arrays.asList(columnNames).contains(required)) {
+                sink.accept(1, required, RowErrorReason.MISSING_HEADER);
+                complete = false;
+            }
+        }
+        line = 2;
+        return complete;
+    }
+
+    private void scanRows(InputStream inputStream) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        boolean afterCarriageReturn = false;
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                final byte b = buffer[i];
+                if (b == '\n' || b == '\r') {
+                    // \r\n is one line ending
+                    if (!(b == '\n' && afterCarriageReturn)) {
+                        endRow();
+                    }
+                    afterCarriageReturn = b == '\r';
+                    continue;
+                }
+                afterCarriageReturn = false;
+                rowStarted = true;
+                if ((b & 0xFF) > ' ') {
+                    rowHasContent = true;
+                }
+                if (b == ',') {
+                    endField();
+                    column++;
+                } else if (column < columnKinds.length) {
+                    fieldState = next(columnKinds[column], fieldState, b);
+                }
+            }
+        }
+        if (rowStarted) {
+            endRow();
+        }
+    }
+
+    private void endField() {
+        if (column >= columnKinds.length) {
+            return;
+        }
+        final RowErrorReason reason = isComplete(columnKinds[column], fieldState) ? null : switch (columnKinds[column]) {
+            case DATE -> RowErrorReason.INVALID_DATE;
+            case AMOUNT -> RowErrorReason.INVALID_AMOUNT;
+            default -> RowErrorReason.INVALID_TRANSACTION_TYPE;
+        };
+        if (reason != null) {
+            sink.accept(line, columnNames[column], reason);
+            rowInvalid = true;
+        }
+        fieldState = START;
+    }
+
+    private void endRow() {
+        if (rowHasContent) {
+            endField();
+            rows++;
+            // Missing trailing fields would parse as empty, the scan insists on every column being there
+            if (column + 1 < columnNames.length) {
+                sink.accept(line, columnNames[column + 1], RowErrorReason.MISSING_COLUMNS);
+                rowInvalid = true;
+            }
+            if (rowInvalid) {
+                invalidRows++;
+            }
+        }
+        line++;
+        column = 0;
+        fieldState = START;
+        rowStarted = false;
+        rowHasContent = false;
+        rowInvalid = false;
+    }
+
+    /**
+     * Same checks as the scan for one field, e.g. a {@link CsvRow} column
+     */
+    public static boolean isValidDate(byte[] bytes, int start, int length) {
+        return isValid(DATE, bytes, start, length);
+    }
+
+    public static boolean isValidAmount(byte[] bytes, int start, int length) {
+        return isValid(AMOUNT, bytes, start, length);
+    }
+
+    public static boolean isValidType(byte[] bytes, int start, int length) {
+        return isValid(TYPE, bytes, start, length);
+    }
+
+    private static boolean isValid(byte kind, byte[] bytes, int start, int length) {
+        int state = START;
+        for (int i = start; i < start + length && state != INVALID; i++) {
+            state = next(kind, state, bytes[i]);
+        }
+        return isComplete(kind, state);
+    }
+
+    private static boolean isComplete(byte kind, int state) {
+        return switch (kind) {
+            case DATE -> state == START || state >= DATE_LAYOUT.length;
+            case AMOUNT -> isCompleteAmount(state);
+            case TYPE -> state == START || state == INTEGER || state == TRAILING;
+            default -> true;
+        };
+    }
+
+    private static int next(byte kind, int state, byte b) {
+        if (state == INVALID) {
+            return INVALID;
+        }
+        return switch (kind) {
+            case DATE -> nextDate(state, b);
+            case AMOUNT -> nextAmount(state, b);
+            case TYPE -> nextType(state, b);
+            default -> state;
+        };
+    }
+
+    // The state is the number of layout characters matched so far
+    private static int nextDate(int matched, byte b) {
+        final boolean whitespace = (b & 0xFF) <= ' ';
+        if (matched == START && whitespace) {
+            return START;
+        }
+        if (matched >= DATE_LAYOUT.length) {
+            return whitespace ? matched : INVALID;
+        }
+        final byte expected = DATE_LAYOUT[matched];
+        final boolean matches = expected == 'd' ? b >= '0' && b <= '9' : b == expected;
+        return matches ? matched + 1 : INVALID;
+    }
+
+    // What Double.parseDouble takes, short of NaN, Infinity and hex
+    private static int nextAmount(int state, byte b) {
+        final boolean digit = b >= '0' && b <= '9';
+        final boolean whitespace = (b & 0xFF) <= ' ';
+        final boolean sign = b == '+' || b == '-';
+        final boolean exponent = b == 'e' || b == 'E';
+        final boolean suffix = b == 'd' || b == 'D' || b == 'f' || b == 'F';
+        return switch (state) {
+            case START -> whitespace ? START : sign ? SIGN : digit ? INTEGER : b == '.' ? POINT : INVALID;
+            case SIGN -> digit ? INTEGER : b == '.' ? POINT : INVALID;
+            case INTEGER -> digit ? INTEGER : b == '.' ? FRACTION : exponent ? EXPONENT : suffix ? SUFFIX
+                    : whitespace ? TRAILING : INVALID;
+            case POINT -> digit ? FRACTION : INVALID;
+            case FRACTION -> digit ? FRACTION : exponent ? EXPONENT : suffix ? SUFFIX : whitespace ? TRAILING : INVALID;
+            case EXPONENT -> sign ? EXPONENT_SIGN : digit ? EXPONENT_DIGITS : INVALID;
+            case EXPONENT_SIGN -> digit ? EXPONENT_DIGITS : INVALID;
+            case EXPONENT_DIGITS -> digit ? EXPONENT_DIGITS : suffix ? SUFFIX : whitespace ? TRAILING : INVALID;
+            case SUFFIX, TRAILING -> whitespace ? TRAILING : INVALID;
+            default -> INVALID;
+        };
+    }
+
+    private static boolean isCompleteAmount(int state) {
+        return state == START || state == INTEGER || state == FRACTION || state == EXPONENT_DIGITS
+                || state == SUFFIX || state == TRAILING;
+    }
+
+    // A single 0 or 1
+    private static int nextType(int state, byte b) {
+        final boolean whitespace = (b & 0xFF) <= ' ';
+        return switch (state) {
+            case START -> whitespace ? START : b == '0' || b == '1' ? INTEGER : INVALID;
+            case INTEGER, TRAILING -> whitespace ? TRAILING : INVALID;
+            default -> INVALID;
+        };
+    }
+}
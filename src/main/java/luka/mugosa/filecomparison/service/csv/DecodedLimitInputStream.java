@@ -0,0 +1,66 @@
+package luka.mugosa.filecomparison.service.csv;
+
+import luka.mugosa.filecomparison.domain.exception.DecompressedSizeExceededException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the decompressed bytes handed out and fails as soon as they pass the limit, so a small upload that
+ * inflates far beyond what was admitted for it is stopped before it fills the heap or the disk
+ */
+public final class DecodedLimitInputStream extends FilterInputStream {
+
+    private final long maxDecodedBytes;
+    private long decoded;
+
+    public DecodedLimitInputStream(InputStream in, long maxDecodedBytes) {
+        super(in);
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = in.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        final int read = in.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long skipped = in.skip(n);
+        if (skipped > 0) {
+            count(skipped);
+        }
+        return skipped;
+    }
+
+    // Marking would let the same bytes be counted twice
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    public long getDecodedBytes() {
+        return decoded;
+    }
+
+    private void count(long bytes) {
+        decoded += bytes;
+        if (decoded > maxDecodedBytes) {
+            throw new DecompressedSizeExceededException(maxDecodedBytes);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package luka.mugosa.filecomparison.service.csv;
+
+import luka.mugosa.filecomparison.domain.dto.ParseErrorsDto;
+import luka.mugosa.filecomparison.domain.dto.ParseStatisticsDto;
+import luka.mugosa.filecomparison.domain.dto.RowErrorDto;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.enumeration.RowErrorReason;
+import luka.mugosa.filecomparison.domain.exception.ErrorBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counters of one file's parse, kept instead of logging every row. With an error budget the parse is lenient: the rows
+ * it flags are recorded here too, only the first errors are kept, all of them are counted, and the parse is aborted as
+ * soon as more rows are flagged than the budget allows. Written by one parser at a time.
+ */
+public final class ParseReport {
+
+    private final String filename;
+    private final int errorBudget;
+    private final int maxReportedErrors;
+
+    private final Map<RowErrorReason, Integer> errorCounts = new EnumMap<>(RowErrorReason.class);
+    private final List<RowErrorDto> errors = new ArrayList<>();
+    private int flaggedRows;
+    private int lastFlaggedLine;
+    private boolean parsed;
+    private long decodedBytes;
+
+    private int processedRows;
+    private int skippedRows;
+    private int filteredRows;
+    private int failedRows;
+    private int missingDates;
+    private int missingAmounts;
+    private int unknownTypes;
+
+    // A negative error budget keeps the strict parser, which never flags or aborts
+    public ParseReport(String filename, int errorBudget, int maxReportedErrors) {
+        this.filename = filename;
+        this.errorBudget = errorBudget;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public boolean isLenient() {
+        return errorBudget >= 0;
+    }
+
+    public void rowParsed(TransactionDto transaction) {
+        processedRows++;
+        if (transaction.getTransactionDate() == null) {
+            missingDates++;
+        }
+        if (transaction.getTransactionAmount() == null) {
+            missingAmounts++;
+        }
+        if (transaction.getTransactionType() == null) {
+            unknownTypes++;
+        }
+    }
+
+    // Blank lines
+    public void rowSkipped() {
+        skippedRows++;
+    }
+
+    // Rows whose TransactionID failed the filter
+    public void rowFiltered() {
+        filteredRows++;
+    }
+
+    // Lenient parses drop a row they can't read at all, it counts against the budget
+    public void rowFailed(int line) {
+        failedRows++;
+        flag(line, null, RowErrorReason.UNPARSEABLE_ROW);
+    }
+
+    // A row with several bad values counts once against the budget
+    public void flag(int line, String column, RowErrorReason reason) {
+        errorCounts.merge(reason, 1, Integer::sum);
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RowErrorDto(line, column, reason));
+        }
+        if (line != lastFlaggedLine) {
+            lastFlaggedLine = line;
+            flaggedRows++;
+            if (flaggedRows > errorBudget) {
+                throw new ErrorBudgetExceededException(filename, toErrorsDto());
+            }
+        }
+    }
+
+    public void markParsed() {
+        parsed = true;
+    }
+
+    // False when the rows came from the parse cache or a snapshot, the errors of the parse back then are unknown
+    public boolean isParsed() {
+        return parsed;
+    }
+
+    // Bytes of the rows after decompression, the parsed rows keep their raw bytes referenced
+    public void rowsRead(long bytes) {
+        decodedBytes += bytes;
+    }
+
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    public int getProcessedRows() {
+        return processedRows;
+    }
+
+    public int getFlaggedRows() {
+        return flaggedRows;
+    }
+
+    public ParseErrorsDto toErrorsDto() {
+        return new ParseErrorsDto(flaggedRows, errorBudget, new EnumMap<>(errorCounts), List.copyOf(errors));
+    }
+
+    public ParseStatisticsDto toStatisticsDto() {
+        return new ParseStatisticsDto(processedRows, skippedRows, filteredRows, failedRows,
+                missingDates, missingAmounts, unknownTypes);
+    }
+}
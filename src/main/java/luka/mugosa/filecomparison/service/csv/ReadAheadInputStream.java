@@ -0,0 +1,117 @@
+package luka.mugosa.filecomparison.service.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the wrapped stream on its own thread a few buffers ahead of the consumer,
+ * so decompressing the next block overlaps tokenizing the current one
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFERS_AHEAD = 4;
+    private static final Block END = new Block(new byte[0], 0, null);
+
+    private final InputStream source;
+    private final BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(BUFFERS_AHEAD);
+    private final Thread reader;
+    private Block current = new Block(new byte[0], 0, null);
+    private int pos;
+    private boolean finished;
+
+    public ReadAheadInputStream(InputStream source) {
+        this.source = source;
+        this.reader = Thread.ofVirtual().name("read-ahead").start(this::readAhead);
+    }
+
+    private void readAhead() {
+        try {
+            while (true) {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                final int read = source.read(buffer);
+                if (read < 0) {
+                    blocks.put(END);
+                    return;
+                }
+                if (read > 0) {
+                    blocks.put(new Block(buffer, read, null));
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed by the consumer
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            fail(e);
+        } catch (Throwable e) {
+            // Decoders report corrupt input unchecked, e.g. zstd's MalformedInputException, the consumer must still wake up
+            final ZipException corrupt = new ZipException(e.getMessage());
+            corrupt.initCause(e);
+            fail(corrupt);
+        }
+    }
+
+    private void fail(IOException failure) {
+        try {
+            blocks.put(new Block(null, 0, failure));
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == current.length() && !nextBlock()) {
+            return -1;
+        }
+        final int count = Math.min(len, current.length() - pos);
+        System.arraycopy(current.data(), pos, b, off, count);
+        pos += count;
+        return count;
+    }
+
+    private boolean nextBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        try {
+            current = blocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for read-ahead data");
+        }
+        pos = 0;
+        if (current.failure() != null) {
+            finished = true;
+            throw new IOException("Failed reading ahead: " + current.failure().getMessage(), current.failure());
+        }
+        if (current == END) {
+            finished = true;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        reader.interrupt();
+        source.close();
+    }
+
+    private record Block(byte[] data, int length, IOException failure) {
+    }
+}
@@ -0,0 +1,202 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.LazyColumn;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Digests of one file's ID groups, bucketed by the date of each group's first row: days under months under the root.
+ * A node's digest is the sum of the SHA-256 based digests of the groups below it, so it doesn't depend on row order
+ * across groups and two nodes are equal when they hold the same groups with the same rows in the same order.
+ * Comparing two trees only descends into months and days whose digests differ.
+ */
+final class BucketDigestTree {
+
+    // Rows without a date share one bucket
+    private static final LocalDate NO_DATE = LocalDate.MIN;
+
+    private final Digest root = new Digest();
+    private final TreeMap<YearMonth, Month> months = new TreeMap<>();
+
+    private BucketDigestTree() {
+    }
+
+    static BucketDigestTree build(Map<TransactionId, List<TransactionDto>> groups) {
+        final BucketDigestTree tree = new BucketDigestTree();
+        final GroupHasher hasher = new GroupHasher();
+        groups.forEach((transactionId, transactions) -> tree.add(transactionId, transactions, hasher.hash(transactionId, transactions)));
+        return tree;
+    }
+
+    private void add(TransactionId transactionId, List<TransactionDto> transactions, long[] groupDigest) {
+        final ZonedDateTime date = transactions.get(0).getTransactionDate();
+        final LocalDate day = date != null ? date.toLocalDate() : NO_DATE;
+
+        final Month month = months.computeIfAbsent(YearMonth.from(day), key -> new Month());
+        final Day bucket = month.days.computeIfAbsent(day, key -> new Day());
+        bucket.transactionIds.add(transactionId);
+        bucket.digest.add(groupDigest);
+        month.digest.add(groupDigest);
+        root.add(groupDigest);
+    }
+
+    /**
+     * IDs of the groups in days whose digests are equal in both trees, those groups are identical in both files
+     */
+    Set<TransactionId> identicalGroups(BucketDigestTree other) {
+        final Set<TransactionId> identical = new HashSet<>();
+        if (root.equals(other.root)) {
+            months.values().forEach(month -> month.days.values().forEach(day -> identical.addAll(day.transactionIds)));
+            return identical;
+        }
+
+        months.forEach((key, month) -> {
+            final Month otherMonth = other.months.get(key);
+            if (otherMonth == null) {
+                return;
+            }
+            if (month.digest.equals(otherMonth.digest)) {
+                month.days.values().forEach(day -> identical.addAll(day.transactionIds));
+                return;
+            }
+            month.days.forEach((day, bucket) -> {
+                final Day otherBucket = otherMonth.days.get(day);
+                if (otherBucket != null && bucket.digest.equals(otherBucket.digest)) {
+                    identical.addAll(bucket.transactionIds);
+                }
+            });
+        });
+        return identical;
+    }
+
+    int getDayCount() {
+        return months.values().stream().mapToInt(month -> month.days.size()).sum();
+    }
+
+    private static final class Month {
+
+        private final Digest digest = new Digest();
+        private final TreeMap<LocalDate, Day> days = new TreeMap<>();
+    }
+
+    private static final class Day {
+
+        private final Digest digest = new Digest();
+        private final List<TransactionId> transactionIds = new ArrayList<>();
+    }
+
+    // 128 bits as two sums modulo 2^64, plus the group count
+    private static final class Digest {
+
+        private long high;
+        private long low;
+        private int groups;
+
+        void add(long[] groupDigest) {
+            high += groupDigest[0];
+            low += groupDigest[1];
+            groups++;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Digest that && high == that.high && low == that.low && groups == that.groups;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high ^ low) * 31 + groups;
+        }
+    }
+
+    /**
+     * First 128 bits of the SHA-256 over the group's ID and every column of its rows, in order
+     */
+    private static final class GroupHasher {
+
+        private final MessageDigest sha256;
+        private final ByteBuffer numbers = ByteBuffer.allocate(Long.BYTES);
+
+        GroupHasher() {
+            try {
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        long[] hash(TransactionId transactionId, List<TransactionDto> transactions) {
+            putString(transactionId.id());
+            putLong(transactions.size());
+            for (TransactionDto transaction : transactions) {
+                putString(transaction.getProfileName());
+                final ZonedDateTime date = transaction.getTransactionDate();
+                if (date == null) {
+                    putLong(-1);
+                } else {
+                    putLong(date.toEpochSecond());
+                    putLong(date.getNano());
+                    putString(date.getZone().getId());
+                }
+                final Double amount = transaction.getTransactionAmount();
+                putLong(amount == null ? 0 : 1);
+                putLong(amount == null ? 0 : Double.doubleToLongBits(amount));
+                // Text that is still encoded is hashed as it is, decoding every row would undo the lazy columns
+                final LazyColumn narrative = transaction.peekNarrativeColumn();
+                if (narrative != null) {
+                    putColumn(narrative);
+                } else {
+                    putString(transaction.getTransactionNarrative());
+                }
+                final LazyColumn description = transaction.peekDescriptionColumn();
+                if (description != null) {
+                    putColumn(description);
+                } else {
+                    putString(transaction.getTransactionDescription());
+                }
+                putLong(transaction.getTransactionType() == null ? -1 : transaction.getTransactionType().ordinal());
+                putString(transaction.getWalletReference());
+            }
+
+            final ByteBuffer digest = ByteBuffer.wrap(sha256.digest());
+            return new long[]{digest.getLong(), digest.getLong()};
+        }
+
+        // Length prefixed so neighbouring columns can't shift into each other
+        private void putString(String value) {
+            if (value == null) {
+                putLong(-1);
+                return;
+            }
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putLong(bytes.length);
+            sha256.update(bytes);
+        }
+
+        // Same bytes as putString of the decoded value
+        private void putColumn(LazyColumn column) {
+            putLong(column.length());
+            column.update(sha256);
+        }
+
+        private void putLong(long value) {
+            numbers.clear();
+            numbers.putLong(value);
+            sha256.update(numbers.array());
+        }
+    }
+}
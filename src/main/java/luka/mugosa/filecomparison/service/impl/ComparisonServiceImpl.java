@@ -1,8 +1,12 @@
 package luka.mugosa.filecomparison.service.impl;
 
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationStatisticsDto;
 import luka.mugosa.filecomparison.domain.dto.TransactionDto;
-import luka.mugosa.filecomparison.domain.dto.UnmatchedTransactionPairDto;
 import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.AlternateMatchKey;
+import luka.mugosa.filecomparison.domain.exception.ReconciliationInterruptedException;
 import luka.mugosa.filecomparison.domain.id.TransactionId;
 import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
 import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
@@ -12,13 +16,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 public class ComparisonServiceImpl implements ComparisonService {
@@ -26,87 +32,148 @@ public class ComparisonServiceImpl implements ComparisonService {
     private static final Logger logger = LoggerFactory.getLogger(ComparisonServiceImpl.class);
 
     private final ScoreService scoreService;
+    private final ReconciliationProperties.Matching matchingProperties;
+    private final ReconciliationMetrics metrics;
 
-    public ComparisonServiceImpl(ScoreService scoreService) {
+    public ComparisonServiceImpl(ScoreService scoreService, ReconciliationProperties properties, ReconciliationMetrics metrics) {
         this.scoreService = scoreService;
+        this.metrics = metrics;
+        this.matchingProperties = properties.getMatching();
     }
 
     public ReconciliationResponse compareData(List<TransactionDto> collection1, List<TransactionDto> collection2) {
+        return compareData(collection1, collection2, new ReconciliationAccumulator());
+    }
+
+    public ReconciliationResponse compareData(List<TransactionDto> collection1, List<TransactionDto> collection2,
+                                              ReconciliationAccumulator accumulator) {
         logger.info("Starting data comparison - Collection1: {} records, Collection2: {} records",
                 collection1.size(), collection2.size());
 
-        // Group by TransactionID
-        final Map<TransactionId, List<TransactionDto>> groupedTransactions1 = collection1.stream()
-                .collect(Collectors.groupingBy(TransactionDto::getTransactionID));
+        reconcileInto(collection1, collection2, accumulator);
 
-        final Map<TransactionId, List<TransactionDto>> groupedTransactions2 = collection2.stream()
-                .collect(Collectors.groupingBy(TransactionDto::getTransactionID));
+        return buildResponse(collection1.size(), collection2.size(), accumulator);
+    }
 
-        final int totalRecordsInFile1 = (int) groupedTransactions1.values().stream().mapToLong(Collection::size).sum();
-        final int totalRecordsInFile2 = (int) groupedTransactions2.values().stream().mapToLong(Collection::size).sum();
+    /**
+     * Adds the outcome of both collections to the accumulator without building a response,
+     * so the partitions of a large reconciliation can share one accumulator
+     */
+    void reconcileInto(List<TransactionDto> collection1, List<TransactionDto> collection2,
+                       ReconciliationAccumulator accumulator) {
+        // Group by TransactionID, rows without a usable ID are set aside for alternate key matching
+        final List<TransactionDto> blankIdTransactions1 = new ArrayList<>();
+        final List<TransactionDto> blankIdTransactions2 = new ArrayList<>();
+        final Map<TransactionId, List<TransactionDto>> groupedTransactions1 = groupByTransactionId(collection1, blankIdTransactions1);
+        final Map<TransactionId, List<TransactionDto>> groupedTransactions2 = groupByTransactionId(collection2, blankIdTransactions2);
 
         // Collections to track results
-        int matchedRecords = 0;
-        final List<TransactionDto> unmatchedFromFile1 = new ArrayList<>();
         final Set<TransactionId> processedFromFile2 = new HashSet<>();
-        final List<UnmatchedTransactionPairDto> unmatchedTransactionPairs = new ArrayList<>();
+        final Set<TransactionId> identicalGroups = findIdenticalGroups(groupedTransactions1, groupedTransactions2);
 
         // Process transactions from file 1 and compare with file 2
         for (Map.Entry<TransactionId, List<TransactionDto>> entry : groupedTransactions1.entrySet()) {
+            checkInterrupted();
             final TransactionId transactionId = entry.getKey();
             final List<TransactionDto> transactionDtos1 = entry.getValue();
 
-            if (groupedTransactions2.containsKey(transactionId)) {
+            if (identicalGroups.contains(transactionId)) {
+                // Same rows on both sides, every pair would score itself HIGH
+                processedFromFile2.add(transactionId);
+                accumulator.matched(transactionDtos1.size());
+            } else if (groupedTransactions2.containsKey(transactionId)) {
                 final List<TransactionDto> transactionDtos2 = groupedTransactions2.get(transactionId);
                 processedFromFile2.add(transactionId);
 
                 if (transactionDtos1.size() != transactionDtos2.size()) {
-                    unmatchedFromFile1.addAll(transactionDtos1);
-                    transactionDtos1.forEach(dto1 -> unmatchedTransactionPairs.add(new UnmatchedTransactionPairDto(dto1, null)));
+                    transactionDtos1.forEach(dto1 -> accumulator.unmatchedFromFile1(dto1, null, null));
                 } else {
                     for (int i = 0; i < transactionDtos1.size(); i++) {
                         final TransactionDto dto1 = transactionDtos1.get(i);
                         final TransactionDto dto2 = transactionDtos2.get(i);
 
-                        final MatchScore matchScore = scoreService.calculateScore(dto1, dto2);
-
-                        // we can tune this by requirement, my opinion is that it should be like this
-                        if (matchScore.confidence() == MatchConfidence.HIGH) {
-                            matchedRecords++;
-                            logger.debug("Exact match found: ID={}, Score={}", transactionId, matchScore.totalScore());
-                        } else {
-                            // Low confidence match - treat as an unmatched pair
-                            unmatchedFromFile1.add(dto1);
-                            unmatchedTransactionPairs.add(new UnmatchedTransactionPairDto(dto1, dto2));
-                            logger.debug("Match rejected (low confidence): ID={}, Score={}, Confidence={}",
-                                    transactionId, matchScore.totalScore(), matchScore.confidence());
-                        }
+                        final MatchScore matchScore = scoreService.calculateDecisiveScore(dto1, dto2);
+                        accumulator.pairScored();
+                        recordScoredPair(dto1, dto2, matchScore, accumulator);
                     }
                 }
             } else {
                 // No matching ID found in file 2
-                transactionDtos1.forEach(dto1 -> {
-                    unmatchedFromFile1.add(dto1);
-                    unmatchedTransactionPairs.add(new UnmatchedTransactionPairDto(dto1, null));
-                });
+                transactionDtos1.forEach(dto1 -> accumulator.unmatchedFromFile1(dto1, null, null));
             }
         }
 
-        // Find unmatched transactions from file 2 (those not processed above)
-        final List<TransactionDto> unmatchedFromFile2 = groupedTransactions2.entrySet().stream()
+        // Blank IDs are paired through the alternate key indexes
+        final List<TransactionDto> unmatchedBlankIdFromFile2 = matchByAlternateKeys(blankIdTransactions1, blankIdTransactions2, accumulator);
+
+        // Add file2-only unmatched transactions (those not processed above)
+        groupedTransactions2.entrySet().stream()
                 .filter(entry -> !processedFromFile2.contains(entry.getKey()))
                 .flatMap(entry -> entry.getValue().stream())
-                .toList();
+                .forEach(accumulator::unmatchedFromFile2);
+        unmatchedBlankIdFromFile2.forEach(accumulator::unmatchedFromFile2);
+    }
+
+    /**
+     * Groups in date buckets whose digests are equal in both files, they are counted as matched without scoring.
+     * Groups with a row that wouldn't match an identical copy of itself are left to the scoring.
+     */
+    private Set<TransactionId> findIdenticalGroups(final Map<TransactionId, List<TransactionDto>> groupedTransactions1,
+                                                   final Map<TransactionId, List<TransactionDto>> groupedTransactions2) {
+        if (!matchingProperties.isSkipIdenticalDateBuckets() || groupedTransactions1.isEmpty() || groupedTransactions2.isEmpty()) {
+            return Set.of();
+        }
 
-        // Add file2-only unmatched transactions
-        unmatchedTransactionPairs.addAll(
-                unmatchedFromFile2.stream()
-                        .map(t -> new UnmatchedTransactionPairDto(null, t))
-                        .toList()
-        );
+        final long startTime = System.currentTimeMillis();
+        final BucketDigestTree tree1 = BucketDigestTree.build(groupedTransactions1);
+        final BucketDigestTree tree2 = BucketDigestTree.build(groupedTransactions2);
+        final Set<TransactionId> identicalGroups = tree1.identicalGroups(tree2);
+        identicalGroups.removeIf(transactionId -> !groupedTransactions1.get(transactionId).stream()
+                .allMatch(scoreService::matchesIdenticalCopy));
 
-        final int unmatchedRecordsInFile1 = unmatchedFromFile1.size();
-        final int unmatchedRecordsInFile2 = unmatchedFromFile2.size();
+        logger.info("Bucket digests over {} and {} days - {} of {} ID groups identical in both files, found in {}ms",
+                tree1.getDayCount(), tree2.getDayCount(), identicalGroups.size(), groupedTransactions1.size(),
+                System.currentTimeMillis() - startTime);
+        return identicalGroups;
+    }
+
+    public SymmetricHashJoin newSymmetricHashJoin(ReconciliationProgress progress) {
+        return new SymmetricHashJoin(scoreService, this, progress);
+    }
+
+    public ReferenceProbeJoin newReferenceProbeJoin(PreparedReference reference, ReconciliationProgress progress) {
+        return new ReferenceProbeJoin(scoreService, this, progress, reference);
+    }
+
+    public MultiSourceJoin newMultiSourceJoin(List<String> filenames) {
+        return new MultiSourceJoin(scoreService, this, filenames);
+    }
+
+    public IncrementalReconciliation newIncrementalReconciliation(String id, Instant createdAt) {
+        return new IncrementalReconciliation(scoreService, this, id, createdAt);
+    }
+
+    // Lets a cancelled job stop in the comparison phase as well, not only while parsing
+    void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new ReconciliationInterruptedException("Comparison interrupted");
+        }
+    }
+
+    void recordScoredPair(final TransactionDto dto1, final TransactionDto dto2, final MatchScore matchScore,
+                          final ReconciliationAccumulator accumulator) {
+        // Only a HIGH confidence pair is a match, the accumulator counts every pair by its confidence for the summary
+        if (matchScore.confidence() == MatchConfidence.HIGH) {
+            accumulator.matched();
+        } else {
+            // Low confidence match - treat as an unmatched pair
+            accumulator.unmatchedFromFile1(dto1, dto2, matchScore);
+        }
+    }
+
+    ReconciliationResponse buildResponse(final int totalRecordsInFile1, final int totalRecordsInFile2,
+                                         final ReconciliationAccumulator accumulator) {
+        final int matchedRecords = accumulator.getMatchedRecords();
 
         // Calculate match percentage
         final double matchPercentage = totalRecordsInFile1 > 0 ?
@@ -116,8 +183,12 @@ public class ComparisonServiceImpl implements ComparisonService {
         logger.info("File1 total records: {}", totalRecordsInFile1);
         logger.info("File2 total records: {}", totalRecordsInFile2);
         logger.info("Matched records: {} ({}%)", matchedRecords, matchPercentage);
-        logger.info("Total unmatched pairs: {}", unmatchedTransactionPairs.size());
+        logger.info("Total unmatched pairs: {}",
+                accumulator.getUnmatchedRecordsInFile1() + accumulator.getUnmatchedRecordsInFile2());
+        final Map<MatchConfidence, Integer> pairsByConfidence = accumulator.getPairsByConfidence();
+        logger.info("Pairs by confidence: {}", pairsByConfidence);
         logger.info("==============================");
+        metrics.compared(accumulator.getPairsScored(), pairsByConfidence);
 
         if (matchPercentage < 50.0) {
             logger.warn("Low match rate detected: {}% - Review reconciliation criteria", matchPercentage);
@@ -127,11 +198,73 @@ public class ComparisonServiceImpl implements ComparisonService {
                 .totalRecordsInFile1(totalRecordsInFile1)
                 .totalRecordsInFile2(totalRecordsInFile2)
                 .matchedRecords(matchedRecords)
-                .unmatchedRecordsInFile1(unmatchedRecordsInFile1)
-                .unmatchedRecordsInFile2(unmatchedRecordsInFile2)
+                .unmatchedRecordsInFile1(accumulator.getUnmatchedRecordsInFile1())
+                .unmatchedRecordsInFile2(accumulator.getUnmatchedRecordsInFile2())
                 .matchPercentage(matchPercentage)
-                .unmatchedTransactionPairs(unmatchedTransactionPairs)
+                .unmatchedTransactionPairs(accumulator.getUnmatchedTransactionPairs())
+                .statistics(new ReconciliationStatisticsDto(null, null, pairsByConfidence))
                 .build();
     }
 
+    private Map<TransactionId, List<TransactionDto>> groupByTransactionId(final List<TransactionDto> transactions,
+                                                                         final List<TransactionDto> blankIdTransactions) {
+        final Map<TransactionId, List<TransactionDto>> grouped = new HashMap<>();
+        for (TransactionDto transaction : transactions) {
+            if (TransactionId.isBlank(transaction.getTransactionID())) {
+                blankIdTransactions.add(transaction);
+            } else {
+                grouped.computeIfAbsent(transaction.getTransactionID(), id -> new ArrayList<>()).add(transaction);
+            }
+        }
+        return grouped;
+    }
+
+    /**
+     * Pairs rows without a usable TransactionID using the configured alternate keys, in order.
+     * Each key gets its own hash index over the file 2 rows still unmatched, a candidate is only taken when its full
+     * score reaches the configured minimum. Blank IDs add nothing to that score, so the confidence levels don't apply.
+     * Unpaired file 1 rows go to the accumulator, unpaired file 2 rows are returned to the caller.
+     */
+    List<TransactionDto> matchByAlternateKeys(final List<TransactionDto> blankIdTransactions1,
+                                              final List<TransactionDto> blankIdTransactions2,
+                                              final ReconciliationAccumulator accumulator) {
+        List<TransactionDto> remaining1 = blankIdTransactions1;
+        final Set<TransactionDto> matchedFromFile2 = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (AlternateMatchKey matchKey : matchingProperties.getAlternateKeys()) {
+            if (remaining1.isEmpty() || matchedFromFile2.size() == blankIdTransactions2.size()) {
+                break;
+            }
+
+            final CompositeKeyIndex index = new CompositeKeyIndex(matchKey, matchingProperties.getDateWindowDays());
+            blankIdTransactions2.stream()
+                    .filter(dto2 -> !matchedFromFile2.contains(dto2))
+                    .forEach(index::add);
+
+            final List<TransactionDto> stillUnmatched = new ArrayList<>();
+            for (TransactionDto dto1 : remaining1) {
+                final TransactionDto dto2 = index.takeMatch(dto1, candidate -> {
+                    accumulator.pairScored();
+                    return scoreService.calculateScore(dto1, candidate).totalScore()
+                            >= matchingProperties.getAlternateKeyMinScore();
+                });
+                if (dto2 != null) {
+                    matchedFromFile2.add(dto2);
+                    accumulator.matched();
+                } else {
+                    stillUnmatched.add(dto1);
+                }
+            }
+
+            logger.debug("Alternate key {} matched {} of {} blank ID rows",
+                    matchKey, remaining1.size() - stillUnmatched.size(), remaining1.size());
+            remaining1 = stillUnmatched;
+        }
+
+        remaining1.forEach(dto1 -> accumulator.unmatchedFromFile1(dto1, null, null));
+
+        return blankIdTransactions2.stream()
+                .filter(dto2 -> !matchedFromFile2.contains(dto2))
+                .toList();
+    }
 }
@@ -0,0 +1,99 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.enumeration.AlternateMatchKey;
+import luka.mugosa.filecomparison.domain.id.CompositeMatchKey;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Hash index over one alternate key, used to pair rows that have no usable TransactionID.
+ * Date window keys are indexed by exact day and probed for every day inside the window, closest first.
+ */
+public class CompositeKeyIndex {
+
+    private final AlternateMatchKey matchKey;
+    private final int dateWindowDays;
+    private final Map<CompositeMatchKey, List<TransactionDto>> index = new HashMap<>();
+
+    public CompositeKeyIndex(AlternateMatchKey matchKey, int dateWindowDays) {
+        this.matchKey = matchKey;
+        this.dateWindowDays = matchKey.isDateWindow() ? Math.max(0, dateWindowDays) : 0;
+    }
+
+    /**
+     * Indexes the transaction, returns false when it lacks one of the key fields
+     */
+    public boolean add(TransactionDto transaction) {
+        final CompositeMatchKey key = keyOf(transaction, 0);
+        if (key == null) {
+            return false;
+        }
+        index.computeIfAbsent(key, k -> new ArrayList<>()).add(transaction);
+        return true;
+    }
+
+    /**
+     * Returns and removes the first candidate accepted by the predicate, or null if there is none
+     */
+    public TransactionDto takeMatch(TransactionDto probe, Predicate<TransactionDto> accept) {
+        for (int distance = 0; distance <= dateWindowDays; distance++) {
+            TransactionDto match = takeMatch(keyOf(probe, -distance), accept);
+            if (match == null && distance > 0) {
+                match = takeMatch(keyOf(probe, distance), accept);
+            }
+            if (match != null) {
+                return match;
+            }
+        }
+        return null;
+    }
+
+    private TransactionDto takeMatch(CompositeMatchKey key, Predicate<TransactionDto> accept) {
+        if (key == null) {
+            return null;
+        }
+
+        final List<TransactionDto> candidates = index.get(key);
+        if (candidates == null) {
+            return null;
+        }
+
+        final Iterator<TransactionDto> iterator = candidates.iterator();
+        while (iterator.hasNext()) {
+            final TransactionDto candidate = iterator.next();
+            if (accept.test(candidate)) {
+                iterator.remove();
+                if (candidates.isEmpty()) {
+                    index.remove(key);
+                }
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private CompositeMatchKey keyOf(TransactionDto transaction, int dayOffset) {
+        if (transaction.getTransactionAmount() == null || transaction.getTransactionDate() == null) {
+            return null;
+        }
+
+        final String reference = switch (matchKey) {
+            case WALLET_REFERENCE_AMOUNT_DATE -> transaction.getWalletReference();
+            case PROFILE_NAME_AMOUNT_DATE, PROFILE_NAME_AMOUNT_DATE_WINDOW -> transaction.getProfileName();
+        };
+
+        if (reference == null || reference.isBlank()) {
+            return null;
+        }
+
+        final LocalDate date = transaction.getTransactionDate().toLocalDate().plusDays(dayOffset);
+        return new CompositeMatchKey(reference.trim(), transaction.getTransactionAmount(), date);
+    }
+}
@@ -0,0 +1,177 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.constant.TransactionConstants;
+import luka.mugosa.filecomparison.domain.exception.EmptyFileException;
+import luka.mugosa.filecomparison.domain.exception.MissingHeaderException;
+import luka.mugosa.filecomparison.domain.exception.ReconciliationInterruptedException;
+import luka.mugosa.filecomparison.service.csv.CompressedInput;
+import luka.mugosa.filecomparison.service.csv.CsvRow;
+import luka.mugosa.filecomparison.service.csv.CsvRowReader;
+import luka.mugosa.filecomparison.service.csv.ParseReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Both files split into temp CSV files by TransactionID hash, so every ID lands in the same partition on both sides
+ * and each partition can be reconciled on its own. Rows without an ID are spread by their amount instead, every
+ * alternate key requires equal amounts, so rows that could pair by an alternate key still end up together.
+ * Next to every partition file the original line number of each of its rows is kept, so parse errors point
+ * into the upload and not into the partition.
+ */
+class DiskPartitions implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskPartitions.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final int partitions;
+    private final long maxDecodedBytes;
+
+    private DiskPartitions(Path directory, int partitions, long maxDecodedBytes) {
+        this.directory = directory;
+        this.partitions = partitions;
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    /**
+     * maxDecodedBytes bounds what one compressed file may decompress to on disk
+     */
+    static DiskPartitions create(int partitions, long maxDecodedBytes) throws IOException {
+        return new DiskPartitions(Files.createTempDirectory("reconciliation-partitions-"), partitions, maxDecodedBytes);
+    }
+
+    int count() {
+        return partitions;
+    }
+
+    Path path(int side, int partition) {
+        return directory.resolve("file" + side + "-" + partition + ".csv");
+    }
+
+    // One int per row of the partition file, in the same order
+    Path lineNumbersPath(int side, int partition) {
+        return directory.resolve("file" + side + "-" + partition + ".lines");
+    }
+
+    /**
+     * Copies the rows of the file into its partitions, every partition starts with the original header.
+     * Blank lines are left out and counted as skipped in the file's report. Returns the number of rows written.
+     */
+    long write(MultipartFile file, int side, ParseReport report) throws IOException {
+        return write(file.getOriginalFilename(), CompressedInput.open(file.getInputStream(), file.getContentType(), maxDecodedBytes), side, report);
+    }
+
+    long write(String filename, InputStream inputStream, int side, ParseReport report) throws IOException {
+        final OutputStream[] outputs = new OutputStream[count()];
+        final DataOutputStream[] lineNumbers = new DataOutputStream[count()];
+        try (final CsvRowReader reader = new CsvRowReader(CompressedInput.open(inputStream, null, maxDecodedBytes))) {
+            final byte[] headerRow = reader.readRow();
+            if (headerRow == null) {
+                throw new EmptyFileException("CSV file is empty");
+            }
+            final String[] headers = new String(headerRow, StandardCharsets.UTF_8).split(",");
+            final int idColumn = columnOf(headers, TransactionConstants.HEADER_TRANSACTION_ID);
+            final int amountColumn = columnOf(headers, TransactionConstants.HEADER_TRANSACTION_AMOUNT);
+
+            for (int partition = 0; partition < outputs.length; partition++) {
+                outputs[partition] = new BufferedOutputStream(Files.newOutputStream(path(side, partition)), BUFFER_SIZE);
+                lineNumbers[partition] = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(lineNumbersPath(side, partition)), BUFFER_SIZE));
+                writeRow(outputs[partition], headerRow);
+            }
+
+            long rows = 0;
+            int lineNumber = 1;
+            byte[] row;
+            while ((row = reader.readRow()) != null) {
+                lineNumber++;
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new ReconciliationInterruptedException("Partitioning interrupted after " + rows + " rows");
+                }
+
+                final CsvRow csvRow = CsvRow.split(row, headers.length);
+                if (csvRow.isBlank()) {
+                    report.rowSkipped();
+                    continue;
+                }
+                final int partition = partitionOf(csvRow, idColumn, amountColumn);
+                writeRow(outputs[partition], row);
+                lineNumbers[partition].writeInt(lineNumber);
+                rows++;
+            }
+
+            logger.info("Partitioned '{}' into {} files - Rows: {}", filename, outputs.length, rows);
+            return rows;
+        } finally {
+            closeAll(outputs);
+            closeAll(lineNumbers);
+        }
+    }
+
+    // Same raw value the parser turns into the TransactionId, so equal IDs hash alike
+    private int partitionOf(CsvRow csvRow, int idColumn, int amountColumn) {
+        final String id = idColumn < csvRow.columnCount() ? csvRow.value(idColumn) : null;
+        if (id == null || id.isBlank()) {
+            return Math.floorMod(amountHash(csvRow, amountColumn), partitions);
+        }
+        return Math.floorMod(id.hashCode(), partitions);
+    }
+
+    // Hash of the parsed amount, so -500 and -500.00 stay together. A row without a readable amount never pairs by
+    // an alternate key, any partition will do for it.
+    private static int amountHash(CsvRow csvRow, int amountColumn) {
+        final String amount = amountColumn < csvRow.columnCount() ? csvRow.value(amountColumn) : null;
+        if (amount != null && !amount.isBlank()) {
+            try {
+                return Double.valueOf(amount).hashCode();
+            } catch (NumberFormatException e) {
+                // falls through to the row hash
+            }
+        }
+        return Arrays.hashCode(csvRow.bytes());
+    }
+
+    private static int columnOf(String[] headers, String header) {
+        for (int i = 0; i < headers.length; i++) {
+            if (header.equals(headers[i].trim())) {
+                return i;
+            }
+        }
+        throw new MissingHeaderException(header);
+    }
+
+    private static void closeAll(OutputStream[] outputs) throws IOException {
+        for (OutputStream output : outputs) {
+            if (output != null) {
+                output.close();
+            }
+        }
+    }
+
+    private static void writeRow(OutputStream output, byte[] row) throws IOException {
+        output.write(row);
+        output.write('\n');
+    }
+
+    @Override
+    public void close() {
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            logger.warn("Could not delete partition directory {}: {}", directory, e.getMessage());
+        }
+    }
+}
@@ -1,54 +1,108 @@
 package luka.mugosa.filecomparison.service.impl;
 
+import io.micrometer.core.instrument.Timer;
+import luka.mugosa.filecomparison.config.ReconciliationExecutors;
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
 import luka.mugosa.filecomparison.constant.TransactionConstants;
+import luka.mugosa.filecomparison.domain.dto.FileValidationDto;
+import luka.mugosa.filecomparison.domain.dto.LazyColumn;
+import luka.mugosa.filecomparison.domain.dto.ParseStatisticsDto;
+import luka.mugosa.filecomparison.domain.dto.RowErrorDto;
 import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.enumeration.RowErrorReason;
 import luka.mugosa.filecomparison.domain.enumeration.TransactionType;
 import luka.mugosa.filecomparison.domain.exception.EmptyFileException;
+import luka.mugosa.filecomparison.domain.exception.ErrorBudgetExceededException;
 import luka.mugosa.filecomparison.domain.exception.FileParsingException;
 import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
+import luka.mugosa.filecomparison.domain.exception.FileValidationException;
 import luka.mugosa.filecomparison.domain.exception.InvalidHeaderException;
 import luka.mugosa.filecomparison.domain.exception.LineParsingException;
 import luka.mugosa.filecomparison.domain.exception.MissingHeaderException;
+import luka.mugosa.filecomparison.domain.exception.ReconciliationInterruptedException;
 import luka.mugosa.filecomparison.domain.exception.TransactionDataParsingException;
 import luka.mugosa.filecomparison.domain.id.TransactionId;
 import luka.mugosa.filecomparison.service.FileService;
+import luka.mugosa.filecomparison.service.csv.CompressedInput;
+import luka.mugosa.filecomparison.service.csv.CsvRow;
+import luka.mugosa.filecomparison.service.csv.CsvRowReader;
+import luka.mugosa.filecomparison.service.csv.CsvStructureScanner;
+import luka.mugosa.filecomparison.service.csv.ParseReport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.ZipException;
 
 @Service
 public class FileServiceImpl implements FileService {
 
     private static final char CSV_SEPARATOR = ',';
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final Logger logger = LoggerFactory.getLogger(FileServiceImpl.class);
 
-    private static final Executor VIRTUAL_THREAD_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReconciliationExecutors executors;
+    private final DataSize maxFileSize;
+    private final ParsedFileCache parsedFileCache;
+    private final TransactionSnapshotStore snapshotStore;
+    private final ReconciliationProperties.Validation validationProperties;
+    private final ReconciliationProperties.Parsing parsingProperties;
+    private final ReconciliationMetrics metrics;
+
+    public FileServiceImpl(ReconciliationExecutors executors, ReconciliationProperties properties,
+                           ParsedFileCache parsedFileCache, TransactionSnapshotStore snapshotStore,
+                           ReconciliationMetrics metrics) {
+        this.executors = executors;
+        this.metrics = metrics;
+        this.parsedFileCache = parsedFileCache;
+        this.snapshotStore = snapshotStore;
+        this.maxFileSize = properties.getLargeFiles().getMaxFileSize();
+        this.validationProperties = properties.getValidation();
+        this.parsingProperties = properties.getParsing();
+    }
 
     public List<TransactionDto> parseFile(final String path) {
         logger.info("Starting file parsing for path: {}", path);
         final long startTime = System.currentTimeMillis();
 
+        // An unchanged CSV is loaded from its snapshot, a new or changed one gets a fresh snapshot after parsing
+        final Path csv = Path.of(path);
+        final TransactionSnapshotStore.SourceStamp stamp = snapshotStore.stamp(csv);
+        final List<TransactionDto> snapshot = snapshotStore.loadForFile(csv, stamp);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
         try {
             final List<TransactionDto> result = parseTransactionsCsv(path);
+            snapshotStore.storeForFile(csv, stamp, result);
             final long duration = System.currentTimeMillis() - startTime;
             logger.info("Successfully parsed file: {} with {} transactions in {}ms",
                     path, result.size(), duration);
@@ -63,25 +117,74 @@ public class FileServiceImpl implements FileService {
     public List<TransactionDto> parseTransactionsCsv(final String filePath) {
         logger.debug("Opening file for parsing: {}", filePath);
 
-        try (final BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+        try (final CsvRowReader reader = new CsvRowReader(
+                CompressedInput.open(new FileInputStream(filePath), null, maxFileSize.toBytes()))) {
             logger.debug("File successfully opened, starting transaction parsing");
-            return readTransactionRows(reader);
+            final List<TransactionDto> transactions = new ArrayList<>();
+            readTransactionRows(reader, null, newParseReport(filePath), null, transactions::add);
+            return transactions;
         } catch (IOException e) {
             logger.error("IO error while reading file: {}", filePath, e);
             throw new FileProcessingException("Failed to read file: " + filePath, e);
         }
     }
 
-    private List<TransactionDto> readTransactionRows(final BufferedReader reader) throws IOException {
+    /**
+     * One partition of a larger file. Its rows are numbered by the line numbers written next to it and counted in
+     * the report of the whole file, so the error budget and the reported lines are those of the upload.
+     */
+    public List<TransactionDto> parsePartitionCsv(final String filePath, final String lineNumbersPath,
+                                                  final ParseReport report) {
+        try (final CsvRowReader reader = new CsvRowReader(new FileInputStream(filePath));
+             final DataInputStream lineNumbers = new DataInputStream(new BufferedInputStream(new FileInputStream(lineNumbersPath)))) {
+            final List<TransactionDto> transactions = new ArrayList<>();
+            readTransactionRows(reader, null, report, lineNumbers::readInt, transactions::add);
+            return transactions;
+        } catch (IOException e) {
+            logger.error("IO error while reading partition: {}", filePath, e);
+            throw new FileProcessingException("Failed to read file: " + filePath, e);
+        }
+    }
+
+    /**
+     * Counters of one file's parse, lenient when an error budget is configured
+     */
+    public ParseReport newParseReport(final String filename) {
+        return new ParseReport(filename, parsingProperties.getErrorBudget(), parsingProperties.getMaxReportedErrors());
+    }
+
+    // Every parse of a file ends up here, cache and snapshot hits don't. Only what this parse added to the report is
+    // recorded, the partitions of one file share it
+    private int readTransactionRows(final CsvRowReader reader, final Predicate<String> transactionIdFilter,
+                                    final ParseReport report, final LineNumbers lineNumbers,
+                                    final Consumer<TransactionDto> sink) throws IOException {
+        final Timer.Sample sample = metrics.start();
+        final ParseStatisticsDto before = report.toStatisticsDto();
+        boolean succeeded = false;
+        try {
+            final int parsedRows = readRows(reader, transactionIdFilter, report, lineNumbers, sink);
+            succeeded = true;
+            return parsedRows;
+        } finally {
+            metrics.parsed(sample, succeeded, report.toStatisticsDto().since(before));
+        }
+    }
+
+    // Rows are handed to the sink as soon as they are parsed, so the consumer can work while the rest is still read.
+    // A row whose raw TransactionID fails the filter is dropped before the rest of it is parsed, null keeps every row.
+    // Without line numbers the rows are numbered in the order they are read
+    private int readRows(final CsvRowReader reader, final Predicate<String> transactionIdFilter,
+                         final ParseReport report, final LineNumbers lineNumbers,
+                         final Consumer<TransactionDto> sink) throws IOException {
         logger.debug("Starting to read transaction rows from CSV");
-        final List<TransactionDto> transactions = new ArrayList<>();
 
-        final String headerLine = reader.readLine();
-        if (headerLine == null) {
+        final byte[] headerRow = reader.readRow();
+        if (headerRow == null) {
             logger.warn("CSV file is empty - no header line found");
             throw new EmptyFileException("CSV file is empty");
         }
 
+        final String headerLine = new String(headerRow, StandardCharsets.UTF_8);
         logger.debug("Header line read: {}", headerLine);
 
         final Map<String, Integer> headerMap = parseHeaders(headerLine);
@@ -90,169 +193,304 @@ public class FileServiceImpl implements FileService {
         validateRequiredHeaders(headerMap);
         logger.debug("Header validation completed successfully");
 
-        String line;
+        // The reader stays on this (I/O) thread, chunks of raw rows are parsed on the CPU pool one after another,
+        // which keeps the sink single-threaded and in file order while the next chunk is being read
+        final ChunkParser parser = new ChunkParser(headerMap, transactionIdFilter, report, sink);
+        report.markParsed();
+        final int chunkRows = executors.getParseChunkRows();
+
+        byte[] row;
+        int rowsRead = 0;
         int lineNumber = 1;
-        int processedLines = 0;
-        int skippedLines = 0;
+        List<byte[]> chunk = new ArrayList<>(chunkRows);
+        int[] chunkLines = new int[chunkRows];
+        ForkJoinTask<?> chunkInFlight = null;
+
+        while ((row = reader.readRow()) != null) {
+            rowsRead++;
+            lineNumber = lineNumbers != null ? lineNumbers.next() : lineNumber + 1;
+
+            // Checked per row so a cancelled request stops reading and parsing right away
+            if (Thread.currentThread().isInterrupted()) {
+                parser.cancel();
+                logger.info("Parsing interrupted at line {} after {} transactions", lineNumber, report.getProcessedRows());
+                throw new ReconciliationInterruptedException("Parsing interrupted at line " + lineNumber);
+            }
+
+            chunkLines[chunk.size()] = lineNumber;
+            chunk.add(row);
+            if (chunk.size() == chunkRows) {
+                awaitChunk(chunkInFlight, parser);
+                chunkInFlight = submitChunk(parser, chunk, chunkLines);
+                chunk = new ArrayList<>(chunkRows);
+                chunkLines = new int[chunkRows];
+            }
+        }
+
+        awaitChunk(chunkInFlight, parser);
+        if (!chunk.isEmpty()) {
+            awaitChunk(submitChunk(parser, chunk, chunkLines), parser);
+        }
 
-        while ((line = reader.readLine()) != null) {
-            lineNumber++;
+        report.rowsRead(reader.position());
 
-            if (line.trim().isEmpty()) {
-                logger.debug("Skipping empty line at line number: {}", lineNumber);
-                skippedLines++;
-                continue;
+        // One summary instead of a log line per row
+        logger.info("CSV parsing completed - {} lines, {}", rowsRead, report.toStatisticsDto());
+        if (report.getFlaggedRows() > 0) {
+            logger.warn("{} rows had bad values, read as empty fields - {}",
+                    report.getFlaggedRows(), report.toErrorsDto().errorCounts());
+        }
+
+        return report.getProcessedRows();
+    }
+
+    private ForkJoinTask<?> submitChunk(final ChunkParser parser, final List<byte[]> chunk, final int[] lines) {
+        return executors.getCpuPool().submit(() -> parser.parse(chunk, lines));
+    }
+
+    // Original line of each row read, for a file that is only a part of the upload
+    @FunctionalInterface
+    private interface LineNumbers {
+        int next() throws IOException;
+    }
+
+    private void awaitChunk(final ForkJoinTask<?> chunkTask, final ChunkParser parser) {
+        if (chunkTask == null) {
+            return;
+        }
+        try {
+            chunkTask.get();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+        } catch (InterruptedException e) {
+            parser.cancel();
+            Thread.currentThread().interrupt();
+            throw new ReconciliationInterruptedException(
+                    "Parsing interrupted after " + parser.report.getProcessedRows() + " transactions");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
             }
+            throw new FileProcessingException("Parsing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Parses chunks of raw rows into transactions. Chunks of one file never run concurrently,
+     * the task hand-off orders the counter updates.
+     */
+    private final class ChunkParser {
+
+        private final Map<String, Integer> headerMap;
+        private final Predicate<String> transactionIdFilter;
+        private final ParseReport report;
+        private final Consumer<TransactionDto> sink;
+        private final String[] columnNames;
+        private final int dateColumn;
+        private final int amountColumn;
+        private final int typeColumn;
+        private volatile boolean cancelled;
+
+        private ChunkParser(Map<String, Integer> headerMap, Predicate<String> transactionIdFilter, ParseReport report,
+                            Consumer<TransactionDto> sink) {
+            this.headerMap = headerMap;
+            this.transactionIdFilter = transactionIdFilter;
+            this.report = report;
+            this.sink = sink;
+            this.columnNames = new String[headerMap.size()];
+            headerMap.forEach((name, index) -> columnNames[index] = name);
+            this.dateColumn = headerMap.get(TransactionConstants.HEADER_TRANSACTION_DATE);
+            this.amountColumn = headerMap.get(TransactionConstants.HEADER_TRANSACTION_AMOUNT);
+            this.typeColumn = headerMap.get(TransactionConstants.HEADER_TRANSACTION_TYPE);
+        }
+
+        private void cancel() {
+            cancelled = true;
+        }
 
-            try {
-                final TransactionDto transaction = parseTransactionLine(line, headerMap);
-                transactions.add(transaction);
-                processedLines++;
+        private void parse(final List<byte[]> rows, final int[] lines) {
+            for (int i = 0; i < rows.size(); i++) {
+                final int lineNumber = lines[i];
+                if (cancelled) {
+                    throw new ReconciliationInterruptedException("Parsing interrupted at line " + lineNumber);
+                }
 
-                if (processedLines % 1000 == 0) {
-                    logger.info("Processed {} transactions so far...", processedLines);
+                final CsvRow csvRow = CsvRow.split(rows.get(i), headerMap.size());
+                if (csvRow.isBlank()) {
+                    report.rowSkipped();
+                    continue;
                 }
 
-                logger.trace("Successfully parsed transaction at line {}: ID={}",
-                        lineNumber, transaction.getTransactionID());
-
-            } catch (FileParsingException e) {
-                logger.error("Parsing error at line {}: {} - Line content: '{}'",
-                        lineNumber, e.getMessage(), line);
-                throw new LineParsingException(lineNumber, e.getMessage(), line, e);
-            } catch (Exception e) {
-                logger.error("Unexpected error at line {}: {} - Line content: '{}'",
-                        lineNumber, e.getMessage(), line, e);
-                throw new LineParsingException(lineNumber, "Unexpected parsing error", line, e);
+                try {
+                    if (transactionIdFilter != null && !transactionIdFilter.test(
+                            getValueByHeader(TransactionConstants.HEADER_TRANSACTION_ID, csvRow, headerMap))) {
+                        report.rowFiltered();
+                        continue;
+                    }
+
+                    final TransactionDto transaction = report.isLenient()
+                            ? parseCheckedLine(csvRow, lineNumber)
+                            : parseTransactionLine(csvRow, headerMap);
+                    sink.accept(transaction);
+                    report.rowParsed(transaction);
+                } catch (ErrorBudgetExceededException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (!report.isLenient()) {
+                        throw lineParsingException(lineNumber, csvRow, e);
+                    }
+                    report.rowFailed(lineNumber);
+                }
             }
         }
 
-        logger.info("CSV parsing completed - Total lines processed: {}, Successful: {}, Skipped: {}",
-                lineNumber - 1, processedLines, skippedLines);
-        logger.info("Total unique transactions parsed: {}", transactions.size());
+        /**
+         * Lenient mode: each value is checked on its bytes first, a bad one is flagged in the report and read as
+         * missing, the way the strict parser reads it, without an exception or a log line per row
+         */
+        private TransactionDto parseCheckedLine(final CsvRow row, final int lineNumber) {
+            if (row.presentColumns() < row.columnCount()) {
+                report.flag(lineNumber, columnNames[row.presentColumns()], RowErrorReason.MISSING_COLUMNS);
+            }
+            final byte[] bytes = row.bytes();
 
-        return transactions;
-    }
+            ZonedDateTime transactionDate = null;
+            if (row.length(dateColumn) > 0) {
+                if (CsvStructureScanner.isValidDate(bytes, row.start(dateColumn), row.length(dateColumn))) {
+                    transactionDate = toDateTime(row.value(dateColumn));
+                }
+                if (transactionDate == null) {
+                    report.flag(lineNumber, columnNames[dateColumn], RowErrorReason.INVALID_DATE);
+                }
+            }
 
-    private TransactionDto parseTransactionLine(final String line, final Map<String, Integer> headerMap) {
-        logger.trace("Parsing transaction line: {}", line);
+            Double transactionAmount = null;
+            if (row.length(amountColumn) > 0) {
+                if (CsvStructureScanner.isValidAmount(bytes, row.start(amountColumn), row.length(amountColumn))) {
+                    transactionAmount = Double.parseDouble(row.value(amountColumn));
+                } else {
+                    report.flag(lineNumber, columnNames[amountColumn], RowErrorReason.INVALID_AMOUNT);
+                }
+            }
+
+            TransactionType transactionType = null;
+            if (row.length(typeColumn) > 0) {
+                if (CsvStructureScanner.isValidType(bytes, row.start(typeColumn), row.length(typeColumn))) {
+                    transactionType = bytes[row.start(typeColumn)] == '0' ? TransactionType.TYPE_1 : TransactionType.TYPE_2;
+                } else {
+                    report.flag(lineNumber, columnNames[typeColumn], RowErrorReason.INVALID_TRANSACTION_TYPE);
+                }
+            }
+
+            return TransactionDto.withLazyText(
+                    getValueByHeader(TransactionConstants.HEADER_PROFILE_NAME, row, headerMap),
+                    transactionDate, transactionAmount,
+                    row.lazyValue(getColumnIndex(TransactionConstants.HEADER_TRANSACTION_NARRATIVE, row, headerMap)),
+                    row.lazyValue(getColumnIndex(TransactionConstants.HEADER_TRANSACTION_DESCRIPTION, row, headerMap)),
+                    new TransactionId(getValueByHeader(TransactionConstants.HEADER_TRANSACTION_ID, row, headerMap)),
+                    transactionType,
+                    getValueByHeader(TransactionConstants.HEADER_WALLET_REFERENCE, row, headerMap)
+            );
+        }
+    }
 
-        final String[] values = parseCsvLine(line, headerMap.size(), false);
-        logger.trace("Split line into {} values", values.length);
+    private static LineParsingException lineParsingException(final int lineNumber, final CsvRow csvRow, final Exception e) {
+        final String line = csvRow.toString();
+        if (e instanceof FileParsingException) {
+            logger.error("Parsing error at line {}: {} - Line content: '{}'",
+                    lineNumber, e.getMessage(), line);
+            return new LineParsingException(lineNumber, e.getMessage(), line, e);
+        }
+        logger.error("Unexpected error at line {}: {} - Line content: '{}'",
+                lineNumber, e.getMessage(), line, e);
+        return new LineParsingException(lineNumber, "Unexpected parsing error", line, e);
+    }
 
-//        We handled this case in parseCsvLine, if there is missing data we put ""
-//        if (values.length != headerMap.size()) {
-//            final String errorMsg = String.format("Expected %d columns but found %d",
-//                    headerMap.size(), values.length);
-//            logger.warn("Column count mismatch: {}", errorMsg);
-//            throw new CsvColumnMismatchException(headerMap.size(), values.length);
-//        }
+    // The layout was checked already, only an out of range field like month 13 still throws here
+    private static ZonedDateTime toDateTime(final String dateStr) {
+        try {
+            return LocalDateTime.parse(dateStr, DATE_TIME_FORMATTER).atZone(ZoneId.systemDefault());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 
+    private TransactionDto parseTransactionLine(final CsvRow row, final Map<String, Integer> headerMap) {
         try {
-            final String profileName = getValueByHeader(TransactionConstants.HEADER_PROFILE_NAME, values, headerMap);
-            final ZonedDateTime transactionDate = parseDateTime(getValueByHeader(TransactionConstants.HEADER_TRANSACTION_DATE, values, headerMap));
-            final Double transactionAmount = parseDouble(getValueByHeader(TransactionConstants.HEADER_TRANSACTION_AMOUNT, values, headerMap));
-            final String transactionNarrative = getValueByHeader(TransactionConstants.HEADER_TRANSACTION_NARRATIVE, values, headerMap);
-            final String transactionDescription = getValueByHeader(TransactionConstants.HEADER_TRANSACTION_DESCRIPTION, values, headerMap);
-            final String transactionID = getValueByHeader(TransactionConstants.HEADER_TRANSACTION_ID, values, headerMap);
-            final TransactionType transactionType = parseTransactionType(getValueByHeader(TransactionConstants.HEADER_TRANSACTION_TYPE, values, headerMap));
-            final String walletReference = getValueByHeader(TransactionConstants.HEADER_WALLET_REFERENCE, values, headerMap);
-
-            logger.trace("Successfully parsed transaction data: ID={}, Amount={}, Type={}",
-                    transactionID, transactionAmount, transactionType);
-
-            return new TransactionDto(
+            final String profileName = getValueByHeader(TransactionConstants.HEADER_PROFILE_NAME, row, headerMap);
+            final ZonedDateTime transactionDate = parseDateTime(getValueByHeader(TransactionConstants.HEADER_TRANSACTION_DATE, row, headerMap));
+            final Double transactionAmount = parseDouble(getValueByHeader(TransactionConstants.HEADER_TRANSACTION_AMOUNT, row, headerMap));
+            // Free-text columns are only decoded if scoring or serialization asks for them
+            final LazyColumn transactionNarrative = row.lazyValue(getColumnIndex(TransactionConstants.HEADER_TRANSACTION_NARRATIVE, row, headerMap));
+            final LazyColumn transactionDescription = row.lazyValue(getColumnIndex(TransactionConstants.HEADER_TRANSACTION_DESCRIPTION, row, headerMap));
+            final String transactionID = getValueByHeader(TransactionConstants.HEADER_TRANSACTION_ID, row, headerMap);
+            final TransactionType transactionType = parseTransactionType(getValueByHeader(TransactionConstants.HEADER_TRANSACTION_TYPE, row, headerMap));
+            final String walletReference = getValueByHeader(TransactionConstants.HEADER_WALLET_REFERENCE, row, headerMap);
+
+            return TransactionDto.withLazyText(
                     profileName, transactionDate, transactionAmount, transactionNarrative,
                     transactionDescription, new TransactionId(transactionID), transactionType, walletReference
             );
 
         } catch (FileParsingException e) {
-            logger.debug("File parsing exception while processing transaction: {}", e.getMessage());
             throw e; // Re-throw our custom exceptions
         } catch (Exception e) {
-            logger.error("Unexpected error while parsing transaction data", e);
             throw new TransactionDataParsingException(e.getMessage(), e);
         }
     }
 
+    // Bad dates, amounts and types are read as missing, the parse report counts them
     private ZonedDateTime parseDateTime(final String dateStr) {
         if (dateStr == null || dateStr.trim().isEmpty()) {
-            logger.debug("Empty or null date string provided, returning null");
             return null;
         }
 
         try {
-            final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            final ZonedDateTime result = LocalDateTime.parse(dateStr, formatter)
-                    .atZone(ZoneId.systemDefault());
-            logger.trace("Successfully parsed date: '{}' to {}", dateStr, result);
-            return result;
+            return LocalDateTime.parse(dateStr, DATE_TIME_FORMATTER).atZone(ZoneId.systemDefault());
         } catch (DateTimeParseException e) {
-            logger.warn("Failed to parse date: '{}' - {}", dateStr, e.getMessage());
             return null;
         }
     }
 
     private Double parseDouble(final String amountStr) {
         if (amountStr == null || amountStr.trim().isEmpty()) {
-            logger.debug("Empty or null amount string provided, returning null");
             return null;
         }
 
         try {
-            final Double result = Double.parseDouble(amountStr);
-            logger.trace("Successfully parsed amount: '{}' to {}", amountStr, result);
-            return result;
+            return Double.parseDouble(amountStr);
         } catch (NumberFormatException e) {
-            logger.warn("Failed to parse amount: '{}' - returning null. Error: {}",
-                    amountStr, e.getMessage());
             return null;
         }
     }
 
     private TransactionType parseTransactionType(final String typeStr) {
         if (typeStr == null) {
-            logger.debug("Null transaction type provided, returning null");
             return null;
         }
 
-        final String trimmedType = typeStr.trim();
-        final TransactionType result = switch (trimmedType) {
-            case "0" -> {
-                logger.trace("Parsed transaction type '0' to TYPE_1");
-                yield TransactionType.TYPE_1;
-            }
-            case "1" -> {
-                logger.trace("Parsed transaction type '1' to TYPE_2");
-                yield TransactionType.TYPE_2;
-            }
-            default -> {
-                logger.warn("Unknown transaction type: '{}' - returning null", trimmedType);
-                yield null;
-            }
+        return switch (typeStr.trim()) {
+            case "0" -> TransactionType.TYPE_1;
+            case "1" -> TransactionType.TYPE_2;
+            default -> null;
         };
-
-        return result;
     }
 
-    private String getValueByHeader(final String headerName, final String[] values,
+    private String getValueByHeader(final String headerName, final CsvRow row,
                                     final Map<String, Integer> headerMap) {
-        final Integer index = headerMap.get(headerName);
+        return row.value(getColumnIndex(headerName, row, headerMap));
+    }
 
-        if (index == null) {
-            logger.error("Header '{}' not found in header map", headerName);
-            throw new InvalidHeaderException(headerName);
-        }
+    private int getColumnIndex(final String headerName, final CsvRow row,
+                               final Map<String, Integer> headerMap) {
+        final Integer index = headerMap.get(headerName);
 
-        if (index >= values.length) {
-            logger.error("Header '{}' points to index {} but only {} values available",
-                    headerName, index, values.length);
+        if (index == null || index >= row.columnCount()) {
             throw new InvalidHeaderException(headerName);
         }
 
-        final String value = values[index].trim();
-        logger.trace("Retrieved value for header '{}' at index {}: '{}'", headerName, index, value);
-        return value;
+        return index;
     }
 
     private void validateRequiredHeaders(final Map<String, Integer> headerMap) {
@@ -273,7 +511,7 @@ public class FileServiceImpl implements FileService {
     private Map<String, Integer> parseHeaders(final String headerLine) {
         logger.debug("Parsing header line");
         final Map<String, Integer> headerMap = new HashMap<>();
-        final String[] headers = parseCsvLine(headerLine, 0, true);
+        final String[] headers = headerLine.split(String.valueOf(CSV_SEPARATOR));
 
         logger.debug("Found {} header columns", headers.length);
 
@@ -287,56 +525,122 @@ public class FileServiceImpl implements FileService {
         return headerMap;
     }
 
-    private String[] parseCsvLine(final String line, final int headerCount, boolean isForHeader) {
-        if (isForHeader) {
-            return line.split(String.valueOf(CSV_SEPARATOR));
-        }
-        final String[] split = line.split(String.valueOf(CSV_SEPARATOR));
-        final String[] result = new String[headerCount];
-        for (int i = 0; i < headerCount; i++) {
-            if (i < split.length) {
-                result[i] = split[i];
-            } else {
-                result[i] = "";
-            }
-        }
-        return result;
+    public List<TransactionDto> parseFile(final MultipartFile file) {
+        return parseFile(file, (ParseReport) null);
     }
 
-    public List<TransactionDto> parseFile(final MultipartFile file) {
+    public List<TransactionDto> parseFile(final MultipartFile file, final ParseReport report) {
+        final List<TransactionDto> transactions = new ArrayList<>();
+        parseFile(file, report, transactions::add);
+        return transactions;
+    }
+
+    public int parseFile(final MultipartFile file, final Consumer<TransactionDto> sink) {
+        return parseFile(file, (ParseReport) null, sink);
+    }
+
+    /**
+     * A null report gets one of its own that is only logged. The report stays unparsed when the rows come from the
+     * parse cache or a snapshot.
+     */
+    public int parseFile(final MultipartFile file, final ParseReport report, final Consumer<TransactionDto> sink) {
         final String filename = file.getOriginalFilename();
         final long fileSize = file.getSize();
 
         logger.info("Starting multipart file parsing - Filename: '{}', Size: {} bytes",
                 filename, fileSize);
 
-        if (fileSize == 0) {
-            logger.warn("Uploaded file '{}' is empty", filename);
-            throw new EmptyFileException("Uploaded file is empty");
+        validateUpload(file);
+
+        final boolean cacheable = parsedFileCache.isCacheable(file);
+        if (!cacheable && !snapshotStore.storesUploads()) {
+            checkContent(file);
+            return parseUpload(filename, file, file.getContentType(), decodedSize(file), null, report, sink);
         }
 
-        final long maxFileSizeBytes = 10 * 1024 * 1024; // 10MB in bytes
-        if (fileSize > maxFileSizeBytes) {
-            logger.warn("Uploaded file '{}' exceeds size limit - Size: {} bytes, Limit: {} bytes",
-                    filename, fileSize, maxFileSizeBytes);
-            throw new IllegalArgumentException("File size should be less than 10MB");
+        // Rows that skip parsing are still counted, only blank lines and flagged rows are unknown for them
+        final Consumer<TransactionDto> countingSink = report != null ? sink.andThen(report::rowParsed) : sink;
+        final String contentHash = hashContent(file);
+        final List<TransactionDto> cached = cacheable ? parsedFileCache.get(contentHash) : null;
+        if (cached != null) {
+            logger.info("Parsed file cache hit for '{}' - {} transactions, skipping parsing", filename, cached.size());
+            cached.forEach(countingSink);
+            return cached.size();
         }
 
-        final long startTime = System.currentTimeMillis();
+        // A snapshot from an earlier run warms the cache again after a restart
+        final List<TransactionDto> snapshot = snapshotStore.loadForUpload(contentHash, fileSize);
+        if (snapshot != null) {
+            if (cacheable) {
+                parsedFileCache.put(contentHash, snapshot, snapshotStore.uploadSnapshotSize(contentHash));
+            }
+            snapshot.forEach(countingSink);
+            return snapshot.size();
+        }
+
+        checkContent(file);
+        // Chunks reach the sink one after another, so the plain list is safe here
+        final List<TransactionDto> parsed = new ArrayList<>();
+        final ParseReport parseReport = report != null ? report : newParseReport(filename);
+        final int parsedRows = parseUpload(filename, file, file.getContentType(), decodedSize(file), null, parseReport, transaction -> {
+            parsed.add(transaction);
+            sink.accept(transaction);
+        });
+        // Weighed by the decompressed rows, a compressed upload holds several times its size
+        if (cacheable) {
+            parsedFileCache.put(contentHash, parsed, parseReport.getDecodedBytes());
+        }
+        snapshotStore.storeForUpload(contentHash, fileSize, parsed);
+        return parsedRows;
+    }
 
+    private String hashContent(final MultipartFile file) {
         try {
-            final BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
+            return parsedFileCache.contentHash(file);
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to read uploaded file: " + file.getOriginalFilename(), e);
+        }
+    }
+
+    public int parseStream(final String filename, final InputStream inputStream, final Consumer<TransactionDto> sink) {
+        return parseStream(filename, inputStream, null, sink);
+    }
 
-            logger.debug("Created BufferedReader for multipart file with UTF-8 encoding");
+    public int parseStream(final String filename, final InputStream inputStream, final ParseReport report,
+                           final Consumer<TransactionDto> sink) {
+        logger.info("Starting streamed file parsing - Filename: '{}'", filename);
+        return parseUpload(filename, () -> inputStream, null, maxFileSize.toBytes(), null, report, sink);
+    }
+
+    // Filtered parses are never cached or snapshotted, they don't hold the whole file
+    public int parseFile(final MultipartFile file, final Predicate<String> transactionIdFilter,
+                         final Consumer<TransactionDto> sink) {
+        logger.info("Starting filtered multipart file parsing - Filename: '{}', Size: {} bytes",
+                file.getOriginalFilename(), file.getSize());
+        validateUpload(file);
+        return parseUpload(file.getOriginalFilename(), file, file.getContentType(), decodedSize(file),
+                transactionIdFilter, null, sink);
+    }
+
+    // Compressed uploads are decompressed on the fly, the declared encoding is the content type or Content-Encoding.
+    // Decoding more than maxDecodedBytes, the size the upload was admitted with, fails the parse.
+    private int parseUpload(final String filename, final InputStreamSource source, final String declaredEncoding,
+                            final long maxDecodedBytes, final Predicate<String> transactionIdFilter,
+                            final ParseReport report, final Consumer<TransactionDto> sink) {
+        final long startTime = System.currentTimeMillis();
 
-            final List<TransactionDto> result = readTransactionRows(reader);
+        try (final CsvRowReader reader = new CsvRowReader(
+                CompressedInput.open(source.getInputStream(), declaredEncoding, maxDecodedBytes))) {
+            logger.debug("Created row reader for multipart file");
+
+            final int parsedRows = readTransactionRows(reader, transactionIdFilter,
+                    report != null ? report : newParseReport(filename), null, sink);
             final long duration = System.currentTimeMillis() - startTime;
 
             logger.info("Successfully processed multipart file '{}' with {} transactions in {}ms",
-                    filename, result.size(), duration);
+                    filename, parsedRows, duration);
 
-            return result;
+            return parsedRows;
 
         } catch (FileParsingException e) {
             final long duration = System.currentTimeMillis() - startTime;
@@ -345,19 +649,162 @@ public class FileServiceImpl implements FileService {
             throw e;
         } catch (Exception e) {
             final long duration = System.currentTimeMillis() - startTime;
+            if (isCorruptCompression(e)) {
+                logger.warn("Corrupt compressed content in '{}' after {}ms: {}", filename, duration, e.getMessage());
+                throw new FileParsingException("Corrupt compressed content in uploaded file: " + filename, e);
+            }
             logger.error("Unexpected error processing multipart file '{}' after {}ms",
                     filename, duration, e);
             throw new FileProcessingException("Failed to process uploaded file: " + filename, e);
         }
     }
 
+    private long decodedSize(final MultipartFile file) {
+        return CompressedInput.decodedSize(file, maxFileSize.toBytes());
+    }
+
+    // Decoders signal a malformed header or frame with a ZipException, possibly wrapped by the read-ahead
+    private static boolean isCorruptCompression(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ZipException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Byte scan of the upload, see {@link CsvStructureScanner}. Without a configured invalid row limit only a file
+     * without any issue is valid.
+     */
+    public FileValidationDto validateContent(final MultipartFile file) {
+        final long startTime = System.currentTimeMillis();
+        final int maxReportedIssues = validationProperties.getMaxReportedIssues();
+        final Map<RowErrorReason, Integer> issueCounts = new EnumMap<>(RowErrorReason.class);
+        final List<RowErrorDto> issues = new ArrayList<>();
+
+        final CsvStructureScanner.Result result;
+        try (InputStream inputStream = new BufferedInputStream(
+                CompressedInput.open(file.getInputStream(), file.getContentType(), maxFileSize.toBytes()))) {
+            result = CsvStructureScanner.scan(inputStream, (line, column, reason) -> {
+                issueCounts.merge(reason, 1, Integer::sum);
+                if (issues.size() < maxReportedIssues) {
+                    issues.add(new RowErrorDto(line, column, reason));
+                }
+            });
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to read uploaded file: " + file.getOriginalFilename(), e);
+        }
+
+        final int maxInvalidRows = validationProperties.getMaxInvalidRows();
+        final boolean valid = !issueCounts.containsKey(RowErrorReason.MISSING_HEADER)
+                && result.invalidRows() <= Math.max(0, maxInvalidRows);
+        final long duration = System.currentTimeMillis() - startTime;
+        logger.info("Validated '{}' in {}ms - {} rows, {} invalid", file.getOriginalFilename(), duration,
+                result.rows(), result.invalidRows());
+
+        return new FileValidationDto(file.getOriginalFilename(), valid, result.rows(), result.invalidRows(),
+                issueCounts, issues, duration);
+    }
+
+    // Rejects the upload before parsing when a limit is configured, a missing header fails as it would in the parser
+    private void checkContent(final MultipartFile file) {
+        if (validationProperties.getMaxInvalidRows() < 0) {
+            return;
+        }
+        final FileValidationDto validation = validateContent(file);
+        if (validation.valid()) {
+            return;
+        }
+        final RowErrorDto firstIssue = validation.issues().isEmpty() ? null : validation.issues().get(0);
+        if (firstIssue != null && firstIssue.reason() == RowErrorReason.MISSING_HEADER) {
+            throw new MissingHeaderException(firstIssue.column());
+        }
+        logger.warn("Rejected '{}' before parsing - {} invalid rows, first issue {}",
+                file.getOriginalFilename(), validation.invalidRows(), firstIssue);
+        throw new FileValidationException(validation);
+    }
+
+    // Size is known from the request before any of the content is read
+    public void validateUpload(final MultipartFile file) {
+        final String filename = file.getOriginalFilename();
+        final long fileSize = file.getSize();
+
+        if (fileSize == 0) {
+            logger.warn("Uploaded file '{}' is empty", filename);
+            throw new EmptyFileException("Uploaded file is empty");
+        }
+
+        final long maxFileSizeBytes = maxFileSize.toBytes();
+        if (fileSize > maxFileSizeBytes) {
+            logger.warn("Uploaded file '{}' exceeds size limit - Size: {} bytes, Limit: {} bytes",
+                    filename, fileSize, maxFileSizeBytes);
+            throw new IllegalArgumentException("File size should be less than " + formatSize(maxFileSize));
+        }
+    }
+
+    // The size limit of a streamed part is enforced by the multipart reader
+    public InputStream validateUpload(final String filename, final InputStream inputStream) throws IOException {
+        final PushbackInputStream content = new PushbackInputStream(inputStream);
+        final int firstByte = content.read();
+        if (firstByte < 0) {
+            logger.warn("Uploaded file '{}' is empty", filename);
+            throw new EmptyFileException("Uploaded file is empty");
+        }
+        content.unread(firstByte);
+        return content;
+    }
+
+    private static String formatSize(final DataSize size) {
+        return size.toGigabytes() > 0 && size.toBytes() % DataSize.ofGigabytes(1).toBytes() == 0
+                ? size.toGigabytes() + "GB"
+                : size.toMegabytes() + "MB";
+    }
+
     @Override
     public CompletableFuture<List<TransactionDto>> parseFileAsync(String path) {
-        return CompletableFuture.supplyAsync(() -> parseFile(path), VIRTUAL_THREAD_EXECUTOR);
+        return InterruptibleFuture.supplyAsync(() -> parseFile(path), executors.getIoExecutor());
+    }
+
+    @Override
+    public CompletableFuture<List<TransactionDto>> parseCsvAsync(String path, String lineNumbersPath, ParseReport report) {
+        return InterruptibleFuture.supplyAsync(() -> parsePartitionCsv(path, lineNumbersPath, report), executors.getIoExecutor());
     }
 
     @Override
     public CompletableFuture<List<TransactionDto>> parseFileAsync(MultipartFile file) {
-        return CompletableFuture.supplyAsync(() -> parseFile(file), VIRTUAL_THREAD_EXECUTOR);
+        return InterruptibleFuture.supplyAsync(() -> parseFile(file), executors.getIoExecutor());
+    }
+
+    @Override
+    public CompletableFuture<List<TransactionDto>> parseFileAsync(MultipartFile file, ParseReport report) {
+        return InterruptibleFuture.supplyAsync(() -> parseFile(file, report), executors.getIoExecutor());
+    }
+
+    @Override
+    public CompletableFuture<Integer> parseFileAsync(MultipartFile file, Consumer<TransactionDto> sink) {
+        return InterruptibleFuture.supplyAsync(() -> parseFile(file, sink), executors.getIoExecutor());
+    }
+
+    @Override
+    public CompletableFuture<Integer> parseFileAsync(MultipartFile file, ParseReport report, Consumer<TransactionDto> sink) {
+        return InterruptibleFuture.supplyAsync(() -> parseFile(file, report, sink), executors.getIoExecutor());
+    }
+
+    @Override
+    public CompletableFuture<Integer> parseFileAsync(MultipartFile file, Predicate<String> transactionIdFilter,
+                                                     Consumer<TransactionDto> sink) {
+        return InterruptibleFuture.supplyAsync(() -> parseFile(file, transactionIdFilter, sink), executors.getIoExecutor());
+    }
+
+    @Override
+    public CompletableFuture<Integer> parseStreamAsync(String filename, InputStream inputStream, ParseReport report,
+                                                       Consumer<TransactionDto> sink) {
+        return InterruptibleFuture.supplyAsync(() -> parseStream(filename, inputStream, report, sink), executors.getIoExecutor());
+    }
+
+    @Override
+    public CompletableFuture<FileValidationDto> validateContentAsync(MultipartFile file) {
+        return InterruptibleFuture.supplyAsync(() -> validateContent(file), executors.getIoExecutor());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,134 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.service.sketch.CountMinSketch;
+import luka.mugosa.filecomparison.service.sketch.HyperLogLog;
+import luka.mugosa.filecomparison.service.sketch.Hash64;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Sketches of one file's TransactionIDs, fed with the raw ID of every row. It rejects every row, so the parser
+ * drops them before building a transaction. Up to {@value #MAX_EXACT_IDS} distinct IDs their 64-bit hashes are kept
+ * as well, so the distinct and shared counts of smaller files are exact. Past that only the fixed size sketches remain.
+ */
+public final class FileSketch implements Predicate<String> {
+
+    private static final int COUNT_MIN_DEPTH = 4;
+    private static final int COUNT_MIN_WIDTH = 1 << 16;
+    static final int MAX_EXACT_IDS = 1 << 19;
+    private static final int INITIAL_EXACT_CAPACITY = 1 << 10;
+
+    private final HyperLogLog distinctIds = new HyperLogLog();
+    private final CountMinSketch idCounts = new CountMinSketch(COUNT_MIN_DEPTH, COUNT_MIN_WIDTH);
+
+    // Called from one file's parser only, chunks of a file never run concurrently
+    private int records;
+    private int blankIdRecords;
+    private int largestIdGroup;
+    // Hashes of the IDs, null once there were too many distinct ones. Sorted and without duplicates up to exactSorted
+    private long[] exactIds = new long[INITIAL_EXACT_CAPACITY];
+    private int exactCount;
+    private int exactSorted;
+
+    @Override
+    public boolean test(String transactionId) {
+        records++;
+        if (transactionId == null || transactionId.isBlank()) {
+            blankIdRecords++;
+            return false;
+        }
+        final long hash = Hash64.of(transactionId);
+        distinctIds.add(hash);
+        largestIdGroup = Math.max(largestIdGroup, idCounts.add(hash));
+        addExact(hash);
+        return false;
+    }
+
+    // Duplicates are only dropped when the buffer is full, it grows while at most half of it is distinct IDs
+    private void addExact(long hash) {
+        if (exactIds == null) {
+            return;
+        }
+        if (exactCount == exactIds.length) {
+            compactExactIds();
+            if (exactCount > MAX_EXACT_IDS) {
+                exactIds = null;
+                return;
+            }
+            if (exactCount > exactIds.length / 2) {
+                exactIds = Arrays.copyOf(exactIds, exactIds.length * 2);
+            }
+        }
+        exactIds[exactCount++] = hash;
+    }
+
+    private void compactExactIds() {
+        if (exactSorted == exactCount) {
+            return;
+        }
+        Arrays.sort(exactIds, 0, exactCount);
+        int distinct = 0;
+        for (int i = 0; i < exactCount; i++) {
+            if (distinct == 0 || exactIds[i] != exactIds[distinct - 1]) {
+                exactIds[distinct++] = exactIds[i];
+            }
+        }
+        exactCount = distinct;
+        exactSorted = distinct;
+    }
+
+    // The exact counts below are only there when this is true, read them once the scan is done
+    public boolean hasExactIds() {
+        if (exactIds != null) {
+            compactExactIds();
+            if (exactCount > MAX_EXACT_IDS) {
+                exactIds = null;
+            }
+        }
+        return exactIds != null;
+    }
+
+    public int getExactDistinctIds() {
+        compactExactIds();
+        return exactCount;
+    }
+
+    // IDs of this file that the other one has too, up to 64-bit hash collisions
+    public int countSharedIds(FileSketch other) {
+        compactExactIds();
+        other.compactExactIds();
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < exactCount && j < other.exactCount) {
+            final int order = Long.compare(exactIds[i], other.exactIds[j]);
+            if (order == 0) {
+                shared++;
+            }
+            if (order <= 0) {
+                i++;
+            }
+            if (order >= 0) {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    public HyperLogLog getDistinctIds() {
+        return distinctIds;
+    }
+
+    public int getRecords() {
+        return records;
+    }
+
+    public int getBlankIdRecords() {
+        return blankIdRecords;
+    }
+
+    public int getLargestIdGroup() {
+        return largestIdGroup;
+    }
+}
@@ -0,0 +1,306 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
+import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
+import luka.mugosa.filecomparison.service.ScoreService;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reconciliation of two files that only ever grow, kept between uploads. Each side remembers how far it was read, the
+ * ID groups keep their scores, and the outcome of every group is counted once. Appended rows are scored against what
+ * is already there and only the groups they touch are counted again, so an append costs in proportion to its size.
+ * Rows without a TransactionID are kept aside and paired on alternate keys whenever a result is built.
+ * Not thread-safe, the service runs one upload per session at a time. Only the memory reservations are guarded,
+ * a session can be dropped from memory while an upload to it is still running.
+ */
+public final class IncrementalReconciliation {
+
+    private final ScoreService scoreService;
+    private final ComparisonServiceImpl comparisonService;
+
+    private final String id;
+    private final Instant createdAt;
+    private Instant updatedAt;
+    private int runs;
+    private final FileCursor cursor1 = new FileCursor();
+    private final FileCursor cursor2 = new FileCursor();
+    private int lastAppendedToFile1;
+    private int lastAppendedToFile2;
+
+    private final Map<TransactionId, Group> groups = new HashMap<>();
+    // Groups with at least one unmatched row, the only ones a result has to walk
+    private final Set<TransactionId> groupsWithMisses = new HashSet<>();
+    private final List<TransactionDto> blankIdTransactions1 = new ArrayList<>();
+    private final List<TransactionDto> blankIdTransactions2 = new ArrayList<>();
+    private int totalRecordsInFile1;
+    private int totalRecordsInFile2;
+    // Outcome of the ID groups, blank ID rows are counted per result
+    private int matchedRecords;
+    private int unmatchedRecordsInFile1;
+    private int unmatchedRecordsInFile2;
+    // Budget held for the rows while the session is kept in memory
+    private final List<MemoryAdmissionController.AdmissionTicket> reservations = new ArrayList<>();
+    private boolean dropped;
+
+    IncrementalReconciliation(ScoreService scoreService, ComparisonServiceImpl comparisonService, String id,
+                              Instant createdAt) {
+        this.scoreService = scoreService;
+        this.comparisonService = comparisonService;
+        this.id = id;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+    }
+
+    /**
+     * Adds the rows appended to each file since the last run, in file order
+     */
+    void append(List<TransactionDto> appended1, List<TransactionDto> appended2) {
+        final Set<TransactionId> touched = new HashSet<>();
+        appended1.forEach(transaction -> add(transaction, true, touched));
+        appended2.forEach(transaction -> add(transaction, false, touched));
+        touched.forEach(transactionId -> settle(transactionId, groups.get(transactionId)));
+        lastAppendedToFile1 = appended1.size();
+        lastAppendedToFile2 = appended2.size();
+    }
+
+    /**
+     * Applies an upload that was saved already
+     */
+    void apply(Run run) {
+        append(run.appended1(), run.appended2());
+        cursor1.advance(run.cursor1());
+        cursor2.advance(run.cursor2());
+        runs++;
+        updatedAt = run.completedAt();
+    }
+
+    void reserve(MemoryAdmissionController.AdmissionTicket ticket) {
+        synchronized (reservations) {
+            if (dropped) {
+                ticket.close();
+                return;
+            }
+            reservations.add(ticket);
+        }
+    }
+
+    // An upload still running on a dropped session gives its budget back as soon as it reserves it
+    void drop() {
+        synchronized (reservations) {
+            dropped = true;
+            reservations.forEach(MemoryAdmissionController.AdmissionTicket::close);
+            reservations.clear();
+        }
+    }
+
+    private void add(TransactionDto transaction, boolean fromFile1, Set<TransactionId> touched) {
+        if (fromFile1) {
+            totalRecordsInFile1++;
+        } else {
+            totalRecordsInFile2++;
+        }
+        if (TransactionId.isBlank(transaction.getTransactionID())) {
+            (fromFile1 ? blankIdTransactions1 : blankIdTransactions2).add(transaction);
+            return;
+        }
+
+        final Group group = groups.computeIfAbsent(transaction.getTransactionID(), transactionId -> new Group());
+        final List<TransactionDto> own = fromFile1 ? group.transactions1 : group.transactions2;
+        final List<TransactionDto> other = fromFile1 ? group.transactions2 : group.transactions1;
+        own.add(transaction);
+        final int position = own.size() - 1;
+        if (position < other.size()) {
+            group.scores.add(fromFile1
+                    ? scoreService.calculateDecisiveScore(transaction, other.get(position))
+                    : scoreService.calculateDecisiveScore(other.get(position), transaction));
+        }
+        touched.add(transaction.getTransactionID());
+    }
+
+    // Takes the old outcome of the group out of the totals and puts the new one in
+    private void settle(TransactionId transactionId, Group group) {
+        matchedRecords -= group.matched;
+        unmatchedRecordsInFile1 -= group.unmatched1;
+        unmatchedRecordsInFile2 -= group.unmatched2;
+
+        group.matched = 0;
+        group.unmatched1 = 0;
+        group.unmatched2 = 0;
+        if (group.transactions1.isEmpty()) {
+            group.unmatched2 = group.transactions2.size();
+        } else if (group.transactions1.size() != group.transactions2.size()) {
+            // Same rules as the one-shot comparison, file 2 rows of a count mismatch are not reported
+            group.unmatched1 = group.transactions1.size();
+        } else {
+            for (MatchScore score : group.scores) {
+                if (score.confidence() == MatchConfidence.HIGH) {
+                    group.matched++;
+                } else {
+                    group.unmatched1++;
+                }
+            }
+        }
+
+        matchedRecords += group.matched;
+        unmatchedRecordsInFile1 += group.unmatched1;
+        unmatchedRecordsInFile2 += group.unmatched2;
+        if (group.unmatched1 + group.unmatched2 > 0) {
+            groupsWithMisses.add(transactionId);
+        } else {
+            groupsWithMisses.remove(transactionId);
+        }
+    }
+
+    /**
+     * The reconciliation of everything read so far. Only the groups with misses are visited, plus the blank ID rows.
+     */
+    ReconciliationResponse result(ReconciliationAccumulator accumulator) {
+        accumulator.matched(matchedRecords);
+        for (TransactionId transactionId : groupsWithMisses) {
+            final Group group = groups.get(transactionId);
+            if (group.transactions1.isEmpty()) {
+                group.transactions2.forEach(accumulator::unmatchedFromFile2);
+            } else if (group.transactions1.size() != group.transactions2.size()) {
+                group.transactions1.forEach(dto1 -> accumulator.unmatchedFromFile1(dto1, null, null));
+            } else {
+                for (int i = 0; i < group.scores.size(); i++) {
+                    final MatchScore score = group.scores.get(i);
+                    if (score.confidence() != MatchConfidence.HIGH) {
+                        accumulator.unmatchedFromFile1(group.transactions1.get(i), group.transactions2.get(i), score);
+                    }
+                }
+            }
+        }
+
+        comparisonService.matchByAlternateKeys(blankIdTransactions1, blankIdTransactions2, accumulator)
+                .forEach(accumulator::unmatchedFromFile2);
+        return comparisonService.buildResponse(totalRecordsInFile1, totalRecordsInFile2, accumulator);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    int getRuns() {
+        return runs;
+    }
+
+    FileCursor getCursor1() {
+        return cursor1;
+    }
+
+    FileCursor getCursor2() {
+        return cursor2;
+    }
+
+    int getLastAppendedToFile1() {
+        return lastAppendedToFile1;
+    }
+
+    int getLastAppendedToFile2() {
+        return lastAppendedToFile2;
+    }
+
+    int getTotalRecordsInFile1() {
+        return totalRecordsInFile1;
+    }
+
+    int getTotalRecordsInFile2() {
+        return totalRecordsInFile2;
+    }
+
+    // Restores the counters of a session read back from disk
+    void restore(int runs, Instant updatedAt, int lastAppendedToFile1, int lastAppendedToFile2) {
+        this.runs = runs;
+        this.updatedAt = updatedAt;
+        this.lastAppendedToFile1 = lastAppendedToFile1;
+        this.lastAppendedToFile2 = lastAppendedToFile2;
+    }
+
+    /**
+     * Rows of one upload and the cursors after them, saved before they are applied so a failed save leaves the session
+     * as it was
+     */
+    record Run(List<TransactionDto> appended1, long start1, FileCursor cursor1,
+               List<TransactionDto> appended2, long start2, FileCursor cursor2, Instant completedAt) {
+    }
+
+    /**
+     * How far one file was read. The header is kept to parse appended rows on their own, the tail is the last bytes
+     * before the offset, compared on the next upload to make sure the file was only appended to.
+     */
+    static final class FileCursor {
+
+        private byte[] header;
+        private long offset;
+        private byte[] tail;
+        private long pendingBytes;
+
+        boolean isStarted() {
+            return header != null;
+        }
+
+        static FileCursor of(byte[] header, long offset, byte[] tail, long pendingBytes) {
+            final FileCursor cursor = new FileCursor();
+            cursor.advance(header, offset, tail, pendingBytes);
+            return cursor;
+        }
+
+        void advance(byte[] header, long offset, byte[] tail, long pendingBytes) {
+            this.header = header;
+            this.offset = offset;
+            this.tail = tail;
+            this.pendingBytes = pendingBytes;
+        }
+
+        void advance(FileCursor next) {
+            advance(next.header, next.offset, next.tail, next.pendingBytes);
+        }
+
+        byte[] getHeader() {
+            return header;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        byte[] getTail() {
+            return tail;
+        }
+
+        // An unfinished last line that was left for the next upload
+        long getPendingBytes() {
+            return pendingBytes;
+        }
+    }
+
+    private static final class Group {
+
+        private final List<TransactionDto> transactions1 = new ArrayList<>(1);
+        private final List<TransactionDto> transactions2 = new ArrayList<>(1);
+        // scores.get(i) belongs to the i-th row of each side, there is one for every position both sides reached
+        private final List<MatchScore> scores = new ArrayList<>(1);
+        private int matched;
+        private int unmatched1;
+        private int unmatched2;
+    }
+}
@@ -0,0 +1,377 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.response.IncrementalReconciliationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.CompressionCodec;
+import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
+import luka.mugosa.filecomparison.domain.exception.IncrementalSessionNotFoundException;
+import luka.mugosa.filecomparison.service.FileService;
+import luka.mugosa.filecomparison.service.IncrementalReconciliationService;
+import luka.mugosa.filecomparison.service.csv.CompleteLinesInputStream;
+import luka.mugosa.filecomparison.service.csv.CompressedInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reconciles files that grow by appended rows, e.g. intraday files that come back every hour with more rows.
+ * The first upload reads both files whole. Every later upload of the same files skips what was already read, checks
+ * that the bytes just before that point did not change and parses only the rows after it.
+ */
+@Service
+public class IncrementalReconciliationServiceImpl implements IncrementalReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalReconciliationServiceImpl.class);
+
+    // Compared on the next upload, a rewritten file almost never keeps the same bytes in front of the offset
+    static final int TAIL_BYTES = 4096;
+
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    private final FileService fileService;
+    private final ComparisonServiceImpl comparisonService;
+    private final MemoryAdmissionController admissionController;
+    private final IncrementalStateStore stateStore;
+    private final int maxSessionsInMemory;
+    // Access ordered, sessions past the limit are dropped here and read back from disk when they are used again
+    private final Map<String, IncrementalReconciliation> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    // Requests working on a session, guarded by sessions. A session in use is never dropped, so there is only
+    // ever one instance of it to synchronize on.
+    private final Map<String, Integer> inUse = new HashMap<>();
+    // One load from disk per session at a time, other requests for it wait for that load instead of the global lock
+    private final Map<String, CompletableFuture<Void>> loading = new ConcurrentHashMap<>();
+
+    public IncrementalReconciliationServiceImpl(FileService fileService, ComparisonServiceImpl comparisonService,
+                                                MemoryAdmissionController admissionController,
+                                                IncrementalStateStore stateStore, ReconciliationProperties properties) {
+        this.fileService = fileService;
+        this.comparisonService = comparisonService;
+        this.admissionController = admissionController;
+        this.stateStore = stateStore;
+        this.maxSessionsInMemory = properties.getIncremental().getMaxSessionsInMemory();
+    }
+
+    public IncrementalReconciliationResponse start(MultipartFile file1, MultipartFile file2, ReconciliationOptions options) {
+        validateUpload(file1);
+        validateUpload(file2);
+
+        final IncrementalReconciliation session =
+                comparisonService.newIncrementalReconciliation(UUID.randomUUID().toString(), Instant.now());
+        synchronized (session) {
+            final IncrementalReconciliationResponse response = readAppended(session, file1, file2, options);
+            remember(session);
+            return response;
+        }
+    }
+
+    public IncrementalReconciliationResponse append(String sessionId, MultipartFile file1, MultipartFile file2,
+                                                    ReconciliationOptions options) {
+        validateUpload(file1);
+        validateUpload(file2);
+
+        final IncrementalReconciliation session = acquire(sessionId);
+        try {
+            synchronized (session) {
+                return readAppended(session, file1, file2, options);
+            }
+        } finally {
+            release(session);
+        }
+    }
+
+    public IncrementalReconciliationResponse getSession(String sessionId, ReconciliationOptions options) {
+        final IncrementalReconciliation session = acquire(sessionId);
+        try {
+            synchronized (session) {
+                return toResponse(session, options);
+            }
+        } finally {
+            release(session);
+        }
+    }
+
+    public void delete(String sessionId) {
+        checkSessionId(sessionId);
+        final IncrementalReconciliation removed;
+        synchronized (sessions) {
+            removed = sessions.remove(sessionId);
+        }
+        if (removed != null) {
+            removed.drop();
+        }
+        if (!stateStore.delete(sessionId) && removed == null) {
+            throw new IncrementalSessionNotFoundException(sessionId);
+        }
+        logger.info("Deleted incremental session {}", sessionId);
+    }
+
+    private IncrementalReconciliationResponse readAppended(IncrementalReconciliation session, MultipartFile file1,
+                                                           MultipartFile file2, ReconciliationOptions options) {
+        final long startTime = System.currentTimeMillis();
+        final IncrementalReconciliation.FileCursor cursor1 = session.getCursor1();
+        final IncrementalReconciliation.FileCursor cursor2 = session.getCursor2();
+
+        // The appended rows stay in the session, their reservation is held for as long as it is in memory
+        final MemoryAdmissionController.AdmissionTicket ticket =
+                admissionController.admit(appendedBytes(file1, cursor1) + appendedBytes(file2, cursor2));
+        try {
+            // Both files are read and the run is saved before anything changes, a rejected upload or failed save
+            // leaves the session as it was
+            final AppendedRows appended1 = readAppendedRows(file1, "file1", cursor1);
+            final AppendedRows appended2 = readAppendedRows(file2, "file2", cursor2);
+            final IncrementalReconciliation.Run run = new IncrementalReconciliation.Run(
+                    appended1.transactions(), appended1.start(), appended1.cursor(),
+                    appended2.transactions(), appended2.start(), appended2.cursor(), Instant.now());
+
+            stateStore.save(session, run);
+            session.apply(run);
+
+            logger.info("Incremental session {} run {} - appended {} and {} records ({} and {} bytes) in {}ms",
+                    session.getId(), session.getRuns(), appended1.transactions().size(), appended2.transactions().size(),
+                    appended1.end() - appended1.start(), appended2.end() - appended2.start(),
+                    System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            ticket.close();
+            throw e;
+        }
+        session.reserve(ticket);
+        return toResponse(session, options);
+    }
+
+    /**
+     * Parses the rows after the cursor. Rows are read through the stored header, so the appended part parses like a
+     * file of its own, and only up to the last complete line.
+     */
+    private AppendedRows readAppendedRows(MultipartFile file, String name, IncrementalReconciliation.FileCursor cursor) {
+        final List<TransactionDto> transactions = new ArrayList<>();
+        try (InputStream inputStream = file.getInputStream()) {
+            final byte[] header = readHeaderLine(inputStream, name);
+            final long start;
+            final byte[] previousTail;
+            if (cursor.isStarted()) {
+                checkAppendedTo(inputStream, file, name, header, cursor);
+                start = cursor.getOffset();
+                previousTail = cursor.getTail();
+            } else {
+                start = header.length;
+                previousTail = header;
+            }
+
+            final CompleteLinesInputStream appended = new CompleteLinesInputStream(inputStream, previousTail, TAIL_BYTES);
+            fileService.parseStream(file.getOriginalFilename(),
+                    new SequenceInputStream(new ByteArrayInputStream(header), appended), transactions::add);
+            return new AppendedRows(transactions, header, start, start + appended.getReleasedBytes(),
+                    appended.getTail(), appended.getHeldBackBytes());
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to read uploaded file: " + file.getOriginalFilename(), e);
+        }
+    }
+
+    // Positions the stream at the stored offset, after comparing the header and the bytes in front of the offset
+    private static void checkAppendedTo(InputStream inputStream, MultipartFile file, String name, byte[] header,
+                                        IncrementalReconciliation.FileCursor cursor) throws IOException {
+        if (!Arrays.equals(header, cursor.getHeader())) {
+            throw notAppended(name, "its header changed");
+        }
+        if (file.getSize() < cursor.getOffset()) {
+            throw notAppended(name, "it is shorter than the " + cursor.getOffset() + " bytes already read");
+        }
+
+        final byte[] tail = cursor.getTail();
+        // The tail can reach back into the header, which was compared already
+        final long compareFrom = Math.max(header.length, cursor.getOffset() - tail.length);
+        inputStream.skipNBytes(compareFrom - header.length);
+        final byte[] actual = inputStream.readNBytes((int) (cursor.getOffset() - compareFrom));
+        if (!Arrays.equals(actual, 0, actual.length, tail, tail.length - actual.length, tail.length)) {
+            throw notAppended(name, "the rows before byte " + cursor.getOffset() + " changed");
+        }
+    }
+
+    private static byte[] readHeaderLine(InputStream inputStream, String name) throws IOException {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int next;
+        while ((next = inputStream.read()) >= 0) {
+            header.write(next);
+            if (next == '\n') {
+                return header.toByteArray();
+            }
+            if (header.size() > MAX_HEADER_BYTES) {
+                break;
+            }
+        }
+        throw new IllegalArgumentException(name + " has no complete header line");
+    }
+
+    private static IllegalArgumentException notAppended(String name, String reason) {
+        return new IllegalArgumentException(name + " is not an append of the previous upload, " + reason
+                + " - start a new incremental session for it");
+    }
+
+    private void validateUpload(MultipartFile file) {
+        fileService.validateUpload(file);
+        // Offsets are byte positions in the CSV itself, a compressed stream can't be skipped into
+        if (CompressedInput.detect(file) != CompressionCodec.NONE) {
+            throw new IllegalArgumentException("Incremental reconciliation needs uncompressed CSV uploads");
+        }
+    }
+
+    private static long appendedBytes(MultipartFile file, IncrementalReconciliation.FileCursor cursor) {
+        return Math.max(0, file.getSize() - cursor.getOffset());
+    }
+
+    /**
+     * The session in memory, read back from disk if it was dropped, and marked in use until {@link #release}.
+     * Only the lookup holds the global lock, reading from disk happens outside of it.
+     */
+    private IncrementalReconciliation acquire(String sessionId) {
+        checkSessionId(sessionId);
+        while (true) {
+            synchronized (sessions) {
+                final IncrementalReconciliation session = sessions.get(sessionId);
+                if (session != null) {
+                    inUse.merge(sessionId, 1, Integer::sum);
+                    return session;
+                }
+            }
+
+            final CompletableFuture<Void> load = new CompletableFuture<>();
+            final CompletableFuture<Void> pending = loading.computeIfAbsent(sessionId, id -> load);
+            if (pending != load) {
+                // Loaded by another request, or failed the same way for this one
+                awaitLoad(pending);
+                continue;
+            }
+            try {
+                final IncrementalReconciliation session = load(sessionId);
+                load.complete(null);
+                return session;
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(sessionId, load);
+            }
+        }
+    }
+
+    private IncrementalReconciliation load(String sessionId) {
+        synchronized (sessions) {
+            // Loaded by a request that finished in between the lookup and this load
+            final IncrementalReconciliation session = sessions.get(sessionId);
+            if (session != null) {
+                inUse.merge(sessionId, 1, Integer::sum);
+                return session;
+            }
+        }
+
+        final IncrementalReconciliation session = stateStore.load(sessionId, comparisonService);
+        if (session == null) {
+            throw new IncrementalSessionNotFoundException(sessionId);
+        }
+        session.reserve(admissionController.admit(session.getCursor1().getOffset() + session.getCursor2().getOffset()));
+        synchronized (sessions) {
+            inUse.merge(sessionId, 1, Integer::sum);
+            remember(session);
+        }
+        return session;
+    }
+
+    private static void awaitLoad(CompletableFuture<Void> load) {
+        try {
+            load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException failure) {
+                throw failure;
+            }
+            throw e;
+        }
+    }
+
+    private void release(IncrementalReconciliation session) {
+        synchronized (sessions) {
+            inUse.computeIfPresent(session.getId(), (id, requests) -> requests > 1 ? requests - 1 : null);
+            dropIdleSessions();
+        }
+    }
+
+    // Session IDs end up as directory names, anything but our own UUIDs is not found
+    private static void checkSessionId(String sessionId) {
+        try {
+            if (UUID.fromString(sessionId).toString().equals(sessionId)) {
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            // falls through to not found
+        }
+        throw new IncrementalSessionNotFoundException(sessionId);
+    }
+
+    private void remember(IncrementalReconciliation session) {
+        synchronized (sessions) {
+            sessions.put(session.getId(), session);
+            dropIdleSessions();
+        }
+    }
+
+    // Least recently used first. Sessions in use are skipped, the map may stay over the limit until they are released.
+    private void dropIdleSessions() {
+        final Iterator<Map.Entry<String, IncrementalReconciliation>> eldest = sessions.entrySet().iterator();
+        while (sessions.size() > maxSessionsInMemory && eldest.hasNext()) {
+            final Map.Entry<String, IncrementalReconciliation> entry = eldest.next();
+            if (!inUse.containsKey(entry.getKey())) {
+                eldest.remove();
+                entry.getValue().drop();
+                logger.debug("Incremental session {} dropped from memory, it stays on disk", entry.getKey());
+            }
+        }
+    }
+
+    private IncrementalReconciliationResponse toResponse(IncrementalReconciliation session, ReconciliationOptions options) {
+        final ReconciliationAccumulator accumulator = options.summaryOnly()
+                ? ReconciliationAccumulator.countingOnly()
+                : new ReconciliationAccumulator();
+
+        return IncrementalReconciliationResponse.builder()
+                .sessionId(session.getId())
+                .runs(session.getRuns())
+                .appendedRecordsInFile1(session.getLastAppendedToFile1())
+                .appendedRecordsInFile2(session.getLastAppendedToFile2())
+                .offsetInFile1(session.getCursor1().getOffset())
+                .offsetInFile2(session.getCursor2().getOffset())
+                .pendingBytesInFile1(session.getCursor1().getPendingBytes())
+                .pendingBytesInFile2(session.getCursor2().getPendingBytes())
+                .createdAt(session.getCreatedAt())
+                .updatedAt(session.getUpdatedAt())
+                .result(TransactionServiceImpl.applyOptions(session.result(accumulator), options))
+                .build();
+    }
+
+    private record AppendedRows(List<TransactionDto> transactions, byte[] header, long start, long end, byte[] tail,
+                                long pendingBytes) {
+
+        IncrementalReconciliation.FileCursor cursor() {
+            return IncrementalReconciliation.FileCursor.of(header, end, tail, pendingBytes);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
+import luka.mugosa.filecomparison.service.snapshot.TransactionSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Incremental sessions on disk, one directory each. Every upload adds a snapshot segment per file holding only the
+ * rows it appended, named after the byte range it covers, and then rewrites the small session file with the cursors.
+ * Writing costs the size of the append. A segment whose session file was never written is ignored when reading back.
+ */
+@Component
+public class IncrementalStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalStateStore.class);
+
+    private static final String SESSION_FILE = "session.properties";
+
+    private final Path directory;
+
+    public IncrementalStateStore(ReconciliationProperties properties) {
+        final String stateDirectory = properties.getIncremental().getStateDirectory();
+        this.directory = stateDirectory != null && !stateDirectory.isBlank()
+                ? Path.of(stateDirectory)
+                : Path.of(System.getProperty("java.io.tmpdir"), "reconciliation-incremental");
+    }
+
+    /**
+     * Persists one upload before the session in memory applies it. Replacing the session file is the commit point,
+     * on a failure the session on disk stays as of the previous upload and the upload is rejected.
+     */
+    public void save(IncrementalReconciliation session, IncrementalReconciliation.Run run) {
+        final Path sessionDirectory = directory.resolve(session.getId());
+        try {
+            Files.createDirectories(sessionDirectory);
+            writeSegment(sessionDirectory, "file1", run.appended1(), run.start1(), run.cursor1().getOffset());
+            writeSegment(sessionDirectory, "file2", run.appended2(), run.start2(), run.cursor2().getOffset());
+            writeSessionFile(sessionDirectory, session, run);
+        } catch (IOException e) {
+            logger.warn("Could not persist incremental session {}: {}", session.getId(), e.getMessage());
+            throw new FileProcessingException("Failed to save incremental session " + session.getId(), e);
+        }
+    }
+
+    /**
+     * Reads a session back and replays its rows, null when there is none
+     */
+    public IncrementalReconciliation load(String sessionId, ComparisonServiceImpl comparisonService) {
+        final Path sessionDirectory = directory.resolve(sessionId);
+        final Path sessionFile = sessionDirectory.resolve(SESSION_FILE);
+        if (!Files.isRegularFile(sessionFile)) {
+            return null;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        try {
+            final Properties stored = new Properties();
+            try (InputStream inputStream = Files.newInputStream(sessionFile)) {
+                stored.load(inputStream);
+            }
+
+            final IncrementalReconciliation session = comparisonService.newIncrementalReconciliation(sessionId,
+                    Instant.parse(stored.getProperty("createdAt")));
+            restoreCursor(session.getCursor1(), stored, "file1");
+            restoreCursor(session.getCursor2(), stored, "file2");
+            session.append(
+                    readSegments(sessionDirectory, "file1", session.getCursor1()),
+                    readSegments(sessionDirectory, "file2", session.getCursor2()));
+            session.restore(Integer.parseInt(stored.getProperty("runs")), Instant.parse(stored.getProperty("updatedAt")),
+                    Integer.parseInt(stored.getProperty("file1.lastAppended")),
+                    Integer.parseInt(stored.getProperty("file2.lastAppended")));
+
+            logger.info("Restored incremental session {} - {} and {} records in {}ms", sessionId,
+                    session.getTotalRecordsInFile1(), session.getTotalRecordsInFile2(),
+                    System.currentTimeMillis() - startTime);
+            return session;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not restore incremental session {}: {}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    public boolean delete(String sessionId) {
+        final Path sessionDirectory = directory.resolve(sessionId);
+        if (!Files.isDirectory(sessionDirectory)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(sessionDirectory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(sessionDirectory);
+        } catch (IOException e) {
+            logger.warn("Could not delete incremental session {}: {}", sessionId, e.getMessage());
+        }
+        return true;
+    }
+
+    private void writeSegment(Path sessionDirectory, String side, List<TransactionDto> transactions, long start,
+                              long end) throws IOException {
+        if (end > start) {
+            // The range doubles as the snapshot stamp, so a segment can't be read for a different range
+            TransactionSnapshot.write(sessionDirectory.resolve(segmentName(side, start, end)), transactions, end, start);
+        }
+    }
+
+    // The session as it will be once the run is applied
+    private void writeSessionFile(Path sessionDirectory, IncrementalReconciliation session,
+                                  IncrementalReconciliation.Run run) throws IOException {
+        final Properties stored = new Properties();
+        stored.setProperty("createdAt", session.getCreatedAt().toString());
+        stored.setProperty("updatedAt", run.completedAt().toString());
+        stored.setProperty("runs", Integer.toString(session.getRuns() + 1));
+        storeCursor(stored, "file1", run.cursor1(), run.appended1().size());
+        storeCursor(stored, "file2", run.cursor2(), run.appended2().size());
+
+        final Path temporary = sessionDirectory.resolve(SESSION_FILE + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+            stored.store(outputStream, null);
+        }
+        Files.move(temporary, sessionDirectory.resolve(SESSION_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void storeCursor(Properties stored, String side, IncrementalReconciliation.FileCursor cursor,
+                                    int lastAppended) {
+        final Base64.Encoder encoder = Base64.getEncoder();
+        stored.setProperty(side + ".header", encoder.encodeToString(cursor.getHeader()));
+        stored.setProperty(side + ".offset", Long.toString(cursor.getOffset()));
+        stored.setProperty(side + ".tail", encoder.encodeToString(cursor.getTail()));
+        stored.setProperty(side + ".pendingBytes", Long.toString(cursor.getPendingBytes()));
+        stored.setProperty(side + ".lastAppended", Integer.toString(lastAppended));
+    }
+
+    private static void restoreCursor(IncrementalReconciliation.FileCursor cursor, Properties stored, String side) {
+        final Base64.Decoder decoder = Base64.getDecoder();
+        cursor.advance(decoder.decode(stored.getProperty(side + ".header")),
+                Long.parseLong(stored.getProperty(side + ".offset")),
+                decoder.decode(stored.getProperty(side + ".tail")),
+                Long.parseLong(stored.getProperty(side + ".pendingBytes")));
+    }
+
+    // Follows the segments from the end of the header up to the stored offset
+    private static List<TransactionDto> readSegments(Path sessionDirectory, String side,
+                                                     IncrementalReconciliation.FileCursor cursor) throws IOException {
+        final List<Segment> segments;
+        try (Stream<Path> files = Files.list(sessionDirectory)) {
+            segments = files.map(file -> Segment.parse(side, file))
+                    .filter(segment -> segment != null && segment.end() <= cursor.getOffset())
+                    .sorted(Comparator.comparingLong(Segment::start).thenComparing(Segment::end, Comparator.reverseOrder()))
+                    .toList();
+        }
+
+        final List<TransactionDto> transactions = new ArrayList<>();
+        long position = cursor.getHeader().length;
+        for (Segment segment : segments) {
+            // Left over from an upload that failed before its session file was written
+            if (segment.start() != position) {
+                continue;
+            }
+            final List<TransactionDto> rows = TransactionSnapshot.read(segment.path(), segment.end(), segment.start());
+            if (rows == null) {
+                throw new IOException("Segment " + segment.path() + " does not cover its byte range");
+            }
+            transactions.addAll(rows);
+            position = segment.end();
+        }
+        if (position != cursor.getOffset()) {
+            throw new IOException(side + " segments end at byte " + position + ", expected " + cursor.getOffset());
+        }
+        return transactions;
+    }
+
+    private static String segmentName(String side, long start, long end) {
+        return side + "-" + start + "-" + end + TransactionSnapshotStore.SNAPSHOT_EXTENSION;
+    }
+
+    private record Segment(Path path, long start, long end) {
+
+        static Segment parse(String side, Path file) {
+            final String name = file.getFileName().toString();
+            if (!name.startsWith(side + "-") || !name.endsWith(TransactionSnapshotStore.SNAPSHOT_EXTENSION)) {
+                return null;
+            }
+            final String[] range = name.substring(side.length() + 1,
+                    name.length() - TransactionSnapshotStore.SNAPSHOT_EXTENSION.length()).split("-");
+            if (range.length != 2) {
+                return null;
+            }
+            try {
+                return new Segment(file, Long.parseLong(range[0]), Long.parseLong(range[1]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
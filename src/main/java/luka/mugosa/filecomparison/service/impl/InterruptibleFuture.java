@@ -0,0 +1,48 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * CompletableFuture whose cancel(true) interrupts the thread running the task, the plain one only marks itself done
+ * and leaves the work running
+ */
+public class InterruptibleFuture<T> extends CompletableFuture<T> {
+
+    private volatile Thread runner;
+
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> task, Executor executor) {
+        final InterruptibleFuture<T> future = new InterruptibleFuture<>();
+        executor.execute(() -> future.run(task));
+        return future;
+    }
+
+    private void run(Supplier<T> task) {
+        if (isDone()) {
+            return;
+        }
+        runner = Thread.currentThread();
+        try {
+            // cancel() may have come in before runner was set
+            if (isCancelled()) {
+                return;
+            }
+            complete(task.get());
+        } catch (Throwable e) {
+            completeExceptionally(e);
+        } finally {
+            runner = null;
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        final Thread thread = runner;
+        if (cancelled && mayInterruptIfRunning && thread != null) {
+            thread.interrupt();
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,166 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.exception.AdmissionRejectedException;
+import luka.mugosa.filecomparison.domain.exception.ReconciliationInterruptedException;
+import luka.mugosa.filecomparison.service.csv.CompressedInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserves an estimate of a reconciliation's heap cost against a fixed budget before it starts.
+ * Requests wait (fairly, in arrival order) for budget up to the configured time and are rejected after that,
+ * so a burst of uploads slows down instead of running the JVM out of memory.
+ */
+@Service
+public class MemoryAdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryAdmissionController.class);
+    private static final long KIB = 1024;
+
+    private final ReconciliationProperties.Admission admissionProperties;
+    private final ReconciliationProperties.LargeFiles largeFilesProperties;
+    private final int budgetKib;
+    // One permit per KiB of estimated heap
+    private final Semaphore budget;
+
+    public MemoryAdmissionController(ReconciliationProperties properties) {
+        this.admissionProperties = properties.getAdmission();
+        this.largeFilesProperties = properties.getLargeFiles();
+        final long ceilingBytes = admissionProperties.getMemoryCeiling() != null
+                ? admissionProperties.getMemoryCeiling().toBytes()
+                : Runtime.getRuntime().maxMemory() / 100 * admissionProperties.getDefaultHeapPercentage();
+        this.budgetKib = (int) Math.min(Integer.MAX_VALUE, Math.max(1, ceilingBytes / KIB));
+        this.budget = new Semaphore(budgetKib, true);
+
+        logger.info("Reconciliation memory budget: {} MB", budgetKib / KIB);
+    }
+
+    /**
+     * Row bytes stay referenced by the parsed transactions, on top of that every row costs a fixed object overhead
+     */
+    public long estimateHeapBytes(long inputBytes) {
+        return estimateHeapBytes(inputBytes, inputBytes / Math.max(1, admissionProperties.getEstimatedRowBytes()));
+    }
+
+    // For when the rows were counted, e.g. by a pre-flight scan
+    public long estimateHeapBytes(long inputBytes, long rows) {
+        return inputBytes + rows * admissionProperties.getRowOverheadBytes();
+    }
+
+    /**
+     * keepsPairs is false when the unmatched pairs are only counted or streamed, see {@link #admitInput(long, boolean)}
+     */
+    public AdmissionTicket admit(MultipartFile file1, MultipartFile file2, boolean keepsPairs) {
+        return admitInput(decodedSize(file1) + decodedSize(file2), keepsPairs);
+    }
+
+    public AdmissionTicket admit(List<MultipartFile> files) {
+        return admitInput(files.stream().mapToLong(this::decodedSize).sum(), true);
+    }
+
+    /**
+     * Reserves for the TransactionID sample of both files, the rest of the rows are read but never kept
+     */
+    public AdmissionTicket admitSample(MultipartFile file1, MultipartFile file2, double sampleRate) {
+        final long inputBytes = decodedSize(file1) + decodedSize(file2);
+        return admit((long) Math.ceil(inputBytes * Math.clamp(sampleRate, 0.0, 1.0)));
+    }
+
+    /**
+     * Reserves for a file that is held in memory whole, it never goes through large-file mode
+     */
+    public AdmissionTicket admitInMemory(MultipartFile file) {
+        return admit(decodedSize(file));
+    }
+
+    /**
+     * Reserves for a reconciliation of this many input bytes, negative when the size is unknown.
+     * Large-file mode (also taken for unknown sizes) only holds one partition of the input in memory at a time,
+     * but a kept pair list grows with the whole input, so only a request that counts or streams its pairs
+     * is reserved for one partition.
+     */
+    public AdmissionTicket admitInput(long inputBytes, boolean keepsPairs) {
+        if (inputBytes < 0 || largeFilesProperties.isLargeInput(inputBytes)) {
+            if (keepsPairs) {
+                return admit(inputBytes < 0 ? getBudgetBytes() : inputBytes);
+            }
+            final long partitionBytes = largeFilesProperties.getPartitionSize().toBytes();
+            return admit(inputBytes < 0 ? partitionBytes : Math.min(inputBytes, partitionBytes));
+        }
+        return admit(inputBytes);
+    }
+
+    public AdmissionTicket admit(long inputBytes) {
+        if (!admissionProperties.isEnabled()) {
+            return AdmissionTicket.NONE;
+        }
+
+        // A request bigger than the whole budget is capped to it, so it runs alone instead of never
+        final int permits = (int) Math.min(budgetKib, Math.max(1, estimateHeapBytes(inputBytes) / KIB));
+        final Duration maxWait = admissionProperties.getMaxWait();
+
+        try {
+            if (!budget.tryAcquire(permits, maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("Rejected reconciliation needing {} KB, {} KB of {} KB free after waiting {}",
+                        permits, budget.availablePermits(), budgetKib, maxWait);
+                throw new AdmissionRejectedException(permits * KIB, maxWait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReconciliationInterruptedException("Interrupted while waiting for memory budget");
+        }
+
+        logger.debug("Admitted reconciliation with {} KB reserved, {} KB left", permits, budget.availablePermits());
+        return new AdmissionTicket(budget, permits);
+    }
+
+    public long getBudgetBytes() {
+        return budgetKib * KIB;
+    }
+
+    public long getAvailableBytes() {
+        return budget.availablePermits() * KIB;
+    }
+
+    // Compressed uploads count with their decompressed size, one that decodes past the file size limit is rejected
+    private long decodedSize(MultipartFile file) {
+        return CompressedInput.decodedSize(file, largeFilesProperties.getMaxFileSize().toBytes());
+    }
+
+    /**
+     * Reserved budget, returned on close. Closing more than once is harmless.
+     */
+    public static final class AdmissionTicket implements AutoCloseable {
+
+        static final AdmissionTicket NONE = new AdmissionTicket(null, 0);
+
+        private final Semaphore budget;
+        private final int permits;
+        private boolean released;
+
+        private AdmissionTicket(Semaphore budget, int permits) {
+            this.budget = budget;
+            this.permits = permits;
+        }
+
+        public long getReservedBytes() {
+            return permits * KIB;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released && budget != null) {
+                budget.release(permits);
+            }
+            released = true;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.SourceFileDto;
+import luka.mugosa.filecomparison.domain.dto.SourcePairScoreDto;
+import luka.mugosa.filecomparison.domain.dto.SourcePairSummaryDto;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.TransactionIdSourcesDto;
+import luka.mugosa.filecomparison.domain.dto.response.MultiSourceReconciliationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.SourcePairOutcome;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
+import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
+import luka.mugosa.filecomparison.service.ScoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One TransactionID index shared by any number of sources, each parsed once straight into it.
+ * {@link #finish(boolean)} scores every two sources that contain an ID against each other and keeps the counts a
+ * two-file reconciliation of each pair would report, so N files cost N parses instead of one parse per pair and file.
+ */
+public class MultiSourceJoin {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiSourceJoin.class);
+
+    private final ScoreService scoreService;
+    private final ComparisonServiceImpl comparisonService;
+    private final List<String> filenames;
+
+    private final Map<TransactionId, SourceGroup> groups = new ConcurrentHashMap<>();
+
+    // Slot i has a single writer, the parser of source i, the parse futures completing make them visible to finish()
+    private final List<List<TransactionDto>> blankIdTransactions = new ArrayList<>();
+    private final int[] totalRecords;
+
+    MultiSourceJoin(ScoreService scoreService, ComparisonServiceImpl comparisonService, List<String> filenames) {
+        this.scoreService = scoreService;
+        this.comparisonService = comparisonService;
+        this.filenames = List.copyOf(filenames);
+        this.totalRecords = new int[filenames.size()];
+        for (int i = 0; i < filenames.size(); i++) {
+            blankIdTransactions.add(new ArrayList<>());
+        }
+    }
+
+    // source is 0 based here, the response numbers sources from 1
+    public void accept(int source, TransactionDto transaction) {
+        totalRecords[source]++;
+        if (TransactionId.isBlank(transaction.getTransactionID())) {
+            blankIdTransactions.get(source).add(transaction);
+            return;
+        }
+        groups.computeIfAbsent(transaction.getTransactionID(), id -> new SourceGroup(filenames.size()))
+                .transactions.get(source).add(transaction);
+    }
+
+    /**
+     * Must only be called once every parser is done. IDs matched in all sources are left out of the per ID list
+     * unless includeMatched is set.
+     */
+    public MultiSourceReconciliationResponse finish(boolean includeMatched) {
+        final int sourceCount = filenames.size();
+        logger.info("Finishing reconciliation of {} sources - {} ID groups", sourceCount, groups.size());
+
+        final ReconciliationAccumulator[][] pairAccumulators = new ReconciliationAccumulator[sourceCount][sourceCount];
+        for (int a = 0; a < sourceCount; a++) {
+            for (int b = a + 1; b < sourceCount; b++) {
+                pairAccumulators[a][b] = ReconciliationAccumulator.countingOnly();
+            }
+        }
+
+        final List<TransactionIdSourcesDto> transactionIds = new ArrayList<>();
+        int inAllSources = 0;
+        int fullyMatched = 0;
+        for (Map.Entry<TransactionId, SourceGroup> entry : groups.entrySet()) {
+            comparisonService.checkInterrupted();
+            final List<List<TransactionDto>> transactions = entry.getValue().transactions;
+
+            final List<Integer> presentIn = new ArrayList<>();
+            final List<Integer> recordCounts = new ArrayList<>(sourceCount);
+            for (int source = 0; source < sourceCount; source++) {
+                recordCounts.add(transactions.get(source).size());
+                if (!transactions.get(source).isEmpty()) {
+                    presentIn.add(source + 1);
+                }
+            }
+
+            final List<SourcePairScoreDto> pairScores = new ArrayList<>();
+            boolean allPairsMatched = true;
+            for (int a = 0; a < sourceCount; a++) {
+                for (int b = a + 1; b < sourceCount; b++) {
+                    final SourcePairScoreDto pairScore =
+                            scorePair(a, b, transactions.get(a), transactions.get(b), pairAccumulators[a][b]);
+                    if (pairScore != null) {
+                        pairScores.add(pairScore);
+                        allPairsMatched &= pairScore.outcome() == SourcePairOutcome.MATCHED;
+                    }
+                }
+            }
+
+            final boolean inAll = presentIn.size() == sourceCount;
+            if (inAll) {
+                inAllSources++;
+            }
+            if (inAll && allPairsMatched) {
+                fullyMatched++;
+                if (!includeMatched) {
+                    continue;
+                }
+            }
+            transactionIds.add(new TransactionIdSourcesDto(entry.getKey(), presentIn, recordCounts, pairScores));
+        }
+
+        final List<SourcePairSummaryDto> pairs = new ArrayList<>();
+        for (int a = 0; a < sourceCount; a++) {
+            for (int b = a + 1; b < sourceCount; b++) {
+                final ReconciliationAccumulator accumulator = pairAccumulators[a][b];
+                // Blank IDs have no shared index entry, each pair runs its own alternate key matching
+                comparisonService.matchByAlternateKeys(blankIdTransactions.get(a), blankIdTransactions.get(b), accumulator)
+                        .forEach(accumulator::unmatchedFromFile2);
+                pairs.add(new SourcePairSummaryDto(a + 1, b + 1,
+                        comparisonService.buildResponse(totalRecords[a], totalRecords[b], accumulator)));
+            }
+        }
+
+        final List<SourceFileDto> sources = new ArrayList<>(sourceCount);
+        for (int source = 0; source < sourceCount; source++) {
+            sources.add(new SourceFileDto(source + 1, filenames.get(source), totalRecords[source],
+                    blankIdTransactions.get(source).size()));
+        }
+
+        return MultiSourceReconciliationResponse.builder()
+                .sources(sources)
+                .pairs(pairs)
+                .totalTransactionIds(groups.size())
+                .transactionIdsInAllSources(inAllSources)
+                .fullyMatchedTransactionIds(fullyMatched)
+                .transactionIds(transactionIds)
+                .build();
+    }
+
+    /**
+     * Same rules as a two-file reconciliation of source a against source b, null when only one of them has the ID
+     */
+    private SourcePairScoreDto scorePair(int a, int b, List<TransactionDto> transactionsA, List<TransactionDto> transactionsB,
+                                         ReconciliationAccumulator accumulator) {
+        if (transactionsA.isEmpty()) {
+            transactionsB.forEach(accumulator::unmatchedFromFile2);
+            return null;
+        }
+        if (transactionsA.size() != transactionsB.size()) {
+            transactionsA.forEach(dto1 -> accumulator.unmatchedFromFile1(dto1, null, null));
+            return transactionsB.isEmpty()
+                    ? null
+                    : new SourcePairScoreDto(a + 1, b + 1, SourcePairOutcome.COUNT_MISMATCH, null, null);
+        }
+
+        MatchScore lowest = null;
+        boolean allHigh = true;
+        for (int i = 0; i < transactionsA.size(); i++) {
+            final MatchScore score = scoreService.calculateDecisiveScore(transactionsA.get(i), transactionsB.get(i));
+            accumulator.pairScored();
+            comparisonService.recordScoredPair(transactionsA.get(i), transactionsB.get(i), score, accumulator);
+            allHigh &= score.confidence() == MatchConfidence.HIGH;
+            if (lowest == null || score.totalScore() < lowest.totalScore()) {
+                lowest = score;
+            }
+        }
+        return new SourcePairScoreDto(a + 1, b + 1,
+                allHigh ? SourcePairOutcome.MATCHED : SourcePairOutcome.LOW_CONFIDENCE, lowest.totalScore(), lowest.confidence());
+    }
+
+    private static final class SourceGroup {
+
+        // One list per source, each written by that source's parser only
+        private final List<List<TransactionDto>> transactions;
+
+        SourceGroup(int sourceCount) {
+            this.transactions = new ArrayList<>(sourceCount);
+            for (int i = 0; i < sourceCount; i++) {
+                transactions.add(new ArrayList<>(1));
+            }
+        }
+    }
+}
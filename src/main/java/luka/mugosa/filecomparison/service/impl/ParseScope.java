@@ -0,0 +1,64 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shutdown-on-failure scope over the parse futures of one request, StructuredTaskScope is still a preview API on 21.
+ * The first failure, a timeout or an interrupt of the waiting thread cancels every forked task, interrupting its parser.
+ */
+class ParseScope {
+
+    private final List<CompletableFuture<?>> tasks = new ArrayList<>();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+    <T> CompletableFuture<T> fork(CompletableFuture<T> task) {
+        tasks.add(task);
+        task.whenComplete((result, failure) -> {
+            if (failure == null) {
+                return;
+            }
+            final Throwable cause = unwrap(failure);
+            // Cancellations are our own doing, the failure that caused them is what gets reported
+            if (!(cause instanceof CancellationException) && firstFailure.compareAndSet(null, cause)) {
+                shutdown();
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Waits for all tasks, throws the first real failure as the cause of an ExecutionException
+     */
+    void join(Duration timeout) throws InterruptedException, TimeoutException, ExecutionException {
+        try {
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CancellationException e) {
+            shutdown();
+            final Throwable failure = firstFailure.get();
+            throw new ExecutionException(failure != null ? failure : unwrap(e));
+        } catch (TimeoutException | InterruptedException e) {
+            shutdown();
+            throw e;
+        }
+    }
+
+    void shutdown() {
+        tasks.forEach(task -> task.cancel(true));
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return (failure instanceof CompletionException || failure instanceof ExecutionException) && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+    }
+}
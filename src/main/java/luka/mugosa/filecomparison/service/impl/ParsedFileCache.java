@@ -0,0 +1,139 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.response.ParseCacheStatsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parsed transactions keyed by the SHA-256 of the uploaded bytes, so a reference file reconciled against several
+ * ledgers is only parsed once. Least recently used entries are evicted once the estimated heap of all entries
+ * exceeds the configured size. The cached DTOs are shared between requests, their only mutable state is the lazily
+ * decoded text, which is safe to publish, see {@link TransactionDto}.
+ */
+@Component
+public class ParsedFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParsedFileCache.class);
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final long maxSizeBytes;
+    private final int rowOverheadBytes;
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CachedFile> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ParsedFileCache(ReconciliationProperties properties) {
+        final ReconciliationProperties.ParseCache cacheProperties = properties.getParseCache();
+        this.enabled = cacheProperties.isEnabled();
+        this.maxSizeBytes = cacheProperties.getMaxSize() != null
+                ? cacheProperties.getMaxSize().toBytes()
+                : Runtime.getRuntime().maxMemory() / 100 * cacheProperties.getDefaultHeapPercentage();
+        this.rowOverheadBytes = properties.getAdmission().getRowOverheadBytes();
+    }
+
+    /**
+     * Files that could never fit are not even hashed
+     */
+    public boolean isCacheable(MultipartFile file) {
+        return enabled && file.getSize() > 0 && file.getSize() <= maxSizeBytes;
+    }
+
+    public String contentHash(MultipartFile file) throws IOException {
+        final MessageDigest digest = sha256();
+        try (final InputStream inputStream = file.getInputStream()) {
+            final byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public synchronized List<TransactionDto> get(String contentHash) {
+        final CachedFile cached = entries.get(contentHash);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.transactions();
+    }
+
+    /**
+     * retainedBytes is what the transactions keep referenced, the decompressed rows of a parse or the snapshot
+     * they were loaded from, not the size of the upload
+     */
+    public synchronized void put(String contentHash, List<TransactionDto> transactions, long retainedBytes) {
+        final long weight = retainedBytes + (long) transactions.size() * rowOverheadBytes;
+        if (weight > maxSizeBytes) {
+            logger.debug("Not caching parsed file {} - estimated {} bytes exceeds cache size", contentHash, weight);
+            return;
+        }
+
+        final CachedFile previous = entries.put(contentHash, new CachedFile(List.copyOf(transactions), weight));
+        if (previous != null) {
+            sizeBytes -= previous.weight();
+        }
+        sizeBytes += weight;
+
+        final Iterator<Map.Entry<String, CachedFile>> eldest = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && eldest.hasNext()) {
+            final Map.Entry<String, CachedFile> entry = eldest.next();
+            sizeBytes -= entry.getValue().weight();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    public synchronized ParseCacheStatsResponse stats() {
+        final long hitCount = hits.get();
+        final long lookups = hitCount + misses.get();
+        return ParseCacheStatsResponse.builder()
+                .enabled(enabled)
+                .entries(entries.size())
+                .sizeBytes(sizeBytes)
+                .maxSizeBytes(maxSizeBytes)
+                .hits(hitCount)
+                .misses(misses.get())
+                .evictions(evictions.get())
+                .hitRate(lookups > 0 ? (double) hitCount / lookups : 0.0)
+                .build();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record CachedFile(List<TransactionDto> transactions, long weight) {
+    }
+}
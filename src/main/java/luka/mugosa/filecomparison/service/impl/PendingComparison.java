@@ -0,0 +1,13 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+
+/**
+ * Both files are parsed, only the comparison itself is left. Splitting the two lets parsing errors surface
+ * before a streamed response is committed.
+ */
+@FunctionalInterface
+public interface PendingComparison {
+
+    ReconciliationResponse compare(ReconciliationAccumulator accumulator);
+}
@@ -0,0 +1,97 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.FileStatisticsDto;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.response.PreflightResponse;
+import luka.mugosa.filecomparison.service.FileService;
+import luka.mugosa.filecomparison.service.PreflightService;
+import luka.mugosa.filecomparison.service.csv.CompressedInput;
+import luka.mugosa.filecomparison.service.sketch.HyperLogLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.function.Consumer;
+
+/**
+ * Scans both files once, in parallel, for row counts and TransactionID sketches before a reconciliation is run.
+ * Rows are split and their ID read, nothing else is parsed and no transaction is built or kept.
+ */
+@Service
+public class PreflightServiceImpl implements PreflightService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreflightServiceImpl.class);
+    // The sketches reject every row, nothing reaches the sink
+    private static final Consumer<TransactionDto> NO_ROWS = transaction -> {
+    };
+
+    private final FileService fileService;
+    private final MemoryAdmissionController admissionController;
+    private final ReconciliationProperties.LargeFiles largeFilesProperties;
+    private final ReconciliationProperties.Parsing parsingProperties;
+
+    public PreflightServiceImpl(FileService fileService, MemoryAdmissionController admissionController,
+                                ReconciliationProperties properties) {
+        this.fileService = fileService;
+        this.admissionController = admissionController;
+        this.largeFilesProperties = properties.getLargeFiles();
+        this.parsingProperties = properties.getParsing();
+    }
+
+    public PreflightResponse scan(MultipartFile file1, MultipartFile file2) {
+        final long startTime = System.currentTimeMillis();
+        final FileSketch sketch1 = new FileSketch();
+        final FileSketch sketch2 = new FileSketch();
+        final long maxFileBytes = largeFilesProperties.getMaxFileSize().toBytes();
+        final long inputBytes = CompressedInput.decodedSize(file1, maxFileBytes)
+                + CompressedInput.decodedSize(file2, maxFileBytes);
+        TransactionServiceImpl.awaitParsing(parsingProperties.timeoutFor(inputBytes),
+                fileService.parseFileAsync(file1, sketch1, NO_ROWS),
+                fileService.parseFileAsync(file2, sketch2, NO_ROWS)
+        );
+
+        final long distinct1;
+        final long distinct2;
+        final long inBoth;
+        if (sketch1.hasExactIds() && sketch2.hasExactIds()) {
+            distinct1 = sketch1.getExactDistinctIds();
+            distinct2 = sketch2.getExactDistinctIds();
+            inBoth = sketch1.countSharedIds(sketch2);
+        } else {
+            final HyperLogLog ids1 = sketch1.getDistinctIds();
+            final HyperLogLog ids2 = sketch2.getDistinctIds();
+            // The estimates can land a little above the exact number of rows with an ID
+            distinct1 = Math.min(ids1.estimate(), sketch1.getRecords() - sketch1.getBlankIdRecords());
+            distinct2 = Math.min(ids2.estimate(), sketch2.getRecords() - sketch2.getBlankIdRecords());
+            // Inclusion-exclusion over the merged sketch, clamped since the three estimates err independently. Its error
+            // scales with the union, so a few IDs that differ between two large files are lost in it
+            inBoth = Math.clamp(distinct1 + distinct2 - ids1.union(ids2).estimate(), 0, Math.min(distinct1, distinct2));
+        }
+
+        final long scanMillis = System.currentTimeMillis() - startTime;
+        logger.info("Pre-flight scan of {} and {} records in {}ms - about {} and {} distinct IDs, {} in both",
+                sketch1.getRecords(), sketch2.getRecords(), scanMillis, distinct1, distinct2, inBoth);
+
+        return PreflightResponse.builder()
+                .file1(statistics(file1, sketch1, distinct1))
+                .file2(statistics(file2, sketch2, distinct2))
+                .estimatedIdsInBothFiles(inBoth)
+                .estimatedIdsOnlyInFile1(distinct1 - inBoth)
+                .estimatedIdsOnlyInFile2(distinct2 - inBoth)
+                .estimatedHeapBytes(admissionController.estimateHeapBytes(inputBytes,
+                        (long) sketch1.getRecords() + sketch2.getRecords()))
+                .largeFileMode(largeFilesProperties.isLargeInput(inputBytes))
+                .scanMillis(scanMillis)
+                .build();
+    }
+
+    private static FileStatisticsDto statistics(MultipartFile file, FileSketch sketch, long distinctIds) {
+        final int idRecords = sketch.getRecords() - sketch.getBlankIdRecords();
+        final long duplicates = idRecords - distinctIds;
+        return new FileStatisticsDto(file.getOriginalFilename(), sketch.getRecords(), sketch.getBlankIdRecords(),
+                distinctIds, duplicates, idRecords > 0 ? (double) duplicates / idRecords : 0.0,
+                sketch.getLargestIdGroup());
+    }
+}
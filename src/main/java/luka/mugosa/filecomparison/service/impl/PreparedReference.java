@@ -0,0 +1,128 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.response.PreparedReferenceResponse;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+import luka.mugosa.filecomparison.service.csv.ParseReport;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * A file 1 that was parsed and grouped by TransactionID once, to be reconciled against any number of file 2 uploads.
+ * The rows never change after construction, so concurrent comparisons share them without locking. The registry and every
+ * comparison using it hold it, the budget is given back when the last of them closes it.
+ */
+public final class PreparedReference implements AutoCloseable {
+
+    private final String id;
+    private final String filename;
+    private final Map<TransactionId, List<TransactionDto>> groups;
+    private final List<TransactionDto> blankIdTransactions;
+    private final int totalRecords;
+    // Counters of the parse that prepared it, read only afterwards
+    private final ParseReport parseReport;
+    private final Instant createdAt;
+    private final Instant expiresAt;
+    // Budget held for the parsed rows while the reference is registered
+    private final MemoryAdmissionController.AdmissionTicket ticket;
+    // Starts with the registry's hold, 0 once the ticket is closed
+    private int holders = 1;
+    private ScheduledFuture<?> expiry;
+
+    PreparedReference(String id, String filename, List<TransactionDto> transactions, ParseReport parseReport,
+                      Instant createdAt, Instant expiresAt, MemoryAdmissionController.AdmissionTicket ticket) {
+        this.id = id;
+        this.filename = filename;
+        this.parseReport = parseReport;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.ticket = ticket;
+        this.totalRecords = transactions.size();
+
+        final Map<TransactionId, List<TransactionDto>> grouped = new HashMap<>();
+        final List<TransactionDto> blankIds = new ArrayList<>();
+        for (TransactionDto transaction : transactions) {
+            if (TransactionId.isBlank(transaction.getTransactionID())) {
+                blankIds.add(transaction);
+            } else {
+                grouped.computeIfAbsent(transaction.getTransactionID(), transactionId -> new ArrayList<>(1)).add(transaction);
+            }
+        }
+        grouped.replaceAll((transactionId, group) -> List.copyOf(group));
+        this.groups = Map.copyOf(grouped);
+        this.blankIdTransactions = List.copyOf(blankIds);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    Map<TransactionId, List<TransactionDto>> getGroups() {
+        return groups;
+    }
+
+    List<TransactionDto> getBlankIdTransactions() {
+        return blankIdTransactions;
+    }
+
+    int getTotalRecords() {
+        return totalRecords;
+    }
+
+    ParseReport getParseReport() {
+        return parseReport;
+    }
+
+    Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    // False once the last holder let go, the reference can't be used anymore
+    synchronized boolean retain() {
+        if (holders == 0) {
+            return false;
+        }
+        holders++;
+        return true;
+    }
+
+    synchronized void expireWith(ScheduledFuture<?> expiry) {
+        this.expiry = expiry;
+    }
+
+    // Called once by the registry when the reference is released or expires, the expiry task must not keep it alive
+    synchronized void unregister() {
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+        close();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (holders > 0 && --holders == 0) {
+            ticket.close();
+        }
+    }
+
+    PreparedReferenceResponse toResponse() {
+        return PreparedReferenceResponse.builder()
+                .referenceId(id)
+                .filename(filename)
+                .totalRecords(totalRecords)
+                .indexedIds(groups.size())
+                .blankIdRecords(blankIdTransactions.size())
+                .createdAt(createdAt)
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.response.PreparedReferenceResponse;
+import luka.mugosa.filecomparison.domain.exception.ReferenceNotFoundException;
+import luka.mugosa.filecomparison.service.FileService;
+import luka.mugosa.filecomparison.service.PreparedReferenceService;
+import luka.mugosa.filecomparison.service.csv.CompressedInput;
+import luka.mugosa.filecomparison.service.csv.ParseReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of prepared reference files. A reference is parsed and indexed once, then reconciled against any number of
+ * file 2 uploads until its TTL runs out. Its parsed rows stay on the admission budget for as long as it is registered
+ * or a comparison still uses it.
+ */
+@Service
+public class PreparedReferenceServiceImpl implements PreparedReferenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreparedReferenceServiceImpl.class);
+
+    private final FileService fileService;
+    private final MemoryAdmissionController admissionController;
+    private final ReconciliationProperties.References referencesProperties;
+    private final ReconciliationProperties.LargeFiles largeFilesProperties;
+    private final Map<String, PreparedReference> references = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService expiry =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("prepared-reference-expiry").factory());
+
+    public PreparedReferenceServiceImpl(FileService fileService, MemoryAdmissionController admissionController,
+                                        ReconciliationProperties properties) {
+        this.fileService = fileService;
+        this.admissionController = admissionController;
+        this.referencesProperties = properties.getReferences();
+        this.largeFilesProperties = properties.getLargeFiles();
+    }
+
+    public PreparedReferenceResponse prepare(MultipartFile file, Duration ttl) {
+        purgeExpiredReferences();
+        final Duration effectiveTtl = resolveTtl(ttl);
+        fileService.validateUpload(file);
+
+        // A reference is held in memory whole, large-file mode can't partition it
+        final long decodedBytes = CompressedInput.decodedSize(file, largeFilesProperties.getMaxFileSize().toBytes());
+        if (largeFilesProperties.isLargeInput(decodedBytes)) {
+            throw new IllegalArgumentException("Reference files must be under "
+                    + largeFilesProperties.getThreshold().toMegabytes() + "MB");
+        }
+        if (references.size() >= referencesProperties.getMaxReferences()) {
+            throw tooManyReferences();
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final MemoryAdmissionController.AdmissionTicket ticket = admissionController.admitInMemory(file);
+        final PreparedReference reference;
+        try {
+            final ParseReport report = fileService.newParseReport(file.getOriginalFilename());
+            final List<TransactionDto> transactions = fileService.parseFile(file, report);
+            final Instant now = Instant.now();
+            reference = new PreparedReference(UUID.randomUUID().toString(), file.getOriginalFilename(), transactions,
+                    report, now, now.plus(effectiveTtl), ticket);
+        } catch (RuntimeException e) {
+            ticket.close();
+            throw e;
+        }
+
+        references.put(reference.getId(), reference);
+        // Checked again after the put, concurrent registrations could all have passed the first check
+        if (references.size() > referencesProperties.getMaxReferences()) {
+            expire(reference);
+            throw tooManyReferences();
+        }
+        // Gives the budget back on time even if nobody touches the registry in between. Only the id is captured,
+        // a released reference cancels the task and its rows can be collected right away
+        final String referenceId = reference.getId();
+        reference.expireWith(expiry.schedule(() -> expire(referenceId), effectiveTtl.toMillis(), TimeUnit.MILLISECONDS));
+
+        logger.info("Prepared reference {} from '{}' - {} transactions, {} IDs indexed in {}ms, expires at {}",
+                reference.getId(), file.getOriginalFilename(), reference.getTotalRecords(), reference.getGroups().size(),
+                System.currentTimeMillis() - startTime, reference.getExpiresAt());
+        return reference.toResponse();
+    }
+
+    public PreparedReferenceResponse getReference(String referenceId) {
+        try (PreparedReference reference = acquire(referenceId)) {
+            return reference.toResponse();
+        }
+    }
+
+    public void release(String referenceId) {
+        final PreparedReference reference = references.remove(referenceId);
+        if (reference == null) {
+            throw new ReferenceNotFoundException(referenceId);
+        }
+        // New comparisons can't find it anymore, the ones holding it keep its budget until they close it
+        reference.unregister();
+        logger.info("Released prepared reference {}", referenceId);
+    }
+
+    /**
+     * The reference for a comparison, held until the caller closes it. A missing or expired one is reported as not found.
+     */
+    public PreparedReference acquire(String referenceId) {
+        final PreparedReference reference = references.get(referenceId);
+        if (reference == null) {
+            throw new ReferenceNotFoundException(referenceId);
+        }
+        if (reference.isExpired(Instant.now())) {
+            expire(reference);
+            throw new ReferenceNotFoundException(referenceId);
+        }
+        // Released by someone else since the lookup
+        if (!reference.retain()) {
+            throw new ReferenceNotFoundException(referenceId);
+        }
+        return reference;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiry.shutdownNow();
+    }
+
+    private Duration resolveTtl(Duration ttl) {
+        if (ttl == null) {
+            return referencesProperties.getDefaultTtl();
+        }
+        if (ttl.isZero() || ttl.isNegative() || ttl.compareTo(referencesProperties.getMaxTtl()) > 0) {
+            throw new IllegalArgumentException("ttl must be positive and at most " + referencesProperties.getMaxTtl());
+        }
+        return ttl;
+    }
+
+    private IllegalArgumentException tooManyReferences() {
+        return new IllegalArgumentException("At most " + referencesProperties.getMaxReferences()
+                + " prepared references can be registered, release one first");
+    }
+
+    private void expire(String referenceId) {
+        final PreparedReference reference = references.get(referenceId);
+        if (reference != null) {
+            expire(reference);
+        }
+    }
+
+    private void expire(PreparedReference reference) {
+        if (references.remove(reference.getId(), reference)) {
+            reference.unregister();
+            logger.info("Prepared reference {} expired", reference.getId());
+        }
+    }
+
+    private void purgeExpiredReferences() {
+        final Instant now = Instant.now();
+        references.values().stream()
+                .filter(reference -> reference.isExpired(now))
+                .toList()
+                .forEach(this::expire);
+    }
+}
@@ -0,0 +1,114 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.UnmatchedTransactionPairDto;
+import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
+import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Outcome counters and unmatched pairs of one reconciliation, shared by the batch and pipelined engines.
+ * A counting-only accumulator never creates the pair objects, so its memory does not grow with the number of misses.
+ */
+public class ReconciliationAccumulator {
+
+    private int matchedRecords;
+    private int unmatchedRecordsInFile1;
+    private int unmatchedRecordsInFile2;
+    // By MatchConfidence ordinal, matched rows count as HIGH
+    private final int[] pairsByConfidence = new int[MatchConfidence.values().length];
+    private final List<UnmatchedTransactionPairDto> unmatchedTransactionPairs;
+    private final Consumer<UnmatchedTransactionPairDto> pairSink;
+    private ReconciliationProgress progress = new ReconciliationProgress();
+
+    public ReconciliationAccumulator() {
+        this.unmatchedTransactionPairs = new ArrayList<>();
+        this.pairSink = unmatchedTransactionPairs::add;
+    }
+
+    private ReconciliationAccumulator(Consumer<UnmatchedTransactionPairDto> pairSink) {
+        this.unmatchedTransactionPairs = null;
+        this.pairSink = pairSink;
+    }
+
+    public static ReconciliationAccumulator countingOnly() {
+        return new ReconciliationAccumulator(null);
+    }
+
+    // Pairs are handed over as they are found and not kept
+    public static ReconciliationAccumulator streaming(Consumer<UnmatchedTransactionPairDto> pairSink) {
+        return new ReconciliationAccumulator(pairSink);
+    }
+
+    public ReconciliationAccumulator withProgress(ReconciliationProgress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    public void pairScored() {
+        progress.pairScored();
+    }
+
+    // Shared with the progress, a reconciliation runs on one accumulator
+    public long getPairsScored() {
+        return progress.getPairsScored();
+    }
+
+    public void matched() {
+        matchedRecords++;
+        pairsByConfidence[MatchConfidence.HIGH.ordinal()]++;
+    }
+
+    // Matches counted earlier, e.g. by an incremental reconciliation that only revisits the groups that changed
+    public void matched(int records) {
+        matchedRecords += records;
+        pairsByConfidence[MatchConfidence.HIGH.ordinal()] += records;
+    }
+
+    public void unmatchedFromFile1(TransactionDto transaction1, TransactionDto transaction2, MatchScore matchScore) {
+        unmatchedRecordsInFile1++;
+        if (matchScore != null) {
+            pairsByConfidence[matchScore.confidence().ordinal()]++;
+        }
+        if (pairSink != null) {
+            pairSink.accept(new UnmatchedTransactionPairDto(transaction1, transaction2, matchScore));
+        }
+    }
+
+    public void unmatchedFromFile2(TransactionDto transaction2) {
+        unmatchedRecordsInFile2++;
+        if (pairSink != null) {
+            pairSink.accept(new UnmatchedTransactionPairDto(null, transaction2));
+        }
+    }
+
+    public int getMatchedRecords() {
+        return matchedRecords;
+    }
+
+    public int getUnmatchedRecordsInFile1() {
+        return unmatchedRecordsInFile1;
+    }
+
+    public int getUnmatchedRecordsInFile2() {
+        return unmatchedRecordsInFile2;
+    }
+
+    public Map<MatchConfidence, Integer> getPairsByConfidence() {
+        final Map<MatchConfidence, Integer> counts = new EnumMap<>(MatchConfidence.class);
+        for (MatchConfidence confidence : MatchConfidence.values()) {
+            counts.put(confidence, pairsByConfidence[confidence.ordinal()]);
+        }
+        return counts;
+    }
+
+    // null when the pairs were not collected
+    public List<UnmatchedTransactionPairDto> getUnmatchedTransactionPairs() {
+        return unmatchedTransactionPairs;
+    }
+}
@@ -0,0 +1,126 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationJobResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.JobStatus;
+
+import java.time.Instant;
+import java.util.concurrent.Future;
+
+/**
+ * State of one submitted reconciliation. Status changes are synchronized so a cancel can't race a completion.
+ */
+public class ReconciliationJob {
+
+    private final String id;
+    private final Instant submittedAt = Instant.now();
+    private final ReconciliationProgress progress = new ReconciliationProgress();
+    private final StoredUpload upload1;
+    private final StoredUpload upload2;
+
+    private JobStatus status = JobStatus.QUEUED;
+    private Instant finishedAt;
+    private ReconciliationResponse result;
+    private String errorMessage;
+    private Future<?> future;
+
+    public ReconciliationJob(String id, StoredUpload upload1, StoredUpload upload2) {
+        this.id = id;
+        this.upload1 = upload1;
+        this.upload2 = upload2;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ReconciliationProgress getProgress() {
+        return progress;
+    }
+
+    public StoredUpload getUpload1() {
+        return upload1;
+    }
+
+    public StoredUpload getUpload2() {
+        return upload2;
+    }
+
+    public synchronized JobStatus getStatus() {
+        return status;
+    }
+
+    public synchronized Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public synchronized ReconciliationResponse getResult() {
+        return result;
+    }
+
+    synchronized void attach(Future<?> future) {
+        this.future = future;
+        if (status == JobStatus.CANCELLED) {
+            future.cancel(true);
+        }
+    }
+
+    // false when the job was cancelled while it waited in the queue
+    synchronized boolean start() {
+        if (status != JobStatus.QUEUED) {
+            return false;
+        }
+        status = JobStatus.RUNNING;
+        return true;
+    }
+
+    synchronized void complete(ReconciliationResponse result) {
+        if (status == JobStatus.RUNNING) {
+            this.result = result;
+            finish(JobStatus.COMPLETED);
+        }
+    }
+
+    synchronized void fail(String errorMessage) {
+        if (status == JobStatus.RUNNING) {
+            this.errorMessage = errorMessage;
+            finish(JobStatus.FAILED);
+        }
+    }
+
+    synchronized boolean cancel() {
+        if (status.isFinished()) {
+            return false;
+        }
+        finish(JobStatus.CANCELLED);
+        if (future != null) {
+            future.cancel(true);
+        }
+        // A job cancelled in the queue never runs, so its uploads are released here
+        releaseUploads();
+        return true;
+    }
+
+    void releaseUploads() {
+        upload1.delete();
+        upload2.delete();
+    }
+
+    public synchronized ReconciliationJobResponse toResponse() {
+        return ReconciliationJobResponse.builder()
+                .jobId(id)
+                .status(status)
+                .rowsParsedFromFile1(progress.getRowsParsedFromFile1())
+                .rowsParsedFromFile2(progress.getRowsParsedFromFile2())
+                .pairsScored(progress.getPairsScored())
+                .submittedAt(submittedAt)
+                .finishedAt(finishedAt)
+                .errorMessage(errorMessage)
+                .build();
+    }
+
+    private void finish(JobStatus finalStatus) {
+        status = finalStatus;
+        finishedAt = Instant.now();
+    }
+}
@@ -0,0 +1,192 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationJobResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.JobStatus;
+import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
+import luka.mugosa.filecomparison.domain.exception.JobNotCompletedException;
+import luka.mugosa.filecomparison.domain.exception.JobNotFoundException;
+import luka.mugosa.filecomparison.domain.exception.JobQueueFullException;
+import luka.mugosa.filecomparison.service.ReconciliationJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ReconciliationJobServiceImpl implements ReconciliationJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationJobServiceImpl.class);
+
+    private final TransactionServiceImpl transactionService;
+    private final MemoryAdmissionController admissionController;
+    private final ReconciliationProperties.Jobs jobsProperties;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService purger;
+    private final Map<String, ReconciliationJob> jobs = new ConcurrentHashMap<>();
+
+    public ReconciliationJobServiceImpl(TransactionServiceImpl transactionService, MemoryAdmissionController admissionController,
+                                        ReconciliationProperties properties) {
+        this.transactionService = transactionService;
+        this.admissionController = admissionController;
+        this.jobsProperties = properties.getJobs();
+        // Fixed number of workers behind a bounded queue, submissions past the queue are rejected
+        this.executor = new ThreadPoolExecutor(
+                jobsProperties.getMaxConcurrent(), jobsProperties.getMaxConcurrent(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobsProperties.getQueueCapacity()),
+                Thread.ofVirtual().name("reconciliation-job-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        // Results would otherwise stay in memory for as long as nobody submits a new job
+        final long purgeIntervalMillis = Math.max(1, jobsProperties.getPurgeInterval().toMillis());
+        this.purger = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("reconciliation-job-purge").factory());
+        purger.scheduleWithFixedDelay(this::purgeExpiredJobs, purgeIntervalMillis, purgeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public ReconciliationJobResponse submit(MultipartFile file1, MultipartFile file2, ReconciliationOptions options) {
+        purgeExpiredJobs();
+        // Rejected before the uploads are copied, not once a worker picks the job up
+        transactionService.requireBoundedOutput(file1, file2, options);
+
+        final StoredUpload upload1 = store(file1);
+        final StoredUpload upload2;
+        try {
+            upload2 = store(file2);
+        } catch (RuntimeException e) {
+            upload1.delete();
+            throw e;
+        }
+
+        final ReconciliationJob job = new ReconciliationJob(UUID.randomUUID().toString(), upload1, upload2);
+        jobs.put(job.getId(), job);
+
+        try {
+            job.attach(executor.submit(() -> run(job, options)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            job.releaseUploads();
+            logger.warn("Rejected reconciliation job, {} jobs already queued", executor.getQueue().size());
+            throw new JobQueueFullException(jobsProperties.getQueueCapacity());
+        }
+
+        logger.info("Submitted reconciliation job {} - Queued: {}, Running: {}",
+                job.getId(), executor.getQueue().size(), executor.getActiveCount());
+        return job.toResponse();
+    }
+
+    public ReconciliationJobResponse getJob(String jobId) {
+        return findJob(jobId).toResponse();
+    }
+
+    public ReconciliationResponse getResult(String jobId) {
+        final ReconciliationJob job = findJob(jobId);
+        final JobStatus status = job.getStatus();
+        if (status != JobStatus.COMPLETED) {
+            throw new JobNotCompletedException(jobId, status);
+        }
+        return job.getResult();
+    }
+
+    public ReconciliationJobResponse cancel(String jobId) {
+        final ReconciliationJob job = findJob(jobId);
+        if (job.cancel()) {
+            // Drops the cancelled task from the queue instead of letting it hold a slot until a worker reaches it
+            executor.purge();
+            logger.info("Cancelled reconciliation job {}", jobId);
+        }
+        return job.toResponse();
+    }
+
+    public int getRunningJobs() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedJobs() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void run(ReconciliationJob job, ReconciliationOptions options) {
+        try {
+            if (!job.start()) {
+                return;
+            }
+            logger.info("Started reconciliation job {}", job.getId());
+            // Jobs share the memory budget with the synchronous endpoints
+            final MemoryAdmissionController.AdmissionTicket ticket =
+                    admissionController.admit(job.getUpload1(), job.getUpload2(), !options.summaryOnly());
+            try {
+                job.complete(transactionService.reconcileTransactions(job.getUpload1(), job.getUpload2(), options, job.getProgress()));
+            } finally {
+                ticket.close();
+            }
+            logger.info("Completed reconciliation job {}", job.getId());
+            dropOldestResults();
+        } catch (RuntimeException e) {
+            logger.error("Reconciliation job {} failed: {}", job.getId(), e.getMessage(), e);
+            job.fail(e.getMessage());
+        } finally {
+            job.releaseUploads();
+        }
+    }
+
+    private ReconciliationJob findJob(String jobId) {
+        final ReconciliationJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new JobNotFoundException(jobId);
+        }
+        return job;
+    }
+
+    private StoredUpload store(MultipartFile file) {
+        try {
+            return StoredUpload.of(file);
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to store uploaded file: " + file.getOriginalFilename(), e);
+        }
+    }
+
+    private void purgeExpiredJobs() {
+        final Instant cutoff = Instant.now().minus(jobsProperties.getRetention());
+        jobs.values().removeIf(job -> {
+            final Instant finishedAt = job.getFinishedAt();
+            return finishedAt != null && finishedAt.isBefore(cutoff);
+        });
+    }
+
+    // Each result holds every unmatched pair, so only the newest ones are kept before their retention runs out
+    private void dropOldestResults() {
+        final List<ReconciliationJob> completed = jobs.values().stream()
+                .filter(job -> job.getStatus() == JobStatus.COMPLETED)
+                .sorted(Comparator.comparing(ReconciliationJob::getFinishedAt))
+                .toList();
+        for (int i = 0; i < completed.size() - jobsProperties.getMaxRetainedResults(); i++) {
+            jobs.remove(completed.get(i).getId());
+            logger.info("Dropped the result of reconciliation job {}, more than {} results retained",
+                    completed.get(i).getId(), jobsProperties.getMaxRetainedResults());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import luka.mugosa.filecomparison.config.ReconciliationExecutors;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Gauges of the work in flight, read when the registry is scraped. Spring Boot binds every MeterBinder bean.
+ */
+@Component
+public class ReconciliationMeterBinder implements MeterBinder {
+
+    private final ReconciliationJobServiceImpl jobService;
+    private final ReconciliationExecutors executors;
+    private final MemoryAdmissionController admissionController;
+
+    public ReconciliationMeterBinder(ReconciliationJobServiceImpl jobService, ReconciliationExecutors executors,
+                                     MemoryAdmissionController admissionController) {
+        this.jobService = jobService;
+        this.executors = executors;
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("reconciliation.jobs.running", jobService, ReconciliationJobServiceImpl::getRunningJobs)
+                .description("Reconciliation jobs being run")
+                .register(registry);
+        Gauge.builder("reconciliation.jobs.queued", jobService, ReconciliationJobServiceImpl::getQueuedJobs)
+                .description("Reconciliation jobs waiting for a worker")
+                .register(registry);
+
+        final ForkJoinPool cpuPool = executors.getCpuPool();
+        Gauge.builder("reconciliation.cpu.queued", cpuPool, pool -> pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount())
+                .description("Parse chunks and scoring tasks waiting on the CPU pool")
+                .register(registry);
+        Gauge.builder("reconciliation.cpu.active", cpuPool, ForkJoinPool::getActiveThreadCount)
+                .description("Busy threads of the CPU pool")
+                .register(registry);
+
+        // Covers the synchronous endpoints too, every reconciliation holds its estimate while it runs
+        Gauge.builder("reconciliation.admission.reserved", admissionController,
+                        admission -> admission.getBudgetBytes() - admission.getAvailableBytes())
+                .description("Heap reserved by the reconciliations in flight")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
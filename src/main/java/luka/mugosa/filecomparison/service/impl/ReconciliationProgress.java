@@ -0,0 +1,43 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of one reconciliation, written by the parser and comparison threads and read by status polls
+ */
+public class ReconciliationProgress {
+
+    private final AtomicLong rowsParsedFromFile1 = new AtomicLong();
+    private final AtomicLong rowsParsedFromFile2 = new AtomicLong();
+    private final AtomicLong pairsScored = new AtomicLong();
+
+    public void rowParsedFromFile1() {
+        rowsParsedFromFile1.incrementAndGet();
+    }
+
+    public void rowParsedFromFile2() {
+        rowsParsedFromFile2.incrementAndGet();
+    }
+
+    // For the batch engine, which only knows the counts once a file is fully parsed
+    public void rowsParsed(long fromFile1, long fromFile2) {
+        rowsParsedFromFile1.addAndGet(fromFile1);
+        rowsParsedFromFile2.addAndGet(fromFile2);
+    }
+
+    public void pairScored() {
+        pairsScored.incrementAndGet();
+    }
+
+    public long getRowsParsedFromFile1() {
+        return rowsParsedFromFile1.get();
+    }
+
+    public long getRowsParsedFromFile2() {
+        return rowsParsedFromFile2.get();
+    }
+
+    public long getPairsScored() {
+        return pairsScored.get();
+    }
+}
@@ -0,0 +1,100 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
+import luka.mugosa.filecomparison.service.ScoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The one-sided counterpart of {@link SymmetricHashJoin} for a {@link PreparedReference}: file 1 is already indexed,
+ * so only the file 2 rows are grouped, each is probed against the reference as it is parsed.
+ * {@link #finish(ReconciliationAccumulator)} applies the same rules as {@link ComparisonServiceImpl#compareData(List, List)}.
+ */
+public class ReferenceProbeJoin {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceProbeJoin.class);
+
+    private final ScoreService scoreService;
+    private final ComparisonServiceImpl comparisonService;
+    private final ReconciliationProgress progress;
+    private final PreparedReference reference;
+
+    // Only the file 2 parser writes, the parse future completing makes these visible to finish()
+    private final Map<TransactionId, ProbeGroup> groups = new HashMap<>();
+    private final List<TransactionDto> blankIdTransactions2 = new ArrayList<>();
+    private int totalRecordsInFile2;
+
+    ReferenceProbeJoin(ScoreService scoreService, ComparisonServiceImpl comparisonService, ReconciliationProgress progress,
+                       PreparedReference reference) {
+        this.scoreService = scoreService;
+        this.comparisonService = comparisonService;
+        this.progress = progress;
+        this.reference = reference;
+        progress.rowsParsed(reference.getTotalRecords(), 0);
+    }
+
+    public void acceptFromFile2(TransactionDto transaction) {
+        totalRecordsInFile2++;
+        progress.rowParsedFromFile2();
+        if (TransactionId.isBlank(transaction.getTransactionID())) {
+            blankIdTransactions2.add(transaction);
+            return;
+        }
+
+        final ProbeGroup group = groups.computeIfAbsent(transaction.getTransactionID(), id -> new ProbeGroup());
+        group.transactions2.add(transaction);
+        final int position = group.transactions2.size() - 1;
+        final List<TransactionDto> transactions1 = reference.getGroups().get(transaction.getTransactionID());
+        if (transactions1 != null && position < transactions1.size()) {
+            group.scores.add(scoreService.calculateDecisiveScore(transactions1.get(position), transaction));
+            progress.pairScored();
+        }
+    }
+
+    public ReconciliationResponse finish(ReconciliationAccumulator accumulator) {
+        logger.info("Finishing comparison against reference {} - Collection1: {} records, Collection2: {} records",
+                reference.getId(), reference.getTotalRecords(), totalRecordsInFile2);
+
+        for (Map.Entry<TransactionId, List<TransactionDto>> entry : reference.getGroups().entrySet()) {
+            comparisonService.checkInterrupted();
+            final List<TransactionDto> transactions1 = entry.getValue();
+            final ProbeGroup group = groups.get(entry.getKey());
+            if (group == null || group.transactions2.size() != transactions1.size()) {
+                // Covers IDs missing from file 2 as well as duplicate count mismatches
+                transactions1.forEach(dto1 -> accumulator.unmatchedFromFile1(dto1, null, null));
+            } else {
+                for (int i = 0; i < transactions1.size(); i++) {
+                    comparisonService.recordScoredPair(transactions1.get(i), group.transactions2.get(i),
+                            group.scores.get(i), accumulator);
+                }
+            }
+        }
+
+        final List<TransactionDto> unmatchedBlankIdFromFile2 =
+                comparisonService.matchByAlternateKeys(reference.getBlankIdTransactions(), blankIdTransactions2, accumulator);
+
+        groups.forEach((transactionId, group) -> {
+            if (!reference.getGroups().containsKey(transactionId)) {
+                group.transactions2.forEach(accumulator::unmatchedFromFile2);
+            }
+        });
+        unmatchedBlankIdFromFile2.forEach(accumulator::unmatchedFromFile2);
+
+        return comparisonService.buildResponse(reference.getTotalRecords(), totalRecordsInFile2, accumulator);
+    }
+
+    private static final class ProbeGroup {
+
+        private final List<TransactionDto> transactions2 = new ArrayList<>(1);
+        // scores.get(i) belongs to the i-th row of the reference group and of this group
+        private final List<MatchScore> scores = new ArrayList<>(1);
+    }
+}
@@ -0,0 +1,66 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.EstimatedValueDto;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationEstimateResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+
+/**
+ * Scales the reconciliation of a TransactionID sample up to the whole files. Each rate is the share of sampled rows
+ * with that outcome, its bounds are the Wilson score interval, narrowed by the finite population correction so that
+ * a sample of every row has no spread at all. Counts are the rates times the exact number of rows with an ID.
+ */
+final class SampleEstimator {
+
+    static final double CONFIDENCE_LEVEL = 0.95;
+    // Two sided normal quantile for CONFIDENCE_LEVEL
+    private static final double Z = 1.959963984540054;
+
+    private SampleEstimator() {
+    }
+
+    static ReconciliationEstimateResponse estimate(TransactionIdSampler sampler1, TransactionIdSampler sampler2,
+                                                   ReconciliationResponse sample) {
+        final int population1 = sampler1.getSeenRecords() - sampler1.getBlankIdRecords();
+        final int population2 = sampler2.getSeenRecords() - sampler2.getBlankIdRecords();
+        final int sampled1 = sample.totalRecordsInFile1();
+        final int sampled2 = sample.totalRecordsInFile2();
+
+        final EstimatedValueDto matchRate = rate(sample.matchedRecords(), sampled1, population1);
+        return ReconciliationEstimateResponse.builder()
+                .sampleRate(sampler1.getSampleRate())
+                .confidenceLevel(CONFIDENCE_LEVEL)
+                .totalRecordsInFile1(sampler1.getSeenRecords())
+                .totalRecordsInFile2(sampler2.getSeenRecords())
+                .blankIdRecordsInFile1(sampler1.getBlankIdRecords())
+                .blankIdRecordsInFile2(sampler2.getBlankIdRecords())
+                .sampledRecordsInFile1(sampled1)
+                .sampledRecordsInFile2(sampled2)
+                .matchPercentage(scale(matchRate, 100))
+                .matchedRecords(scale(matchRate, population1))
+                .unmatchedRecordsInFile1(scale(rate(sample.unmatchedRecordsInFile1(), sampled1, population1), population1))
+                .unmatchedRecordsInFile2(scale(rate(sample.unmatchedRecordsInFile2(), sampled2, population2), population2))
+                .sample(sample)
+                .build();
+    }
+
+    static EstimatedValueDto rate(int hits, int sampled, int population) {
+        if (sampled == 0) {
+            return new EstimatedValueDto(0, 0, population > 0 ? 1 : 0);
+        }
+        final double estimate = (double) hits / sampled;
+        if (sampled >= population) {
+            return new EstimatedValueDto(estimate, estimate, estimate);
+        }
+
+        final double effectiveSize = sampled / (1 - (double) sampled / population);
+        final double z2 = Z * Z / effectiveSize;
+        final double center = (estimate + z2 / 2) / (1 + z2);
+        final double halfWidth = Z * Math.sqrt(estimate * (1 - estimate) / effectiveSize + z2 / (4 * effectiveSize))
+                / (1 + z2);
+        return new EstimatedValueDto(estimate, Math.max(0, center - halfWidth), Math.min(1, center + halfWidth));
+    }
+
+    private static EstimatedValueDto scale(EstimatedValueDto rate, double factor) {
+        return new EstimatedValueDto(rate.estimate() * factor, rate.lowerBound() * factor, rate.upperBound() * factor);
+    }
+}
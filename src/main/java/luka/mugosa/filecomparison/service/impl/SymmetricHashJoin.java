@@ -0,0 +1,134 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
+import luka.mugosa.filecomparison.service.ScoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symmetric hash join over the two files while they are still being parsed.
+ * Each side is fed by its own parser thread, a row is inserted into the shared index and probed against the other side
+ * right away, so the first pair of an ID group is scored as soon as both rows have arrived.
+ * Whether the pair counts is only known once both files are read, a group whose duplicate counts end up different is
+ * reported unscored. Scoring only the first pair up front bounds that wasted work to one pair per such group,
+ * the rest of a group with duplicates is scored in finish(). finish() logs how many early scores were thrown away.
+ * {@link #finish(ReconciliationAccumulator)} must only be called once both parsers are done, it applies the same rules as
+ * {@link ComparisonServiceImpl#compareData(List, List)} to the prepared groups.
+ */
+public class SymmetricHashJoin {
+
+    private static final Logger logger = LoggerFactory.getLogger(SymmetricHashJoin.class);
+
+    private final ScoreService scoreService;
+    private final ComparisonServiceImpl comparisonService;
+    private final ReconciliationProgress progress;
+
+    private final Map<TransactionId, JoinGroup> groups = new ConcurrentHashMap<>();
+
+    // Each side has a single writer, the parse futures completing make these visible to finish()
+    private final List<TransactionDto> blankIdTransactions1 = new ArrayList<>();
+    private final List<TransactionDto> blankIdTransactions2 = new ArrayList<>();
+    private int totalRecordsInFile1;
+    private int totalRecordsInFile2;
+
+    SymmetricHashJoin(ScoreService scoreService, ComparisonServiceImpl comparisonService, ReconciliationProgress progress) {
+        this.scoreService = scoreService;
+        this.comparisonService = comparisonService;
+        this.progress = progress;
+    }
+
+    public void acceptFromFile1(TransactionDto transaction) {
+        totalRecordsInFile1++;
+        progress.rowParsedFromFile1();
+        if (TransactionId.isBlank(transaction.getTransactionID())) {
+            blankIdTransactions1.add(transaction);
+            return;
+        }
+        groups.computeIfAbsent(transaction.getTransactionID(), id -> new JoinGroup()).add(transaction, true);
+    }
+
+    public void acceptFromFile2(TransactionDto transaction) {
+        totalRecordsInFile2++;
+        progress.rowParsedFromFile2();
+        if (TransactionId.isBlank(transaction.getTransactionID())) {
+            blankIdTransactions2.add(transaction);
+            return;
+        }
+        groups.computeIfAbsent(transaction.getTransactionID(), id -> new JoinGroup()).add(transaction, false);
+    }
+
+    public ReconciliationResponse finish() {
+        return finish(new ReconciliationAccumulator().withProgress(progress));
+    }
+
+    public ReconciliationResponse finish(ReconciliationAccumulator accumulator) {
+        logger.info("Finishing pipelined comparison - Collection1: {} records, Collection2: {} records, {} ID groups",
+                totalRecordsInFile1, totalRecordsInFile2, groups.size());
+
+        final List<TransactionDto> file2OnlyTransactions = new ArrayList<>();
+        int discardedScores = 0;
+
+        for (JoinGroup group : groups.values()) {
+            comparisonService.checkInterrupted();
+            if (group.transactions1.isEmpty()) {
+                file2OnlyTransactions.addAll(group.transactions2);
+            } else if (group.transactions1.size() != group.transactions2.size()) {
+                // Covers IDs missing from file 2 as well as duplicate count mismatches
+                group.transactions1.forEach(dto1 -> accumulator.unmatchedFromFile1(dto1, null, null));
+                if (group.firstScore != null) {
+                    discardedScores++;
+                }
+            } else {
+                for (int i = 0; i < group.transactions1.size(); i++) {
+                    final TransactionDto dto1 = group.transactions1.get(i);
+                    final TransactionDto dto2 = group.transactions2.get(i);
+                    comparisonService.recordScoredPair(dto1, dto2, i == 0 ? group.firstScore : score(dto1, dto2), accumulator);
+                }
+            }
+        }
+        if (discardedScores > 0) {
+            logger.info("Discarded {} pairs scored while parsing, their ID groups have different duplicate counts",
+                    discardedScores);
+        }
+
+        final List<TransactionDto> unmatchedBlankIdFromFile2 =
+                comparisonService.matchByAlternateKeys(blankIdTransactions1, blankIdTransactions2, accumulator);
+
+        file2OnlyTransactions.forEach(accumulator::unmatchedFromFile2);
+        unmatchedBlankIdFromFile2.forEach(accumulator::unmatchedFromFile2);
+
+        return comparisonService.buildResponse(totalRecordsInFile1, totalRecordsInFile2, accumulator);
+    }
+
+    private MatchScore score(TransactionDto dto1, TransactionDto dto2) {
+        progress.pairScored();
+        return scoreService.calculateDecisiveScore(dto1, dto2);
+    }
+
+    private final class JoinGroup {
+
+        private final List<TransactionDto> transactions1 = new ArrayList<>(1);
+        private final List<TransactionDto> transactions2 = new ArrayList<>(1);
+        // Score of the first row of each side, set by whichever side completes the pair, finish() reads it unlocked
+        // after both parsers are done
+        private MatchScore firstScore;
+
+        private synchronized void add(TransactionDto transaction, boolean fromFile1) {
+            final List<TransactionDto> own = fromFile1 ? transactions1 : transactions2;
+            final List<TransactionDto> other = fromFile1 ? transactions2 : transactions1;
+
+            own.add(transaction);
+            if (own.size() == 1 && !other.isEmpty()) {
+                firstScore = fromFile1 ? score(transaction, other.getFirst()) : score(other.getFirst(), transaction);
+            }
+        }
+    }
+}
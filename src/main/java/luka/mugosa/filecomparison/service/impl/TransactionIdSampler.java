@@ -0,0 +1,62 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.service.sketch.Hash64;
+
+import java.util.function.Predicate;
+
+/**
+ * Keeps the rows whose TransactionID hashes under the sample rate. The hash only depends on the ID, so both files keep
+ * the same IDs and every ID in the sample is reconciled with all of its rows, as it would be in the full run.
+ * Rows without an ID are counted and left out, they can't be sampled consistently.
+ */
+public final class TransactionIdSampler implements Predicate<String> {
+
+    private final double sampleRate;
+
+    // Called from one file's parser only, chunks of a file never run concurrently
+    private int seenRecords;
+    private int blankIdRecords;
+    private int sampledRecords;
+
+    public TransactionIdSampler(double sampleRate) {
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be greater than 0 and at most 1, got " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public boolean test(String transactionId) {
+        seenRecords++;
+        if (transactionId == null || transactionId.isBlank()) {
+            blankIdRecords++;
+            return false;
+        }
+        if (!isSampled(transactionId, sampleRate)) {
+            return false;
+        }
+        sampledRecords++;
+        return true;
+    }
+
+    // Top 53 bits of the hash as a uniform fraction in [0, 1)
+    static boolean isSampled(String transactionId, double sampleRate) {
+        return (Hash64.of(transactionId) >>> 11) * 0x1p-53 < sampleRate;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getSeenRecords() {
+        return seenRecords;
+    }
+
+    public int getBlankIdRecords() {
+        return blankIdRecords;
+    }
+
+    public int getSampledRecords() {
+        return sampledRecords;
+    }
+}
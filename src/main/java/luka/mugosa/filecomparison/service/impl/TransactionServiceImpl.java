@@ -1,54 +1,535 @@
 package luka.mugosa.filecomparison.service.impl;
 
+import jakarta.servlet.http.HttpServletRequest;
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.FileValidationDto;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
 import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.UnmatchedTransactionPairDto;
+import luka.mugosa.filecomparison.domain.dto.response.MultiSourceReconciliationResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationEstimateResponse;
 import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ValidationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.ReconciliationEngine;
+import luka.mugosa.filecomparison.domain.exception.FileParsingException;
 import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
 import luka.mugosa.filecomparison.service.FileService;
 import luka.mugosa.filecomparison.service.TransactionService;
+import luka.mugosa.filecomparison.service.csv.CompressedInput;
+import luka.mugosa.filecomparison.service.csv.ParseReport;
+import luka.mugosa.filecomparison.service.score.PairDiffCalculator;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 @Service
 public class TransactionServiceImpl implements TransactionService {
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionServiceImpl.class);
 
+    // Pairs grow with the square of the sources, every one of them is scored
+    static final int MAX_SOURCES = 10;
+    private static final String FILE1_PART = "file1";
+    private static final String FILE2_PART = "file2";
+    // Used when a streamed request does not say how large it is
+    private static final int LARGE_STREAM_PARTITIONS = 64;
+
     private final ComparisonServiceImpl comparisonService;
     private final FileService fileService;
+    private final ReconciliationEngine engine;
+    private final ReconciliationProperties.LargeFiles largeFilesProperties;
+    private final ReconciliationProperties.Parsing parsingProperties;
+    private final ReconciliationMetrics metrics;
 
-    public TransactionServiceImpl(ComparisonServiceImpl comparisonService, FileService fileService) {
+    public TransactionServiceImpl(ComparisonServiceImpl comparisonService, FileService fileService,
+                                  ReconciliationProperties properties, ReconciliationMetrics metrics) {
         this.comparisonService = comparisonService;
+        this.metrics = metrics;
         this.fileService = fileService;
+        this.engine = properties.getEngine();
+        this.largeFilesProperties = properties.getLargeFiles();
+        this.parsingProperties = properties.getParsing();
     }
 
     public ReconciliationResponse reconcileTransactions(MultipartFile file1, MultipartFile file2) {
-        final CompletableFuture<List<TransactionDto>> collectionFuture1 = fileService.parseFileAsync(file1);
-        final CompletableFuture<List<TransactionDto>> collectionFuture2 = fileService.parseFileAsync(file2);
+        return reconcileTransactions(file1, file2, ReconciliationOptions.defaults());
+    }
+
+    public ReconciliationResponse reconcileTransactions(MultipartFile file1, MultipartFile file2, ReconciliationOptions options) {
+        return reconcileTransactions(file1, file2, options, new ReconciliationProgress());
+    }
+
+    public ReconciliationResponse reconcileTransactions(MultipartFile file1, MultipartFile file2, ReconciliationOptions options,
+                                                        ReconciliationProgress progress) {
+        requireBoundedOutput(file1, file2, options);
+        return runComparison(parseForComparison(file1, file2, progress), options, progress);
+    }
+
+    /**
+     * Same as {@link #reconcileTransactions(MultipartFile, MultipartFile, ReconciliationOptions)} but reads the
+     * multipart body itself, see {@link #parseStreamedRequest(HttpServletRequest, ReconciliationProgress)}
+     */
+    public ReconciliationResponse reconcileStreamedRequest(HttpServletRequest request, ReconciliationOptions options) {
+        requireBoundedOutput(isPartitionedStream(request.getContentLengthLong()), options);
+        final ReconciliationProgress progress = new ReconciliationProgress();
+        return runComparison(parseStreamedRequest(request, progress), options, progress);
+    }
+
+    /**
+     * Reconciles file 2 against a prepared reference in place of file 1, only file 2 is parsed
+     */
+    public ReconciliationResponse reconcileAgainstReference(PreparedReference reference, MultipartFile file2,
+                                                            ReconciliationOptions options) {
+        final ReconciliationProgress progress = new ReconciliationProgress();
+        return runComparison(parseAgainstReference(reference, file2, progress), options, progress);
+    }
+
+    private ReconciliationResponse runComparison(PendingComparison pendingComparison, ReconciliationOptions options,
+                                                 ReconciliationProgress progress) {
+        // Summary-only requests count the misses without building the pairs
+        final ReconciliationAccumulator accumulator = options.summaryOnly()
+                ? ReconciliationAccumulator.countingOnly()
+                : new ReconciliationAccumulator();
+
+        accumulator.withProgress(progress);
+        return applyOptions(metrics.timeCompare(() -> pendingComparison.compare(accumulator)), options);
+    }
+
+    /**
+     * Large-file mode only bounds the rows held at once, a full pair list would still grow with every miss of the
+     * whole input. Such inputs must be reconciled summary-only or through the streaming endpoint.
+     */
+    public void requireBoundedOutput(MultipartFile file1, MultipartFile file2, ReconciliationOptions options) {
+        requireBoundedOutput(largeFilesProperties.isLargeInput(decodedInputBytes(file1, file2)), options);
+    }
+
+    private void requireBoundedOutput(boolean partitioned, ReconciliationOptions options) {
+        if (partitioned && !options.summaryOnly()) {
+            throw new IllegalArgumentException("Files over " + largeFilesProperties.getThreshold().toMegabytes()
+                    + "MB are reconciled in large-file mode, use summaryOnly or the streaming endpoint for their unmatched pairs");
+        }
+    }
+
+    /**
+     * Parses both files with the configured engine, the returned comparison is run by the caller
+     */
+    public PendingComparison parseForComparison(MultipartFile file1, MultipartFile file2) {
+        return parseForComparison(file1, file2, new ReconciliationProgress());
+    }
+
+    private PendingComparison parseForComparison(MultipartFile file1, MultipartFile file2, ReconciliationProgress progress) {
+        if (largeFilesProperties.isLargeInput(decodedInputBytes(file1, file2))) {
+            return parsePartitioned(file1, file2, progress);
+        }
+        return engine == ReconciliationEngine.PIPELINED
+                ? parsePipelined(file1, file2, progress)
+                : parseBatch(file1, file2, progress);
+    }
+
+    public PendingComparison parseAgainstReference(PreparedReference reference, MultipartFile file2) {
+        return parseAgainstReference(reference, file2, new ReconciliationProgress());
+    }
+
+    // The reference is in memory anyway, so file 2 is always streamed into the probe join, never partitioned
+    private PendingComparison parseAgainstReference(PreparedReference reference, MultipartFile file2,
+                                                    ReconciliationProgress progress) {
+        final long inputBytes = decodedSize(file2);
+        if (largeFilesProperties.isLargeInput(inputBytes)) {
+            throw new IllegalArgumentException("Files over " + largeFilesProperties.getThreshold().toMegabytes()
+                    + "MB can't be reconciled against a prepared reference");
+        }
+
+        final ReferenceProbeJoin join = comparisonService.newReferenceProbeJoin(reference, progress);
+        final ParseReport report2 = fileService.newParseReport(file2.getOriginalFilename());
+        awaitParsing(parsingProperties.timeoutFor(inputBytes), fileService.parseFileAsync(file2, report2, join::acceptFromFile2));
+
+        return accumulator -> withParseReports(join.finish(accumulator), reference.getParseReport(), report2);
+    }
+
+    /**
+     * Reconciles every file against every other one, each file is parsed once into a shared TransactionID index
+     */
+    public MultiSourceReconciliationResponse reconcileSources(List<MultipartFile> files, boolean includeMatched) {
+        if (files.size() < 2 || files.size() > MAX_SOURCES) {
+            throw new IllegalArgumentException("Between 2 and " + MAX_SOURCES + " files can be reconciled together");
+        }
+        final long inputBytes = files.stream().mapToLong(this::decodedSize).sum();
+        // The shared index holds every source at once, there is no partitioned variant
+        if (largeFilesProperties.isLargeInput(inputBytes)) {
+            throw new IllegalArgumentException("Files reconciled together must be under "
+                    + largeFilesProperties.getThreshold().toMegabytes() + "MB combined");
+        }
+
+        final MultiSourceJoin join = comparisonService.newMultiSourceJoin(
+                files.stream().map(MultipartFile::getOriginalFilename).toList());
+        final CompletableFuture<?>[] parses = new CompletableFuture<?>[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            final int source = i;
+            parses[i] = fileService.parseFileAsync(files.get(i), transaction -> join.accept(source, transaction));
+        }
+        awaitParsing(parsingProperties.timeoutFor(inputBytes), parses);
+
+        return metrics.timeCompare(() -> join.finish(includeMatched));
+    }
+
+    /**
+     * Byte scan of both uploads in parallel, nothing is parsed
+     */
+    public ValidationResponse validateFiles(MultipartFile file1, MultipartFile file2) {
+        fileService.validateUpload(file1);
+        fileService.validateUpload(file2);
+        final CompletableFuture<FileValidationDto> validation1 = fileService.validateContentAsync(file1);
+        final CompletableFuture<FileValidationDto> validation2 = fileService.validateContentAsync(file2);
+        awaitParsing(parseTimeout(file1, file2), validation1, validation2);
+
+        return new ValidationResponse(validation1.join().valid() && validation2.join().valid(),
+                validation1.join(), validation2.join());
+    }
+
+    /**
+     * Reconciles only the TransactionIDs that hash under the sample rate and scales the result up to both files.
+     * Every row is still read and split, but only sampled rows are parsed, kept and scored.
+     */
+    public ReconciliationEstimateResponse estimateReconciliation(MultipartFile file1, MultipartFile file2, double sampleRate) {
+        final long startTime = System.currentTimeMillis();
+        final TransactionIdSampler sampler1 = new TransactionIdSampler(sampleRate);
+        final TransactionIdSampler sampler2 = new TransactionIdSampler(sampleRate);
+
+        // Each list has one writer, its parser hands chunks over one after another
+        final List<TransactionDto> sample1 = new ArrayList<>();
+        final List<TransactionDto> sample2 = new ArrayList<>();
+        awaitParsing(parseTimeout(file1, file2),
+                fileService.parseFileAsync(file1, sampler1, sample1::add),
+                fileService.parseFileAsync(file2, sampler2, sample2::add)
+        );
+
+        final ReconciliationResponse sample =
+                comparisonService.compareData(sample1, sample2, ReconciliationAccumulator.countingOnly());
+        logger.info("Estimated reconciliation from a {} sample - {} of {} and {} of {} records in {}ms", sampleRate,
+                sample1.size(), sampler1.getSeenRecords(), sample2.size(), sampler2.getSeenRecords(),
+                System.currentTimeMillis() - startTime);
+        return SampleEstimator.estimate(sampler1, sampler2, sample);
+    }
+
+    /**
+     * Runs the comparison handing every unmatched pair to the sink as soon as it is found,
+     * the returned summary carries no pair list
+     */
+    public ReconciliationResponse streamComparison(PendingComparison pendingComparison, ReconciliationOptions options,
+                                                   Consumer<UnmatchedTransactionPairDto> pairSink) {
+        final Consumer<UnmatchedTransactionPairDto> sink = options.includeDiff()
+                ? pair -> pairSink.accept(PairDiffCalculator.withDiff(pair))
+                : pairSink;
+
+        return metrics.timeCompare(() -> pendingComparison.compare(ReconciliationAccumulator.streaming(sink)));
+    }
+
+    private PendingComparison parseBatch(MultipartFile file1, MultipartFile file2, ReconciliationProgress progress) {
+        final ParseReport report1 = fileService.newParseReport(file1.getOriginalFilename());
+        final ParseReport report2 = fileService.newParseReport(file2.getOriginalFilename());
+        final CompletableFuture<List<TransactionDto>> collectionFuture1 = fileService.parseFileAsync(file1, report1);
+        final CompletableFuture<List<TransactionDto>> collectionFuture2 = fileService.parseFileAsync(file2, report2);
+        awaitParsing(parseTimeout(file1, file2), collectionFuture1, collectionFuture2);
+        progress.rowsParsed(collectionFuture1.join().size(), collectionFuture2.join().size());
+
+        return accumulator -> withParseReports(
+                comparisonService.compareData(collectionFuture1.join(), collectionFuture2.join(), accumulator),
+                report1, report2);
+    }
+
+    // Both parsers feed the join directly, so most pairs are already scored by the time the slower file is read
+    private PendingComparison parsePipelined(MultipartFile file1, MultipartFile file2, ReconciliationProgress progress) {
+        final SymmetricHashJoin join = comparisonService.newSymmetricHashJoin(progress);
+        final ParseReport report1 = fileService.newParseReport(file1.getOriginalFilename());
+        final ParseReport report2 = fileService.newParseReport(file2.getOriginalFilename());
+        awaitParsing(parseTimeout(file1, file2),
+                fileService.parseFileAsync(file1, report1, join::acceptFromFile1),
+                fileService.parseFileAsync(file2, report2, join::acceptFromFile2)
+        );
+
+        return accumulator -> withParseReports(join.finish(accumulator), report1, report2);
+    }
+
+    // Only a file that was actually parsed leniently has parse errors, strict parses and cache hits leave them out
+    private static ReconciliationResponse withParseReports(ReconciliationResponse response, ParseReport report1,
+                                                           ParseReport report2) {
+        if (report1 == null || report2 == null) {
+            return response;
+        }
+        return response.toBuilder()
+                .parseErrorsInFile1(report1.isLenient() && report1.isParsed() ? report1.toErrorsDto() : null)
+                .parseErrorsInFile2(report2.isLenient() && report2.isParsed() ? report2.toErrorsDto() : null)
+                .statistics(response.statistics() == null ? null : response.statistics()
+                        .withParsing(report1.toStatisticsDto(), report2.toStatisticsDto()))
+                .build();
+    }
+
+    /**
+     * Large-file mode: both uploads are split by TransactionID onto disk first, then the partitions are parsed and
+     * compared one at a time, so only one partition of each file is in memory at once. Each file keeps one parse
+     * report across its partitions, so the error budget and the reported lines are those of the upload.
+     */
+    private PendingComparison parsePartitioned(MultipartFile file1, MultipartFile file2, ReconciliationProgress progress) {
+        fileService.validateUpload(file1);
+        fileService.validateUpload(file2);
+
+        final long inputBytes = decodedInputBytes(file1, file2);
+        final int partitionCount = (int) Math.max(1, Math.ceilDiv(inputBytes, largeFilesProperties.getPartitionSize().toBytes()));
+        logger.info("Large input of {} bytes, reconciling in {} partitions", inputBytes, partitionCount);
+
+        final ParseReport report1 = fileService.newParseReport(file1.getOriginalFilename());
+        final ParseReport report2 = fileService.newParseReport(file2.getOriginalFilename());
+        final DiskPartitions partitions = createPartitions(partitionCount);
+        try {
+            partitions.write(file1, 1, report1);
+            partitions.write(file2, 2, report2);
+        } catch (IOException e) {
+            partitions.close();
+            throw new FileProcessingException("Failed to partition uploaded files", e);
+        } catch (RuntimeException e) {
+            partitions.close();
+            throw e;
+        }
+
+        return partitionedComparison(partitions, report1, report2, progress);
+    }
+
+    private PendingComparison partitionedComparison(DiskPartitions partitions, ParseReport report1, ParseReport report2,
+                                                    ReconciliationProgress progress) {
+        return accumulator -> {
+            try (partitions) {
+                int totalRecords1 = 0;
+                int totalRecords2 = 0;
+                for (int partition = 0; partition < partitions.count(); partition++) {
+                    comparisonService.checkInterrupted();
+                    final Path partition1 = partitions.path(1, partition);
+                    final Path partition2 = partitions.path(2, partition);
+                    final CompletableFuture<List<TransactionDto>> collectionFuture1 = fileService.parseCsvAsync(
+                            partition1.toString(), partitions.lineNumbersPath(1, partition).toString(), report1);
+                    final CompletableFuture<List<TransactionDto>> collectionFuture2 = fileService.parseCsvAsync(
+                            partition2.toString(), partitions.lineNumbersPath(2, partition).toString(), report2);
+                    // Applied per partition, a large input gets one timeout for each of its partitions
+                    awaitParsing(partitionParseTimeout(partition1, partition2), collectionFuture1, collectionFuture2);
+
+                    final List<TransactionDto> collection1 = collectionFuture1.join();
+                    final List<TransactionDto> collection2 = collectionFuture2.join();
+                    progress.rowsParsed(collection1.size(), collection2.size());
+                    totalRecords1 += collection1.size();
+                    totalRecords2 += collection2.size();
+
+                    comparisonService.reconcileInto(collection1, collection2, accumulator);
+                }
+                return withParseReports(comparisonService.buildResponse(totalRecords1, totalRecords2, accumulator),
+                        report1, report2);
+            }
+        };
+    }
+
+    /**
+     * Reads the multipart body part by part while it is still arriving, without Spring spooling it first.
+     * A file part is parsed straight from the request stream into the join, so parsing overlaps the upload.
+     * Bodies over the large-file threshold, or of unknown length, are partitioned to disk from the stream instead.
+     * Empty parts are rejected like empty uploads and the parse has the same timeout.
+     */
+    public PendingComparison parseStreamedRequest(HttpServletRequest request, ReconciliationProgress progress) {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new IllegalArgumentException("Request must be multipart/form-data with file1 and file2 parts");
+        }
+
+        final JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        upload.setMaxFileSize(largeFilesProperties.getMaxFileSize().toBytes());
+        upload.setMaxSize(2 * largeFilesProperties.getMaxFileSize().toBytes());
+
+        final long contentLength = request.getContentLengthLong();
+        if (isPartitionedStream(contentLength)) {
+            final int partitionCount = contentLength < 0
+                    ? LARGE_STREAM_PARTITIONS
+                    : (int) Math.max(1, Math.ceilDiv(contentLength, largeFilesProperties.getPartitionSize().toBytes()));
+            logger.info("Streamed request of {} bytes, partitioning it into {} partitions", contentLength, partitionCount);
+
+            final DiskPartitions partitions = createPartitions(partitionCount);
+            final ParseReport[] reports = new ParseReport[2];
+            try {
+                final long maxFileBytes = largeFilesProperties.getMaxFileSize().toBytes();
+                readParts(upload, request, () -> maxFileBytes, (side, filename, inputStream) -> {
+                    reports[side - 1] = fileService.newParseReport(filename);
+                    partitions.write(filename, inputStream, side, reports[side - 1]);
+                });
+            } catch (RuntimeException e) {
+                partitions.close();
+                throw e;
+            }
+            return partitionedComparison(partitions, reports[0], reports[1], progress);
+        }
+
+        // The parts follow each other in the body, so they are parsed one after the other within one timeout.
+        // Only the body size was admitted, so compressed parts may not decode to more than what is left of it.
+        final SymmetricHashJoin join = comparisonService.newSymmetricHashJoin(progress);
+        final Instant deadline = Instant.now().plus(parsingProperties.timeoutFor(contentLength));
+        final ParseReport[] reports = new ParseReport[2];
+        final LongSupplier remainingDecodedBytes = () -> contentLength
+                - Arrays.stream(reports).filter(Objects::nonNull).mapToLong(ParseReport::getDecodedBytes).sum();
+        readParts(upload, request, remainingDecodedBytes, (side, filename, inputStream) -> {
+            reports[side - 1] = fileService.newParseReport(filename);
+            awaitParsing(Duration.between(Instant.now(), deadline), fileService.parseStreamAsync(filename, inputStream,
+                    reports[side - 1], side == 1 ? join::acceptFromFile1 : join::acceptFromFile2));
+        });
+        return accumulator -> withParseReports(join.finish(accumulator), reports[0], reports[1]);
+    }
+
+    private void readParts(JakartaServletFileUpload<?, ?> upload, HttpServletRequest request,
+                           LongSupplier maxDecodedBytes, StreamedPartHandler handler) {
+        boolean seenFile1 = false;
+        boolean seenFile2 = false;
+        try {
+            final FileItemInputIterator parts = upload.getItemIterator(request);
+            while (parts.hasNext()) {
+                comparisonService.checkInterrupted();
+                final FileItemInput part = parts.next();
+                if (part.isFormField()) {
+                    continue;
+                }
+
+                final int side = switch (part.getFieldName()) {
+                    case FILE1_PART -> 1;
+                    case FILE2_PART -> 2;
+                    default -> 0;
+                };
+                if (side == 0 || (side == 1 && seenFile1) || (side == 2 && seenFile2)) {
+                    logger.debug("Skipping multipart part '{}'", part.getFieldName());
+                    continue;
+                }
+
+                final InputStream content = fileService.validateUpload(part.getName(), part.getInputStream());
+                handler.accept(side, part.getName(), CompressedInput.open(content, declaredEncoding(part), maxDecodedBytes.getAsLong()));
+                seenFile1 |= side == 1;
+                seenFile2 |= side == 2;
+            }
+        } catch (FileUploadSizeException e) {
+            throw fileSizeExceeded(e);
+        } catch (FileProcessingException e) {
+            // The parser wraps read errors, an oversized part surfaces from inside it
+            if (e.getCause() instanceof FileUploadSizeException sizeException) {
+                throw fileSizeExceeded(sizeException);
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to read multipart request", e);
+        }
+
+        if (!seenFile1 || !seenFile2) {
+            throw new IllegalArgumentException("Both file1 and file2 parts are required");
+        }
+    }
+
+    private String declaredEncoding(FileItemInput part) {
+        final String contentEncoding = part.getHeaders() != null ? part.getHeaders().getHeader(HttpHeaders.CONTENT_ENCODING) : null;
+        return contentEncoding != null ? contentEncoding : part.getContentType();
+    }
+
+    private IllegalArgumentException fileSizeExceeded(FileUploadSizeException e) {
+        logger.warn("Streamed upload exceeds size limit: {}", e.getMessage());
+        return new IllegalArgumentException("File size should be less than "
+                + largeFilesProperties.getMaxFileSize().toMegabytes() + "MB", e);
+    }
+
+    @FunctionalInterface
+    private interface StreamedPartHandler {
+        void accept(int side, String filename, InputStream inputStream) throws IOException;
+    }
+
+    private long decodedInputBytes(MultipartFile file1, MultipartFile file2) {
+        return decodedSize(file1) + decodedSize(file2);
+    }
+
+    // Compressed uploads count with their decompressed size, one that decodes past the file size limit is rejected
+    private long decodedSize(MultipartFile file) {
+        return CompressedInput.decodedSize(file, largeFilesProperties.getMaxFileSize().toBytes());
+    }
+
+    private Duration parseTimeout(MultipartFile file1, MultipartFile file2) {
+        return parsingProperties.timeoutFor(decodedInputBytes(file1, file2));
+    }
+
+    private Duration partitionParseTimeout(Path partition1, Path partition2) {
         try {
-            final CompletableFuture<Void> allOf = CompletableFuture.allOf(collectionFuture1, collectionFuture2);
-            allOf.get(2, TimeUnit.MINUTES); // 2-minute timeout
+            return parsingProperties.timeoutFor(Files.size(partition1) + Files.size(partition2));
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to read partition size", e);
+        }
+    }
 
-            final List<TransactionDto> collection1 = collectionFuture1.join();
-            final List<TransactionDto> collection2 = collectionFuture2.join();
+    private boolean isPartitionedStream(long contentLength) {
+        return contentLength < 0 || largeFilesProperties.isLargeInput(contentLength);
+    }
 
-            return comparisonService.compareData(collection1, collection2);
+    private DiskPartitions createPartitions(int partitionCount) {
+        try {
+            return DiskPartitions.create(partitionCount, largeFilesProperties.getMaxFileSize().toBytes());
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to create partition directory", e);
+        }
+    }
+
+    // A failed, timed out or interrupted parse cancels its sibling too, so no parser keeps running for a dead request
+    static void awaitParsing(Duration timeout, CompletableFuture<?>... futures) {
+        final ParseScope scope = new ParseScope();
+        for (CompletableFuture<?> future : futures) {
+            scope.fork(future);
+        }
+        try {
+            scope.join(timeout);
         } catch (TimeoutException e) {
-            logger.error("File parsing timed out after 2 minutes", e);
+            logger.error("File parsing timed out after {}", timeout, e);
             throw new FileProcessingException("File parsing operation timed out", e);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new FileProcessingException("File parsing was interrupted", e);
         } catch (ExecutionException e) {
+            // A rejected file keeps its own error, e.g. a missing header or failed validation is a bad request
+            if (e.getCause() instanceof FileParsingException parsingException) {
+                throw parsingException;
+            }
             throw new FileProcessingException("File parsing failed", e.getCause());
         }
     }
 
+    // Diffs are derived from the scores kept on each pair, only when the client asked for them
+    static ReconciliationResponse applyOptions(ReconciliationResponse response, ReconciliationOptions options) {
+        if (!options.includeDiff() || response.unmatchedTransactionPairs() == null) {
+            return response;
+        }
+
+        final List<UnmatchedTransactionPairDto> pairsWithDiff = response.unmatchedTransactionPairs().stream()
+                .map(PairDiffCalculator::withDiff)
+                .toList();
+        return response.toBuilder()
+                .unmatchedTransactionPairs(pairsWithDiff)
+                .build();
+    }
 }
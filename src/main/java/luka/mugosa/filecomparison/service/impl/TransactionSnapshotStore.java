@@ -0,0 +1,179 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.service.snapshot.TransactionSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Where the binary snapshots of parsed files live. A CSV read from disk gets one named after its path in the file
+ * directory, an upload one named after its content hash in the upload directory. Without the directory nothing
+ * is snapshotted, nothing is ever written next to the source. A snapshot is only an optimization, anything wrong
+ * with it is logged and the caller falls back to parsing.
+ */
+@Component
+public class TransactionSnapshotStore {
+
+    static final String SNAPSHOT_EXTENSION = ".rcsnap";
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionSnapshotStore.class);
+
+    private static final int PATH_HASH_BYTES = 8;
+
+    private final boolean enabled;
+    private final Path fileDirectory;
+    private final Path uploadDirectory;
+
+    public TransactionSnapshotStore(ReconciliationProperties properties) {
+        final ReconciliationProperties.Snapshots snapshotProperties = properties.getSnapshots();
+        this.enabled = snapshotProperties.isEnabled();
+        this.fileDirectory = directory(snapshotProperties.getFileDirectory());
+        this.uploadDirectory = directory(snapshotProperties.getUploadDirectory());
+    }
+
+    public boolean storesFiles() {
+        return enabled && fileDirectory != null;
+    }
+
+    public boolean storesUploads() {
+        return enabled && uploadDirectory != null;
+    }
+
+    /**
+     * Size and modification time of the CSV, taken before it is parsed so a change during parsing makes the
+     * snapshot stale instead of wrong. Null when file snapshots are off or the file can't be read.
+     */
+    public SourceStamp stamp(Path csv) {
+        if (!storesFiles()) {
+            return null;
+        }
+        try {
+            return new SourceStamp(Files.size(csv), Files.getLastModifiedTime(csv).toMillis());
+        } catch (IOException e) {
+            logger.warn("Could not read source file {} for its snapshot: {}", csv, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Null when the CSV has no snapshot or was changed after it was taken
+     */
+    public List<TransactionDto> loadForFile(Path csv, SourceStamp stamp) {
+        return stamp != null ? load(fileSnapshotPath(csv), stamp.size(), stamp.modified()) : null;
+    }
+
+    public void storeForFile(Path csv, SourceStamp stamp, List<TransactionDto> transactions) {
+        if (stamp != null && createDirectory(fileDirectory)) {
+            store(fileSnapshotPath(csv), transactions, stamp.size(), stamp.modified());
+        }
+    }
+
+    // The hash already pins the content, the size is only a sanity check
+    public List<TransactionDto> loadForUpload(String contentHash, long size) {
+        return storesUploads() ? load(uploadDirectory.resolve(contentHash + SNAPSHOT_EXTENSION), size, 0) : null;
+    }
+
+    /**
+     * Bytes of the upload's snapshot, transactions loaded from it keep about as much referenced in their columns.
+     * 0 when there is none.
+     */
+    public long uploadSnapshotSize(String contentHash) {
+        try {
+            return storesUploads() ? Files.size(uploadDirectory.resolve(contentHash + SNAPSHOT_EXTENSION)) : 0;
+        } catch (IOException e) {
+            logger.debug("Could not read the size of the snapshot of {}", contentHash, e);
+            return 0;
+        }
+    }
+
+    public void storeForUpload(String contentHash, long size, List<TransactionDto> transactions) {
+        if (storesUploads() && createDirectory(uploadDirectory)) {
+            store(uploadDirectory.resolve(contentHash + SNAPSHOT_EXTENSION), transactions, size, 0);
+        }
+    }
+
+    // Keeps the CSV's name, the hash of its absolute path tells CSVs of the same name in different directories apart
+    Path fileSnapshotPath(Path csv) {
+        final String absolutePath = csv.toAbsolutePath().normalize().toString();
+        final byte[] pathHash = sha256().digest(absolutePath.getBytes(StandardCharsets.UTF_8));
+        return fileDirectory.resolve(csv.getFileName() + "-" + HexFormat.of().formatHex(pathHash, 0, PATH_HASH_BYTES)
+                + SNAPSHOT_EXTENSION);
+    }
+
+    private static Path directory(String directory) {
+        return directory != null && !directory.isBlank() ? Path.of(directory) : null;
+    }
+
+    private static boolean createDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not create snapshot directory {}: {}", directory, e.getMessage());
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private List<TransactionDto> load(Path snapshot, long sourceSize, long sourceModified) {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        try {
+            final List<TransactionDto> transactions = TransactionSnapshot.read(snapshot, sourceSize, sourceModified);
+            if (transactions == null) {
+                logger.info("Snapshot {} is stale, the source changed since it was written", snapshot);
+                return null;
+            }
+            logger.info("Loaded {} transactions from snapshot {} in {}ms",
+                    transactions.size(), snapshot, System.currentTimeMillis() - startTime);
+            return transactions;
+        } catch (IOException e) {
+            logger.warn("Discarding unreadable snapshot {}: {}", snapshot, e.getMessage());
+            deleteQuietly(snapshot);
+            return null;
+        }
+    }
+
+    private void store(Path snapshot, List<TransactionDto> transactions, long sourceSize, long sourceModified) {
+        final long startTime = System.currentTimeMillis();
+        try {
+            TransactionSnapshot.write(snapshot, transactions, sourceSize, sourceModified);
+            logger.info("Wrote snapshot {} with {} transactions in {}ms",
+                    snapshot, transactions.size(), System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            logger.warn("Could not write snapshot {}: {}", snapshot, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}", path, e);
+        }
+    }
+
+    public record SourceStamp(long size, long modified) {
+    }
+}
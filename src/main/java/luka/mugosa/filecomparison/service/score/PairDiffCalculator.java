@@ -0,0 +1,109 @@
+package luka.mugosa.filecomparison.service.score;
+
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.TransactionPairDiffDto;
+import luka.mugosa.filecomparison.domain.dto.UnmatchedTransactionPairDto;
+import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
+import luka.mugosa.filecomparison.domain.score.dto.ScoringWeights;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static luka.mugosa.filecomparison.constant.TransactionConstants.HEADER_PROFILE_NAME;
+import static luka.mugosa.filecomparison.constant.TransactionConstants.HEADER_TRANSACTION_AMOUNT;
+import static luka.mugosa.filecomparison.constant.TransactionConstants.HEADER_TRANSACTION_DATE;
+import static luka.mugosa.filecomparison.constant.TransactionConstants.HEADER_TRANSACTION_DESCRIPTION;
+import static luka.mugosa.filecomparison.constant.TransactionConstants.HEADER_TRANSACTION_ID;
+import static luka.mugosa.filecomparison.constant.TransactionConstants.HEADER_TRANSACTION_NARRATIVE;
+import static luka.mugosa.filecomparison.constant.TransactionConstants.HEADER_TRANSACTION_TYPE;
+import static luka.mugosa.filecomparison.constant.TransactionConstants.HEADER_WALLET_REFERENCE;
+
+public final class PairDiffCalculator {
+
+    // Weight a component scores when both sides are identical
+    private static final Map<String, Double> FULL_WEIGHTS = new LinkedHashMap<>();
+
+    static {
+        FULL_WEIGHTS.put(HEADER_TRANSACTION_ID, ScoringWeights.TRANSACTION_ID_WEIGHT);
+        FULL_WEIGHTS.put(HEADER_TRANSACTION_AMOUNT, ScoringWeights.AMOUNT_EXACT_WEIGHT);
+        FULL_WEIGHTS.put(HEADER_TRANSACTION_DATE, ScoringWeights.DATE_EXACT_WEIGHT);
+        FULL_WEIGHTS.put(HEADER_WALLET_REFERENCE, ScoringWeights.WALLET_REFERENCE_WEIGHT);
+        FULL_WEIGHTS.put(HEADER_TRANSACTION_NARRATIVE, ScoringWeights.NARRATIVE_SIMILARITY_WEIGHT);
+        FULL_WEIGHTS.put(HEADER_TRANSACTION_DESCRIPTION, ScoringWeights.DESCRIPTION_SIMILARITY_WEIGHT);
+        FULL_WEIGHTS.put(HEADER_TRANSACTION_TYPE, ScoringWeights.TRANSACTION_TYPE_WEIGHT);
+        FULL_WEIGHTS.put(HEADER_PROFILE_NAME, 1.0);
+    }
+
+    private PairDiffCalculator() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns the pair with its diff attached, pairs missing one side are returned unchanged
+     */
+    public static UnmatchedTransactionPairDto withDiff(UnmatchedTransactionPairDto pair) {
+        if (pair.getTransaction1() == null || pair.getTransaction2() == null) {
+            return pair;
+        }
+        return pair.withDiff(calculate(pair.getTransaction1(), pair.getTransaction2(), pair.getMatchScore()));
+    }
+
+    /**
+     * A column at its full component weight is identical, anything else (partial, missing or not evaluated
+     * by a decisive score) is settled by comparing the two values
+     */
+    public static TransactionPairDiffDto calculate(TransactionDto transaction1, TransactionDto transaction2, MatchScore matchScore) {
+        final Map<String, Double> componentScores = matchScore != null ? matchScore.componentScores() : Collections.emptyMap();
+        final List<String> differingColumns = new ArrayList<>();
+
+        for (Map.Entry<String, Double> entry : FULL_WEIGHTS.entrySet()) {
+            final Double componentScore = componentScores.get(entry.getKey());
+            if (componentScore != null && componentScore >= entry.getValue()) {
+                continue;
+            }
+            if (!sameValue(entry.getKey(), transaction1, transaction2)) {
+                differingColumns.add(entry.getKey());
+            }
+        }
+
+        final Double amountDelta = transaction1.getTransactionAmount() != null && transaction2.getTransactionAmount() != null
+                ? transaction2.getTransactionAmount() - transaction1.getTransactionAmount() : null;
+
+        final Long dayDelta = transaction1.getTransactionDate() != null && transaction2.getTransactionDate() != null
+                ? ChronoUnit.DAYS.between(transaction1.getTransactionDate().toLocalDate(), transaction2.getTransactionDate().toLocalDate())
+                : null;
+
+        return new TransactionPairDiffDto(differingColumns, amountDelta, dayDelta);
+    }
+
+    private static boolean sameValue(String column, TransactionDto transaction1, TransactionDto transaction2) {
+        return switch (column) {
+            case HEADER_TRANSACTION_ID -> Objects.equals(transaction1.getTransactionID(), transaction2.getTransactionID());
+            case HEADER_TRANSACTION_AMOUNT -> Objects.equals(transaction1.getTransactionAmount(), transaction2.getTransactionAmount());
+            case HEADER_TRANSACTION_DATE -> Objects.equals(
+                    transaction1.getTransactionDate() != null ? transaction1.getTransactionDate().toLocalDate() : null,
+                    transaction2.getTransactionDate() != null ? transaction2.getTransactionDate().toLocalDate() : null);
+            case HEADER_TRANSACTION_TYPE -> transaction1.getTransactionType() == transaction2.getTransactionType();
+            case HEADER_WALLET_REFERENCE -> sameText(transaction1, transaction2, TransactionDto::getWalletReference);
+            case HEADER_TRANSACTION_NARRATIVE -> sameText(transaction1, transaction2, TransactionDto::getTransactionNarrative);
+            case HEADER_TRANSACTION_DESCRIPTION -> sameText(transaction1, transaction2, TransactionDto::getTransactionDescription);
+            case HEADER_PROFILE_NAME -> sameText(transaction1, transaction2, TransactionDto::getProfileName);
+            default -> true;
+        };
+    }
+
+    private static boolean sameText(TransactionDto transaction1, TransactionDto transaction2,
+                                    Function<TransactionDto, String> getter) {
+        return normalize(getter.apply(transaction1)).equals(normalize(getter.apply(transaction2)));
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase();
+    }
+}
@@ -36,10 +36,25 @@ public class ScoreServiceImpl implements ScoreService {
 
     final JaroWinklerSimilarity jaroWinkler = new JaroWinklerSimilarity();
 
+    // Highest score the free-text columns can add on top of the other components
+    private static final double MAX_TEXT_SCORE =
+            ScoringWeights.NARRATIVE_SIMILARITY_WEIGHT + ScoringWeights.DESCRIPTION_SIMILARITY_WEIGHT;
+
     /**
      * Calculate a comprehensive matching score between two transactions
      */
     public MatchScore calculateScore(TransactionDto transaction1, TransactionDto transaction2) {
+        return calculateScore(transaction1, transaction2, false);
+    }
+
+    /**
+     * Skips narrative and description (and their decoding) when the other components already settle the confidence
+     */
+    public MatchScore calculateDecisiveScore(TransactionDto transaction1, TransactionDto transaction2) {
+        return calculateScore(transaction1, transaction2, true);
+    }
+
+    private MatchScore calculateScore(TransactionDto transaction1, TransactionDto transaction2, boolean decisiveOnly) {
         final Map<String, Double> componentScores = new HashMap<>();
 
         final double idScore = scoreTransactionId(transaction1.getTransactionID(), transaction2.getTransactionID());
@@ -62,26 +77,6 @@ public class ScoreServiceImpl implements ScoreService {
             componentScores.put(HEADER_WALLET_REFERENCE, walletScore);
         }
 
-        final double narrativeResult = scoreStringSimilarity(
-                transaction1.getTransactionNarrative(),
-                transaction2.getTransactionNarrative(),
-                ScoringWeights.NARRATIVE_SIMILARITY_WEIGHT
-        );
-
-        if (narrativeResult > 0) {
-            componentScores.put(HEADER_TRANSACTION_NARRATIVE, narrativeResult);
-        }
-
-        final double descriptionResult = scoreStringSimilarity(
-                transaction1.getTransactionDescription(),
-                transaction2.getTransactionDescription(),
-                ScoringWeights.DESCRIPTION_SIMILARITY_WEIGHT
-        );
-
-        if (descriptionResult > 0) {
-            componentScores.put(HEADER_TRANSACTION_DESCRIPTION, descriptionResult);
-        }
-
         final double typeScore = scoreTransactionType(transaction1.getTransactionType(), transaction2.getTransactionType());
         if (typeScore > 0) {
             componentScores.put(HEADER_TRANSACTION_TYPE, typeScore);
@@ -92,6 +87,28 @@ public class ScoreServiceImpl implements ScoreService {
             componentScores.put(HEADER_PROFILE_NAME, profileScore);
         }
 
+        if (!decisiveOnly || !isSettledWithoutText(componentScores)) {
+            final double narrativeResult = scoreStringSimilarity(
+                    transaction1.getTransactionNarrative(),
+                    transaction2.getTransactionNarrative(),
+                    ScoringWeights.NARRATIVE_SIMILARITY_WEIGHT
+            );
+
+            if (narrativeResult > 0) {
+                componentScores.put(HEADER_TRANSACTION_NARRATIVE, narrativeResult);
+            }
+
+            final double descriptionResult = scoreStringSimilarity(
+                    transaction1.getTransactionDescription(),
+                    transaction2.getTransactionDescription(),
+                    ScoringWeights.DESCRIPTION_SIMILARITY_WEIGHT
+            );
+
+            if (descriptionResult > 0) {
+                componentScores.put(HEADER_TRANSACTION_DESCRIPTION, descriptionResult);
+            }
+        }
+
         final double totalScore = componentScores.values().stream().mapToDouble(v -> v).sum();
 
         final MatchConfidence confidence = determineConfidence(totalScore, componentScores);
@@ -99,8 +116,56 @@ public class ScoreServiceImpl implements ScoreService {
         return new MatchScore(totalScore, confidence, componentScores);
     }
 
+    public boolean matchesIdenticalCopy(TransactionDto transaction) {
+        // Every component present on the row scores its full weight against an equal row
+        final Map<String, Double> componentScores = new HashMap<>();
+        if (!TransactionId.isBlank(transaction.getTransactionID())) {
+            componentScores.put(HEADER_TRANSACTION_ID, ScoringWeights.TRANSACTION_ID_WEIGHT);
+        }
+        if (transaction.getTransactionAmount() != null) {
+            componentScores.put(HEADER_TRANSACTION_AMOUNT, ScoringWeights.AMOUNT_EXACT_WEIGHT);
+        }
+        if (transaction.getTransactionDate() != null) {
+            componentScores.put(HEADER_TRANSACTION_DATE, ScoringWeights.DATE_EXACT_WEIGHT);
+        }
+        if (isPresent(transaction.getWalletReference())) {
+            componentScores.put(HEADER_WALLET_REFERENCE, ScoringWeights.WALLET_REFERENCE_WEIGHT);
+        }
+        if (transaction.getTransactionType() != null) {
+            componentScores.put(HEADER_TRANSACTION_TYPE, ScoringWeights.TRANSACTION_TYPE_WEIGHT);
+        }
+        if (isPresent(transaction.getProfileName())) {
+            componentScores.put(HEADER_PROFILE_NAME, 1.0);
+        }
+
+        final double partialScore = componentScores.values().stream().mapToDouble(v -> v).sum();
+        if (determineConfidence(partialScore, componentScores) == MatchConfidence.HIGH) {
+            return true;
+        }
+        // The text columns are only decoded when they can still make the difference
+        double textScore = 0;
+        if (isPresent(transaction.peekTransactionNarrative())) {
+            textScore += ScoringWeights.NARRATIVE_SIMILARITY_WEIGHT;
+        }
+        if (isPresent(transaction.peekTransactionDescription())) {
+            textScore += ScoringWeights.DESCRIPTION_SIMILARITY_WEIGHT;
+        }
+        return determineConfidence(partialScore + textScore, componentScores) == MatchConfidence.HIGH;
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    // Confidence only depends on the total and the ID/amount/date components, so the text can't move it if both ends agree
+    private boolean isSettledWithoutText(Map<String, Double> componentScores) {
+        final double partialScore = componentScores.values().stream().mapToDouble(v -> v).sum();
+        return determineConfidence(partialScore, componentScores) == determineConfidence(partialScore + MAX_TEXT_SCORE, componentScores);
+    }
+
     private double scoreTransactionId(TransactionId id1, TransactionId id2) {
-        if (id1 == null || id2 == null) {
+        // Two blank IDs are equal but say nothing about the rows
+        if (TransactionId.isBlank(id1) || TransactionId.isBlank(id2)) {
             return 0;
         }
 
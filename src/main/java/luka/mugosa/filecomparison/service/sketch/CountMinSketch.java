@@ -0,0 +1,48 @@
+package luka.mugosa.filecomparison.service.sketch;
+
+/**
+ * Frequency estimate in depth rows of width counters. An estimate never falls below the true count and, with
+ * conservative updates, overshoots it by at most e * total / width with probability 1 - e^-depth.
+ */
+public final class CountMinSketch {
+
+    private final int width;
+    private final int[][] counters;
+
+    // width is rounded up to a power of two
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1) {
+            throw new IllegalArgumentException("Depth and width must be positive");
+        }
+        this.width = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.counters = new int[depth][this.width];
+    }
+
+    /**
+     * Counts one more occurrence and returns the new estimate
+     */
+    public int add(long hash) {
+        final int estimate = estimate(hash) + 1;
+        // Conservative update, a counter is only raised as far as the new estimate
+        for (int row = 0; row < counters.length; row++) {
+            final int column = column(hash, row);
+            if (counters[row][column] < estimate) {
+                counters[row][column] = estimate;
+            }
+        }
+        return estimate;
+    }
+
+    public int estimate(long hash) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            estimate = Math.min(estimate, counters[row][column(hash, row)]);
+        }
+        return estimate;
+    }
+
+    // Rows are indexed by double hashing the two halves of the hash
+    private int column(long hash, int row) {
+        return ((int) hash + row * (int) (hash >>> 32)) & (width - 1);
+    }
+}
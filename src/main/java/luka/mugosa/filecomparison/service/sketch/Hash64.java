@@ -0,0 +1,29 @@
+package luka.mugosa.filecomparison.service.sketch;
+
+/**
+ * 64-bit hash of a string for sampling and sketches. Stable across runs and JVMs, unlike String.hashCode it
+ * spreads all 64 bits, so the top bits alone can pick a register and the low ones a counter.
+ */
+public final class Hash64 {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hash64() {
+    }
+
+    // FNV-1a over the chars, then the murmur3 finalizer so nearby values like TXN001 and TXN002 spread out
+    public static long of(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,334 @@
+package luka.mugosa.filecomparison.service.snapshot;
+
+import luka.mugosa.filecomparison.domain.dto.LazyColumn;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.enumeration.TransactionType;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary columnar copy of a parsed transaction file, loaded by memory-mapping instead of parsing the CSV again.
+ * Strings are dictionary encoded, so a value repeated across rows is stored and decoded once and the rows share
+ * the instance. Amounts and dates are fixed width. The body is covered by a CRC32C checksum and the header records
+ * the size and modification time of the source, so a truncated or stale snapshot is never used.
+ * <p>
+ * Layout (big endian): magic, version, row count, source size, source modification time, body length, checksum,
+ * then one column after the other - profile name, date, amount, narrative, description, ID, type, wallet reference.
+ */
+public final class TransactionSnapshot {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x52435853;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8 + 4;
+    private static final int NULL_CODE = -1;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private TransactionSnapshot() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Writes to a temp file next to the target and moves it in place, readers never see a half written snapshot
+     */
+    public static void write(Path target, List<TransactionDto> transactions, long sourceSize, long sourceModified) throws IOException {
+        final Path directory = target.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_SIZE);
+                final CRC32C checksum = new CRC32C();
+                // Not closed, that would close the channel before the header is written
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(Channels.newOutputStream(channel), checksum), BUFFER_SIZE));
+                writeColumns(out, transactions);
+                out.flush();
+
+                final long size = channel.position();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot of " + size + " bytes is too large to map");
+                }
+
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                        .putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putInt(transactions.size())
+                        .putLong(sourceSize)
+                        .putLong(sourceModified)
+                        .putLong(size - HEADER_SIZE)
+                        .putInt((int) checksum.getValue())
+                        .flip();
+                long position = 0;
+                while (header.hasRemaining()) {
+                    position += channel.write(header, position);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns null when the snapshot was taken from a different version of the source,
+     * a snapshot that is damaged or of another version fails with an IOException
+     */
+    public static List<TransactionDto> read(Path path, long sourceSize, long sourceModified) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid snapshot size " + size);
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a transaction snapshot");
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            final int rows = buffer.getInt();
+            if (buffer.getLong() != sourceSize || buffer.getLong() != sourceModified) {
+                return null;
+            }
+            final long bodyLength = buffer.getLong();
+            final int expectedChecksum = buffer.getInt();
+            if (rows < 0 || bodyLength != size - HEADER_SIZE) {
+                throw new IOException("Truncated snapshot");
+            }
+
+            final CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(HEADER_SIZE, (int) bodyLength));
+            if ((int) checksum.getValue() != expectedChecksum) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+
+            return readColumns(buffer, rows);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException | DateTimeException e) {
+            throw new IOException("Corrupt snapshot", e);
+        }
+    }
+
+    private static void writeColumns(DataOutputStream out, List<TransactionDto> transactions) throws IOException {
+        writeStrings(out, transactions, TransactionDto::getProfileName);
+        writeDates(out, transactions);
+        writeAmounts(out, transactions);
+        // Peeked, so the snapshot doesn't leave decoded text behind on DTOs that are still lazy
+        writeStrings(out, transactions, TransactionDto::peekTransactionNarrative);
+        writeStrings(out, transactions, TransactionDto::peekTransactionDescription);
+        writeStrings(out, transactions, transaction -> transaction.getTransactionID() != null ? transaction.getTransactionID().id() : null);
+        writeTypes(out, transactions);
+        writeStrings(out, transactions, TransactionDto::getWalletReference);
+    }
+
+    private static List<TransactionDto> readColumns(ByteBuffer buffer, int rows) {
+        final Dictionary profileNames = Dictionary.read(buffer, rows);
+        final ZonedDateTime[] dates = readDates(buffer, rows);
+        final Double[] amounts = readAmounts(buffer, rows);
+        final Dictionary narratives = Dictionary.read(buffer, rows);
+        final Dictionary descriptions = Dictionary.read(buffer, rows);
+        final Dictionary ids = Dictionary.read(buffer, rows);
+        final TransactionType[] types = readTypes(buffer, rows);
+        final Dictionary walletReferences = Dictionary.read(buffer, rows);
+
+        final String[] profileNameValues = profileNames.strings();
+        final LazyColumn[] narrativeValues = narratives.lazyColumns();
+        final LazyColumn[] descriptionValues = descriptions.lazyColumns();
+        final String[] idValues = ids.strings();
+        final String[] walletValues = walletReferences.strings();
+
+        final List<TransactionDto> transactions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            transactions.add(TransactionDto.withLazyText(
+                    lookup(profileNameValues, profileNames.codes[i]),
+                    dates[i],
+                    amounts[i],
+                    lookup(narrativeValues, narratives.codes[i]),
+                    lookup(descriptionValues, descriptions.codes[i]),
+                    new TransactionId(lookup(idValues, ids.codes[i])),
+                    types[i],
+                    lookup(walletValues, walletReferences.codes[i])));
+        }
+        return transactions;
+    }
+
+    private static <T> T lookup(T[] values, int code) {
+        return code == NULL_CODE ? null : values[code];
+    }
+
+    // Dictionary entries as an offset table into one UTF-8 blob, followed by a code per row
+    private static void writeStrings(DataOutputStream out, List<TransactionDto> transactions,
+                                     Function<TransactionDto, String> getter) throws IOException {
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final List<byte[]> entries = new ArrayList<>();
+        final int[] codes = new int[transactions.size()];
+
+        for (int i = 0; i < codes.length; i++) {
+            final String value = getter.apply(transactions.get(i));
+            codes[i] = value == null ? NULL_CODE : dictionary.computeIfAbsent(value, key -> {
+                entries.add(key.getBytes(StandardCharsets.UTF_8));
+                return entries.size() - 1;
+            });
+        }
+
+        out.writeInt(entries.size());
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] entry : entries) {
+            offset += entry.length;
+            out.writeInt(offset);
+        }
+        for (byte[] entry : entries) {
+            out.write(entry);
+        }
+        for (int code : codes) {
+            out.writeInt(code);
+        }
+    }
+
+    // The instant and the zone, so the same offset comes back even around DST changes
+    private static void writeDates(DataOutputStream out, List<TransactionDto> transactions) throws IOException {
+        for (TransactionDto transaction : transactions) {
+            final ZonedDateTime date = transaction.getTransactionDate();
+            out.writeLong(date != null ? date.toEpochSecond() : NULL_DATE);
+            out.writeInt(date != null ? date.getNano() : 0);
+        }
+        writeStrings(out, transactions, transaction -> transaction.getTransactionDate() != null
+                ? transaction.getTransactionDate().getZone().getId() : null);
+    }
+
+    private static ZonedDateTime[] readDates(ByteBuffer buffer, int rows) {
+        final long[] seconds = new long[rows];
+        final int[] nanos = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            seconds[i] = buffer.getLong();
+            nanos[i] = buffer.getInt();
+        }
+
+        final Dictionary zones = Dictionary.read(buffer, rows);
+        final String[] zoneIds = zones.strings();
+        final ZoneId[] zoneValues = new ZoneId[zoneIds.length];
+        for (int i = 0; i < zoneIds.length; i++) {
+            zoneValues[i] = ZoneId.of(zoneIds[i]);
+        }
+
+        final ZonedDateTime[] dates = new ZonedDateTime[rows];
+        for (int i = 0; i < rows; i++) {
+            if (seconds[i] != NULL_DATE) {
+                dates[i] = ZonedDateTime.ofInstant(Instant.ofEpochSecond(seconds[i], nanos[i]), zoneValues[zones.codes[i]]);
+            }
+        }
+        return dates;
+    }
+
+    // Presence bitmap, then a double per row
+    private static void writeAmounts(DataOutputStream out, List<TransactionDto> transactions) throws IOException {
+        final long[] presence = new long[(transactions.size() + 63) / 64];
+        for (int i = 0; i < transactions.size(); i++) {
+            if (transactions.get(i).getTransactionAmount() != null) {
+                presence[i >>> 6] |= 1L << i;
+            }
+        }
+        for (long word : presence) {
+            out.writeLong(word);
+        }
+        for (TransactionDto transaction : transactions) {
+            final Double amount = transaction.getTransactionAmount();
+            out.writeDouble(amount != null ? amount : 0.0);
+        }
+    }
+
+    private static Double[] readAmounts(ByteBuffer buffer, int rows) {
+        final long[] presence = new long[(rows + 63) / 64];
+        for (int i = 0; i < presence.length; i++) {
+            presence[i] = buffer.getLong();
+        }
+        final Double[] amounts = new Double[rows];
+        for (int i = 0; i < rows; i++) {
+            final double amount = buffer.getDouble();
+            if ((presence[i >>> 6] & (1L << i)) != 0) {
+                amounts[i] = amount;
+            }
+        }
+        return amounts;
+    }
+
+    private static void writeTypes(DataOutputStream out, List<TransactionDto> transactions) throws IOException {
+        for (TransactionDto transaction : transactions) {
+            out.writeByte(transaction.getTransactionType() != null ? transaction.getTransactionType().ordinal() : NULL_CODE);
+        }
+    }
+
+    private static TransactionType[] readTypes(ByteBuffer buffer, int rows) {
+        final TransactionType[] values = TransactionType.values();
+        final TransactionType[] types = new TransactionType[rows];
+        for (int i = 0; i < rows; i++) {
+            final byte ordinal = buffer.get();
+            types[i] = ordinal == NULL_CODE ? null : values[ordinal];
+        }
+        return types;
+    }
+
+    /**
+     * One dictionary encoded column, the blob is copied out of the mapping once and shared by all of its values
+     */
+    private record Dictionary(int[] offsets, byte[] blob, int[] codes) {
+
+        static Dictionary read(ByteBuffer buffer, int rows) {
+            final int entries = buffer.getInt();
+            final int[] offsets = new int[entries + 1];
+            for (int i = 0; i <= entries; i++) {
+                offsets[i] = buffer.getInt();
+            }
+            final byte[] blob = new byte[offsets[entries]];
+            buffer.get(blob);
+            final int[] codes = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                codes[i] = buffer.getInt();
+            }
+            return new Dictionary(offsets, blob, codes);
+        }
+
+        String[] strings() {
+            final String[] values = new String[offsets.length - 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = new String(blob, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+            }
+            return values;
+        }
+
+        LazyColumn[] lazyColumns() {
+            final LazyColumn[] values = new LazyColumn[offsets.length - 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = new LazyColumn(blob, offsets[i], offsets[i + 1] - offsets[i]);
+            }
+            return values;
+        }
+    }
+}
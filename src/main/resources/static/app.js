@@ -38,7 +38,7 @@ form.addEventListener('submit', async (e) => {
     submitBtn.disabled = true;
 
     try {
-        const response = await axios.post(`${baseUrl}/api/v1/reconcile-transactions`, formData, {
+        const response = await axios.post(`${baseUrl}/api/v1/reconcile-transactions?includeDiff=true`, formData, {
             headers: {
                 'Content-Type': 'multipart/form-data'
             }
@@ -99,6 +99,7 @@ function displayResults(data) {
             pairDiv.innerHTML = `
                 ${renderTransaction(pair.transaction1, 'File 1 Transaction')}
                 ${renderTransaction(pair.transaction2, 'File 2 Transaction')}
+                ${renderDiff(pair.diff)}
             `;
             unmatchedPairs.appendChild(pairDiv);
         });
@@ -109,6 +110,21 @@ function displayResults(data) {
     results.classList.add('show');
 }
 
+function renderDiff(diff) {
+    if (!diff) {
+        return '';
+    }
+
+    const columns = diff.differingColumns.length > 0 ? diff.differingColumns.join(', ') : 'None';
+    return `
+        <div class="transaction-diff">
+            <span class="label">Differs in:</span> ${columns}
+            ${diff.amountDelta !== null ? `<span class="label">Amount delta:</span> ${diff.amountDelta}` : ''}
+            ${diff.dayDelta !== null ? `<span class="label">Day delta:</span> ${diff.dayDelta}` : ''}
+        </div>
+    `;
+}
+
 function renderTransaction(transaction, header) {
     if (!transaction) {
         return `<div class="transaction empty">No matching transaction</div>`;
@@ -1,12 +1,21 @@
 package luka.mugosa.filecomparison.service.impl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.LazyColumn;
+import luka.mugosa.filecomparison.domain.dto.SourcePairSummaryDto;
 import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.TransactionIdSourcesDto;
 import luka.mugosa.filecomparison.domain.dto.UnmatchedTransactionPairDto;
+import luka.mugosa.filecomparison.domain.dto.response.MultiSourceReconciliationResponse;
 import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.SourcePairOutcome;
 import luka.mugosa.filecomparison.domain.enumeration.TransactionType;
 import luka.mugosa.filecomparison.domain.id.TransactionId;
 import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
 import luka.mugosa.filecomparison.service.ScoreService;
+import luka.mugosa.filecomparison.service.score.ScoreServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -15,9 +24,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static luka.mugosa.filecomparison.service.util.TransactionUtil.createMatchScore;
 import static luka.mugosa.filecomparison.service.util.TransactionUtil.createTransaction;
@@ -44,7 +58,8 @@ class ComparisonServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        comparisonService = new ComparisonServiceImpl(scoreService);
+        comparisonService = new ComparisonServiceImpl(scoreService, new ReconciliationProperties(),
+                new ReconciliationMetrics(new SimpleMeterRegistry()));
     }
 
     @Nested
@@ -67,7 +82,7 @@ class ComparisonServiceImplTest {
                     createTransactionTwoMainParams("TXN003", 300.0)
             );
 
-            when(scoreService.calculateScore(any(), any()))
+            when(scoreService.calculateDecisiveScore(any(), any()))
                     .thenReturn(createMatchScore(95.0, MatchConfidence.HIGH));
 
             // Act
@@ -87,7 +102,7 @@ class ComparisonServiceImplTest {
             assertTrue(response.unmatchedTransactionPairs().isEmpty());
 
             // Verify interactions
-            verify(scoreService, times(3)).calculateScore(any(), any());
+            verify(scoreService, times(3)).calculateDecisiveScore(any(), any());
         }
 
         @Test
@@ -100,7 +115,7 @@ class ComparisonServiceImplTest {
             final List<TransactionDto> collection1 = createTransactionList(txn1);
             final List<TransactionDto> collection2 = createTransactionList(txn2);
 
-            when(scoreService.calculateScore(txn1, txn2))
+            when(scoreService.calculateDecisiveScore(txn1, txn2))
                     .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
 
             // Act
@@ -116,7 +131,7 @@ class ComparisonServiceImplTest {
             assertEquals(100.0, response.matchPercentage());
             assertTrue(response.unmatchedTransactionPairs().isEmpty());
 
-            verify(scoreService, times(1)).calculateScore(txn1, txn2);
+            verify(scoreService, times(1)).calculateDecisiveScore(txn1, txn2);
         }
     }
 
@@ -134,7 +149,7 @@ class ComparisonServiceImplTest {
             final List<TransactionDto> collection1 = createTransactionList(txn1);
             final List<TransactionDto> collection2 = createTransactionList(txn2);
 
-            when(scoreService.calculateScore(txn1, txn2))
+            when(scoreService.calculateDecisiveScore(txn1, txn2))
                     .thenReturn(createMatchScore(55.0, MatchConfidence.MEDIUM));
 
             // Act
@@ -160,7 +175,7 @@ class ComparisonServiceImplTest {
             assertEquals(txn1.getTransactionID(), pair.getTransaction1().getTransactionID());
             assertEquals(txn2.getTransactionID(), pair.getTransaction2().getTransactionID());
 
-            verify(scoreService, times(1)).calculateScore(txn1, txn2);
+            verify(scoreService, times(1)).calculateDecisiveScore(txn1, txn2);
         }
 
         @Test
@@ -173,7 +188,7 @@ class ComparisonServiceImplTest {
             final List<TransactionDto> collection1 = createTransactionList(txn1);
             final List<TransactionDto> collection2 = createTransactionList(txn2);
 
-            when(scoreService.calculateScore(txn1, txn2))
+            when(scoreService.calculateDecisiveScore(txn1, txn2))
                     .thenReturn(createMatchScore(35.0, MatchConfidence.LOW));
 
             // Act
@@ -202,7 +217,7 @@ class ComparisonServiceImplTest {
             final List<TransactionDto> collection1 = createTransactionList(txn1);
             final List<TransactionDto> collection2 = createTransactionList(txn2);
 
-            when(scoreService.calculateScore(txn1, txn2))
+            when(scoreService.calculateDecisiveScore(txn1, txn2))
                     .thenReturn(createMatchScore(5.0, MatchConfidence.VERY_LOW));
 
             // Act
@@ -351,9 +366,9 @@ class ComparisonServiceImplTest {
                     matched1File2, matched2File2, unmatchedFile2
             );
 
-            when(scoreService.calculateScore(matched1File1, matched1File2))
+            when(scoreService.calculateDecisiveScore(matched1File1, matched1File2))
                     .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
-            when(scoreService.calculateScore(matched2File1, matched2File2))
+            when(scoreService.calculateDecisiveScore(matched2File1, matched2File2))
                     .thenReturn(createMatchScore(85.0, MatchConfidence.HIGH));
 
             // Act
@@ -385,7 +400,58 @@ class ComparisonServiceImplTest {
                             p.getTransaction1() == null);
             assertTrue(hasFile2Unmatched);
 
-            verify(scoreService, times(2)).calculateScore(any(), any());
+            verify(scoreService, times(2)).calculateDecisiveScore(any(), any());
+        }
+
+        @Test
+        @DisplayName("Should count the scored pairs per confidence level in the statistics")
+        void shouldCountPairsByConfidence() {
+            // Arrange
+            final TransactionDto high1 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto high2 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto medium1 = createTransactionTwoMainParams("TXN002", 200.0);
+            final TransactionDto medium2 = createTransactionTwoMainParams("TXN002", 250.0);
+            final TransactionDto low1 = createTransactionTwoMainParams("TXN003", 300.0);
+            final TransactionDto low2 = createTransactionTwoMainParams("TXN003", 900.0);
+
+            when(scoreService.calculateDecisiveScore(high1, high2)).thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+            when(scoreService.calculateDecisiveScore(medium1, medium2)).thenReturn(createMatchScore(60.0, MatchConfidence.MEDIUM));
+            when(scoreService.calculateDecisiveScore(low1, low2)).thenReturn(createMatchScore(30.0, MatchConfidence.LOW));
+
+            // Act
+            final ReconciliationResponse response = comparisonService.compareData(
+                    createTransactionList(high1, medium1, low1), createTransactionList(high2, medium2, low2));
+
+            // Assert
+            assertNotNull(response.statistics());
+            assertEquals(Map.of(MatchConfidence.HIGH, 1, MatchConfidence.MEDIUM, 1, MatchConfidence.LOW, 1,
+                    MatchConfidence.VERY_LOW, 0), response.statistics().pairsByConfidence());
+        }
+
+        @Test
+        @DisplayName("Should add the scored pairs per confidence level to the matches counter")
+        void shouldCountPairsByConfidenceInMetrics() {
+            // Arrange
+            final TransactionDto high1 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto high2 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto low1 = createTransactionTwoMainParams("TXN002", 200.0);
+            final TransactionDto low2 = createTransactionTwoMainParams("TXN002", 900.0);
+
+            when(scoreService.calculateDecisiveScore(high1, high2)).thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+            when(scoreService.calculateDecisiveScore(low1, low2)).thenReturn(createMatchScore(30.0, MatchConfidence.LOW));
+
+            final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            final ComparisonServiceImpl measured = new ComparisonServiceImpl(scoreService, new ReconciliationProperties(),
+                    new ReconciliationMetrics(registry));
+
+            // Act
+            measured.compareData(createTransactionList(high1, low1), createTransactionList(high2, low2));
+
+            // Assert
+            assertEquals(1.0, registry.get("reconciliation.matches").tag("confidence", "HIGH").counter().count());
+            assertEquals(1.0, registry.get("reconciliation.matches").tag("confidence", "LOW").counter().count());
+            assertEquals(0.0, registry.get("reconciliation.matches").tag("confidence", "MEDIUM").counter().count());
+            assertEquals(2.0, registry.get("reconciliation.scoring.pairs").counter().count());
         }
 
         @Test
@@ -400,9 +466,9 @@ class ComparisonServiceImplTest {
             final List<TransactionDto> collection1 = createTransactionList(highConfFile1, lowConfFile1);
             final List<TransactionDto> collection2 = createTransactionList(highConfFile2, lowConfFile2);
 
-            when(scoreService.calculateScore(highConfFile1, highConfFile2))
+            when(scoreService.calculateDecisiveScore(highConfFile1, highConfFile2))
                     .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
-            when(scoreService.calculateScore(lowConfFile1, lowConfFile2))
+            when(scoreService.calculateDecisiveScore(lowConfFile1, lowConfFile2))
                     .thenReturn(createMatchScore(10.0, MatchConfidence.VERY_LOW));
 
             // Act
@@ -426,7 +492,7 @@ class ComparisonServiceImplTest {
             assertEquals(lowConfFile1.getTransactionID(), pair.getTransaction1().getTransactionID());
             assertEquals(lowConfFile2.getTransactionID(), pair.getTransaction2().getTransactionID());
 
-            verify(scoreService, times(2)).calculateScore(any(), any());
+            verify(scoreService, times(2)).calculateDecisiveScore(any(), any());
         }
     }
 
@@ -521,10 +587,10 @@ class ComparisonServiceImplTest {
                 collection2.add(txn2);
 
                 if (i <= 3) {
-                    when(scoreService.calculateScore(txn1, txn2))
+                    when(scoreService.calculateDecisiveScore(txn1, txn2))
                             .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
                 } else {
-                    when(scoreService.calculateScore(txn1, txn2))
+                    when(scoreService.calculateDecisiveScore(txn1, txn2))
                             .thenReturn(createMatchScore(30.0, MatchConfidence.LOW));
                 }
             }
@@ -542,7 +608,7 @@ class ComparisonServiceImplTest {
             assertEquals(30.0, response.matchPercentage());
             assertEquals(7, response.unmatchedTransactionPairs().size());
 
-            verify(scoreService, times(10)).calculateScore(any(), any());
+            verify(scoreService, times(10)).calculateDecisiveScore(any(), any());
         }
     }
 
@@ -563,7 +629,7 @@ class ComparisonServiceImplTest {
                 collection2.add(txn);
             }
 
-            when(scoreService.calculateScore(any(), any()))
+            when(scoreService.calculateDecisiveScore(any(), any()))
                     .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
 
             // Act
@@ -579,7 +645,7 @@ class ComparisonServiceImplTest {
             assertEquals(100.0, response.matchPercentage());
             assertTrue(response.unmatchedTransactionPairs().isEmpty());
 
-            verify(scoreService, times(1000)).calculateScore(any(), any());
+            verify(scoreService, times(1000)).calculateDecisiveScore(any(), any());
         }
     }
 
@@ -595,7 +661,7 @@ class ComparisonServiceImplTest {
         final List<TransactionDto> collection1 = createTransactionList(txn1, txn1Duplicate);
         final List<TransactionDto> collection2 = createTransactionList(txn2, txn2Duplicate);
 
-        when(scoreService.calculateScore(any(), any()))
+        when(scoreService.calculateDecisiveScore(any(), any()))
                 .thenReturn(createMatchScore(95.0, MatchConfidence.HIGH));
 
         // Act
@@ -611,7 +677,7 @@ class ComparisonServiceImplTest {
         assertEquals(100.0, response.matchPercentage());
         assertTrue(response.unmatchedTransactionPairs().isEmpty());
 
-        verify(scoreService, times(2)).calculateScore(any(), any());
+        verify(scoreService, times(2)).calculateDecisiveScore(any(), any());
     }
 
     @Test
@@ -650,11 +716,11 @@ class ComparisonServiceImplTest {
         final List<TransactionDto> collection2 = createTransactionList(txn2Match, txn2Different);
 
         // First pair matches (HIGH confidence)
-        when(scoreService.calculateScore(txn1Match, txn2Match))
+        when(scoreService.calculateDecisiveScore(txn1Match, txn2Match))
                 .thenReturn(createMatchScore(95.0, MatchConfidence.HIGH));
 
         // Second pair doesn't match (LOW confidence - different data)
-        when(scoreService.calculateScore(txn1Different, txn2Different))
+        when(scoreService.calculateDecisiveScore(txn1Different, txn2Different))
                 .thenReturn(createMatchScore(15.0, MatchConfidence.VERY_LOW));
 
         // Act
@@ -679,7 +745,7 @@ class ComparisonServiceImplTest {
         assertEquals(500.0, unmatchedPair.getTransaction1().getTransactionAmount());
         assertEquals(999.0, unmatchedPair.getTransaction2().getTransactionAmount());
 
-        verify(scoreService, times(2)).calculateScore(any(), any());
+        verify(scoreService, times(2)).calculateDecisiveScore(any(), any());
     }
 
     @Test
@@ -722,7 +788,7 @@ class ComparisonServiceImplTest {
         });
 
         // Should never call scoreService because a size mismatch is detected first
-        verify(scoreService, never()).calculateScore(any(), any());
+        verify(scoreService, never()).calculateDecisiveScore(any(), any());
     }
 
     @Test
@@ -762,7 +828,512 @@ class ComparisonServiceImplTest {
         assertNull(pair.getTransaction2());
         assertEquals(new TransactionId("TXN002").toString(), pair.getTransaction1().getTransactionID().toString());
 
-        verify(scoreService, never()).calculateScore(any(), any());
+        verify(scoreService, never()).calculateDecisiveScore(any(), any());
+    }
+
+    @Nested
+    @DisplayName("Blank Transaction ID Scenarios")
+    class BlankTransactionIdScenarios {
+
+        @Test
+        @DisplayName("Should pair blank IDs by wallet reference, amount and date instead of position")
+        void shouldPairBlankIdsByWalletReferenceAmountAndDate() {
+            // Arrange
+            final ZonedDateTime date = ZonedDateTime.now();
+            final TransactionDto txn1First = createBlankIdTransaction("WALLET_A", 100.0, date);
+            final TransactionDto txn1Second = createBlankIdTransaction("WALLET_B", 200.0, date);
+            final TransactionDto txn2First = createBlankIdTransaction("WALLET_B", 200.0, date);
+            final TransactionDto txn2Second = createBlankIdTransaction("WALLET_A", 100.0, date);
+
+            final List<TransactionDto> collection1 = createTransactionList(txn1First, txn1Second);
+            final List<TransactionDto> collection2 = createTransactionList(txn2First, txn2Second);
+
+            when(scoreService.calculateScore(txn1First, txn2Second))
+                    .thenReturn(createMatchScore(95.0, MatchConfidence.HIGH));
+            when(scoreService.calculateScore(txn1Second, txn2First))
+                    .thenReturn(createMatchScore(95.0, MatchConfidence.HIGH));
+
+            // Act
+            final ReconciliationResponse response = comparisonService.compareData(collection1, collection2);
+
+            // Assert
+            assertEquals(2, response.totalRecordsInFile1());
+            assertEquals(2, response.totalRecordsInFile2());
+            assertEquals(2, response.matchedRecords());
+            assertEquals(0, response.unmatchedRecordsInFile1());
+            assertEquals(0, response.unmatchedRecordsInFile2());
+            assertTrue(response.unmatchedTransactionPairs().isEmpty());
+
+            verify(scoreService, times(2)).calculateScore(any(), any());
+        }
+
+        @Test
+        @DisplayName("Should fall back to profile name, amount and date window when wallet reference is missing")
+        void shouldFallBackToProfileNameAmountAndDateWindow() {
+            // Arrange
+            final ZonedDateTime date = ZonedDateTime.now();
+            final TransactionDto txn1 = createTransaction(null, 100.0, date, "Card Campaign");
+            final TransactionDto txn2 = createTransaction(null, 100.0, date.plusDays(1), "Card Campaign");
+
+            when(scoreService.calculateScore(txn1, txn2))
+                    .thenReturn(createMatchScore(85.0, MatchConfidence.HIGH));
+
+            // Act
+            final ReconciliationResponse response = comparisonService.compareData(
+                    createTransactionList(txn1), createTransactionList(txn2));
+
+            // Assert
+            assertEquals(1, response.matchedRecords());
+            assertEquals(0, response.unmatchedRecordsInFile1());
+            assertEquals(0, response.unmatchedRecordsInFile2());
+            assertTrue(response.unmatchedTransactionPairs().isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should report blank IDs without a counterpart on either side as unmatched")
+        void shouldReportBlankIdsWithoutCounterpartAsUnmatched() {
+            // Arrange
+            final ZonedDateTime date = ZonedDateTime.now();
+            final TransactionDto txn1 = createBlankIdTransaction("WALLET_A", 100.0, date);
+            final TransactionDto txn2 = createBlankIdTransaction("WALLET_B", 300.0, date.plusDays(10));
+
+            // Act
+            final ReconciliationResponse response = comparisonService.compareData(
+                    createTransactionList(txn1), createTransactionList(txn2));
+
+            // Assert
+            assertEquals(0, response.matchedRecords());
+            assertEquals(1, response.unmatchedRecordsInFile1());
+            assertEquals(1, response.unmatchedRecordsInFile2());
+            assertEquals(2, response.unmatchedTransactionPairs().size());
+            assertEquals(txn1, response.unmatchedTransactionPairs().get(0).getTransaction1());
+            assertEquals(txn2, response.unmatchedTransactionPairs().get(1).getTransaction2());
+
+            verifyNoInteractions(scoreService);
+        }
+
+        @Test
+        @DisplayName("Should not pair blank IDs that only agree on the key fields with the real scorer")
+        void shouldNotPairBlankIdsAgreeingOnlyOnKeyFields() {
+            // Arrange
+            final ComparisonServiceImpl realScoring = new ComparisonServiceImpl(new ScoreServiceImpl(), new ReconciliationProperties(),
+                    new ReconciliationMetrics(new SimpleMeterRegistry()));
+            final ZonedDateTime date = ZonedDateTime.now();
+            final TransactionDto txn1 = new TransactionDto("Card Campaign", date, 100.0, "Refund", "REVERSAL",
+                    new TransactionId(""), TransactionType.TYPE_2, "WALLET_A");
+            final TransactionDto txn2 = new TransactionDto("Card Campaign", date, 100.0, "Salary", "DEDUCT",
+                    new TransactionId(" "), TransactionType.TYPE_1, "WALLET_B");
+
+            // Act
+            final ReconciliationResponse response = realScoring.compareData(
+                    createTransactionList(txn1), createTransactionList(txn2));
+
+            // Assert
+            assertEquals(0, response.matchedRecords());
+            assertEquals(1, response.unmatchedRecordsInFile1());
+            assertEquals(1, response.unmatchedRecordsInFile2());
+        }
+
+        @Test
+        @DisplayName("Should pair blank IDs whose rows agree beyond the key fields with the real scorer")
+        void shouldPairBlankIdsAgreeingBeyondKeyFields() {
+            // Arrange
+            final ComparisonServiceImpl realScoring = new ComparisonServiceImpl(new ScoreServiceImpl(), new ReconciliationProperties(),
+                    new ReconciliationMetrics(new SimpleMeterRegistry()));
+            final ZonedDateTime date = ZonedDateTime.now();
+            final TransactionDto txn1 = createBlankIdTransaction("WALLET_A", 100.0, date);
+            final TransactionDto txn2 = createBlankIdTransaction("WALLET_A", 100.0, date);
+
+            // Act
+            final ReconciliationResponse response = realScoring.compareData(
+                    createTransactionList(txn1), createTransactionList(txn2));
+
+            // Assert
+            assertEquals(1, response.matchedRecords());
+            assertEquals(0, response.unmatchedRecordsInFile1());
+            assertEquals(0, response.unmatchedRecordsInFile2());
+        }
+
+        private TransactionDto createBlankIdTransaction(String wallet, Double amount, ZonedDateTime date) {
+            return new TransactionDto("ProfileName", date, amount, "Narrative", "DEDUCT",
+                    new TransactionId(""), TransactionType.TYPE_1, wallet);
+        }
+    }
+
+    @Nested
+    @DisplayName("Summary Only Scenarios")
+    class SummaryOnlyScenarios {
+
+        @Test
+        @DisplayName("Should count unmatched transactions without building the pair list")
+        void shouldCountUnmatchedWithoutBuildingPairs() {
+            // Arrange
+            final TransactionDto matchedFile1 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto matchedFile2 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto lowConfFile1 = createTransactionTwoMainParams("TXN002", 200.0);
+            final TransactionDto lowConfFile2 = createTransactionTwoMainParams("TXN002", 999.0);
+
+            final List<TransactionDto> collection1 = createTransactionList(
+                    matchedFile1, lowConfFile1, createTransactionTwoMainParams("TXN003", 300.0));
+            final List<TransactionDto> collection2 = createTransactionList(
+                    matchedFile2, lowConfFile2, createTransactionTwoMainParams("TXN004", 400.0));
+
+            when(scoreService.calculateDecisiveScore(matchedFile1, matchedFile2))
+                    .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+            when(scoreService.calculateDecisiveScore(lowConfFile1, lowConfFile2))
+                    .thenReturn(createMatchScore(30.0, MatchConfidence.LOW));
+
+            // Act
+            final ReconciliationResponse response = comparisonService.compareData(
+                    collection1, collection2, ReconciliationAccumulator.countingOnly());
+
+            // Assert
+            assertEquals(3, response.totalRecordsInFile1());
+            assertEquals(3, response.totalRecordsInFile2());
+            assertEquals(1, response.matchedRecords());
+            assertEquals(2, response.unmatchedRecordsInFile1());
+            assertEquals(1, response.unmatchedRecordsInFile2());
+            assertEquals(33.33333333333333, response.matchPercentage(), 0.0001);
+            assertNull(response.unmatchedTransactionPairs());
+        }
+    }
+
+    @Nested
+    @DisplayName("Pipelined Join Scenarios")
+    class PipelinedJoinScenarios {
+
+        @Test
+        @DisplayName("Should give the same outcome as compareData when rows arrive interleaved")
+        void shouldMatchBatchOutcomeWhenRowsArriveInterleaved() {
+            // Arrange
+            final TransactionDto matchedFile1 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto matchedFile2 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto lowConfFile1 = createTransactionTwoMainParams("TXN002", 200.0);
+            final TransactionDto lowConfFile2 = createTransactionTwoMainParams("TXN002", 999.0);
+            final TransactionDto onlyFile1 = createTransactionTwoMainParams("TXN003", 300.0);
+            final TransactionDto onlyFile2 = createTransactionTwoMainParams("TXN004", 400.0);
+
+            when(scoreService.calculateDecisiveScore(matchedFile1, matchedFile2))
+                    .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+            when(scoreService.calculateDecisiveScore(lowConfFile1, lowConfFile2))
+                    .thenReturn(createMatchScore(30.0, MatchConfidence.LOW));
+
+            final SymmetricHashJoin join = comparisonService.newSymmetricHashJoin(new ReconciliationProgress());
+
+            // Act
+            join.acceptFromFile2(lowConfFile2);
+            join.acceptFromFile1(matchedFile1);
+            join.acceptFromFile2(onlyFile2);
+            join.acceptFromFile1(lowConfFile1);
+            join.acceptFromFile2(matchedFile2);
+            join.acceptFromFile1(onlyFile1);
+            final ReconciliationResponse response = join.finish();
+
+            // Assert
+            final ReconciliationResponse expected = comparisonService.compareData(
+                    createTransactionList(matchedFile1, lowConfFile1, onlyFile1),
+                    createTransactionList(lowConfFile2, onlyFile2, matchedFile2));
+
+            assertEquals(3, response.totalRecordsInFile1());
+            assertEquals(3, response.totalRecordsInFile2());
+            assertEquals(1, response.matchedRecords());
+            assertEquals(2, response.unmatchedRecordsInFile1());
+            assertEquals(1, response.unmatchedRecordsInFile2());
+            assertEquals(expected.matchPercentage(), response.matchPercentage());
+            assertEquals(new HashSet<>(expected.unmatchedTransactionPairs()), new HashSet<>(response.unmatchedTransactionPairs()));
+        }
+
+        @Test
+        @DisplayName("Should report all file1 rows of a group as unmatched when duplicate counts differ")
+        void shouldReportUnequalDuplicateCountsAsUnmatched() {
+            // Arrange
+            final ZonedDateTime date = ZonedDateTime.now();
+            final TransactionDto txn1 = createTransaction("TXN001", 100.0, date);
+            final TransactionDto txn2First = createTransaction("TXN001", 100.0, date);
+            final TransactionDto txn2Second = createTransaction("TXN001", 100.0, date);
+
+            final SymmetricHashJoin join = comparisonService.newSymmetricHashJoin(new ReconciliationProgress());
+
+            // Act
+            join.acceptFromFile1(txn1);
+            join.acceptFromFile2(txn2First);
+            join.acceptFromFile2(txn2Second);
+            final ReconciliationResponse response = join.finish();
+
+            // Assert
+            assertEquals(0, response.matchedRecords());
+            assertEquals(1, response.unmatchedRecordsInFile1());
+            assertEquals(0, response.unmatchedRecordsInFile2());
+            assertEquals(1, response.unmatchedTransactionPairs().size());
+            assertEquals(txn1, response.unmatchedTransactionPairs().get(0).getTransaction1());
+            assertNull(response.unmatchedTransactionPairs().get(0).getTransaction2());
+        }
+
+        @Test
+        @DisplayName("Should score only the first pair of a duplicate group while parsing")
+        void shouldDeferScoringOfDuplicatesToFinish() {
+            // Arrange
+            final ZonedDateTime date = ZonedDateTime.now();
+            final TransactionDto unequal1 = createTransaction("TXN001", 100.0, date);
+            final TransactionDto unequal1Second = createTransaction("TXN001", 100.0, date);
+            final List<TransactionDto> unequal2 = createTransactionList(createTransaction("TXN001", 100.0, date),
+                    createTransaction("TXN001", 100.0, date), createTransaction("TXN001", 100.0, date));
+            final TransactionDto equal1 = createTransaction("TXN002", 200.0, date);
+            final TransactionDto equal1Second = createTransaction("TXN002", 200.0, date);
+            final TransactionDto equal2 = createTransaction("TXN002", 200.0, date);
+            final TransactionDto equal2Second = createTransaction("TXN002", 200.0, date);
+            when(scoreService.calculateDecisiveScore(any(), any()))
+                    .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+
+            final ReconciliationProgress progress = new ReconciliationProgress();
+            final SymmetricHashJoin join = comparisonService.newSymmetricHashJoin(progress);
+
+            // Act
+            join.acceptFromFile1(unequal1);
+            join.acceptFromFile1(unequal1Second);
+            unequal2.forEach(join::acceptFromFile2);
+            join.acceptFromFile2(equal2);
+            join.acceptFromFile1(equal1);
+            join.acceptFromFile1(equal1Second);
+            join.acceptFromFile2(equal2Second);
+            final long scoredWhileParsing = progress.getPairsScored();
+            final ReconciliationResponse response = join.finish();
+
+            // Assert - the unequal group costs one wasted score, the second TXN002 pair is scored by finish()
+            assertEquals(2, scoredWhileParsing);
+            assertEquals(3, progress.getPairsScored());
+            assertEquals(2, response.matchedRecords());
+            assertEquals(2, response.unmatchedRecordsInFile1());
+            verify(scoreService).calculateDecisiveScore(unequal1, unequal2.getFirst());
+            // equal1Second and equal2Second are equal to the first rows
+            verify(scoreService, times(2)).calculateDecisiveScore(equal1, equal2);
+            verify(scoreService, times(3)).calculateDecisiveScore(any(), any());
+        }
+
+        @Test
+        @DisplayName("Should match every row when both sides are fed from separate threads")
+        void shouldMatchAllRowsWhenFedConcurrently() throws Exception {
+            // Arrange
+            final List<TransactionDto> collection1 = new ArrayList<>();
+            final List<TransactionDto> collection2 = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                collection1.add(createTransactionTwoMainParams("TXN" + i, i * 10.0));
+                collection2.add(createTransactionTwoMainParams("TXN" + (4999 - i), (4999 - i) * 10.0));
+            }
+            when(scoreService.calculateDecisiveScore(any(), any()))
+                    .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+
+            final ReconciliationProgress progress = new ReconciliationProgress();
+            final SymmetricHashJoin join = comparisonService.newSymmetricHashJoin(progress);
+
+            // Act
+            final Thread file1Parser = Thread.ofVirtual().start(() -> collection1.forEach(join::acceptFromFile1));
+            final Thread file2Parser = Thread.ofVirtual().start(() -> collection2.forEach(join::acceptFromFile2));
+            file1Parser.join();
+            file2Parser.join();
+            final ReconciliationResponse response = join.finish();
+
+            // Assert
+            assertEquals(5000, response.matchedRecords());
+            assertEquals(100.0, response.matchPercentage());
+            assertTrue(response.unmatchedTransactionPairs().isEmpty());
+            assertEquals(5000, progress.getRowsParsedFromFile1());
+            assertEquals(5000, progress.getRowsParsedFromFile2());
+            assertEquals(5000, progress.getPairsScored());
+            verify(scoreService, times(5000)).calculateDecisiveScore(any(), any());
+        }
     }
 
-}
\ No newline at end of file
+    @Nested
+    @DisplayName("Prepared Reference Scenarios")
+    class PreparedReferenceScenarios {
+
+        @Test
+        @DisplayName("Should give the same outcome as compareData every time the reference is reused")
+        void shouldMatchBatchOutcomeAcrossRepeatedComparisons() {
+            // Arrange
+            final TransactionDto matchedFile1 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto matchedFile2 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto lowConfFile1 = createTransactionTwoMainParams("TXN002", 200.0);
+            final TransactionDto lowConfFile2 = createTransactionTwoMainParams("TXN002", 999.0);
+            final TransactionDto onlyFile1 = createTransactionTwoMainParams("TXN003", 300.0);
+            final TransactionDto onlyFile2 = createTransactionTwoMainParams("TXN004", 400.0);
+
+            when(scoreService.calculateDecisiveScore(matchedFile1, matchedFile2))
+                    .thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+            when(scoreService.calculateDecisiveScore(lowConfFile1, lowConfFile2))
+                    .thenReturn(createMatchScore(30.0, MatchConfidence.LOW));
+
+            final List<TransactionDto> collection1 = createTransactionList(matchedFile1, lowConfFile1, onlyFile1);
+            final PreparedReference reference = new PreparedReference("ref", "master.csv", collection1, null,
+                    Instant.now(), Instant.now().plusSeconds(60), MemoryAdmissionController.AdmissionTicket.NONE);
+
+            // Act
+            final ReconciliationResponse first = compareAgainst(reference, lowConfFile2, onlyFile2, matchedFile2);
+            final ReconciliationResponse second = compareAgainst(reference, matchedFile2, lowConfFile2, onlyFile2);
+            final ReconciliationResponse withoutTxn003 = compareAgainst(reference, matchedFile2);
+
+            // Assert
+            final ReconciliationResponse expected = comparisonService.compareData(collection1,
+                    createTransactionList(lowConfFile2, onlyFile2, matchedFile2));
+
+            for (ReconciliationResponse response : List.of(first, second)) {
+                assertEquals(3, response.totalRecordsInFile1());
+                assertEquals(3, response.totalRecordsInFile2());
+                assertEquals(1, response.matchedRecords());
+                assertEquals(2, response.unmatchedRecordsInFile1());
+                assertEquals(1, response.unmatchedRecordsInFile2());
+                assertEquals(new HashSet<>(expected.unmatchedTransactionPairs()), new HashSet<>(response.unmatchedTransactionPairs()));
+            }
+            assertEquals(1, withoutTxn003.matchedRecords());
+            assertEquals(2, withoutTxn003.unmatchedRecordsInFile1());
+            assertEquals(0, withoutTxn003.unmatchedRecordsInFile2());
+            assertEquals(3, reference.getGroups().size());
+        }
+
+        private ReconciliationResponse compareAgainst(PreparedReference reference, TransactionDto... collection2) {
+            final ReferenceProbeJoin join = comparisonService.newReferenceProbeJoin(reference, new ReconciliationProgress());
+            for (TransactionDto transaction : collection2) {
+                join.acceptFromFile2(transaction);
+            }
+            return join.finish(new ReconciliationAccumulator());
+        }
+    }
+
+    @Nested
+    @DisplayName("Identical Date Bucket Scenarios")
+    class IdenticalDateBucketScenarios {
+
+        @Test
+        @DisplayName("Should only score the days whose digests differ")
+        void shouldSkipScoringOfIdenticalDays() {
+            // Arrange
+            final ZonedDateTime day1 = ZonedDateTime.parse("2024-01-01T10:00:00Z");
+            final ZonedDateTime day2 = day1.plusDays(1);
+            final TransactionDto changedFile1 = createTransaction("TXN003", 300.0, day2);
+            final TransactionDto changedFile2 = createTransaction("TXN003", 350.0, day2);
+
+            when(scoreService.matchesIdenticalCopy(any())).thenReturn(true);
+            when(scoreService.calculateDecisiveScore(changedFile1, changedFile2))
+                    .thenReturn(createMatchScore(30.0, MatchConfidence.LOW));
+
+            final List<TransactionDto> collection1 = createTransactionList(
+                    createTransaction("TXN001", 100.0, day1),
+                    createTransaction("TXN002", 200.0, day1),
+                    changedFile1);
+            final List<TransactionDto> collection2 = createTransactionList(
+                    changedFile2,
+                    createTransaction("TXN002", 200.0, day1),
+                    createTransaction("TXN001", 100.0, day1));
+
+            // Act
+            final ReconciliationResponse result = comparisonService.compareData(collection1, collection2);
+
+            // Assert
+            assertEquals(2, result.matchedRecords());
+            assertEquals(1, result.unmatchedRecordsInFile1());
+            assertEquals(0, result.unmatchedRecordsInFile2());
+            verify(scoreService, times(1)).calculateDecisiveScore(any(), any());
+        }
+
+        @Test
+        @DisplayName("Should digest still encoded text like the same text given as a String")
+        void shouldDigestLazyTextLikeDecodedText() {
+            // Arrange
+            final ZonedDateTime day = ZonedDateTime.parse("2024-01-01T10:00:00Z");
+            final byte[] row = "x,Refund \u00e9,DEDUCT".getBytes(StandardCharsets.UTF_8);
+            final LazyColumn narrative = new LazyColumn(row, 2, "Refund \u00e9".getBytes(StandardCharsets.UTF_8).length);
+            final LazyColumn description = new LazyColumn(row, row.length - 6, 6);
+            final TransactionDto lazy = TransactionDto.withLazyText("Card Campaign", day, 100.0, narrative, description,
+                    new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET_A");
+            final TransactionDto eager = new TransactionDto("Card Campaign", day, 100.0, "Refund \u00e9", "DEDUCT",
+                    new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET_A");
+
+            // Act
+            final BucketDigestTree lazyTree = BucketDigestTree.build(Map.of(lazy.getTransactionID(), List.of(lazy)));
+            final BucketDigestTree eagerTree = BucketDigestTree.build(Map.of(eager.getTransactionID(), List.of(eager)));
+
+            // Assert
+            assertEquals(Set.of(new TransactionId("TXN001")), lazyTree.identicalGroups(eagerTree));
+            assertNotNull(lazy.peekNarrativeColumn());
+            assertNotNull(lazy.peekDescriptionColumn());
+        }
+
+        @Test
+        @DisplayName("Should score every pair when bucket skipping is turned off")
+        void shouldScoreEverythingWhenDisabled() {
+            // Arrange
+            final ReconciliationProperties properties = new ReconciliationProperties();
+            properties.getMatching().setSkipIdenticalDateBuckets(false);
+            final ComparisonServiceImpl withoutSkipping = new ComparisonServiceImpl(scoreService, properties,
+                    new ReconciliationMetrics(new SimpleMeterRegistry()));
+            when(scoreService.calculateDecisiveScore(any(), any())).thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+
+            final ZonedDateTime day = ZonedDateTime.parse("2024-01-01T10:00:00Z");
+
+            // Act
+            final ReconciliationResponse result = withoutSkipping.compareData(
+                    createTransactionList(createTransaction("TXN001", 100.0, day), createTransaction("TXN002", 200.0, day)),
+                    createTransactionList(createTransaction("TXN001", 100.0, day), createTransaction("TXN002", 200.0, day)));
+
+            // Assert
+            assertEquals(2, result.matchedRecords());
+            verify(scoreService, times(2)).calculateDecisiveScore(any(), any());
+            verify(scoreService, never()).matchesIdenticalCopy(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Multi Source Scenarios")
+    class MultiSourceScenarios {
+
+        @Test
+        @DisplayName("Should report per ID sources and give every pair the counts of a two-file reconciliation")
+        void shouldMatchPairwiseOutcomes() {
+            // Arrange
+            final TransactionDto processor1 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto ledger1 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto bank1 = createTransactionTwoMainParams("TXN001", 100.0);
+            final TransactionDto processor2 = createTransactionTwoMainParams("TXN002", 200.0);
+            final TransactionDto ledger2 = createTransactionTwoMainParams("TXN002", 250.0);
+            final TransactionDto bank3 = createTransactionTwoMainParams("TXN003", 300.0);
+
+            when(scoreService.calculateDecisiveScore(any(), any())).thenReturn(createMatchScore(90.0, MatchConfidence.HIGH));
+            when(scoreService.calculateDecisiveScore(processor2, ledger2)).thenReturn(createMatchScore(40.0, MatchConfidence.LOW));
+
+            final List<TransactionDto> processor = createTransactionList(processor1, processor2);
+            final List<TransactionDto> ledger = createTransactionList(ledger1, ledger2);
+            final List<TransactionDto> bank = createTransactionList(bank1, bank3);
+
+            // Act
+            final MultiSourceJoin join = comparisonService.newMultiSourceJoin(List.of("processor.csv", "ledger.csv", "bank.csv"));
+            processor.forEach(transaction -> join.accept(0, transaction));
+            ledger.forEach(transaction -> join.accept(1, transaction));
+            bank.forEach(transaction -> join.accept(2, transaction));
+            final MultiSourceReconciliationResponse result = join.finish(false);
+
+            // Assert
+            assertEquals(3, result.totalTransactionIds());
+            assertEquals(1, result.transactionIdsInAllSources());
+            assertEquals(1, result.fullyMatchedTransactionIds());
+            assertEquals(2, result.transactionIds().size());
+
+            final TransactionIdSourcesDto txn002 = result.transactionIds().stream()
+                    .filter(entry -> entry.transactionId().id().equals("TXN002"))
+                    .findFirst().orElseThrow();
+            assertEquals(List.of(1, 2), txn002.presentIn());
+            assertEquals(List.of(1, 1, 0), txn002.recordCounts());
+            assertEquals(1, txn002.pairScores().size());
+            assertEquals(SourcePairOutcome.LOW_CONFIDENCE, txn002.pairScores().get(0).outcome());
+            assertEquals(40.0, txn002.pairScores().get(0).lowestScore());
+
+            final List<List<TransactionDto>> sources = List.of(processor, ledger, bank);
+            for (SourcePairSummaryDto pair : result.pairs()) {
+                final ReconciliationResponse expected = comparisonService.compareData(
+                        sources.get(pair.source1() - 1), sources.get(pair.source2() - 1), ReconciliationAccumulator.countingOnly());
+                assertEquals(expected, pair.summary());
+            }
+            assertEquals(3, result.pairs().size());
+        }
+    }
+}
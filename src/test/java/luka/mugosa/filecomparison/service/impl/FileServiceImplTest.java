@@ -1,37 +1,73 @@
 package luka.mugosa.filecomparison.service.impl;
 
+import io.airlift.compress.zstd.ZstdOutputStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
 import luka.mugosa.filecomparison.constant.TransactionConstants;
+import luka.mugosa.filecomparison.domain.dto.FileValidationDto;
+import luka.mugosa.filecomparison.domain.dto.ParseStatisticsDto;
+import luka.mugosa.filecomparison.domain.dto.RowErrorDto;
 import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.enumeration.RowErrorReason;
 import luka.mugosa.filecomparison.domain.enumeration.TransactionType;
+import luka.mugosa.filecomparison.domain.exception.DecompressedSizeExceededException;
 import luka.mugosa.filecomparison.domain.exception.EmptyFileException;
+import luka.mugosa.filecomparison.domain.exception.ErrorBudgetExceededException;
+import luka.mugosa.filecomparison.domain.exception.FileParsingException;
 import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
+import luka.mugosa.filecomparison.domain.exception.FileValidationException;
 import luka.mugosa.filecomparison.domain.exception.MissingHeaderException;
+import luka.mugosa.filecomparison.domain.exception.ReconciliationInterruptedException;
 import luka.mugosa.filecomparison.domain.id.TransactionId;
+import luka.mugosa.filecomparison.service.csv.ParseReport;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static luka.mugosa.filecomparison.service.util.FileServiceUtil.createFileService;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 class FileServiceImplTest {
 
     private FileServiceImpl fileService;
+    private ParsedFileCache parsedFileCache;
 
     @TempDir
     Path tempDir;
 
     @BeforeEach
     void setUp() {
-        fileService = new FileServiceImpl();
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getLargeFiles().setMaxFileSize(DataSize.ofMegabytes(10));
+        parsedFileCache = new ParsedFileCache(properties);
+        fileService = createFileService(properties, parsedFileCache);
     }
 
     @Test
@@ -387,6 +423,397 @@ class FileServiceImplTest {
                 .hasSize(3);
     }
 
+    @Test
+    void parseFile_WithSameContentTwice_ShouldServeSecondUploadFromCache() {
+        final byte[] content = createValidCsvContent().getBytes(StandardCharsets.UTF_8);
+        final MultipartFile first = new MockMultipartFile("file1", "statement.csv", "text/csv", content);
+        final MultipartFile second = new MockMultipartFile("file2", "statement-copy.csv", "text/csv", content);
+
+        final List<TransactionDto> parsed = fileService.parseFile(first);
+        final List<TransactionDto> cached = new CopyOnWriteArrayList<>();
+        final int rows = fileService.parseFile(second, cached::add);
+
+        assertThat(rows).isEqualTo(3);
+        assertThat(cached).hasSize(3);
+        for (int i = 0; i < parsed.size(); i++) {
+            assertThat(cached.get(i)).isSameAs(parsed.get(i));
+        }
+        assertThat(parsedFileCache.stats().hits()).isEqualTo(1);
+        assertThat(parsedFileCache.stats().misses()).isEqualTo(1);
+        assertThat(parsedFileCache.stats().entries()).isEqualTo(1);
+    }
+
+    @Test
+    void parseFile_WithUnchangedCsv_ShouldLoadSnapshotWrittenOnFirstParse() throws IOException {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getSnapshots().setFileDirectory(tempDir.resolve("snapshots").toString());
+        final FileServiceImpl snapshotting = createFileService(properties);
+        final Path testFile = createTempCsvFile(createValidCsvContent());
+
+        final List<TransactionDto> parsed = snapshotting.parseFile(testFile.toString());
+        assertThat(new TransactionSnapshotStore(properties).fileSnapshotPath(testFile)).exists();
+        assertThat(tempDir.resolve("test.csv" + TransactionSnapshotStore.SNAPSHOT_EXTENSION)).doesNotExist();
+
+        // Same size and modification time but different IDs, only a snapshot load still returns the original rows
+        final FileTime modified = Files.getLastModifiedTime(testFile);
+        Files.writeString(testFile, createValidCsvContent().replace("0584", "9999"));
+        Files.setLastModifiedTime(testFile, modified);
+        final List<TransactionDto> loaded = snapshotting.parseFile(testFile.toString());
+
+        assertThat(loaded).containsExactlyElementsOf(parsed);
+    }
+
+    @Test
+    void parseFile_WithGzipContent_ShouldDetectCodecFromMagicBytes() throws IOException {
+        final MultipartFile file = new MockMultipartFile("file", "file.csv.gz", "application/octet-stream",
+                gzip(createValidCsvContent()));
+
+        final List<TransactionDto> result = fileService.parseFile(file);
+
+        assertThat(result)
+                .hasSize(3)
+                .extracting(TransactionDto::getTransactionID)
+                .contains(new TransactionId("0584011808649511"));
+        assertThat(result.get(0).getTransactionNarrative()).isEqualTo("*MOLEPS ATM25             MOLEPOLOLE    BW");
+    }
+
+    @Test
+    void parseFile_WithGzipContent_ShouldWeighCacheEntryByDecompressedBytes() throws IOException {
+        final String content = createValidCsvContent();
+        final MultipartFile file = new MockMultipartFile("file", "file.csv.gz", "application/gzip", gzip(content));
+
+        fileService.parseFile(file);
+
+        final long rowOverheadBytes = new ReconciliationProperties().getAdmission().getRowOverheadBytes();
+        assertThat(parsedFileCache.stats().entries()).isEqualTo(1);
+        assertThat(parsedFileCache.stats().sizeBytes())
+                .isEqualTo(content.getBytes(StandardCharsets.UTF_8).length + 3 * rowOverheadBytes);
+    }
+
+    @Test
+    void parseFile_WithZstdContent_ShouldDetectCodecFromMagicBytes() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ZstdOutputStream zstd = new ZstdOutputStream(compressed)) {
+            zstd.write(createValidCsvContent().getBytes(StandardCharsets.UTF_8));
+        }
+        final MultipartFile file = new MockMultipartFile("file", "file.csv.zst", "application/zstd", compressed.toByteArray());
+
+        final List<TransactionDto> result = fileService.parseFile(file);
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(2).getWalletReference()).isEqualTo("P_NzI5OTE3NjZfMTM4MTkzNjk5Mi45NTc2");
+    }
+
+    @Test
+    void parseFile_WithTruncatedGzipContent_ShouldThrowFileProcessingException() throws IOException {
+        final byte[] compressed = gzip(createValidCsvContent());
+        final MultipartFile file = new MockMultipartFile("file", "file.csv.gz", "application/gzip",
+                Arrays.copyOf(compressed, compressed.length / 2));
+
+        assertThatThrownBy(() -> fileService.parseFile(file))
+                .isInstanceOf(FileProcessingException.class)
+                .hasMessageContaining("Failed to process uploaded file");
+    }
+
+    @Test
+    void parseFile_WithGzipDecompressingPastMaxFileSize_ShouldRejectBeforeParsing() throws IOException {
+        final byte[] compressed = highlyCompressibleGzip();
+        final MultipartFile file = new MockMultipartFile("file", "bomb.csv.gz", "application/gzip", compressed);
+
+        assertThat(compressed.length).isLessThan(1024 * 1024);
+        assertThatThrownBy(() -> fileService.parseFile(file))
+                .isInstanceOf(DecompressedSizeExceededException.class)
+                .hasMessageContaining(String.valueOf(DataSize.ofMegabytes(10).toBytes()));
+        assertThat(parsedFileCache.stats().entries()).isZero();
+    }
+
+    @Test
+    void parseStream_WithGzipDecompressingPastMaxFileSize_ShouldStopReading() throws IOException {
+        final InputStream bomb = new ByteArrayInputStream(highlyCompressibleGzip());
+
+        assertThatThrownBy(() -> fileService.parseStream("bomb.csv.gz", bomb, transaction -> { }))
+                .isInstanceOf(DecompressedSizeExceededException.class);
+    }
+
+    @Test
+    void parseFile_WithCorruptZstdContent_ShouldFailWithoutWaitingForTimeout() {
+        // Valid zstd magic bytes, the frame behind them is garbage
+        final byte[] corrupt = new byte[4096];
+        new Random(42).nextBytes(corrupt);
+        corrupt[0] = 0x28;
+        corrupt[1] = (byte) 0xB5;
+        corrupt[2] = 0x2F;
+        corrupt[3] = (byte) 0xFD;
+        final MultipartFile file = new MockMultipartFile("file", "file.csv.zst", "application/zstd", corrupt);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertThatThrownBy(() -> fileService.parseFile(file))
+                        .isExactlyInstanceOf(FileParsingException.class)
+                        .hasMessageContaining("Corrupt compressed content in uploaded file: file.csv.zst"));
+    }
+
+    @Test
+    void parseFile_WithWindowsLineEndings_ShouldParseAllColumns() {
+        final String csvContent = createValidCsvContent().replace("\n", "\r\n") + "\r\n";
+        final MultipartFile file = new MockMultipartFile(
+                "file",
+                "file.csv",
+                "text/csv",
+                csvContent.getBytes()
+        );
+
+        final List<TransactionDto> result = fileService.parseFile(file);
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(2).getWalletReference()).isEqualTo("P_NzI5OTE3NjZfMTM4MTkzNjk5Mi45NTc2");
+        assertThat(result.get(2).getTransactionNarrative()).isEqualTo("Molepolole Filli100558    Gaborone      BW");
+    }
+
+    @Test
+    void parseFile_WithMultiByteCharacters_ShouldDecodeLazyColumnsAsUtf8() {
+        final String csvContent = createCsvHeader() + "\n" +
+                "Card Campaign,2014-01-11 22:27:44,-20000,  Café Zürich  ,DÉDUIRE,0584011808649511,1,P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5";
+        final MultipartFile file = new MockMultipartFile(
+                "file",
+                "file.csv",
+                "text/csv",
+                csvContent.getBytes(StandardCharsets.UTF_8)
+        );
+
+        final List<TransactionDto> result = fileService.parseFile(file);
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getTransactionNarrative()).isEqualTo("Café Zürich");
+        assertThat(result.get(0).getTransactionDescription()).isEqualTo("DÉDUIRE");
+    }
+
+    @Test
+    void parseFile_WhenThreadIsInterrupted_ShouldStopBeforeNextChunk() {
+        final ReconciliationProperties chunkProperties = singleRowChunkProperties();
+        final FileServiceImpl singleRowChunks = createFileService(chunkProperties);
+        final MultipartFile file = new MockMultipartFile("file", "file.csv", "text/csv",
+                createValidCsvContent().getBytes(StandardCharsets.UTF_8));
+        final Thread reader = Thread.currentThread();
+        final List<TransactionDto> parsed = new CopyOnWriteArrayList<>();
+
+        try {
+            assertThatThrownBy(() -> singleRowChunks.parseFile(file, transaction -> {
+                parsed.add(transaction);
+                reader.interrupt();
+            })).isInstanceOf(ReconciliationInterruptedException.class);
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertThat(parsed).hasSize(1);
+    }
+
+    @Test
+    void parseFileAsync_WhenCancelled_ShouldStopReadingAndParsing() throws InterruptedException {
+        final ReconciliationProperties chunkProperties = singleRowChunkProperties();
+        final FileServiceImpl singleRowChunks = createFileService(chunkProperties);
+        final AtomicReference<Thread> readerThread = new AtomicReference<>();
+        final MultipartFile file = new MockMultipartFile("file", "file.csv", "text/csv",
+                createValidCsvContent().getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                readerThread.set(Thread.currentThread());
+                return super.getInputStream();
+            }
+        };
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger parsedRows = new AtomicInteger();
+
+        final CompletableFuture<Integer> future = singleRowChunks.parseFileAsync(file, transaction -> {
+            parsedRows.incrementAndGet();
+            started.countDown();
+            // Simulates a slow consumer, holds the first chunk until the test lets it go
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        future.cancel(true);
+        readerThread.get().join(Duration.ofSeconds(5));
+        release.countDown();
+
+        assertThat(readerThread.get().isAlive()).isFalse();
+        assertThat(future.isCancelled()).isTrue();
+        Thread.sleep(50);
+        assertThat(parsedRows.get()).isEqualTo(1);
+    }
+
+    @Test
+    void parseFile_WithSmallChunks_ShouldKeepFileOrder() throws IOException {
+        final ReconciliationProperties chunkProperties = singleRowChunkProperties();
+        final FileServiceImpl singleRowChunks = createFileService(chunkProperties);
+        final Path testFile = createTempCsvFile(createValidCsvContent());
+
+        final List<TransactionDto> result = singleRowChunks.parseFile(testFile.toString());
+
+        assertThat(result)
+                .extracting(transaction -> transaction.getTransactionID().id())
+                .containsExactly("0584011808649511", "0584011815513406", "0084012233581869");
+    }
+
+    @Test
+    void validateContent_WithMalformedRows_ShouldReportEachIssueWithoutParsing() {
+        final String csvContent = createCsvHeader() + "\r\n" +
+                "Card Campaign,2014-01-11 22:27:44,-2.5e3,ATM,DEDUCT,A1,1,P_1\r\n" +
+                "\r\n" +
+                "Card Campaign,2014-01-11,-20000,ATM,DEDUCT,A2,1,P_2\r\n" +
+                "Card Campaign,2014-01-11 22:27:44,12O0,ATM,DEDUCT,A3,2,P_3\r\n" +
+                "Card Campaign, ,, ATM,DEDUCT,A4, ,P_4\r\n" +
+                "Card Campaign,2014-01-11 22:27:44,-20000,ATM";
+        final MultipartFile file = new MockMultipartFile("file", "partner.csv", "text/csv",
+                csvContent.getBytes(StandardCharsets.UTF_8));
+
+        final FileValidationDto validation = fileService.validateContent(file);
+
+        assertThat(validation.valid()).isFalse();
+        assertThat(validation.rows()).isEqualTo(5);
+        assertThat(validation.invalidRows()).isEqualTo(3);
+        assertThat(validation.issues()).containsExactly(
+                new RowErrorDto(4, TransactionConstants.HEADER_TRANSACTION_DATE, RowErrorReason.INVALID_DATE),
+                new RowErrorDto(5, TransactionConstants.HEADER_TRANSACTION_AMOUNT, RowErrorReason.INVALID_AMOUNT),
+                new RowErrorDto(5, TransactionConstants.HEADER_TRANSACTION_TYPE, RowErrorReason.INVALID_TRANSACTION_TYPE),
+                new RowErrorDto(7, TransactionConstants.HEADER_TRANSACTION_DESCRIPTION, RowErrorReason.MISSING_COLUMNS));
+    }
+
+    @Test
+    void parseFile_WithInvalidRowLimit_ShouldRejectBeforeParsing() {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getValidation().setMaxInvalidRows(0);
+        final FileServiceImpl validating = createFileService(properties);
+        final String csvContent = createCsvHeader() + "\n" +
+                "Card Campaign,invalid-date-format,-20000,ATM,DEDUCT,0584011808649511,1,P_1";
+        final MultipartFile file = new MockMultipartFile("file", "test.csv", "text/csv", csvContent.getBytes());
+        final AtomicInteger parsedRows = new AtomicInteger();
+
+        assertThatThrownBy(() -> validating.parseFile(file, transaction -> parsedRows.incrementAndGet()))
+                .isInstanceOf(FileValidationException.class)
+                .hasMessageContaining("1 invalid rows");
+        assertThat(parsedRows.get()).isZero();
+        assertThatThrownBy(() -> validating.parseFile(new MockMultipartFile("file", "test.csv", "text/csv",
+                "ProfileName,TransactionAmount\nJohn,100.50".getBytes())))
+                .isInstanceOf(MissingHeaderException.class);
+        assertThat(validating.parseFile(new MockMultipartFile("file", "valid.csv", "text/csv",
+                createValidCsvContent().getBytes()))).hasSize(3);
+    }
+
+    @Test
+    void parseFile_WithErrorBudget_ShouldFlagBadRowsAndAbortPastTheBudget() {
+        final String csvContent = createCsvHeader() + "\n" +
+                "Card Campaign,2014-01-11 22:27:44,-2.5e3,ATM,DEDUCT,A1,1,P_1\n" +
+                "Card Campaign,2014-13-11 22:27:44,-20000,ATM,DEDUCT,A2,1,P_2\n" +
+                "Card Campaign,2014-01-11 22:27:44,12O0,ATM,DEDUCT,A3,2,P_3\n" +
+                "Card Campaign,2014-01-11 22:27:44,-20000,ATM";
+        final MultipartFile file = new MockMultipartFile("file", "partner.csv", "text/csv",
+                csvContent.getBytes(StandardCharsets.UTF_8));
+
+        final FileServiceImpl lenient = errorBudgetFileService(3);
+        final ParseReport report = lenient.newParseReport("partner.csv");
+        final List<TransactionDto> result = lenient.parseFile(file, report);
+
+        // Flagged rows are still read, with the bad values left empty
+        assertThat(result).hasSize(4);
+        assertThat(result.get(1).getTransactionDate()).isNull();
+        assertThat(result.get(2).getTransactionAmount()).isNull();
+        assertThat(result.get(2).getTransactionType()).isNull();
+        assertThat(result.get(3).getTransactionID()).isEqualTo(new TransactionId(""));
+        assertThat(report.isParsed()).isTrue();
+        assertThat(report.toErrorsDto().flaggedRows()).isEqualTo(3);
+        assertThat(report.toErrorsDto().errors()).containsExactly(
+                new RowErrorDto(3, TransactionConstants.HEADER_TRANSACTION_DATE, RowErrorReason.INVALID_DATE),
+                new RowErrorDto(4, TransactionConstants.HEADER_TRANSACTION_AMOUNT, RowErrorReason.INVALID_AMOUNT),
+                new RowErrorDto(4, TransactionConstants.HEADER_TRANSACTION_TYPE, RowErrorReason.INVALID_TRANSACTION_TYPE),
+                new RowErrorDto(5, TransactionConstants.HEADER_TRANSACTION_DESCRIPTION, RowErrorReason.MISSING_COLUMNS));
+
+        assertThatThrownBy(() -> errorBudgetFileService(2).parseFile(file))
+                .isInstanceOf(ErrorBudgetExceededException.class)
+                .hasMessageContaining("more than 2 rows");
+        assertThat(fileService.newParseReport("partner.csv").isLenient()).isFalse();
+    }
+
+    @Test
+    void parseFile_WithReport_ShouldCountRowsInsteadOfLoggingThem() {
+        final String csvContent = createCsvHeader() + "\n" +
+                "Card Campaign,2014-01-11 22:27:44,-20000,ATM,DEDUCT,A1,1,P_1\n" +
+                "\n" +
+                "Card Campaign,not-a-date,-20000,ATM,DEDUCT,A2,1,P_2\n" +
+                "Card Campaign,2014-01-11 22:27:44,,ATM,DEDUCT,A3,7,P_3\n";
+        final MultipartFile file = new MockMultipartFile("file", "counted.csv", "text/csv",
+                csvContent.getBytes(StandardCharsets.UTF_8));
+
+        final ParseReport report = fileService.newParseReport("counted.csv");
+        assertThat(fileService.parseFile(file, report)).hasSize(3);
+
+        assertThat(report.toStatisticsDto()).isEqualTo(new ParseStatisticsDto(3, 1, 0, 0, 1, 1, 1));
+
+        // A cache hit still counts the rows it hands out
+        final ParseReport cachedReport = fileService.newParseReport("counted.csv");
+        fileService.parseFile(file, cachedReport);
+        assertThat(cachedReport.isParsed()).isFalse();
+        assertThat(cachedReport.toStatisticsDto().processedRows()).isEqualTo(3);
+        assertThat(cachedReport.toStatisticsDto().missingDates()).isEqualTo(1);
+    }
+
+    @Test
+    void parseFile_ShouldRecordParseTimeAndRowsOncePerFile() {
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        final FileServiceImpl measured = createFileService(properties, new ReconciliationMetrics(registry));
+        final String csvContent = createCsvHeader() + "\n" +
+                "Card Campaign,2014-01-11 22:27:44,-20000,ATM,DEDUCT,A1,1,P_1\n" +
+                "\n" +
+                "Card Campaign,2014-01-11 22:27:44,-20000,ATM,DEDUCT,A2,1,P_2\n";
+        final MultipartFile file = new MockMultipartFile("file", "measured.csv", "text/csv",
+                csvContent.getBytes(StandardCharsets.UTF_8));
+
+        measured.parseFile(file);
+        // A cache hit isn't parsed, it doesn't show up in the parse timer or the row counters
+        measured.parseFile(file);
+        assertThatThrownBy(() -> measured.parseFile(new MockMultipartFile("file", "headerless.csv", "text/csv",
+                "Card Campaign,2014-01-11 22:27:44,-20000,ATM,DEDUCT,A1,1,P_1\n".getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(MissingHeaderException.class);
+
+        assertThat(registry.get("reconciliation.parse").tag("outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("reconciliation.parse").tag("outcome", "failure").timer().count()).isEqualTo(1);
+        assertThat(registry.get("reconciliation.rows").tag("outcome", "processed").counter().count()).isEqualTo(2.0);
+        assertThat(registry.get("reconciliation.rows").tag("outcome", "skipped").counter().count()).isEqualTo(1.0);
+    }
+
+    private FileServiceImpl errorBudgetFileService(int errorBudget) {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getParsing().setErrorBudget(errorBudget);
+        return createFileService(properties);
+    }
+
+    private ReconciliationProperties singleRowChunkProperties() {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getExecutors().setCpuParallelism(2);
+        properties.getExecutors().setParseChunkRows(1);
+        return properties;
+    }
+
+    // 11MB of the same row, just over the 10MB file size limit once decompressed
+    private byte[] highlyCompressibleGzip() throws IOException {
+        final String row = "\nCard Campaign,2014-01-11 22:27:44,-20000,ATM,DEDUCT,0584011808649511,1,P_1";
+        return gzip(createCsvHeader() + row.repeat((int) (DataSize.ofMegabytes(11).toBytes() / row.length())));
+    }
+
+    private byte[] gzip(String content) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return compressed.toByteArray();
+    }
+
     private String createValidCsvContent() {
         return createCsvHeader() + "\n" +
                 "Card Campaign,2014-01-11 22:27:44,-20000,*MOLEPS ATM25             MOLEPOLOLE    BW,DEDUCT,0584011808649511,1,P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5\n" +
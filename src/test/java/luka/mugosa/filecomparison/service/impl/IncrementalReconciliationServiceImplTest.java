@@ -0,0 +1,271 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.IncrementalReconciliationResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
+import luka.mugosa.filecomparison.domain.exception.IncrementalSessionNotFoundException;
+import luka.mugosa.filecomparison.service.score.ScoreServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static luka.mugosa.filecomparison.service.util.FileServiceUtil.createFileService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IncrementalReconciliationServiceImplTest {
+
+    private static final String HEADER =
+            "ProfileName,TransactionDate,TransactionAmount,TransactionNarrative,TransactionDescription,TransactionID,TransactionType,WalletReference\n";
+
+    @TempDir
+    Path stateDirectory;
+
+    private ReconciliationProperties properties;
+    private FileServiceImpl fileService;
+    private ComparisonServiceImpl comparisonService;
+    private IncrementalReconciliationServiceImpl incrementalService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ReconciliationProperties();
+        properties.getIncremental().setStateDirectory(stateDirectory.toString());
+        fileService = createFileService(properties);
+        comparisonService = new ComparisonServiceImpl(new ScoreServiceImpl(), properties,
+                new ReconciliationMetrics(new SimpleMeterRegistry()));
+        incrementalService = newService();
+    }
+
+    @Test
+    @DisplayName("Should only read appended rows and end up with the result of reconciling the whole files")
+    void shouldReconcileAppendedRowsLikeWholeFiles() {
+        final String file1 = HEADER + row("TXN001", "-20000", "P_1") + row("TXN002", "-10000", "P_2");
+        // The last line is still being written, it waits for the next upload
+        final String file2 = HEADER + row("TXN001", "-20000", "P_1") + "Card Campaign,2014-01-11 22:27:44,-100";
+
+        final IncrementalReconciliationResponse first =
+                incrementalService.start(csv(file1), csv(file2), ReconciliationOptions.defaults());
+
+        assertThat(first.runs()).isEqualTo(1);
+        assertThat(first.result().matchedRecords()).isEqualTo(1);
+        assertThat(first.result().unmatchedRecordsInFile1()).isEqualTo(1);
+        assertThat(first.pendingBytesInFile2()).isEqualTo("Card Campaign,2014-01-11 22:27:44,-100".length());
+
+        final String grown1 = file1 + row("TXN003", "-5000", "P_3") + row("TXN004", "-7000", "P_4");
+        final String grown2 = HEADER + row("TXN001", "-20000", "P_1") + row("TXN002", "-10000", "P_2")
+                + row("TXN003", "-5000", "P_3") + row("TXN009", "-1", "P_9") + row("", "-7000", "P_4");
+
+        final IncrementalReconciliationResponse second =
+                incrementalService.append(first.sessionId(), csv(grown1), csv(grown2), ReconciliationOptions.defaults());
+
+        assertThat(second.runs()).isEqualTo(2);
+        assertThat(second.appendedRecordsInFile1()).isEqualTo(2);
+        assertThat(second.appendedRecordsInFile2()).isEqualTo(4);
+        assertThat(second.offsetInFile2()).isEqualTo(grown2.length());
+        assertThat(second.pendingBytesInFile2()).isZero();
+        assertSameOutcome(second.result(), comparisonService.compareData(
+                fileService.parseFile(csv(grown1)), fileService.parseFile(csv(grown2))));
+    }
+
+    @Test
+    @DisplayName("Should reject an upload that rewrote rows already read and leave the session unchanged")
+    void shouldRejectRewrittenFile() {
+        final String file1 = HEADER + row("TXN001", "-20000", "P_1");
+        final String file2 = HEADER + row("TXN001", "-20000", "P_1");
+        final IncrementalReconciliationResponse first =
+                incrementalService.start(csv(file1), csv(file2), ReconciliationOptions.defaults());
+
+        final String rewritten1 = HEADER + row("TXN001", "-99999", "P_1") + row("TXN002", "-10000", "P_2");
+
+        assertThatThrownBy(() -> incrementalService.append(first.sessionId(), csv(rewritten1),
+                csv(file2 + row("TXN002", "-10000", "P_2")), ReconciliationOptions.defaults()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("file1 is not an append");
+        assertThatThrownBy(() -> incrementalService.append(first.sessionId(), csv(HEADER), csv(file2),
+                ReconciliationOptions.defaults()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("shorter");
+
+        final IncrementalReconciliationResponse unchanged =
+                incrementalService.getSession(first.sessionId(), ReconciliationOptions.defaults());
+        assertThat(unchanged.runs()).isEqualTo(1);
+        assertThat(unchanged.result().matchedRecords()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should read a session back from disk after a restart and keep appending to it")
+    void shouldRestoreSessionFromDisk() {
+        final String file1 = HEADER + row("TXN001", "-20000", "P_1") + row("TXN002", "-10000", "P_2");
+        final String file2 = HEADER + row("TXN002", "-10000", "P_2");
+        final IncrementalReconciliationResponse first =
+                incrementalService.start(csv(file1), csv(file2), ReconciliationOptions.defaults());
+        final String grown2 = file2 + row("TXN001", "-20000", "P_1");
+        incrementalService.append(first.sessionId(), csv(file1), csv(grown2), ReconciliationOptions.defaults());
+
+        final IncrementalReconciliationServiceImpl restarted = newService();
+        final IncrementalReconciliationResponse restored =
+                restarted.getSession(first.sessionId(), ReconciliationOptions.defaults());
+
+        assertThat(restored.runs()).isEqualTo(2);
+        assertThat(restored.result().matchedRecords()).isEqualTo(2);
+
+        final IncrementalReconciliationResponse appended = restarted.append(first.sessionId(),
+                csv(file1 + row("TXN003", "-1", "P_3")), csv(grown2), ReconciliationOptions.defaults());
+        assertThat(appended.appendedRecordsInFile1()).isEqualTo(1);
+        assertThat(appended.result().unmatchedRecordsInFile1()).isEqualTo(1);
+
+        restarted.delete(first.sessionId());
+        assertThatThrownBy(() -> newService().getSession(first.sessionId(), ReconciliationOptions.defaults()))
+                .isInstanceOf(IncrementalSessionNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should leave the session unchanged when an upload can't be saved")
+    void shouldLeaveSessionUnchangedWhenSaveFails() throws IOException {
+        final String file1 = HEADER + row("TXN001", "-20000", "P_1");
+        final String file2 = HEADER + row("TXN001", "-20000", "P_1");
+        final IncrementalReconciliationResponse first =
+                incrementalService.start(csv(file1), csv(file2), ReconciliationOptions.defaults());
+        // A file in place of the session directory makes every later save fail
+        final Path sessionDirectory = stateDirectory.resolve(first.sessionId());
+        try (Stream<Path> files = Files.list(sessionDirectory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(sessionDirectory);
+        Files.createFile(sessionDirectory);
+
+        assertThatThrownBy(() -> incrementalService.append(first.sessionId(), csv(file1 + row("TXN002", "-10000", "P_2")),
+                csv(file2), ReconciliationOptions.defaults()))
+                .isInstanceOf(FileProcessingException.class)
+                .hasMessageContaining("Failed to save incremental session");
+
+        final IncrementalReconciliationResponse unchanged =
+                incrementalService.getSession(first.sessionId(), ReconciliationOptions.defaults());
+        assertThat(unchanged.runs()).isEqualTo(1);
+        assertThat(unchanged.offsetInFile1()).isEqualTo(file1.length());
+        assertThat(unchanged.result().totalRecordsInFile1()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should hold admission budget for the rows of every session kept in memory")
+    void shouldHoldBudgetWhileSessionIsInMemory() {
+        properties.getAdmission().setMemoryCeiling(DataSize.ofMegabytes(1));
+        properties.getIncremental().setMaxSessionsInMemory(1);
+        final MemoryAdmissionController admissionController = new MemoryAdmissionController(properties);
+        final IncrementalReconciliationServiceImpl service = new IncrementalReconciliationServiceImpl(fileService,
+                comparisonService, admissionController, new IncrementalStateStore(properties), properties);
+        final String file1 = HEADER + row("TXN001", "-20000", "P_1");
+        final String file2 = HEADER + row("TXN001", "-20000", "P_1");
+
+        final IncrementalReconciliationResponse first = service.start(csv(file1), csv(file2), ReconciliationOptions.defaults());
+        final long heldByFirst = admissionController.getBudgetBytes() - admissionController.getAvailableBytes();
+        service.append(first.sessionId(), csv(file1 + row("TXN002", "-10000", "P_2")), csv(file2),
+                ReconciliationOptions.defaults());
+        final long heldAfterAppend = admissionController.getBudgetBytes() - admissionController.getAvailableBytes();
+        // Only one session fits in memory, starting another drops the first one
+        final IncrementalReconciliationResponse second = service.start(csv(file1), csv(file2), ReconciliationOptions.defaults());
+        final long heldBySecond = admissionController.getBudgetBytes() - admissionController.getAvailableBytes();
+        service.delete(second.sessionId());
+
+        assertThat(heldByFirst).isPositive();
+        assertThat(heldAfterAppend).isGreaterThan(heldByFirst);
+        assertThat(heldBySecond).isEqualTo(heldByFirst);
+        assertThat(admissionController.getAvailableBytes()).isEqualTo(admissionController.getBudgetBytes());
+    }
+
+    @Test
+    @DisplayName("Should keep a session in memory while an upload to it runs, so a concurrent append waits for it")
+    void shouldNotDropSessionWithUploadInProgress() throws Exception {
+        properties.getIncremental().setMaxSessionsInMemory(1);
+        final CountDownLatch saving = new CountDownLatch(1);
+        final CountDownLatch releaseSave = new CountDownLatch(1);
+        final IncrementalStateStore blockingStore = new IncrementalStateStore(properties) {
+            @Override
+            public void save(IncrementalReconciliation session, IncrementalReconciliation.Run run) {
+                if (session.getRuns() == 1 && saving.getCount() > 0) {
+                    saving.countDown();
+                    awaitQuietly(releaseSave);
+                }
+                super.save(session, run);
+            }
+        };
+        final IncrementalReconciliationServiceImpl service = new IncrementalReconciliationServiceImpl(fileService,
+                comparisonService, new MemoryAdmissionController(properties), blockingStore, properties);
+        final String file1 = HEADER + row("TXN001", "-20000", "P_1");
+        final String file2 = HEADER + row("TXN001", "-20000", "P_1");
+        final String sessionId = service.start(csv(file1), csv(file2), ReconciliationOptions.defaults()).sessionId();
+
+        final String grown1 = file1 + row("TXN002", "-10000", "P_2");
+        final FutureTask<IncrementalReconciliationResponse> firstAppend = new FutureTask<>(() ->
+                service.append(sessionId, csv(grown1), csv(file2), ReconciliationOptions.defaults()));
+        new Thread(firstAppend).start();
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Only one session fits in memory, but the one being uploaded to is not the one dropped
+        service.start(csv(file1), csv(file2), ReconciliationOptions.defaults());
+        final FutureTask<IncrementalReconciliationResponse> secondAppend = new FutureTask<>(() -> service.append(
+                sessionId, csv(grown1 + row("TXN003", "-5000", "P_3")), csv(file2), ReconciliationOptions.defaults()));
+        final Thread secondThread = new Thread(secondAppend);
+        secondThread.start();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (secondThread.getState() != Thread.State.BLOCKED && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(secondThread.getState()).isEqualTo(Thread.State.BLOCKED);
+        releaseSave.countDown();
+
+        assertThat(firstAppend.get(5, TimeUnit.SECONDS).runs()).isEqualTo(2);
+        final IncrementalReconciliationResponse second = secondAppend.get(5, TimeUnit.SECONDS);
+        assertThat(second.runs()).isEqualTo(3);
+        assertThat(second.appendedRecordsInFile1()).isEqualTo(1);
+        assertThat(newService().getSession(sessionId, ReconciliationOptions.defaults()).runs()).isEqualTo(3);
+    }
+
+    private IncrementalReconciliationServiceImpl newService() {
+        return new IncrementalReconciliationServiceImpl(fileService, comparisonService,
+                new MemoryAdmissionController(properties), new IncrementalStateStore(properties), properties);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertSameOutcome(ReconciliationResponse actual, ReconciliationResponse expected) {
+        assertThat(actual.totalRecordsInFile1()).isEqualTo(expected.totalRecordsInFile1());
+        assertThat(actual.totalRecordsInFile2()).isEqualTo(expected.totalRecordsInFile2());
+        assertThat(actual.matchedRecords()).isEqualTo(expected.matchedRecords());
+        assertThat(actual.unmatchedRecordsInFile1()).isEqualTo(expected.unmatchedRecordsInFile1());
+        assertThat(actual.unmatchedRecordsInFile2()).isEqualTo(expected.unmatchedRecordsInFile2());
+        assertThat(actual.unmatchedTransactionPairs()).hasSameSizeAs(expected.unmatchedTransactionPairs());
+    }
+
+    private static String row(String transactionId, String amount, String walletReference) {
+        return "Card Campaign,2014-01-11 22:27:44," + amount + ",ATM,DEDUCT," + transactionId + ",1," + walletReference + "\n";
+    }
+
+    private static MockMultipartFile csv(String content) {
+        return new MockMultipartFile("file", "intraday.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
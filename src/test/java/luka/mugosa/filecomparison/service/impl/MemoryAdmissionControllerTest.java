@@ -0,0 +1,111 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.exception.AdmissionRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryAdmissionControllerTest {
+
+    private ReconciliationProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ReconciliationProperties();
+        properties.getAdmission().setMemoryCeiling(DataSize.ofKilobytes(1024));
+        properties.getAdmission().setEstimatedRowBytes(100);
+        properties.getAdmission().setRowOverheadBytes(400);
+        properties.getAdmission().setMaxWait(Duration.ofMillis(50));
+    }
+
+    @Test
+    @DisplayName("Should estimate the raw bytes plus the overhead of the rows they hold")
+    void shouldEstimateHeapFromSizeAndRows() {
+        final MemoryAdmissionController controller = new MemoryAdmissionController(properties);
+
+        // 1000 rows of 100 bytes, each adding 400 bytes of objects
+        assertThat(controller.estimateHeapBytes(100_000)).isEqualTo(500_000);
+    }
+
+    @Test
+    @DisplayName("Should reserve budget while admitted and give it back on close")
+    void shouldReserveAndReleaseBudget() {
+        final MemoryAdmissionController controller = new MemoryAdmissionController(properties);
+
+        // 100 KB of rows plus 1024 rows of overhead is 500 KB
+        final MemoryAdmissionController.AdmissionTicket ticket = controller.admit(100 * 1024);
+
+        assertThat(ticket.getReservedBytes()).isEqualTo(500 * 1024);
+        assertThat(controller.getAvailableBytes()).isEqualTo(524 * 1024);
+
+        ticket.close();
+        ticket.close();
+
+        assertThat(controller.getAvailableBytes()).isEqualTo(controller.getBudgetBytes());
+    }
+
+    @Test
+    @DisplayName("Should reject once the budget stays exhausted past the wait time")
+    void shouldRejectWhenBudgetExhausted() {
+        final MemoryAdmissionController controller = new MemoryAdmissionController(properties);
+
+        try (MemoryAdmissionController.AdmissionTicket first = controller.admit(100 * 1024);
+             MemoryAdmissionController.AdmissionTicket second = controller.admit(100 * 1024)) {
+
+            assertThatThrownBy(() -> controller.admit(100 * 1024))
+                    .isInstanceOf(AdmissionRejectedException.class)
+                    .hasMessageContaining("try again later");
+        }
+
+        controller.admit(100 * 1024).close();
+    }
+
+    @Test
+    @DisplayName("Should cap a request bigger than the whole budget so it can still run alone")
+    void shouldCapOversizedRequestToBudget() {
+        final MemoryAdmissionController controller = new MemoryAdmissionController(properties);
+
+        try (MemoryAdmissionController.AdmissionTicket ticket = controller.admit(10L * 1024 * 1024)) {
+            assertThat(ticket.getReservedBytes()).isEqualTo(controller.getBudgetBytes());
+            assertThat(controller.getAvailableBytes()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reserve one partition of a large input only when its pairs are not kept")
+    void shouldReservePartitionOnlyWithoutKeptPairs() {
+        properties.getLargeFiles().setThreshold(DataSize.ofKilobytes(64));
+        properties.getLargeFiles().setPartitionSize(DataSize.ofKilobytes(16));
+        final MemoryAdmissionController controller = new MemoryAdmissionController(properties);
+
+        // One 16 KiB partition: 16384 + 163 rows * 400 = 81584 bytes, reserved in whole KiB
+        try (MemoryAdmissionController.AdmissionTicket counted = controller.admitInput(128 * 1024, false)) {
+            assertThat(counted.getReservedBytes()).isEqualTo(79 * 1024);
+        }
+        // The whole input: 131072 + 1310 rows * 400 = 655072 bytes
+        try (MemoryAdmissionController.AdmissionTicket kept = controller.admitInput(128 * 1024, true)) {
+            assertThat(kept.getReservedBytes()).isEqualTo(639 * 1024);
+        }
+        try (MemoryAdmissionController.AdmissionTicket unknownSize = controller.admitInput(-1, true)) {
+            assertThat(unknownSize.getReservedBytes()).isEqualTo(controller.getBudgetBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("Should admit everything without reserving when disabled")
+    void shouldSkipWhenDisabled() {
+        properties.getAdmission().setEnabled(false);
+        final MemoryAdmissionController controller = new MemoryAdmissionController(properties);
+
+        try (MemoryAdmissionController.AdmissionTicket ignored = controller.admit(10L * 1024 * 1024)) {
+            assertThat(controller.getAvailableBytes()).isEqualTo(controller.getBudgetBytes());
+        }
+    }
+}
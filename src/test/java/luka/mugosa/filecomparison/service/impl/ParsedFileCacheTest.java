@@ -0,0 +1,72 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static luka.mugosa.filecomparison.service.util.TransactionUtil.createTransactionSet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParsedFileCacheTest {
+
+    private ParsedFileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getParseCache().setMaxSize(DataSize.ofBytes(1000));
+        properties.getAdmission().setRowOverheadBytes(100);
+        cache = new ParsedFileCache(properties);
+    }
+
+    @Test
+    @DisplayName("Should key entries by content, not by file name")
+    void shouldHashContentOnly() throws IOException {
+        final byte[] content = "header\nrow".getBytes(StandardCharsets.UTF_8);
+
+        final String hash1 = cache.contentHash(new MockMultipartFile("file1", "a.csv", "text/csv", content));
+        final String hash2 = cache.contentHash(new MockMultipartFile("file2", "b.csv", "text/csv", content));
+        final String other = cache.contentHash(new MockMultipartFile("file1", "a.csv", "text/csv", "header\nrow2".getBytes()));
+
+        assertThat(hash1).hasSize(64).isEqualTo(hash2).isNotEqualTo(other);
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used entry once the byte bound is exceeded")
+    void shouldEvictLeastRecentlyUsed() {
+        final List<TransactionDto> transactions = createTransactionSet("TXN001", "TXN002");
+
+        // 100 bytes + 2 rows * 100 bytes each
+        cache.put("a", transactions, 100);
+        cache.put("b", transactions, 100);
+        cache.put("c", transactions, 100);
+        assertThat(cache.get("a")).isNotNull();
+
+        cache.put("d", transactions, 100);
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("c")).isNotNull();
+        assertThat(cache.get("d")).isNotNull();
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+        assertThat(cache.stats().sizeBytes()).isEqualTo(900);
+    }
+
+    @Test
+    @DisplayName("Should not cache a file bigger than the whole cache")
+    void shouldSkipOversizedEntries() {
+        cache.put("big", createTransactionSet("TXN001"), 2000);
+
+        assertThat(cache.get("big")).isNull();
+        assertThat(cache.stats().entries()).isZero();
+        assertThat(cache.stats().misses()).isEqualTo(1);
+    }
+}
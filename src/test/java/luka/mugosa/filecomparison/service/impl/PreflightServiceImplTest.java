@@ -0,0 +1,129 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.response.PreflightResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+
+import static luka.mugosa.filecomparison.service.util.FileServiceUtil.createFileService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PreflightServiceImplTest {
+
+    private static final String HEADER =
+            "ProfileName,TransactionDate,TransactionAmount,TransactionNarrative,TransactionDescription,TransactionID,TransactionType,WalletReference\n";
+
+    private ReconciliationProperties properties;
+    private PreflightServiceImpl preflightService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ReconciliationProperties();
+        final FileServiceImpl fileService = createFileService(properties);
+        preflightService = new PreflightServiceImpl(fileService, new MemoryAdmissionController(properties), properties);
+    }
+
+    @Test
+    @DisplayName("Should count rows exactly and estimate distinct, shared and duplicated IDs")
+    void shouldEstimateIdStatistics() {
+        // File 1 has IDs 0-2999, the first 200 of them twice and one of them five times, plus two rows without an ID
+        final StringBuilder file1 = new StringBuilder(HEADER);
+        for (int i = 0; i < 3000; i++) {
+            file1.append(row("TXN" + i));
+            if (i < 200) {
+                file1.append(row("TXN" + i));
+            }
+        }
+        file1.append(row("TXN7").repeat(3)).append(row("")).append(row(""));
+        // File 2 shares IDs 1000-2999 and has 500 of its own
+        final StringBuilder file2 = new StringBuilder(HEADER);
+        for (int i = 1000; i < 3500; i++) {
+            file2.append(row("TXN" + i));
+        }
+
+        final PreflightResponse response = preflightService.scan(csv("file1.csv", file1), csv("file2.csv", file2));
+
+        assertThat(response.file1().totalRecords()).isEqualTo(3205);
+        assertThat(response.file1().blankIdRecords()).isEqualTo(2);
+        assertThat(response.file2().totalRecords()).isEqualTo(2500);
+        assertThat((double) response.file1().estimatedDistinctIds()).isCloseTo(3000, within(60.0));
+        assertThat((double) response.file2().estimatedDistinctIds()).isCloseTo(2500, within(50.0));
+        assertThat(response.file1().duplicateDensity()).isCloseTo(203.0 / 3203, within(0.02));
+        assertThat(response.file1().estimatedLargestIdGroup()).isGreaterThanOrEqualTo(5);
+        assertThat((double) response.estimatedIdsInBothFiles()).isCloseTo(2000, within(100.0));
+        assertThat(response.estimatedIdsOnlyInFile1() + response.estimatedIdsInBothFiles())
+                .isEqualTo(response.file1().estimatedDistinctIds());
+        assertThat(response.largeFileMode()).isFalse();
+        assertThat(response.estimatedHeapBytes()).isGreaterThan(file1.length() + file2.length());
+    }
+
+    @Test
+    @DisplayName("Should report no shared IDs for files with nothing in common")
+    void shouldFindNoOverlapBetweenDisjointFiles() {
+        final StringBuilder file1 = new StringBuilder(HEADER);
+        final StringBuilder file2 = new StringBuilder(HEADER);
+        for (int i = 0; i < 50; i++) {
+            file1.append(row("A" + i));
+            file2.append(row("B" + i));
+        }
+
+        final PreflightResponse response = preflightService.scan(csv("file1.csv", file1), csv("file2.csv", file2));
+
+        // Small files keep their IDs, the counts are exact
+        assertThat(response.file1().estimatedDistinctIds()).isEqualTo(50);
+        assertThat(response.file1().estimatedLargestIdGroup()).isEqualTo(1);
+        assertThat(response.estimatedIdsInBothFiles()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should count shared IDs exactly when two files differ by a single ID")
+    void shouldCountSharedIdsExactly() {
+        // File 2 has every ID of file 1 and one more, too few differences for the sketches to tell apart
+        final StringBuilder file1 = new StringBuilder(HEADER);
+        final StringBuilder file2 = new StringBuilder(HEADER);
+        for (int i = 0; i < 4400; i++) {
+            file1.append(row("TXN" + i));
+            file2.append(row("TXN" + i));
+        }
+        file2.append(row("TXN4400"));
+
+        final PreflightResponse response = preflightService.scan(csv("file1.csv", file1), csv("file2.csv", file2));
+
+        assertThat(response.file1().estimatedDistinctIds()).isEqualTo(4400);
+        assertThat(response.file2().estimatedDistinctIds()).isEqualTo(4401);
+        assertThat(response.estimatedIdsInBothFiles()).isEqualTo(4400);
+        assertThat(response.estimatedIdsOnlyInFile1()).isZero();
+        assertThat(response.estimatedIdsOnlyInFile2()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should keep exact IDs up to the limit and fall back to the sketches past it")
+    void shouldDropExactIdsPastLimit() {
+        final FileSketch atLimit = new FileSketch();
+        final FileSketch pastLimit = new FileSketch();
+        for (int i = 0; i < FileSketch.MAX_EXACT_IDS; i++) {
+            atLimit.test("TXN" + i);
+            atLimit.test("TXN" + i);
+            pastLimit.test("TXN" + i);
+        }
+        pastLimit.test("TXN" + FileSketch.MAX_EXACT_IDS);
+        pastLimit.test("TXN" + (FileSketch.MAX_EXACT_IDS + 1));
+
+        assertThat(atLimit.hasExactIds()).isTrue();
+        assertThat(atLimit.getExactDistinctIds()).isEqualTo(FileSketch.MAX_EXACT_IDS);
+        assertThat(pastLimit.hasExactIds()).isFalse();
+    }
+
+    private static String row(String transactionId) {
+        return "Card Campaign,2014-01-11 22:27:44,-100,ATM,DEDUCT," + transactionId + ",1,P_WALLET\n";
+    }
+
+    private static MockMultipartFile csv(String filename, CharSequence content) {
+        return new MockMultipartFile("file", filename, "text/csv", content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,124 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.response.PreparedReferenceResponse;
+import luka.mugosa.filecomparison.domain.exception.ReferenceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static luka.mugosa.filecomparison.service.util.FileServiceUtil.createFileService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PreparedReferenceServiceImplTest {
+
+    private static final String CSV = """
+            ProfileName,TransactionDate,TransactionAmount,TransactionNarrative,TransactionDescription,TransactionID,TransactionType,WalletReference
+            Card Campaign,2014-01-11 22:27:44,-20000,ATM,DEDUCT,TXN001,1,P_1
+            Card Campaign,2014-01-11 22:39:11,-10000,ATM,DEDUCT,TXN001,1,P_2
+            Card Campaign,2014-01-12 06:26:17,-20000,ATM,DEDUCT,,0,P_3
+            """;
+
+    private MemoryAdmissionController admissionController;
+    private PreparedReferenceServiceImpl referenceService;
+
+    @BeforeEach
+    void setUp() {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getAdmission().setMemoryCeiling(DataSize.ofMegabytes(1));
+        properties.getReferences().setMaxReferences(2);
+        admissionController = new MemoryAdmissionController(properties);
+        final FileServiceImpl fileService = createFileService(properties);
+        referenceService = new PreparedReferenceServiceImpl(fileService, admissionController, properties);
+    }
+
+    @Test
+    @DisplayName("Should index the reference and hold its budget until it is released")
+    void shouldHoldBudgetUntilReleased() {
+        final PreparedReferenceResponse reference = referenceService.prepare(csvFile(), null);
+
+        assertThat(reference.totalRecords()).isEqualTo(3);
+        assertThat(reference.indexedIds()).isEqualTo(1);
+        assertThat(reference.blankIdRecords()).isEqualTo(1);
+        try (PreparedReference acquired = referenceService.acquire(reference.referenceId())) {
+            assertThat(acquired.getGroups()).hasSize(1);
+        }
+        assertThat(admissionController.getAvailableBytes()).isLessThan(admissionController.getBudgetBytes());
+
+        referenceService.release(reference.referenceId());
+
+        assertThat(admissionController.getAvailableBytes()).isEqualTo(admissionController.getBudgetBytes());
+        assertThatThrownBy(() -> referenceService.acquire(reference.referenceId()))
+                .isInstanceOf(ReferenceNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should forget the reference and give its budget back once the TTL runs out")
+    void shouldExpireAfterTtl() throws InterruptedException {
+        final PreparedReferenceResponse reference = referenceService.prepare(csvFile(), Duration.ofMillis(50));
+
+        Thread.sleep(200);
+
+        assertThatThrownBy(() -> referenceService.getReference(reference.referenceId()))
+                .isInstanceOf(ReferenceNotFoundException.class);
+        assertThat(admissionController.getAvailableBytes()).isEqualTo(admissionController.getBudgetBytes());
+    }
+
+    @Test
+    @DisplayName("Should keep the budget of a released reference until the last comparison using it closes it")
+    void shouldHoldBudgetWhileComparisonsUseIt() {
+        final PreparedReferenceResponse response = referenceService.prepare(csvFile(), null);
+        final PreparedReference reference = referenceService.acquire(response.referenceId());
+
+        referenceService.release(response.referenceId());
+
+        assertThat(admissionController.getAvailableBytes()).isLessThan(admissionController.getBudgetBytes());
+        assertThatThrownBy(() -> referenceService.acquire(response.referenceId()))
+                .isInstanceOf(ReferenceNotFoundException.class);
+
+        reference.close();
+
+        assertThat(admissionController.getAvailableBytes()).isEqualTo(admissionController.getBudgetBytes());
+    }
+
+    @Test
+    @DisplayName("Should not keep a released reference reachable until its TTL runs out")
+    void shouldLetReleasedReferenceBeCollected() throws InterruptedException {
+        final PreparedReferenceResponse response = referenceService.prepare(csvFile(), Duration.ofHours(24));
+        final WeakReference<PreparedReference> released = new WeakReference<>(referenceService.acquire(response.referenceId()));
+        released.get().close();
+
+        referenceService.release(response.referenceId());
+
+        for (int attempt = 0; attempt < 50 && released.get() != null; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertThat(released.get()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject references past the configured count and TTLs past the maximum")
+    void shouldRejectOverLimits() {
+        referenceService.prepare(csvFile(), null);
+        referenceService.prepare(csvFile(), null);
+
+        assertThatThrownBy(() -> referenceService.prepare(csvFile(), null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("At most 2 prepared references");
+        assertThatThrownBy(() -> referenceService.prepare(csvFile(), Duration.ofDays(2)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ttl");
+    }
+
+    private MockMultipartFile csvFile() {
+        return new MockMultipartFile("file", "master.csv", "text/csv", CSV.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,203 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationJobResponse;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.JobStatus;
+import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
+import luka.mugosa.filecomparison.domain.exception.JobNotCompletedException;
+import luka.mugosa.filecomparison.domain.exception.JobNotFoundException;
+import luka.mugosa.filecomparison.domain.exception.JobQueueFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliationJobServiceImplTest {
+
+    @Mock
+    private TransactionServiceImpl transactionService;
+
+    private final MockMultipartFile file1 = new MockMultipartFile("file1", "file1.csv", "text/csv",
+            "header\nrow".getBytes(StandardCharsets.UTF_8));
+    private final MockMultipartFile file2 = new MockMultipartFile("file2", "file2.csv", "text/csv",
+            "header\nrow".getBytes(StandardCharsets.UTF_8));
+
+    private ReconciliationJobServiceImpl jobService;
+
+    @BeforeEach
+    void setUp() {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getJobs().setMaxConcurrent(1);
+        properties.getJobs().setQueueCapacity(1);
+        jobService = new ReconciliationJobServiceImpl(transactionService, new MemoryAdmissionController(properties), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should return a job ID right away and expose the result with its progress once done")
+    void shouldRunSubmittedJobAndExposeResult() throws InterruptedException {
+        final ReconciliationResponse expected = ReconciliationResponse.builder()
+                .totalRecordsInFile1(1)
+                .totalRecordsInFile2(1)
+                .matchedRecords(1)
+                .matchPercentage(100.0)
+                .build();
+        when(transactionService.reconcileTransactions(any(), any(), any(), any())).thenAnswer(invocation -> {
+            final ReconciliationProgress progress = invocation.getArgument(3);
+            progress.rowsParsed(1, 1);
+            progress.pairScored();
+            return expected;
+        });
+
+        final ReconciliationJobResponse submitted = jobService.submit(file1, file2, ReconciliationOptions.defaults());
+        final ReconciliationJobResponse finished = awaitFinished(submitted.jobId());
+
+        assertThat(submitted.jobId()).isNotBlank();
+        assertThat(finished.status()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(finished.rowsParsedFromFile1()).isEqualTo(1);
+        assertThat(finished.rowsParsedFromFile2()).isEqualTo(1);
+        assertThat(finished.pairsScored()).isEqualTo(1);
+        assertThat(jobService.getResult(submitted.jobId())).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Should interrupt a running job on cancel and refuse to return a result")
+    void shouldCancelRunningJob() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        when(transactionService.reconcileTransactions(any(), any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+                return null;
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new FileProcessingException("File parsing was interrupted", e);
+            }
+        });
+
+        final String jobId = jobService.submit(file1, file2, ReconciliationOptions.defaults()).jobId();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        final ReconciliationJobResponse cancelled = jobService.cancel(jobId);
+
+        assertThat(cancelled.status()).isEqualTo(JobStatus.CANCELLED);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(jobService.getJob(jobId).status()).isEqualTo(JobStatus.CANCELLED);
+        assertThatThrownBy(() -> jobService.getResult(jobId))
+                .isInstanceOf(JobNotCompletedException.class);
+    }
+
+    @Test
+    @DisplayName("Should reject submissions once the running slot and the queue are taken")
+    void shouldRejectWhenQueueIsFull() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(transactionService.reconcileTransactions(any(), any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return ReconciliationResponse.builder().build();
+        });
+
+        final String running = jobService.submit(file1, file2, ReconciliationOptions.defaults()).jobId();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        final ReconciliationJobResponse queued = jobService.submit(file1, file2, ReconciliationOptions.defaults());
+
+        assertThat(queued.status()).isEqualTo(JobStatus.QUEUED);
+        assertThatThrownBy(() -> jobService.submit(file1, file2, ReconciliationOptions.defaults()))
+                .isInstanceOf(JobQueueFullException.class);
+
+        release.countDown();
+        assertThat(awaitFinished(running).status()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(awaitFinished(queued.jobId()).status()).isEqualTo(JobStatus.COMPLETED);
+    }
+
+    @Test
+    @DisplayName("Should purge expired jobs on a schedule without new submissions")
+    void shouldPurgeExpiredJobsWithoutNewSubmissions() throws InterruptedException {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getJobs().setRetention(Duration.ZERO);
+        properties.getJobs().setPurgeInterval(Duration.ofMillis(20));
+        replaceJobService(properties);
+        when(transactionService.reconcileTransactions(any(), any(), any(), any()))
+                .thenReturn(ReconciliationResponse.builder().build());
+
+        final String jobId = jobService.submit(file1, file2, ReconciliationOptions.defaults()).jobId();
+
+        assertThat(awaitGone(jobId)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest results once more than the configured number are retained")
+    void shouldDropOldestResultsPastTheLimit() throws InterruptedException {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getJobs().setMaxRetainedResults(1);
+        replaceJobService(properties);
+        when(transactionService.reconcileTransactions(any(), any(), any(), any()))
+                .thenReturn(ReconciliationResponse.builder().build());
+
+        final String first = jobService.submit(file1, file2, ReconciliationOptions.defaults()).jobId();
+        assertThat(awaitFinished(first).status()).isEqualTo(JobStatus.COMPLETED);
+        final String second = jobService.submit(file1, file2, ReconciliationOptions.defaults()).jobId();
+
+        assertThat(awaitGone(first)).isTrue();
+        assertThat(awaitFinished(second).status()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(jobService.getResult(second)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should throw JobNotFoundException for an unknown job ID")
+    void shouldThrowForUnknownJob() {
+        assertThatThrownBy(() -> jobService.getJob("missing"))
+                .isInstanceOf(JobNotFoundException.class);
+    }
+
+    private void replaceJobService(ReconciliationProperties properties) {
+        jobService.shutdown();
+        jobService = new ReconciliationJobServiceImpl(transactionService, new MemoryAdmissionController(properties), properties);
+    }
+
+    private boolean awaitGone(String jobId) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            try {
+                jobService.getJob(jobId);
+            } catch (JobNotFoundException e) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private ReconciliationJobResponse awaitFinished(String jobId) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        ReconciliationJobResponse job = jobService.getJob(jobId);
+        while (!job.status().isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = jobService.getJob(jobId);
+        }
+        return job;
+    }
+}
@@ -1,29 +1,55 @@
 package luka.mugosa.filecomparison.service.impl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.constant.TransactionConstants;
+import luka.mugosa.filecomparison.domain.dto.ReconciliationOptions;
+import luka.mugosa.filecomparison.domain.dto.RowErrorDto;
 import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.UnmatchedTransactionPairDto;
+import luka.mugosa.filecomparison.domain.dto.response.ReconciliationEstimateResponse;
 import luka.mugosa.filecomparison.domain.dto.response.ReconciliationResponse;
+import luka.mugosa.filecomparison.domain.enumeration.ReconciliationEngine;
+import luka.mugosa.filecomparison.domain.exception.EmptyFileException;
+import luka.mugosa.filecomparison.domain.exception.ErrorBudgetExceededException;
 import luka.mugosa.filecomparison.domain.exception.FileProcessingException;
 import luka.mugosa.filecomparison.service.FileService;
+import luka.mugosa.filecomparison.service.csv.ParseReport;
+import luka.mugosa.filecomparison.service.score.ScoreServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
 
+import static luka.mugosa.filecomparison.service.util.FileServiceUtil.createFileService;
 import static luka.mugosa.filecomparison.service.util.TransactionUtil.createLargeTransactionSet;
 import static luka.mugosa.filecomparison.service.util.TransactionUtil.createTransactionSet;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -48,7 +74,10 @@ class TransactionServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        transactionService = new TransactionServiceImpl(comparisonService, fileService);
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.setEngine(ReconciliationEngine.BATCH);
+        transactionService = new TransactionServiceImpl(comparisonService, fileService, properties,
+                new ReconciliationMetrics(new SimpleMeterRegistry()));
     }
 
     @Test
@@ -61,8 +90,8 @@ class TransactionServiceImplTest {
         final CompletableFuture<List<TransactionDto>> future1 = CompletableFuture.completedFuture(collection1);
         final CompletableFuture<List<TransactionDto>> future2 = CompletableFuture.completedFuture(collection2);
 
-        when(fileService.parseFileAsync(file1)).thenReturn(future1);
-        when(fileService.parseFileAsync(file2)).thenReturn(future2);
+        when(fileService.parseFileAsync(file1, (ParseReport) null)).thenReturn(future1);
+        when(fileService.parseFileAsync(file2, (ParseReport) null)).thenReturn(future2);
 
         final ReconciliationResponse expectedResponse = ReconciliationResponse.builder()
                 .totalRecordsInFile1(2)
@@ -73,7 +102,7 @@ class TransactionServiceImplTest {
                 .matchPercentage(100.0)
                 .build();
 
-        when(comparisonService.compareData(collection1, collection2)).thenReturn(expectedResponse);
+        when(comparisonService.compareData(eq(collection1), eq(collection2), any())).thenReturn(expectedResponse);
 
         // Act
         final ReconciliationResponse response = transactionService.reconcileTransactions(file1, file2);
@@ -87,34 +116,38 @@ class TransactionServiceImplTest {
         assertEquals(0, response.unmatchedRecordsInFile2());
         assertEquals(100.0, response.matchPercentage());
 
-        verify(fileService, times(1)).parseFileAsync(file1);
-        verify(fileService, times(1)).parseFileAsync(file2);
-        verify(comparisonService, times(1)).compareData(collection1, collection2);
+        verify(fileService, times(1)).parseFileAsync(file1, (ParseReport) null);
+        verify(fileService, times(1)).parseFileAsync(file2, (ParseReport) null);
+        verify(comparisonService, times(1)).compareData(eq(collection1), eq(collection2), any());
     }
 
     @Test
     @DisplayName("Should throw FileProcessingException when file parsing times out")
-    @Disabled("This test is slow, no need to run it in group")
     void shouldThrowFileProcessingExceptionWhenFileParsingTimesOut() {
         // Arrange
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.setEngine(ReconciliationEngine.BATCH);
+        properties.getParsing().setTimeout(Duration.ofMillis(100));
+        final TransactionServiceImpl service = new TransactionServiceImpl(comparisonService, fileService, properties,
+                new ReconciliationMetrics(new SimpleMeterRegistry()));
         final CompletableFuture<List<TransactionDto>> slowFuture = new CompletableFuture<>();
         // Don't complete the future - simulates timeout
 
-        when(fileService.parseFileAsync(file1)).thenReturn(slowFuture);
-        when(fileService.parseFileAsync(file2)).thenReturn(slowFuture);
+        when(fileService.parseFileAsync(file1, (ParseReport) null)).thenReturn(slowFuture);
+        when(fileService.parseFileAsync(file2, (ParseReport) null)).thenReturn(slowFuture);
 
         // Act & Assert
         final FileProcessingException exception = assertThrows(
                 FileProcessingException.class,
-                () -> transactionService.reconcileTransactions(file1, file2)
+                () -> service.reconcileTransactions(file1, file2)
         );
 
         assertNotNull(exception);
         assertEquals("Failed to process file: File parsing operation timed out", exception.getMessage());
         assertInstanceOf(TimeoutException.class, exception.getCause());
 
-        verify(fileService, times(1)).parseFileAsync(file1);
-        verify(fileService, times(1)).parseFileAsync(file2);
+        verify(fileService, times(1)).parseFileAsync(file1, (ParseReport) null);
+        verify(fileService, times(1)).parseFileAsync(file2, (ParseReport) null);
         verifyNoInteractions(comparisonService);
     }
 
@@ -125,8 +158,8 @@ class TransactionServiceImplTest {
         final RuntimeException cause = new RuntimeException("File parsing error");
         final CompletableFuture<List<TransactionDto>> failedFuture = CompletableFuture.failedFuture(cause);
 
-        when(fileService.parseFileAsync(file1)).thenReturn(failedFuture);
-        when(fileService.parseFileAsync(file2)).thenReturn(CompletableFuture.completedFuture(createTransactionSet()));
+        when(fileService.parseFileAsync(file1, (ParseReport) null)).thenReturn(failedFuture);
+        when(fileService.parseFileAsync(file2, (ParseReport) null)).thenReturn(CompletableFuture.completedFuture(createTransactionSet()));
 
         // Act & Assert
         final FileProcessingException exception = assertThrows(
@@ -138,8 +171,8 @@ class TransactionServiceImplTest {
         assertEquals("Failed to process file: File parsing failed", exception.getMessage());
         assertEquals(cause, exception.getCause());
 
-        verify(fileService, times(1)).parseFileAsync(file1);
-        verify(fileService, times(1)).parseFileAsync(file2);
+        verify(fileService, times(1)).parseFileAsync(file1, (ParseReport) null);
+        verify(fileService, times(1)).parseFileAsync(file2, (ParseReport) null);
         verifyNoInteractions(comparisonService);
     }
 
@@ -153,8 +186,8 @@ class TransactionServiceImplTest {
         final CompletableFuture<List<TransactionDto>> future1 = CompletableFuture.completedFuture(emptyCollection1);
         final CompletableFuture<List<TransactionDto>> future2 = CompletableFuture.completedFuture(emptyCollection2);
 
-        when(fileService.parseFileAsync(file1)).thenReturn(future1);
-        when(fileService.parseFileAsync(file2)).thenReturn(future2);
+        when(fileService.parseFileAsync(file1, (ParseReport) null)).thenReturn(future1);
+        when(fileService.parseFileAsync(file2, (ParseReport) null)).thenReturn(future2);
 
         final ReconciliationResponse expectedResponse = ReconciliationResponse.builder()
                 .totalRecordsInFile1(0)
@@ -165,7 +198,7 @@ class TransactionServiceImplTest {
                 .matchPercentage(0.0)
                 .build();
 
-        when(comparisonService.compareData(emptyCollection1, emptyCollection2)).thenReturn(expectedResponse);
+        when(comparisonService.compareData(eq(emptyCollection1), eq(emptyCollection2), any())).thenReturn(expectedResponse);
 
         // Act
         final ReconciliationResponse response = transactionService.reconcileTransactions(file1, file2);
@@ -179,9 +212,9 @@ class TransactionServiceImplTest {
         assertEquals(0, response.unmatchedRecordsInFile2());
         assertEquals(0.0, response.matchPercentage());
 
-        verify(fileService, times(1)).parseFileAsync(file1);
-        verify(fileService, times(1)).parseFileAsync(file2);
-        verify(comparisonService, times(1)).compareData(emptyCollection1, emptyCollection2);
+        verify(fileService, times(1)).parseFileAsync(file1, (ParseReport) null);
+        verify(fileService, times(1)).parseFileAsync(file2, (ParseReport) null);
+        verify(comparisonService, times(1)).compareData(eq(emptyCollection1), eq(emptyCollection2), any());
     }
 
     @Test
@@ -194,8 +227,8 @@ class TransactionServiceImplTest {
         final CompletableFuture<List<TransactionDto>> future1 = CompletableFuture.completedFuture(collection1);
         final CompletableFuture<List<TransactionDto>> future2 = CompletableFuture.completedFuture(emptyCollection2);
 
-        when(fileService.parseFileAsync(file1)).thenReturn(future1);
-        when(fileService.parseFileAsync(file2)).thenReturn(future2);
+        when(fileService.parseFileAsync(file1, (ParseReport) null)).thenReturn(future1);
+        when(fileService.parseFileAsync(file2, (ParseReport) null)).thenReturn(future2);
 
         final ReconciliationResponse expectedResponse = ReconciliationResponse.builder()
                 .totalRecordsInFile1(2)
@@ -206,7 +239,7 @@ class TransactionServiceImplTest {
                 .matchPercentage(0.0)
                 .build();
 
-        when(comparisonService.compareData(collection1, emptyCollection2)).thenReturn(expectedResponse);
+        when(comparisonService.compareData(eq(collection1), eq(emptyCollection2), any())).thenReturn(expectedResponse);
 
         // Act
         final ReconciliationResponse response = transactionService.reconcileTransactions(file1, file2);
@@ -220,9 +253,9 @@ class TransactionServiceImplTest {
         assertEquals(0, response.unmatchedRecordsInFile2());
         assertEquals(0.0, response.matchPercentage());
 
-        verify(fileService, times(1)).parseFileAsync(file1);
-        verify(fileService, times(1)).parseFileAsync(file2);
-        verify(comparisonService, times(1)).compareData(collection1, emptyCollection2);
+        verify(fileService, times(1)).parseFileAsync(file1, (ParseReport) null);
+        verify(fileService, times(1)).parseFileAsync(file2, (ParseReport) null);
+        verify(comparisonService, times(1)).compareData(eq(collection1), eq(emptyCollection2), any());
     }
 
     @Test
@@ -235,8 +268,8 @@ class TransactionServiceImplTest {
         final CompletableFuture<List<TransactionDto>> future1 = CompletableFuture.completedFuture(largeCollection1);
         final CompletableFuture<List<TransactionDto>> future2 = CompletableFuture.completedFuture(largeCollection2);
 
-        when(fileService.parseFileAsync(file1)).thenReturn(future1);
-        when(fileService.parseFileAsync(file2)).thenReturn(future2);
+        when(fileService.parseFileAsync(file1, (ParseReport) null)).thenReturn(future1);
+        when(fileService.parseFileAsync(file2, (ParseReport) null)).thenReturn(future2);
 
         final ReconciliationResponse expectedResponse = ReconciliationResponse.builder()
                 .totalRecordsInFile1(1000)
@@ -247,7 +280,7 @@ class TransactionServiceImplTest {
                 .matchPercentage(100.0)
                 .build();
 
-        when(comparisonService.compareData(largeCollection1, largeCollection2)).thenReturn(expectedResponse);
+        when(comparisonService.compareData(eq(largeCollection1), eq(largeCollection2), any())).thenReturn(expectedResponse);
 
         // Act
         final ReconciliationResponse response = transactionService.reconcileTransactions(file1, file2);
@@ -259,9 +292,9 @@ class TransactionServiceImplTest {
         assertEquals(1000, response.matchedRecords());
         assertEquals(100.0, response.matchPercentage());
 
-        verify(fileService, times(1)).parseFileAsync(file1);
-        verify(fileService, times(1)).parseFileAsync(file2);
-        verify(comparisonService, times(1)).compareData(largeCollection1, largeCollection2);
+        verify(fileService, times(1)).parseFileAsync(file1, (ParseReport) null);
+        verify(fileService, times(1)).parseFileAsync(file2, (ParseReport) null);
+        verify(comparisonService, times(1)).compareData(eq(largeCollection1), eq(largeCollection2), any());
     }
 
     @Test
@@ -272,8 +305,8 @@ class TransactionServiceImplTest {
         final CompletableFuture<List<TransactionDto>> failedFuture1 = CompletableFuture.failedFuture(cause);
         final CompletableFuture<List<TransactionDto>> failedFuture2 = CompletableFuture.failedFuture(cause);
 
-        when(fileService.parseFileAsync(file1)).thenReturn(failedFuture1);
-        when(fileService.parseFileAsync(file2)).thenReturn(failedFuture2);
+        when(fileService.parseFileAsync(file1, (ParseReport) null)).thenReturn(failedFuture1);
+        when(fileService.parseFileAsync(file2, (ParseReport) null)).thenReturn(failedFuture2);
 
         // Act & Assert
         final FileProcessingException exception = assertThrows(
@@ -284,8 +317,421 @@ class TransactionServiceImplTest {
         assertNotNull(exception);
         assertEquals("Failed to process file: File parsing failed", exception.getMessage());
 
-        verify(fileService, times(1)).parseFileAsync(file1);
-        verify(fileService, times(1)).parseFileAsync(file2);
+        verify(fileService, times(1)).parseFileAsync(file1, (ParseReport) null);
+        verify(fileService, times(1)).parseFileAsync(file2, (ParseReport) null);
+        verifyNoInteractions(comparisonService);
+    }
+
+    @Test
+    @DisplayName("Should feed both parsers into the join and finish it when the pipelined engine is used")
+    void shouldFeedParsersIntoJoinWhenPipelined() {
+        // Arrange
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.setEngine(ReconciliationEngine.PIPELINED);
+        final TransactionServiceImpl pipelinedService = new TransactionServiceImpl(comparisonService, fileService, properties,
+                new ReconciliationMetrics(new SimpleMeterRegistry()));
+
+        final SymmetricHashJoin join = mock(SymmetricHashJoin.class);
+        final ReconciliationResponse expectedResponse = ReconciliationResponse.builder()
+                .totalRecordsInFile1(1)
+                .totalRecordsInFile2(1)
+                .matchedRecords(1)
+                .matchPercentage(100.0)
+                .build();
+
+        when(comparisonService.newSymmetricHashJoin(any())).thenReturn(join);
+        when(fileService.parseFileAsync(eq(file1), nullable(ParseReport.class), any())).thenReturn(CompletableFuture.completedFuture(1));
+        when(fileService.parseFileAsync(eq(file2), nullable(ParseReport.class), any())).thenReturn(CompletableFuture.completedFuture(1));
+        when(join.finish(any())).thenReturn(expectedResponse);
+
+        // Act
+        final ReconciliationResponse response = pipelinedService.reconcileTransactions(file1, file2);
+
+        // Assert
+        assertEquals(expectedResponse, response);
+        verify(fileService, never()).parseFileAsync(file1, (ParseReport) null);
+        verify(fileService, never()).parseFileAsync(file2, (ParseReport) null);
+        verify(comparisonService, never()).compareData(any(), any(), any());
+        verify(join, times(1)).finish(any());
+    }
+
+    @Test
+    @DisplayName("Should hand unmatched pairs to the sink and return a summary without a pair list when streaming")
+    void shouldStreamPairsToSinkAndReturnSummary() {
+        // Arrange
+        final TransactionDto transaction1 = createTransactionSet("TXN001").get(0);
+        final TransactionDto transaction2 = createTransactionSet("TXN002").get(0);
+        final PendingComparison pendingComparison = accumulator -> {
+            accumulator.unmatchedFromFile1(transaction1, null, null);
+            accumulator.unmatchedFromFile2(transaction2);
+            return ReconciliationResponse.builder()
+                    .unmatchedRecordsInFile1(accumulator.getUnmatchedRecordsInFile1())
+                    .unmatchedRecordsInFile2(accumulator.getUnmatchedRecordsInFile2())
+                    .unmatchedTransactionPairs(accumulator.getUnmatchedTransactionPairs())
+                    .build();
+        };
+        final List<UnmatchedTransactionPairDto> streamedPairs = new ArrayList<>();
+
+        // Act
+        final ReconciliationResponse summary = transactionService.streamComparison(
+                pendingComparison, ReconciliationOptions.defaults(), streamedPairs::add);
+
+        // Assert
+        assertEquals(2, streamedPairs.size());
+        assertEquals(transaction1, streamedPairs.get(0).getTransaction1());
+        assertEquals(transaction2, streamedPairs.get(1).getTransaction2());
+        assertEquals(1, summary.unmatchedRecordsInFile1());
+        assertEquals(1, summary.unmatchedRecordsInFile2());
+        assertNull(summary.unmatchedTransactionPairs());
+        verifyNoInteractions(fileService);
+    }
+
+    @Test
+    @DisplayName("Should fail fast and cancel the other parse when one file fails")
+    void shouldCancelSiblingParseWhenOneFails() {
+        // Arrange
+        final RuntimeException cause = new RuntimeException("File parsing error");
+        final CompletableFuture<List<TransactionDto>> failedFuture = CompletableFuture.failedFuture(cause);
+        final CompletableFuture<List<TransactionDto>> runningFuture = new CompletableFuture<>();
+
+        when(fileService.parseFileAsync(file1, (ParseReport) null)).thenReturn(runningFuture);
+        when(fileService.parseFileAsync(file2, (ParseReport) null)).thenReturn(failedFuture);
+
+        // Act & Assert
+        final FileProcessingException exception = assertThrows(
+                FileProcessingException.class,
+                () -> transactionService.reconcileTransactions(file1, file2)
+        );
+
+        assertEquals(cause, exception.getCause());
+        assertTrue(runningFuture.isCancelled());
         verifyNoInteractions(comparisonService);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should give the same result when a large input is reconciled partition by partition on disk")
+    void shouldReconcileLargeInputByPartitions() {
+        // Arrange
+        final MultipartFile upload1 = new MockMultipartFile("file1", "file1.csv", "text/csv", createCsv(1).getBytes());
+        final MultipartFile upload2 = new MockMultipartFile("file2", "file2.csv", "text/csv", createCsv(2).getBytes());
+
+        final ReconciliationProperties inMemory = new ReconciliationProperties();
+        inMemory.setEngine(ReconciliationEngine.BATCH);
+        final ReconciliationProperties partitioned = new ReconciliationProperties();
+        partitioned.getLargeFiles().setThreshold(DataSize.ofBytes(1));
+        partitioned.getLargeFiles().setPartitionSize(DataSize.ofBytes(512));
+        final ReconciliationOptions summaryOnly = ReconciliationOptions.builder().summaryOnly(true).build();
+
+        // Act
+        final ReconciliationResponse expected = realTransactionService(inMemory).reconcileTransactions(upload1, upload2);
+        final ReconciliationResponse actual = realTransactionService(partitioned).reconcileTransactions(upload1, upload2, summaryOnly);
+        final List<UnmatchedTransactionPairDto> streamedPairs = new ArrayList<>();
+        final TransactionServiceImpl partitionedService = realTransactionService(partitioned);
+        partitionedService.streamComparison(partitionedService.parseForComparison(upload1, upload2),
+                ReconciliationOptions.defaults(), streamedPairs::add);
+
+        // Assert
+        assertEquals(expected.totalRecordsInFile1(), actual.totalRecordsInFile1());
+        assertEquals(expected.totalRecordsInFile2(), actual.totalRecordsInFile2());
+        assertEquals(expected.matchedRecords(), actual.matchedRecords());
+        assertEquals(expected.unmatchedRecordsInFile1(), actual.unmatchedRecordsInFile1());
+        assertEquals(expected.unmatchedRecordsInFile2(), actual.unmatchedRecordsInFile2());
+        assertNull(actual.unmatchedTransactionPairs());
+        assertEquals(expected.unmatchedTransactionPairs().size(), streamedPairs.size());
+        assertTrue(actual.matchedRecords() > 0);
+    }
+
+    @Test
+    @DisplayName("Should reject the full pair list of a large input, uploaded or streamed")
+    void shouldRejectFullPairListInLargeFileMode() {
+        // Arrange
+        final MultipartFile upload1 = new MockMultipartFile("file1", "file1.csv", "text/csv", createCsv(1).getBytes());
+        final MultipartFile upload2 = new MockMultipartFile("file2", "file2.csv", "text/csv", createCsv(2).getBytes());
+        final ReconciliationProperties partitioned = new ReconciliationProperties();
+        partitioned.getLargeFiles().setThreshold(DataSize.ofBytes(1));
+        final TransactionServiceImpl service = realTransactionService(partitioned);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.reconcileTransactions(upload1, upload2));
+        assertThrows(IllegalArgumentException.class, () -> service.reconcileStreamedRequest(
+                multipartRequest(createCsv(1), createCsv(2)), ReconciliationOptions.defaults()));
+    }
+
+    @Test
+    @DisplayName("Should apply the error budget to the whole file and report upload lines in large-file mode")
+    void shouldReportParseErrorsOfLargeInputAgainstTheUpload() {
+        // Arrange - rows 3 and 40 get a bad amount, they sit on lines 5 and 42 of the upload
+        final String csv1 = createCsv(1)
+                .replace(",-3000,", ",abc,")
+                .replace(",-40000,", ",abc,");
+        final MultipartFile upload1 = new MockMultipartFile("file1", "file1.csv", "text/csv", csv1.getBytes());
+        final MultipartFile upload2 = new MockMultipartFile("file2", "file2.csv", "text/csv", createCsv(2).getBytes());
+        final ReconciliationOptions summaryOnly = ReconciliationOptions.builder().summaryOnly(true).build();
+
+        final ReconciliationProperties partitioned = new ReconciliationProperties();
+        partitioned.getLargeFiles().setThreshold(DataSize.ofBytes(1));
+        partitioned.getLargeFiles().setPartitionSize(DataSize.ofBytes(512));
+        partitioned.getParsing().setErrorBudget(2);
+        final ReconciliationProperties tooSmallBudget = new ReconciliationProperties();
+        tooSmallBudget.getLargeFiles().setThreshold(DataSize.ofBytes(1));
+        tooSmallBudget.getLargeFiles().setPartitionSize(DataSize.ofBytes(512));
+        tooSmallBudget.getParsing().setErrorBudget(1);
+
+        // Act
+        final ReconciliationResponse response = realTransactionService(partitioned)
+                .reconcileTransactions(upload1, upload2, summaryOnly);
+
+        // Assert
+        assertNotNull(response.parseErrorsInFile1());
+        assertEquals(2, response.parseErrorsInFile1().flaggedRows());
+        assertEquals(List.of(5, 42), response.parseErrorsInFile1().errors().stream()
+                .map(RowErrorDto::line)
+                .sorted()
+                .toList());
+        assertEquals(0, response.parseErrorsInFile2().flaggedRows());
+        assertEquals(response.totalRecordsInFile1(), response.statistics().file1().processedRows());
+        assertThrows(ErrorBudgetExceededException.class, () -> realTransactionService(tooSmallBudget)
+                .reconcileTransactions(upload1, upload2, summaryOnly));
+    }
+
+    @Test
+    @DisplayName("Should parse file parts straight from a streamed multipart request, in memory or partitioned")
+    void shouldReconcileStreamedMultipartRequest() {
+        // Arrange
+        final String csv1 = createCsv(1);
+        final String csv2 = createCsv(2);
+        final MultipartFile upload1 = new MockMultipartFile("file1", "file1.csv", "text/csv", csv1.getBytes());
+        final MultipartFile upload2 = new MockMultipartFile("file2", "file2.csv", "text/csv", csv2.getBytes());
+
+        final ReconciliationProperties inMemory = new ReconciliationProperties();
+        final ReconciliationProperties partitioned = new ReconciliationProperties();
+        partitioned.getLargeFiles().setThreshold(DataSize.ofBytes(1));
+        partitioned.getLargeFiles().setPartitionSize(DataSize.ofBytes(512));
+
+        // Act
+        final ReconciliationResponse expected = realTransactionService(inMemory).reconcileTransactions(upload1, upload2);
+        final ReconciliationResponse streamed = realTransactionService(inMemory)
+                .reconcileStreamedRequest(multipartRequest(csv1, csv2), ReconciliationOptions.defaults());
+        final ReconciliationResponse streamedPartitioned = realTransactionService(partitioned)
+                .reconcileStreamedRequest(multipartRequest(csv1, csv2), ReconciliationOptions.builder().summaryOnly(true).build());
+
+        // Assert
+        for (ReconciliationResponse actual : List.of(streamed, streamedPartitioned)) {
+            assertEquals(expected.totalRecordsInFile1(), actual.totalRecordsInFile1());
+            assertEquals(expected.totalRecordsInFile2(), actual.totalRecordsInFile2());
+            assertEquals(expected.matchedRecords(), actual.matchedRecords());
+            assertEquals(expected.unmatchedRecordsInFile1(), actual.unmatchedRecordsInFile1());
+            assertEquals(expected.unmatchedRecordsInFile2(), actual.unmatchedRecordsInFile2());
+        }
+    }
+
+    @Test
+    @DisplayName("Should report the parse counters of both files against a prepared reference and for a streamed request")
+    void shouldReportParseStatisticsForReferenceAndStreamedRequest() {
+        // Arrange
+        final String csv1 = createCsv(1);
+        final String csv2 = createCsv(2);
+        final MultipartFile upload1 = new MockMultipartFile("file1", "file1.csv", "text/csv", csv1.getBytes());
+        final MultipartFile upload2 = new MockMultipartFile("file2", "file2.csv", "text/csv", csv2.getBytes());
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        final PreparedReferenceServiceImpl referenceService = new PreparedReferenceServiceImpl(
+                createFileService(properties),
+                new MemoryAdmissionController(properties), properties);
+        final String referenceId = referenceService.prepare(upload1, null).referenceId();
+
+        // Act
+        final ReconciliationResponse expected = realTransactionService(properties).reconcileTransactions(upload1, upload2);
+        final ReconciliationResponse againstReference;
+        try (PreparedReference reference = referenceService.acquire(referenceId)) {
+            againstReference = realTransactionService(properties)
+                    .reconcileAgainstReference(reference, upload2, ReconciliationOptions.defaults());
+        }
+        final ReconciliationResponse streamed = realTransactionService(properties)
+                .reconcileStreamedRequest(multipartRequest(csv1, csv2), ReconciliationOptions.defaults());
+
+        // Assert
+        assertNotNull(expected.statistics().file1());
+        for (ReconciliationResponse actual : List.of(againstReference, streamed)) {
+            assertEquals(expected.statistics().file1(), actual.statistics().file1());
+            assertEquals(expected.statistics().file2(), actual.statistics().file2());
+        }
+        referenceService.release(referenceId);
+    }
+
+    @Test
+    @DisplayName("Should record one parse per file and one comparison in the meters")
+    void shouldRecordParseAndCompareMeters() {
+        // Arrange
+        final MultipartFile upload1 = new MockMultipartFile("file1", "file1.csv", "text/csv", createCsv(1).getBytes());
+        final MultipartFile upload2 = new MockMultipartFile("file2", "file2.csv", "text/csv", createCsv(2).getBytes());
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        // Act
+        final ReconciliationResponse response = realTransactionService(new ReconciliationProperties(), new ReconciliationMetrics(registry))
+                .reconcileTransactions(upload1, upload2);
+
+        // Assert
+        assertEquals(2, registry.get("reconciliation.parse").tag("outcome", "success").timer().count());
+        assertEquals(1, registry.get("reconciliation.compare").tag("outcome", "success").timer().count());
+        assertEquals(response.totalRecordsInFile1() + response.totalRecordsInFile2(),
+                registry.get("reconciliation.rows").tag("outcome", "processed").counter().count());
+        assertEquals(response.matchedRecords(), registry.get("reconciliation.matches").tag("confidence", "HIGH").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should reject a streamed multipart request missing one of the files")
+    void shouldRejectStreamedRequestWithoutBothFiles() {
+        final MockHttpServletRequest request = multipartRequest(createCsv(1), null);
+
+        final IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> realTransactionService(new ReconciliationProperties())
+                        .reconcileStreamedRequest(request, ReconciliationOptions.defaults())
+        );
+
+        assertEquals("Both file1 and file2 parts are required", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should reject an empty file part of a streamed request, in memory or partitioned")
+    void shouldRejectStreamedRequestWithEmptyFile() {
+        final ReconciliationProperties partitioned = new ReconciliationProperties();
+        partitioned.getLargeFiles().setThreshold(DataSize.ofBytes(1));
+
+        final ReconciliationOptions summaryOnly = ReconciliationOptions.builder().summaryOnly(true).build();
+
+        for (ReconciliationProperties properties : List.of(new ReconciliationProperties(), partitioned)) {
+            final MockHttpServletRequest request = multipartRequest(createCsv(1), "");
+
+            final EmptyFileException exception = assertThrows(
+                    EmptyFileException.class,
+                    () -> realTransactionService(properties).reconcileStreamedRequest(request, summaryOnly)
+            );
+
+            assertEquals("Uploaded file is empty", exception.getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("Should time out the parse of a streamed request like an upload")
+    void shouldTimeOutStreamedRequestParsing() throws IOException {
+        // Arrange
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getParsing().setTimeout(Duration.ofMillis(100));
+        final TransactionServiceImpl service = new TransactionServiceImpl(comparisonService, fileService, properties,
+                new ReconciliationMetrics(new SimpleMeterRegistry()));
+        when(comparisonService.newSymmetricHashJoin(any())).thenReturn(mock(SymmetricHashJoin.class));
+        when(fileService.validateUpload(any(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(fileService.parseStreamAsync(any(), any(), any(), any())).thenReturn(new CompletableFuture<>());
+
+        // Act & Assert
+        final FileProcessingException exception = assertThrows(
+                FileProcessingException.class,
+                () -> service.reconcileStreamedRequest(multipartRequest(createCsv(1), createCsv(2)), ReconciliationOptions.defaults())
+        );
+
+        assertEquals("Failed to process file: File parsing operation timed out", exception.getMessage());
+        verify(fileService, times(1)).parseStreamAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should reconcile the same TransactionID sample of both files and bound the full result")
+    void shouldEstimateReconciliationFromSample() {
+        // Arrange
+        final MultipartFile upload1 = new MockMultipartFile("file1", "file1.csv", "text/csv", createCsv(1).getBytes());
+        final MultipartFile upload2 = new MockMultipartFile("file2", "file2.csv", "text/csv", createCsv(2).getBytes());
+        final TransactionServiceImpl service = realTransactionService(new ReconciliationProperties());
+
+        // Act
+        final ReconciliationEstimateResponse everything = service.estimateReconciliation(upload1, upload2, 1.0);
+        final ReconciliationEstimateResponse half = service.estimateReconciliation(upload1, upload2, 0.5);
+
+        // Assert - a full sample is exact and leaves out only the rows without an ID
+        assertEquals(61, everything.totalRecordsInFile1());
+        assertEquals(1, everything.blankIdRecordsInFile1());
+        assertEquals(2, everything.blankIdRecordsInFile2());
+        assertEquals(60, everything.sampledRecordsInFile1());
+        assertEquals(everything.sample().matchedRecords(), everything.matchedRecords().estimate());
+        assertEquals(everything.matchedRecords().lowerBound(), everything.matchedRecords().upperBound());
+
+        final long sampledIds = IntStream.range(0, 60)
+                .filter(i -> TransactionIdSampler.isSampled(Integer.toString(100000 + i), 0.5))
+                .count();
+        assertEquals(sampledIds, half.sampledRecordsInFile1());
+        assertTrue(half.sampledRecordsInFile1() > 0 && half.sampledRecordsInFile1() < 60);
+        final double exactMatched = everything.matchedRecords().estimate();
+        assertTrue(half.matchedRecords().lowerBound() <= exactMatched && exactMatched <= half.matchedRecords().upperBound());
+        assertTrue(half.matchPercentage().lowerBound() < half.matchPercentage().upperBound());
+    }
+
+    @Test
+    @DisplayName("Should reject a sample rate outside (0, 1]")
+    void shouldRejectInvalidSampleRate() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.estimateReconciliation(file1, file2, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.estimateReconciliation(file1, file2, 1.5));
+        verifyNoInteractions(fileService);
+    }
+
+    private MockHttpServletRequest multipartRequest(String csv1, String csv2) {
+        final String boundary = "reconciliation-boundary";
+        final StringBuilder body = new StringBuilder()
+                .append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"note\"\r\n\r\nignored\r\n");
+        appendFilePart(body, boundary, "file1", csv1);
+        if (csv2 != null) {
+            appendFilePart(body, boundary, "file2", csv2);
+        }
+        body.append("--").append(boundary).append("--\r\n");
+
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/reconcile-transactions/direct");
+        request.setContentType("multipart/form-data; boundary=" + boundary);
+        request.setContent(body.toString().getBytes());
+        return request;
+    }
+
+    private void appendFilePart(StringBuilder body, String boundary, String name, String content) {
+        body.append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(name)
+                .append("\"; filename=\"").append(name).append(".csv\"\r\n")
+                .append("Content-Type: text/csv\r\n\r\n")
+                .append(content).append("\r\n");
+    }
+
+    private TransactionServiceImpl realTransactionService(ReconciliationProperties properties) {
+        return realTransactionService(properties, new ReconciliationMetrics(new SimpleMeterRegistry()));
+    }
+
+    private TransactionServiceImpl realTransactionService(ReconciliationProperties properties, ReconciliationMetrics metrics) {
+        final FileServiceImpl realFileService = createFileService(properties, metrics);
+        final ComparisonServiceImpl realComparisonService = new ComparisonServiceImpl(new ScoreServiceImpl(), properties, metrics);
+        return new TransactionServiceImpl(realComparisonService, realFileService, properties, metrics);
+    }
+
+    // File 2 misses every 7th ID, changes every 5th amount and has one more row without an ID
+    private String createCsv(int side) {
+        final StringBuilder csv = new StringBuilder(String.join(",",
+                TransactionConstants.HEADER_PROFILE_NAME,
+                TransactionConstants.HEADER_TRANSACTION_DATE,
+                TransactionConstants.HEADER_TRANSACTION_AMOUNT,
+                TransactionConstants.HEADER_TRANSACTION_NARRATIVE,
+                TransactionConstants.HEADER_TRANSACTION_DESCRIPTION,
+                TransactionConstants.HEADER_TRANSACTION_ID,
+                TransactionConstants.HEADER_TRANSACTION_TYPE,
+                TransactionConstants.HEADER_WALLET_REFERENCE)).append('\n');
+        for (int i = 0; i < 60; i++) {
+            if (side == 2 && i % 7 == 0) {
+                continue;
+            }
+            final int amount = side == 2 && i % 5 == 0 ? -9999 : -1000 * i;
+            csv.append("Card Campaign,2014-01-11 22:27:44,").append(amount).append(",NARRATIVE ").append(i)
+                    .append(",DEDUCT,").append(100000 + i).append(",1,P_WALLET_").append(i).append('\n');
+        }
+        csv.append("Card Campaign,2014-01-12 06:26:17,-500,BLANK ID,DEDUCT,,1,P_WALLET_BLANK\n");
+        if (side == 2) {
+            csv.append("Card Campaign,2014-01-12 07:00:00,-700,ONLY IN FILE 2,DEDUCT,,0,P_WALLET_OTHER\n");
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package luka.mugosa.filecomparison.service.impl;
+
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.enumeration.TransactionType;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionSnapshotStoreTest {
+
+    private TransactionSnapshotStore store;
+
+    @TempDir
+    Path tempDir;
+
+    private Path csv;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        final ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getSnapshots().setFileDirectory(tempDir.resolve("files").toString());
+        properties.getSnapshots().setUploadDirectory(tempDir.resolve("uploads").toString());
+        store = new TransactionSnapshotStore(properties);
+        csv = Files.writeString(tempDir.resolve("ledger.csv"), "placeholder source");
+    }
+
+    @Test
+    @DisplayName("Should load every column back as written, nulls and repeated values included")
+    void shouldRoundTripAllColumns() {
+        final ZonedDateTime date = ZonedDateTime.of(2014, 1, 11, 22, 27, 44, 0, ZoneId.of("Europe/Belgrade"));
+        final List<TransactionDto> transactions = List.of(
+                new TransactionDto("Card Campaign", date, -20000.0, "Šabac ATM", "DEDUCT",
+                        new TransactionId("TXN001"), TransactionType.TYPE_2, "P_WALLET_1"),
+                new TransactionDto("Card Campaign", date.plusDays(1), null, "", "DEDUCT",
+                        new TransactionId("TXN002"), TransactionType.TYPE_1, null),
+                new TransactionDto(null, null, 0.5, null, null, new TransactionId(null), null, ""));
+
+        final TransactionSnapshotStore.SourceStamp stamp = store.stamp(csv);
+        store.storeForFile(csv, stamp, transactions);
+        final List<TransactionDto> loaded = store.loadForFile(csv, store.stamp(csv));
+
+        assertThat(Files.exists(store.fileSnapshotPath(csv))).isTrue();
+        assertThat(store.fileSnapshotPath(csv).getParent()).isEqualTo(tempDir.resolve("files"));
+        assertThat(loaded).containsExactlyElementsOf(transactions);
+        // Dictionary encoded, so both rows share one decoded profile name
+        assertThat(loaded.get(1).getProfileName()).isSameAs(loaded.get(0).getProfileName());
+        assertThat(loaded.get(0).getTransactionDate().getZone()).isEqualTo(date.getZone());
+    }
+
+    @Test
+    @DisplayName("Should ignore the snapshot once the source file changed")
+    void shouldIgnoreStaleSnapshot() throws IOException {
+        store.storeForFile(csv, store.stamp(csv), List.of(new TransactionDto("Profile", null, 1.0, null, null,
+                new TransactionId("TXN001"), null, null)));
+
+        Files.writeString(csv, "changed source");
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(Files.getLastModifiedTime(csv).toMillis() + 1000));
+
+        assertThat(store.loadForFile(csv, store.stamp(csv))).isNull();
+    }
+
+    @Test
+    @DisplayName("Should not snapshot a CSV without a file directory, nothing is written next to it")
+    void shouldSkipFilesWithoutFileDirectory() throws IOException {
+        final TransactionSnapshotStore uploadsOnly = new TransactionSnapshotStore(new ReconciliationProperties());
+
+        final TransactionSnapshotStore.SourceStamp stamp = uploadsOnly.stamp(csv);
+        uploadsOnly.storeForFile(csv, stamp, List.of(new TransactionDto("Profile", null, 1.0, null, null,
+                new TransactionId("TXN001"), null, null)));
+
+        assertThat(stamp).isNull();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(csv);
+        }
+    }
+
+    @Test
+    @DisplayName("Should discard a snapshot that fails the checksum")
+    void shouldDiscardCorruptSnapshot() throws IOException {
+        final List<TransactionDto> transactions = List.of(new TransactionDto("Profile", null, 1.0, "narrative", null,
+                new TransactionId("TXN001"), null, null));
+        store.storeForUpload("abc", 100, transactions);
+        final Path snapshot = tempDir.resolve("uploads").resolve("abc" + TransactionSnapshotStore.SNAPSHOT_EXTENSION);
+        assertThat(store.loadForUpload("abc", 100)).containsExactlyElementsOf(transactions);
+
+        final byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 1] ^= 0x7f;
+        Files.write(snapshot, bytes);
+
+        assertThat(store.loadForUpload("abc", 100)).isNull();
+        assertThat(Files.exists(snapshot)).isFalse();
+    }
+}
@@ -0,0 +1,69 @@
+package luka.mugosa.filecomparison.service.score;
+
+import luka.mugosa.filecomparison.domain.dto.TransactionDto;
+import luka.mugosa.filecomparison.domain.dto.TransactionPairDiffDto;
+import luka.mugosa.filecomparison.domain.dto.UnmatchedTransactionPairDto;
+import luka.mugosa.filecomparison.domain.enumeration.TransactionType;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
+import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static luka.mugosa.filecomparison.service.util.TransactionUtil.createTransaction;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PairDiffCalculatorTest {
+
+    private final ScoreServiceImpl scoreService = new ScoreServiceImpl();
+
+    @Test
+    @DisplayName("Should list differing columns with amount and day deltas")
+    void shouldListDifferingColumnsWithDeltas() {
+        final ZonedDateTime date = ZonedDateTime.now();
+        final TransactionDto txn1 = new TransactionDto("Card Campaign", date, 100.0, "PAYMENT TO STORE", "DEDUCT",
+                new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET123");
+        final TransactionDto txn2 = new TransactionDto("Card Campaign", date.plusDays(3), 250.0, "PAYMENT TO STORE", "REVERSAL",
+                new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET123");
+
+        final MatchScore matchScore = scoreService.calculateScore(txn1, txn2);
+        final TransactionPairDiffDto diff = PairDiffCalculator.calculate(txn1, txn2, matchScore);
+
+        assertEquals(List.of("TransactionAmount", "TransactionDate", "TransactionDescription"), diff.differingColumns());
+        assertEquals(150.0, diff.amountDelta());
+        assertEquals(3L, diff.dayDelta());
+    }
+
+    @Test
+    @DisplayName("Should compare values directly for columns a decisive score skipped")
+    void shouldCompareValuesDirectlyForSkippedColumns() {
+        final ZonedDateTime date = ZonedDateTime.now();
+        final TransactionDto txn1 = new TransactionDto("Card Campaign", date, 100.0, "PAYMENT TO STORE", "DEDUCT",
+                new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET123");
+        final TransactionDto txn2 = new TransactionDto("Card Campaign", date, 100.0, "payment to store ", "REVERSAL",
+                new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET123");
+
+        final MatchScore matchScore = scoreService.calculateDecisiveScore(txn1, txn2);
+        final TransactionPairDiffDto diff = PairDiffCalculator.calculate(txn1, txn2, matchScore);
+
+        assertEquals(List.of("TransactionDescription"), diff.differingColumns());
+        assertEquals(0.0, diff.amountDelta());
+        assertEquals(0L, diff.dayDelta());
+    }
+
+    @Test
+    @DisplayName("Should leave one-sided pairs without a diff")
+    void shouldLeaveOneSidedPairsWithoutDiff() {
+        final UnmatchedTransactionPairDto pair = new UnmatchedTransactionPairDto(
+                createTransaction("TXN001", 100.0, ZonedDateTime.now()), null);
+
+        final UnmatchedTransactionPairDto result = PairDiffCalculator.withDiff(pair);
+
+        assertSame(pair, result);
+        assertNull(result.getDiff());
+    }
+}
@@ -2,6 +2,7 @@ package luka.mugosa.filecomparison.service.score;
 
 import luka.mugosa.filecomparison.domain.dto.TransactionDto;
 import luka.mugosa.filecomparison.domain.enumeration.TransactionType;
+import luka.mugosa.filecomparison.domain.id.TransactionId;
 import luka.mugosa.filecomparison.domain.score.dto.MatchConfidence;
 import luka.mugosa.filecomparison.domain.score.dto.MatchScore;
 import luka.mugosa.filecomparison.domain.score.dto.ScoringWeights;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Map;
 
 import static luka.mugosa.filecomparison.service.util.TransactionUtil.createPerfectMatchTransaction;
@@ -70,6 +72,20 @@ class ScoreServiceImplTest {
             assertEquals(15.0, componentScores.get("TransactionDate"));
         }
 
+        @Test
+        @DisplayName("Should not score the ID of two blank transaction IDs")
+        void shouldNotScoreBlankIds() {
+            final ZonedDateTime date = ZonedDateTime.now();
+            final TransactionDto txn1 = createTransaction("", 100.0, date);
+            final TransactionDto txn2 = createTransaction("  ", 100.0, date);
+
+            final MatchScore score = scoreService.calculateScore(txn1, txn2);
+
+            assertFalse(score.componentScores().containsKey("TransactionID"));
+            assertEquals(41.0, score.totalScore());
+            assertEquals(MatchConfidence.LOW, score.confidence());
+        }
+
         @Test
         @DisplayName("Should return zero score when transaction ID is null")
         void shouldReturnVeryLowConfidenceWhenIdIsNull() {
@@ -511,4 +527,60 @@ class ScoreServiceImplTest {
             assertEquals(score.totalScore(), manualSum, 0.001);
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("Decisive Scoring Tests")
+    class DecisiveScoringTests {
+
+        @Test
+        @DisplayName("Should skip narrative when the other components already settle HIGH confidence")
+        void shouldSkipNarrativeWhenConfidenceIsAlreadySettled() {
+            final TransactionDto txn1 = createTransactionWithNarrative("TXN001", "PAYMENT TO STORE");
+            final TransactionDto txn2 = createTransactionWithNarrative("TXN001", "PAYMENT TO STORE");
+
+            final MatchScore score = scoreService.calculateDecisiveScore(txn1, txn2);
+
+            assertEquals(MatchConfidence.HIGH, score.confidence());
+            assertFalse(score.componentScores().containsKey("TransactionNarrative"));
+            assertEquals(81.0, score.totalScore());
+        }
+
+        @Test
+        @DisplayName("Should score narrative when it can still change the confidence")
+        void shouldScoreNarrativeWhenItCanChangeConfidence() {
+            final ZonedDateTime date = ZonedDateTime.now();
+            // ID, wallet, type and profile give 53 points, the text columns decide between LOW and HIGH
+            final TransactionDto txn1 = new TransactionDto("ProfileName", date, 100.0, "PAYMENT TO STORE", "DEDUCT",
+                    new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET123");
+            final TransactionDto txn2 = new TransactionDto("ProfileName", date.plusDays(30), 500.0, "PAYMENT TO STORE", "DEDUCT",
+                    new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET123");
+
+            final MatchScore decisive = scoreService.calculateDecisiveScore(txn1, txn2);
+            final MatchScore full = scoreService.calculateScore(txn1, txn2);
+
+            assertTrue(decisive.componentScores().containsKey("TransactionNarrative"));
+            assertEquals(full.totalScore(), decisive.totalScore());
+            assertEquals(full.confidence(), decisive.confidence());
+            assertEquals(MatchConfidence.HIGH, decisive.confidence());
+        }
+
+        @Test
+        @DisplayName("Should tell whether a row matches an identical copy the same way scoring the pair does")
+        void shouldAgreeWithScoringOnIdenticalCopies() {
+            final ZonedDateTime date = ZonedDateTime.now();
+            final List<TransactionDto> transactions = List.of(
+                    new TransactionDto("ProfileName", date, 100.0, "PAYMENT", "DEDUCT",
+                            new TransactionId("TXN001"), TransactionType.TYPE_1, "WALLET123"),
+                    new TransactionDto(null, date, null, null, null, new TransactionId("TXN002"), null, null),
+                    new TransactionDto("ProfileName", date, null, "PAYMENT", "DEDUCT",
+                            new TransactionId("TXN003"), TransactionType.TYPE_1, "WALLET123"),
+                    new TransactionDto(null, null, 100.0, null, null, new TransactionId("TXN004"), null, null));
+
+            for (TransactionDto transaction : transactions) {
+                assertEquals(scoreService.calculateScore(transaction, transaction).confidence() == MatchConfidence.HIGH,
+                        scoreService.matchesIdenticalCopy(transaction), transaction.getTransactionID().id());
+            }
+            assertFalse(scoreService.matchesIdenticalCopy(transactions.get(1)));
+        }
+    }
+}
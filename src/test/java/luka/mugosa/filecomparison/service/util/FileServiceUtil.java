@@ -0,0 +1,31 @@
+package luka.mugosa.filecomparison.service.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import luka.mugosa.filecomparison.config.ReconciliationExecutors;
+import luka.mugosa.filecomparison.config.ReconciliationMetrics;
+import luka.mugosa.filecomparison.config.ReconciliationProperties;
+import luka.mugosa.filecomparison.service.impl.FileServiceImpl;
+import luka.mugosa.filecomparison.service.impl.ParsedFileCache;
+import luka.mugosa.filecomparison.service.impl.TransactionSnapshotStore;
+
+public class FileServiceUtil {
+    // Real file service wired like the application does, everything sized by the given properties
+    public static FileServiceImpl createFileService(ReconciliationProperties properties) {
+        return createFileService(properties, new ReconciliationMetrics(new SimpleMeterRegistry()));
+    }
+
+    public static FileServiceImpl createFileService(ReconciliationProperties properties, ReconciliationMetrics metrics) {
+        return createFileService(properties, new ParsedFileCache(properties), metrics);
+    }
+
+    // For tests that inspect the parse cache
+    public static FileServiceImpl createFileService(ReconciliationProperties properties, ParsedFileCache parsedFileCache) {
+        return createFileService(properties, parsedFileCache, new ReconciliationMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static FileServiceImpl createFileService(ReconciliationProperties properties, ParsedFileCache parsedFileCache,
+                                                     ReconciliationMetrics metrics) {
+        return new FileServiceImpl(new ReconciliationExecutors(properties), properties, parsedFileCache,
+                new TransactionSnapshotStore(properties), metrics);
+    }
+}